@@ -55,6 +55,9 @@ public class Main {
                 .acceptPackages("javasnack.snacks")
                 .scan()) {
             for (final ClassInfo classInfo : scanResult.getClassesImplementing(RunnableSnack.class.getName())) {
+                if (classInfo.isInterface() || classInfo.isAbstract()) {
+                    continue;
+                }
                 final Class<?> clazz = classInfo.loadClass();
                 runnableSnackClasses.put(clazz.getSimpleName(), clazz);
             }
@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import javasnack.RunnableSnack;
 import javasnack.tool.Sleep;
+import javasnack.tool.StripedConcurrentHashSet;
 
 /**
  * {@link Set#add(Object)} と {@link Set#iterator()}(拡張for構文) を複数スレッドで並行操作するメモ。
@@ -182,5 +183,17 @@ public class SynchronizedSetConcurrentModifyDemo implements RunnableSnack {
         final AtomicBoolean terminator3 = new AtomicBoolean(false);
         new IterateWithoutSyncThread("CopyOnWriteArraySet", copyOnWriteObjects, terminator3).start();
         new WriterThread("CopyOnWriteArraySet", copyOnWriteObjects, terminator3).start();
+
+        /* CASE-4 : StripedConcurrentHashSet はハッシュ値で分けたストライプごとにロックし、iteration はストライプごとのスナップショットを読む。
+         * -> 同期化していないiterationスレッドを使っても例外はスローされず、変更操作も配列全体のコピーにはならない。
+         * 
+         * iteration中の変更は反映される場合もされない場合もある (weakly consistent)。
+         * 書き込みが多くスレッド数も多い場合は CopyOnWriteArraySet や synchronizedSet() よりもこちらが有用。
+         * (スループットの比較は perfs.set.PerfConcurrentSetThroughput を参照)
+         */
+        final Set<SomeObject> stripedObjects = new StripedConcurrentHashSet<>();
+        final AtomicBoolean terminator4 = new AtomicBoolean(false);
+        new IterateWithoutSyncThread("StripedConcurrentHashSet", stripedObjects, terminator4).start();
+        new WriterThread("StripedConcurrentHashSet", stripedObjects, terminator4).start();
     }
 }
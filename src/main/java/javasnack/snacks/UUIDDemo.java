@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import javasnack.RunnableSnack;
+import javasnack.tool.HexCodec;
 import javasnack.tool.UnsignedByte;
 
 public class UUIDDemo implements RunnableSnack {
@@ -79,10 +80,10 @@ public class UUIDDemo implements RunnableSnack {
         long lsb = u.getLeastSignificantBits();
         byte[] msb2 = long2bytea(msb);
         byte[] lsb2 = long2bytea(lsb);
-        System.out.println("MSB=[" + msb + "/" + UnsignedByte.hex("", msb2)
+        System.out.println("MSB=[" + msb + "/" + HexCodec.toHexString(msb2, false)
                 + "]");
         System.out.println("(" + UnsignedByte.bits(msb2) + ")");
-        System.out.println("LSB=[" + lsb + "/" + UnsignedByte.hex("", lsb2)
+        System.out.println("LSB=[" + lsb + "/" + HexCodec.toHexString(lsb2, false)
                 + "]");
         System.out.println("(" + UnsignedByte.bits(lsb2) + ")");
 
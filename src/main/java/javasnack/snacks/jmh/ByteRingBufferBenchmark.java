@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.jmh;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import javasnack.tool.MpmcByteRingBuffer;
+import javasnack.tool.SpscByteRingBuffer;
+
+/* 書き込みスレッドから読み込みスレッドへバイト列を受け渡すスループットを、
+ * SpscByteRingBuffer / MpmcByteRingBuffer と ArrayBlockingQueue / ConcurrentLinkedQueue で比べる。
+ *
+ * - 書き込み側は使い回している配列の内容を渡し、読み込み側は自分の配列にコピーする。
+ *   (ネットワークの読み込みバッファからパーサへ渡す場合と同じく、キューの場合は渡すたびに byte[] のコピーを生成する)
+ * - 満杯・空で受け渡せなかった呼び出しは数えず、受け渡せたバイト数を AuxCounters で数える。
+ *   結果の offeredBytes / drainedBytes (ops/us = bytes/us) を比べること。
+ * - リングバッファは受け渡しでオブジェクトを生成しないため、-prof gc の gc.alloc.rate.norm が 0 に近くなる。
+ *
+ * デフォルトは書き込み1スレッド + 読み込み1スレッド。
+ * 複数の書き込み・読み込みスレッドで比べる場合は -tg で指定し、SPSC を除くこと。(SPSC は 1,1 以外ではエラーとする)
+ *
+ * jmh args: ByteRingBufferBenchmark -prof gc
+ * jmh args: ByteRingBufferBenchmark -tg 2,2 -p impl=MPMC,ARRAY_BLOCKING_QUEUE,CONCURRENT_LINKED_QUEUE
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ByteRingBufferBenchmark {
+
+    public enum Impl {
+        SPSC,
+        MPMC,
+        ARRAY_BLOCKING_QUEUE,
+        CONCURRENT_LINKED_QUEUE,
+    }
+
+    /** 保持できるメッセージ数 (SPSC は SLOTS * messageSize バイト) */
+    static final int SLOTS = 1024;
+
+    @State(Scope.Group)
+    public static class Handoff {
+        @Param
+        public Impl impl;
+
+        @Param({ "64", "1024" })
+        public int messageSize;
+
+        SpscByteRingBuffer spsc;
+        MpmcByteRingBuffer mpmc;
+        Queue<byte[]> queue;
+        /** ConcurrentLinkedQueue に入っている要素数 (size() は要素数に比例する時間がかかるため別に数える) */
+        final AtomicInteger backlog = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup(final BenchmarkParams params) {
+            if (this.impl == Impl.SPSC && !Arrays.equals(params.getThreadGroups(), new int[] { 1, 1 })) {
+                throw new IllegalStateException("SPSC supports only 1 producer and 1 consumer (-tg 1,1)");
+            }
+            switch (this.impl) {
+            case SPSC:
+                this.spsc = new SpscByteRingBuffer(SLOTS * this.messageSize);
+                break;
+            case MPMC:
+                this.mpmc = new MpmcByteRingBuffer(SLOTS, this.messageSize);
+                break;
+            case ARRAY_BLOCKING_QUEUE:
+                this.queue = new ArrayBlockingQueue<>(SLOTS);
+                break;
+            case CONCURRENT_LINKED_QUEUE:
+                // 上限が無いため、backlog で SLOTS を超えないようにする。(読み込み側が遅いとメモリを使い切るため)
+                this.queue = new ConcurrentLinkedQueue<>();
+                break;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long offeredBytes;
+        public long drainedBytes;
+
+        byte[] buffer;
+
+        @Setup(Level.Iteration)
+        public void reset(final Handoff handoff) {
+            this.offeredBytes = 0;
+            this.drainedBytes = 0;
+            if (Objects.isNull(this.buffer)) {
+                this.buffer = new byte[handoff.messageSize];
+                Arrays.fill(this.buffer, (byte) 1);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public void producer(final Handoff handoff, final Counters counters) {
+        final byte[] src = counters.buffer;
+        final boolean offered;
+        switch (handoff.impl) {
+        case SPSC:
+            offered = handoff.spsc.offer(src, 0, src.length);
+            break;
+        case MPMC:
+            offered = handoff.mpmc.offer(src, 0, src.length);
+            break;
+        case CONCURRENT_LINKED_QUEUE:
+            if (handoff.backlog.incrementAndGet() > SLOTS) {
+                handoff.backlog.decrementAndGet();
+                offered = false;
+            } else {
+                offered = handoff.queue.offer(src.clone());
+            }
+            break;
+        default:
+            offered = handoff.queue.offer(src.clone());
+            break;
+        }
+        if (offered) {
+            counters.offeredBytes += src.length;
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public void consumer(final Handoff handoff, final Counters counters) {
+        final byte[] dst = counters.buffer;
+        switch (handoff.impl) {
+        case SPSC:
+            counters.drainedBytes += handoff.spsc.drain(dst, 0, dst.length);
+            break;
+        case MPMC:
+            final int len = handoff.mpmc.poll(dst, 0);
+            if (len > 0) {
+                counters.drainedBytes += len;
+            }
+            break;
+        default:
+            final byte[] polled = handoff.queue.poll();
+            if (Objects.nonNull(polled)) {
+                if (handoff.impl == Impl.CONCURRENT_LINKED_QUEUE) {
+                    handoff.backlog.decrementAndGet();
+                }
+                System.arraycopy(polled, 0, dst, 0, polled.length);
+                counters.drainedBytes += polled.length;
+            }
+            break;
+        }
+    }
+}
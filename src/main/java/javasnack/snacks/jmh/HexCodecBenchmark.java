@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.jmh;
+
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javasnack.tool.HexCodec;
+import javasnack.tool.UnsignedByte;
+
+/* HexCodec の16進数変換を、java.util.HexFormat と以前の UnsignedByte.hex と比べる。
+ *
+ * - hexCodec* : 呼び出し側の配列に書き込むため、-prof gc の gc.alloc.rate.norm が 0 になる。
+ * - hexFormat* : 結果の String (または StringBuilder への追記) を作る。
+ * - legacyUnsignedByteHex : 以前の実装はバイトごとに Integer.toHexString() で String を生成していた。
+ *   (現在は変換表を引く実装だが、結果の String は生成する)
+ *
+ * jmh args: HexCodecBenchmark -prof gc
+ * jmh args: HexCodecBenchmark -p size=16,1500,65536
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class HexCodecBenchmark {
+
+    /** バイト数 (パケット1つ分程度の 1500 と、大きめのキャプチャ) */
+    @Param({ "16", "1500", "65536" })
+    public int size;
+
+    byte[] src;
+    byte[] hexBytes;
+    char[] hexChars;
+    String hexString;
+    byte[] decoded;
+    byte[] dumpBuffer;
+    StringBuilder sb;
+    final HexFormat hexFormat = HexFormat.of();
+
+    @Setup
+    public void setup() {
+        this.src = new byte[this.size];
+        new Random(1234).nextBytes(this.src);
+        this.hexBytes = new byte[this.size * 2];
+        this.hexChars = new char[this.size * 2];
+        this.hexString = this.hexFormat.formatHex(this.src);
+        this.decoded = new byte[this.size];
+        this.dumpBuffer = new byte[HexCodec.DUMP_LINE_LENGTH];
+        this.sb = new StringBuilder(this.size * 2);
+    }
+
+    @Benchmark
+    public byte[] hexCodecEncodeBytes() {
+        HexCodec.encode(this.src, 0, this.src.length, this.hexBytes, 0, false);
+        return this.hexBytes;
+    }
+
+    @Benchmark
+    public char[] hexCodecEncodeChars() {
+        HexCodec.encode(this.src, 0, this.src.length, this.hexChars, 0, false);
+        return this.hexChars;
+    }
+
+    @Benchmark
+    public String hexFormatFormatHex() {
+        return this.hexFormat.formatHex(this.src);
+    }
+
+    @Benchmark
+    public StringBuilder hexFormatFormatHexAppendable() {
+        this.sb.setLength(0);
+        return this.hexFormat.formatHex(this.sb, this.src);
+    }
+
+    @Benchmark
+    public String legacyUnsignedByteHex() {
+        return UnsignedByte.hex("", this.src);
+    }
+
+    @Benchmark
+    public byte[] hexCodecDecode() {
+        HexCodec.decode(this.hexString, 0, this.hexString.length(), this.decoded, 0);
+        return this.decoded;
+    }
+
+    @Benchmark
+    public byte[] hexFormatParseHex() {
+        return this.hexFormat.parseHex(this.hexString);
+    }
+
+    /**
+     * xxd 形式のダンプ (1行ずつ同じ配列に書き込み、最後の行を返す)
+     */
+    @Benchmark
+    public byte[] hexCodecDump() {
+        for (int s = 0; s < this.src.length; s += HexCodec.DUMP_LINE_BYTES) {
+            HexCodec.dumpLine(this.src, s, Math.min(HexCodec.DUMP_LINE_BYTES, this.src.length - s), s,
+                    this.dumpBuffer, 0);
+        }
+        return this.dumpBuffer;
+    }
+}
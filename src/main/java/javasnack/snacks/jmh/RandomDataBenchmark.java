@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javasnack.tool.RandomData;
+
+/* RandomData のランダムな文字列・バイト列の生成を、以前の RandomString / UnsignedByte.random の実装と比べる。
+ *
+ * - legacyString : 全スレッドで共有する java.util.Random から1文字ずつ nextInt() し、StringBuilder で連結する。
+ *   (-t 4 などで複数スレッドから呼び出すと、Random 内部の AtomicLong の CAS が競合する)
+ * - randomDataString : スレッドごとの RandomData で、nextLong() 1回につき4文字をまとめて変換する。
+ * - legacyBytes : 1バイトごとに Math.random() を呼び出す。
+ * - randomDataBytes* : nextLong() 1回で8バイトをまとめて書き込む。
+ *
+ * jmh args: RandomDataBenchmark -prof gc
+ * jmh args: RandomDataBenchmark -t 4 -p len=20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomDataBenchmark {
+
+    /** 以前の RandomString と同じく、全スレッドで共有する */
+    static final Random SHARED = new Random();
+
+    /** 文字列の長さ・バイト数 */
+    @Param({ "20", "1500" })
+    public int len;
+
+    byte[] bytes;
+    ByteBuffer direct;
+
+    @Setup
+    public void setup() {
+        this.bytes = new byte[this.len];
+        this.direct = ByteBuffer.allocateDirect(this.len);
+    }
+
+    @Benchmark
+    public String legacyString() {
+        final StringBuilder sb = new StringBuilder(this.len);
+        for (int i = 0; i < this.len; i++) {
+            sb.append((char) (SHARED.nextInt(93) + 33));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String randomDataString() {
+        return RandomData.current().nextString(this.len);
+    }
+
+    @Benchmark
+    public byte[] legacyBytes() {
+        for (int i = 0; i < this.len; i++) {
+            this.bytes[i] = (byte) Math.floor(Math.random() * 254);
+        }
+        return this.bytes;
+    }
+
+    @Benchmark
+    public byte[] randomDataBytes() {
+        RandomData.current().nextBytes(this.bytes, 0, this.len);
+        return this.bytes;
+    }
+
+    @Benchmark
+    public ByteBuffer randomDataDirectBuffer() {
+        this.direct.clear();
+        RandomData.current().nextBytes(this.direct);
+        return this.direct;
+    }
+}
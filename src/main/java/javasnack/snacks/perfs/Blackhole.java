@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 計測対象の処理の結果を「使った」ことにして、JIT による不要コード削除(dead-code elimination)を防ぐための補助クラス。
+ * (JMH の org.openjdk.jmh.infra.Blackhole と同じ考え方の簡易版)
+ *
+ * - プリミティブ値 : 実行時まで値の分からない volatile フィールドと比較する。
+ *   2つのフィールドは異なる値のため比較結果は常に false だが、JIT は比較を省略できない。
+ * - オブジェクト : 乱数で間引きながら、ごく稀に volatile フィールドに保存する。
+ *   (保存する間隔は徐々に広げ、保存による計測への影響を抑える。WeakReference のためGCも妨げない)
+ */
+public class Blackhole {
+    private volatile long long1 = 1L;
+    private volatile long long2 = 2L;
+    private volatile int int1 = 1;
+    private volatile int int2 = 2;
+    private volatile double double1 = 1.0;
+    private volatile double double2 = 2.0;
+    private volatile boolean bool1 = false;
+    private volatile boolean bool2 = true;
+    private volatile WeakReference<Object> obj;
+    private volatile int tlrMask = 1;
+    private int tlr = (int) System.nanoTime();
+
+    public void consume(final Object o) {
+        final int mask = this.tlrMask;
+        final int r = this.tlr * 1664525 + 1013904223;
+        this.tlr = r;
+        if ((r & mask) == 0) {
+            this.obj = new WeakReference<>(o);
+            this.tlrMask = (mask << 1) + 1;
+        }
+    }
+
+    public void consume(final long v) {
+        if (v == this.long1 & v == this.long2) {
+            throw new IllegalStateException("should not reach here");
+        }
+    }
+
+    public void consume(final int v) {
+        if (v == this.int1 & v == this.int2) {
+            throw new IllegalStateException("should not reach here");
+        }
+    }
+
+    public void consume(final double v) {
+        if (v == this.double1 & v == this.double2) {
+            throw new IllegalStateException("should not reach here");
+        }
+    }
+
+    public void consume(final boolean v) {
+        if (v == this.bool1 & v == this.bool2) {
+            throw new IllegalStateException("should not reach here");
+        }
+    }
+}
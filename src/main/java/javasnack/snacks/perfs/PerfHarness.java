@@ -0,0 +1,564 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * パフォーマンス計測用の snack 向けの簡易マイクロベンチマーク用ハーネス
+ *
+ * System.nanoTime() で処理を1回ずつ計測して平均を取るだけの素朴な計測は、以下の理由で実態とずれた値になりやすい。
+ * - JIT コンパイル前の(インタプリタ実行の)遅い計測値が混ざる。
+ * - System.nanoTime() 自体の呼び出しコスト(数十ナノ秒)が、計測対象の処理時間に上乗せされる。
+ * - 結果を使わない処理は JIT によって削除されうる。(dead-code elimination)
+ * - GC などによる外れ値に平均値が引きずられる。
+ *
+ * そこで、以下のように計測する。
+ * - シナリオ(準備処理 + 計測対象の処理)ごとに、ウォームアップ用のラウンドを捨ててから計測用のラウンドを繰り返す。
+ * - 1ラウンドでは準備処理(計測しない)の後に、計測対象の処理を samplesPerRound 回、1回ずつ計測する。
+ *   (index にサンプルの番号を渡すため、「N番目の put()」のような番号ごとの傾向も見られる)
+ * - 計測開始時に System.nanoTime() を連続して呼んだ時間の中央値を求めておき、各サンプルから差し引く。
+ * - 計測対象の処理の結果は {@link Blackhole} に渡してもらう。
+ * - 1操作あたりの時間のパーセンタイル(p50/p90/p99)や最小・最大値も合わせて出力する。
+ *
+ * 出力形式は text / csv / json から選べる。
+ * また jmh オプションを指定すると、同じシナリオを JMH で計測する。(PerfJmhBenchmark に委譲する)
+ *
+ * 処理時間に加えて、1操作あたりのヒープへの割り当て量と計測中の GC の回数・時間を記録する。(PerfMemory)
+ * footprint オプションを指定すると、準備処理で作った状態が保持するヒープ・ヒープ外のメモリ量も計測する。
+ * (System.gc() を何度も呼ぶため時間がかかる)
+ *
+ * snack 固有のパラメータ(データ件数など)は {@link #param(String, String)} で宣言すると、引数 name=value で指定できる。
+ */
+public class PerfHarness {
+    public static final int DEFAULT_WARMUP_ROUNDS = 5;
+    public static final int DEFAULT_MEASUREMENT_ROUNDS = 10;
+
+    /** System.nanoTime() の呼び出しコストを求める際の繰り返し回数 */
+    static final int TIMER_CALIBRATION_COUNT = 10_000;
+
+    public enum Format {
+        TEXT,
+        CSV,
+        JSON,
+    }
+
+    /**
+     * シナリオの準備処理 (計測しない) : 各ラウンドの開始時に呼ばれ、計測対象の処理に渡す状態を返す。
+     */
+    @FunctionalInterface
+    public interface Setup<S> {
+        S setup() throws Exception;
+    }
+
+    /**
+     * 計測対象の処理 : 1回の呼び出しが1サンプルとなる。結果は blackhole に渡すこと。
+     */
+    @FunctionalInterface
+    public interface Operation<S> {
+        void run(S state, int index, Blackhole blackhole) throws Exception;
+    }
+
+    static class Scenario<S> {
+        final String name;
+        final int samplesPerRound;
+        final int operationsPerSample;
+        final Setup<S> setup;
+        final Operation<S> operation;
+
+        Scenario(final String name, final int samplesPerRound, final int operationsPerSample, final Setup<S> setup,
+                final Operation<S> operation) {
+            this.name = name;
+            this.samplesPerRound = samplesPerRound;
+            this.operationsPerSample = operationsPerSample;
+            this.setup = setup;
+            this.operation = operation;
+        }
+
+        /**
+         * 1ラウンド分を実行し、サンプルごとの経過時間(ナノ秒, timerOverhead を差し引いたもの)を elapsed に書き込む。
+         *
+         * @return 計測対象の処理がヒープに割り当てたバイト数 (取得できない場合は -1)
+         */
+        long round(final long[] elapsed, final long timerOverhead, final Blackhole blackhole) throws Exception {
+            final S state = this.setup.setup();
+            final long allocated = PerfMemory.threadAllocatedBytes();
+            for (int i = 0; i < this.samplesPerRound; i++) {
+                final long started = System.nanoTime();
+                this.operation.run(state, i, blackhole);
+                final long finished = System.nanoTime();
+                elapsed[i] = Math.max(0L, finished - started - timerOverhead);
+            }
+            final long allocatedAfter = PerfMemory.threadAllocatedBytes();
+            blackhole.consume(state);
+            return allocated < 0 ? -1L : allocatedAfter - allocated;
+        }
+
+        /**
+         * 1ラウンド分を計測せずに実行する。(JMH から呼ばれる)
+         */
+        @SuppressWarnings("unchecked")
+        void roundWithoutTimer(final Object state, final Blackhole blackhole) throws Exception {
+            final S s = (S) state;
+            for (int i = 0; i < this.samplesPerRound; i++) {
+                this.operation.run(s, i, blackhole);
+            }
+        }
+    }
+
+    private int warmupRounds = DEFAULT_WARMUP_ROUNDS;
+    private int measurementRounds = DEFAULT_MEASUREMENT_ROUNDS;
+    private Format format = Format.TEXT;
+    private String outFile = null;
+    private Pattern include = null;
+    private boolean detail = false;
+    private boolean jmh = false;
+    private boolean footprint = false;
+    /** footprint オプションが無い場合に、フットプリントを計測するシナリオ名のパターン */
+    private Pattern footprintOf = null;
+    private final List<Scenario<?>> scenarios = new ArrayList<>();
+    /** 実行時の引数 (param() で参照する) */
+    private final String[] args;
+    /** param() で宣言されたパラメータ名 -> 引数で指定された値 */
+    private final Map<String, String> params = new LinkedHashMap<>();
+
+    public PerfHarness(final String... args) {
+        this.args = args.clone();
+    }
+
+    /**
+     * snack を実行する。(シナリオの定義 -> 引数の解釈 -> 計測 -> 出力)
+     *
+     * snack が define() の中で設定したラウンド数などのデフォルト値は、引数で上書きできる。
+     */
+    public static void run(final PerfSnack snack, final String... args) throws Exception {
+        final PerfHarness harness = new PerfHarness(args);
+        snack.define(harness);
+        harness.parseArgs(args);
+        if (harness.jmh) {
+            harness.runJmh(snack.getClass());
+            return;
+        }
+        final List<PerfResult> results = harness.execute();
+        if (Objects.isNull(harness.outFile)) {
+            harness.report(results, System.out);
+        } else {
+            try (OutputStream out = Files.newOutputStream(Paths.get(harness.outFile))) {
+                harness.report(results, out);
+            }
+            System.out.println("results are written to " + harness.outFile);
+        }
+    }
+
+    public static String usage() {
+        return "args: [warmup=N] [rounds=N] [format=text|csv|json] [out=FILE] [include=REGEX] [detail] [footprint]"
+                + " [jmh] [(snack parameters)=VALUE]\n"
+                + "  warmup  : number of warmup rounds (discarded)\n"
+                + "  rounds  : number of measurement rounds\n"
+                + "  format  : output format (default: text)\n"
+                + "  out     : write results to FILE instead of stdout\n"
+                + "  include : run only scenarios whose name matches REGEX\n"
+                + "  detail  : also report median elapsed time for each sample index\n"
+                + "  footprint : also measure heap/off-heap bytes retained by the state of each scenario\n"
+                + "  jmh     : run scenarios with JMH (warmup/rounds/format/out are passed to JMH)";
+    }
+
+    public PerfHarness warmupRounds(final int warmupRounds) {
+        if (warmupRounds < 0) {
+            throw new IllegalArgumentException("warmup rounds must be >= 0");
+        }
+        this.warmupRounds = warmupRounds;
+        return this;
+    }
+
+    public PerfHarness measurementRounds(final int measurementRounds) {
+        if (measurementRounds < 1) {
+            throw new IllegalArgumentException("measurement rounds must be >= 1");
+        }
+        this.measurementRounds = measurementRounds;
+        return this;
+    }
+
+    public PerfHarness format(final Format format) {
+        this.format = Objects.requireNonNull(format);
+        return this;
+    }
+
+    public PerfHarness include(final String regex) {
+        this.include = Pattern.compile(regex);
+        return this;
+    }
+
+    /**
+     * @param detail サンプルの番号ごとの中央値も出力するか
+     */
+    public PerfHarness detail(final boolean detail) {
+        this.detail = detail;
+        return this;
+    }
+
+    /**
+     * @param footprint 準備処理で作った状態のフットプリントも計測するか
+     */
+    public PerfHarness footprint(final boolean footprint) {
+        this.footprint = footprint;
+        return this;
+    }
+
+    /**
+     * 名前が正規表現にマッチするシナリオだけ、準備処理で作った状態のフットプリントを計測する。
+     * (空の状態を作るシナリオのフットプリントを出力しても意味が無いため、データを詰めた状態を作るシナリオに絞る)
+     * footprint オプションを指定した場合は全てのシナリオで計測する。
+     *
+     * @param regex フットプリントを計測するシナリオ名の正規表現 (部分一致)
+     */
+    public PerfHarness footprint(final String regex) {
+        this.footprintOf = Pattern.compile(regex);
+        return this;
+    }
+
+    boolean footprintOf(final String name) {
+        return this.footprint || (Objects.nonNull(this.footprintOf) && this.footprintOf.matcher(name).find());
+    }
+
+    /**
+     * snack 固有のパラメータを宣言する。
+     *
+     * @param name パラメータ名 (引数 name=value で指定する)
+     * @param defaultValue 引数で指定されなかった場合の値
+     * @return パラメータの値
+     */
+    public String param(final String name, final String defaultValue) {
+        String value = defaultValue;
+        for (final String arg : this.args) {
+            if (arg.startsWith(name + "=")) {
+                value = arg.substring(name.length() + 1);
+            }
+        }
+        this.params.put(name, value);
+        return value;
+    }
+
+    /**
+     * @return param() で宣言したパラメータを指定する引数 (JMH に引き渡すため)
+     */
+    List<String> paramArgs() {
+        return this.params.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.toList());
+    }
+
+    void parseArgs(final String... args) {
+        for (final String arg : args) {
+            final int eq = arg.indexOf('=');
+            final String key = eq < 0 ? arg : arg.substring(0, eq);
+            final String value = eq < 0 ? "" : arg.substring(eq + 1);
+            if (this.params.containsKey(key)) {
+                continue;
+            }
+            switch (key) {
+            case "warmup":
+                this.warmupRounds(Integer.parseInt(value));
+                break;
+            case "rounds":
+                this.measurementRounds(Integer.parseInt(value));
+                break;
+            case "format":
+                this.format(Format.valueOf(value.toUpperCase(Locale.ROOT)));
+                break;
+            case "out":
+                this.outFile = value;
+                break;
+            case "include":
+                this.include(value);
+                break;
+            case "detail":
+                this.detail = true;
+                break;
+            case "footprint":
+                this.footprint = true;
+                break;
+            case "jmh":
+                this.jmh = true;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown argument: " + arg + "\n" + usage());
+            }
+        }
+    }
+
+    /**
+     * @param name シナリオ名
+     * @param samplesPerRound 1ラウンドあたりのサンプル数 (operation を呼ぶ回数)
+     * @param operationsPerSample operation の1回の呼び出しで行う操作の数 (統計量は1操作あたりに換算する)
+     * @param setup 各ラウンドの準備処理
+     * @param operation 計測対象の処理
+     */
+    public <S> PerfHarness measure(final String name, final int samplesPerRound, final int operationsPerSample,
+            final Setup<S> setup, final Operation<S> operation) {
+        if (samplesPerRound < 1 || operationsPerSample < 1) {
+            throw new IllegalArgumentException("samplesPerRound and operationsPerSample must be >= 1");
+        }
+        if (Objects.nonNull(this.scenario(name))) {
+            throw new IllegalArgumentException("duplicated scenario name: " + name);
+        }
+        this.scenarios.add(new Scenario<>(name, samplesPerRound, operationsPerSample, setup, operation));
+        return this;
+    }
+
+    public <S> PerfHarness measure(final String name, final int samplesPerRound, final Setup<S> setup,
+            final Operation<S> operation) {
+        return this.measure(name, samplesPerRound, 1, setup, operation);
+    }
+
+    Scenario<?> scenario(final String name) {
+        for (final Scenario<?> scenario : this.scenarios) {
+            if (scenario.name.equals(name)) {
+                return scenario;
+            }
+        }
+        return null;
+    }
+
+    List<Scenario<?>> includedScenarios() {
+        return this.scenarios.stream()
+                .filter(s -> Objects.isNull(this.include) || this.include.matcher(s.name).find())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return System.nanoTime() を連続して呼んだ場合の経過時間の中央値 (ナノ秒)
+     */
+    static long calibrateTimerOverhead() {
+        final long[] elapsed = new long[TIMER_CALIBRATION_COUNT];
+        // 1回目はウォームアップとして捨てる。
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < elapsed.length; i++) {
+                final long started = System.nanoTime();
+                elapsed[i] = System.nanoTime() - started;
+            }
+        }
+        Arrays.sort(elapsed);
+        return elapsed[elapsed.length / 2];
+    }
+
+    /**
+     * 登録したシナリオを順に計測する。
+     *
+     * シナリオで発生した例外・エラー(StackOverflowError など)は結果に記録し、残りのシナリオの計測を続ける。
+     */
+    public List<PerfResult> execute() {
+        final long timerOverhead = calibrateTimerOverhead();
+        final Blackhole blackhole = new Blackhole();
+        final List<PerfResult> results = new ArrayList<>();
+        for (final Scenario<?> scenario : this.includedScenarios()) {
+            try {
+                results.add(this.execute(scenario, timerOverhead, blackhole));
+            } catch (Throwable t) {
+                results.add(PerfResult.failed(scenario.name, scenario.samplesPerRound,
+                        scenario.operationsPerSample, t));
+            }
+        }
+        return results;
+    }
+
+    PerfResult execute(final Scenario<?> scenario, final long timerOverhead, final Blackhole blackhole)
+            throws Exception {
+        final int samples = scenario.samplesPerRound;
+        final long[] elapsed = new long[samples];
+        for (int r = 0; r < this.warmupRounds; r++) {
+            scenario.round(elapsed, timerOverhead, blackhole);
+        }
+        // perOperation[i * rounds + r] : i 番目のサンプルの r ラウンド目の1操作あたりのナノ秒
+        final int rounds = this.measurementRounds;
+        final double[] perOperation = new double[samples * rounds];
+        final long[] gcBefore = PerfMemory.gcCountAndMillis();
+        long allocated = 0;
+        for (int r = 0; r < rounds; r++) {
+            final long a = scenario.round(elapsed, timerOverhead, blackhole);
+            allocated = (allocated < 0 || a < 0) ? -1L : allocated + a;
+            for (int i = 0; i < samples; i++) {
+                perOperation[i * rounds + r] = (double) elapsed[i] / scenario.operationsPerSample;
+            }
+        }
+        final long[] gcAfter = PerfMemory.gcCountAndMillis();
+        final double operations = (double) samples * rounds * scenario.operationsPerSample;
+        long heapFootprint = -1L;
+        long offHeapFootprint = -1L;
+        if (footprintOf(scenario.name)) {
+            final long[] before = PerfMemory.settledUsage();
+            final Object state = scenario.setup.setup();
+            final long[] after = PerfMemory.settledUsage();
+            blackhole.consume(state);
+            heapFootprint = Math.max(0L, after[0] - before[0]);
+            offHeapFootprint = Math.max(0L, after[1] - before[1]);
+        }
+        final PerfMemory memory = new PerfMemory(allocated < 0 ? -1.0 : allocated / operations,
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], heapFootprint, offHeapFootprint);
+        double[] medianByIndex = new double[0];
+        if (this.detail) {
+            medianByIndex = new double[samples];
+            for (int i = 0; i < samples; i++) {
+                final double[] byRound = Arrays.copyOfRange(perOperation, i * rounds, (i + 1) * rounds);
+                Arrays.sort(byRound);
+                medianByIndex[i] = PerfStatistics.percentile(byRound, 50);
+            }
+        }
+        return new PerfResult(scenario.name, samples, scenario.operationsPerSample, PerfStatistics.of(perOperation),
+                medianByIndex, memory, null);
+    }
+
+    public void report(final List<PerfResult> results, final OutputStream out) throws IOException {
+        final PrintWriter pw = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        switch (this.format) {
+        case CSV:
+            reportCsv(results, pw);
+            break;
+        case JSON:
+            reportJson(results, pw);
+            break;
+        default:
+            reportText(results, pw);
+            break;
+        }
+        pw.flush();
+    }
+
+    static void reportText(final List<PerfResult> results, final PrintWriter pw) {
+        final int width = Math.max(8, results.stream().mapToInt(r -> r.name.length()).max().orElse(0));
+        final String columns = "%-" + width + "s %8s %6s %12s %12s %12s %12s %12s %12s %12s %10s %6s %8s%n";
+        pw.printf(columns, "scenario", "samples", "ops", "min", "p50", "p90", "p99", "max", "mean", "stddev",
+                "alloc/op", "gc", "gc(ms)");
+        for (final PerfResult r : results) {
+            if (r.isFailed()) {
+                pw.printf("%-" + width + "s %8d %6d  ERROR: %s%n", r.name, r.samplesPerRound, r.operationsPerSample,
+                        r.error);
+                continue;
+            }
+            final PerfStatistics s = r.statistics;
+            final PerfMemory m = r.memory;
+            pw.printf(Locale.ROOT,
+                    "%-" + width + "s %8d %6d %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f %10.1f %6d %8d%n",
+                    r.name, r.samplesPerRound, r.operationsPerSample, s.min, s.p50, s.p90, s.p99, s.max, s.mean,
+                    s.stddev, m.allocatedBytesPerOperation, m.gcCount, m.gcMillis);
+        }
+        pw.println("(nano seconds per operation, alloc/op = allocated heap bytes per operation)");
+        for (final PerfResult r : results) {
+            if (r.isFailed() || r.memory.heapFootprintBytes < 0) {
+                continue;
+            }
+            pw.printf("footprint: %s heap=%,d bytes, off-heap=%,d bytes%n", r.name, r.memory.heapFootprintBytes,
+                    r.memory.offHeapFootprintBytes);
+        }
+        for (final PerfResult r : results) {
+            if (r.medianByIndex.length == 0) {
+                continue;
+            }
+            pw.println("-----------------------------------------");
+            pw.println("median by sample index: " + r.name);
+            for (int i = 0; i < r.medianByIndex.length; i++) {
+                pw.printf(Locale.ROOT, "%s[%d] = %.1f nano sec.%n", r.name, i, r.medianByIndex[i]);
+            }
+        }
+    }
+
+    static void reportCsv(final List<PerfResult> results, final PrintWriter pw) {
+        pw.println("scenario,samplesPerRound,operationsPerSample,count,min,p50,p90,p99,max,mean,stddev,"
+                + "allocatedBytesPerOperation,gcCount,gcMillis,heapFootprintBytes,offHeapFootprintBytes,error");
+        for (final PerfResult r : results) {
+            final PerfStatistics s = r.statistics;
+            pw.print(csv(r.name) + "," + r.samplesPerRound + "," + r.operationsPerSample + ",");
+            if (r.isFailed()) {
+                pw.println(",,,,,,,,,,,,," + csv(r.error));
+            } else {
+                final PerfMemory m = r.memory;
+                pw.println(String.format(Locale.ROOT, "%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d,%d,%d,",
+                        s.count, s.min, s.p50, s.p90, s.p99, s.max, s.mean, s.stddev, m.allocatedBytesPerOperation,
+                        m.gcCount, m.gcMillis, m.heapFootprintBytes, m.offHeapFootprintBytes));
+            }
+        }
+    }
+
+    static String csv(final String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    static void reportJson(final List<PerfResult> results, final PrintWriter pw) throws IOException {
+        pw.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(results));
+    }
+
+    /**
+     * 登録したシナリオを PerfJmhBenchmark 経由で JMH で計測する。
+     *
+     * JMH の1回の呼び出しは1ラウンド(samplesPerRound 回の operation)となり、準備処理は呼び出しごとに計測外で行う。
+     * GC の負荷を比べられるよう、JMH の GC プロファイラ(-prof gc 相当)も有効にする。
+     * 要 /META-INF/BenchmarkList (mvn compile で jmh-generator-annprocess が生成する)
+     */
+    void runJmh(final Class<? extends PerfSnack> snackClass) throws Exception {
+        final String[] names = this.includedScenarios().stream().map(s -> s.name).toArray(String[]::new);
+        if (names.length == 0) {
+            System.err.println("no scenarios to run.");
+            return;
+        }
+        final ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include(Pattern.quote(PerfJmhBenchmark.class.getName()))
+                .param("snack", snackClass.getName())
+                .param("scenario", names)
+                .param("args", String.join(" ", this.paramArgs()))
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(this.warmupRounds)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(this.measurementRounds)
+                .measurementTime(TimeValue.seconds(1))
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .forks(1);
+        if (Objects.nonNull(this.outFile)) {
+            builder.result(this.outFile);
+            builder.resultFormat(this.format == Format.TEXT ? ResultFormatType.TEXT
+                    : ResultFormatType.valueOf(this.format.name()));
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/* PerfSnack のシナリオを JMH で計測するための汎用ベンチマーク。
+ * 通常は PerfSnack の実行時引数に jmh を指定して PerfHarness から呼び出す。
+ * (snack と scenario のパラメータは PerfHarness が設定する)
+ *
+ * 1回の呼び出しで1ラウンド(samplesPerRound 回の operation)を実行し、準備処理は Level.Invocation で計測外に行う。
+ * そのため結果は「1ラウンドあたりの時間」となる点に注意。
+ *
+ * jmh args: PerfJmhBenchmark -p snack=javasnack.snacks.perfs.map.PerfHashMapTotalAvg -p scenario=get
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PerfJmhBenchmark {
+
+    @Param({ "javasnack.snacks.perfs.list.PerfJavaArrayFinePutGet" })
+    public String snack;
+
+    @Param({ "get" })
+    public String scenario;
+
+    /** snack 固有のパラメータ (name=value を空白区切りで並べたもの) */
+    @Param({ "" })
+    public String args;
+
+    private PerfHarness.Scenario<?> target;
+    private Object state;
+
+    /**
+     * JMH の Blackhole に委譲する。
+     */
+    static class JmhBlackhole extends Blackhole {
+        private final org.openjdk.jmh.infra.Blackhole delegate;
+
+        JmhBlackhole(final org.openjdk.jmh.infra.Blackhole delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void consume(final Object o) {
+            this.delegate.consume(o);
+        }
+
+        @Override
+        public void consume(final long v) {
+            this.delegate.consume(v);
+        }
+
+        @Override
+        public void consume(final int v) {
+            this.delegate.consume(v);
+        }
+
+        @Override
+        public void consume(final double v) {
+            this.delegate.consume(v);
+        }
+
+        @Override
+        public void consume(final boolean v) {
+            this.delegate.consume(v);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+        final PerfSnack s = (PerfSnack) Class.forName(this.snack).getConstructor().newInstance();
+        final PerfHarness harness = new PerfHarness(this.args.isEmpty() ? new String[0] : this.args.split(" "));
+        s.define(harness);
+        this.target = harness.scenario(this.scenario);
+        if (Objects.isNull(this.target)) {
+            throw new IllegalArgumentException("unknown scenario: " + this.scenario + " in " + this.snack);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() throws Exception {
+        this.state = this.target.setup.setup();
+    }
+
+    @Benchmark
+    public Object round(final org.openjdk.jmh.infra.Blackhole bh) throws Exception {
+        this.target.roundWithoutTimer(this.state, new JmhBlackhole(bh));
+        return this.state;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 計測中のメモリの割り当て量・GC の回数と時間、および準備処理で作った状態のフットプリント
+ *
+ * 処理時間だけでは、大量のオブジェクトを作る実装の GC 負荷(後から別の処理の停止時間として現れるもの)が見えないため、合わせて記録する。
+ * 取得できない値(JVM が対応していない、計測していない)は -1 とする。
+ */
+public class PerfMemory {
+    /** 計測対象の処理が1操作あたりにヒープに割り当てたバイト数 */
+    public final double allocatedBytesPerOperation;
+    /** 計測ラウンドの間(準備処理を含む)に発生した GC の回数 */
+    public final long gcCount;
+    /** 計測ラウンドの間(準備処理を含む)の GC の累積時間(ミリ秒) */
+    public final long gcMillis;
+    /** 準備処理で作った状態が保持するヒープのバイト数 */
+    public final long heapFootprintBytes;
+    /** 準備処理で作った状態が保持するヒープ外(direct buffer)のバイト数 */
+    public final long offHeapFootprintBytes;
+
+    public PerfMemory(final double allocatedBytesPerOperation, final long gcCount, final long gcMillis,
+            final long heapFootprintBytes, final long offHeapFootprintBytes) {
+        this.allocatedBytesPerOperation = allocatedBytesPerOperation;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.heapFootprintBytes = heapFootprintBytes;
+        this.offHeapFootprintBytes = offHeapFootprintBytes;
+    }
+
+    /**
+     * @return 現在のスレッドがこれまでにヒープに割り当てたバイト数 (取得できない場合は -1)
+     */
+    static long threadAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * @return { 全 GC の累積回数, 累積時間(ミリ秒) }
+     */
+    static long[] gcCountAndMillis() {
+        long count = 0;
+        long millis = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+            millis += Math.max(0L, gc.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+    /**
+     * @return { ヒープの使用量, direct buffer の使用量 } (GC で不要なオブジェクトを回収してから計測する)
+     */
+    static long[] settledUsage() throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // 回収しきれるまで(使用量が減らなくなるまで)数回繰り返す。
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            final long current = memory.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        long direct = 0;
+        for (final BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                direct = pool.getMemoryUsed();
+            }
+        }
+        return new long[] { used, direct };
+    }
+}
@@ -16,13 +16,9 @@
 
 package javasnack.snacks.perfs;
 
-import java.io.IOException;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javasnack.RunnableSnack;
-
 /* Javaの正規表現エンジンにおける、バックトラックによる指数関数的なマッチ時間の増大デモ。
  * ReDoS (regular expression dos) の検証を兼ねている。
  * 
@@ -47,14 +43,14 @@ import javasnack.RunnableSnack;
  * ref[8]: Online regex tester and debugger: PHP, PCRE, Python, Golang and JavaScript
  *         https://regex101.com/
  */
-public class PerfRegexpBasicReDoS implements RunnableSnack {
+public class PerfRegexpBasicReDoS implements PerfSnack {
 
     @Override
-    public void run(final String... args) throws IOException {
+    public void define(final PerfHarness harness) {
         final int avgnum10 = 10;
 
         // 文字列終端で数回のバックトラックが発生するものの、線形増加する正規表現の例
-        benchmark(Pattern.compile(".*ab.*cd"), 10, (num) -> {
+        benchmark(harness, Pattern.compile(".*ab.*cd"), 10, (num) -> {
             return "xxabyycd".repeat(num * 1000);
         }, avgnum10);
 
@@ -64,19 +60,19 @@ public class PerfRegexpBasicReDoS implements RunnableSnack {
          * 以下の記事によると java9 でredos対策で regexp が改良されたらしく、その影響と思われる。
          * https://stackoverflow.com/questions/53048859/is-java-redos-vulnerable
          */
-        benchmark(Pattern.compile("(a+)+"), 100, (num) -> {
+        benchmark(harness, Pattern.compile("(a+)+"), 100, (num) -> {
             // repeat数を100倍にしてもすぐ終わってしまう。(java11)
             return "a".repeat(num * 100) + "b";
         }, avgnum10);
 
         // これも瞬時に終わる。micro-seconds単位では線形増加の傾向が見られる。
-        benchmark(Pattern.compile("(a*)*"), 100, (num) -> {
+        benchmark(harness, Pattern.compile("(a*)*"), 100, (num) -> {
             // repeat数を100倍にしてもすぐ終わってしまう。(java11)
             return "a".repeat(num * 100) + "b";
         }, avgnum10);
 
         // これも瞬時に終わる。micro-seconds単位では線形増加の傾向が見られる。
-        benchmark(Pattern.compile("([a-zA-Z]+)*"), 100, (num) -> {
+        benchmark(harness, Pattern.compile("([a-zA-Z]+)*"), 100, (num) -> {
             // repeat数を100倍にしてもすぐ終わってしまう。(java11)
             return "a".repeat(num * 100) + "b";
         }, avgnum10);
@@ -84,41 +80,21 @@ public class PerfRegexpBasicReDoS implements RunnableSnack {
         /* これも指数関数的に増加する例のはずだが、java11では線形増加傾向になるパターン。
          * 代わりに repeat 数を20以上になってまもなく StackOverflowError が発生する。
          */
-        benchmark(Pattern.compile("(a|aa)+"), 100, (num) -> {
+        benchmark(harness, Pattern.compile("(a|aa)+"), 100, (num) -> {
             // repeat数を100倍にしてもすぐ終わってしまう。(java11)
             return "a".repeat(num * 100) + "b";
         }, avgnum10);
     }
 
-    void benchmark(final Pattern pattern, final int numOfRepeat, final Function<Integer, String> gen, final int avgnum)
-            throws IOException {
-        try {
-            benchmark0(pattern, numOfRepeat, gen, avgnum);
-        } catch (Throwable t) {
-            System.err.print("caught " + t.getClass() + ":" + t.getMessage());
-        }
-    }
-
-    void benchmark0(final Pattern pattern, final int numOfRepeat, final Function<Integer, String> gen, final int avgnum)
-            throws IOException {
-        System.out.println("pattern=[" + pattern.pattern() + "]");
+    /**
+     * 入力文字列の長さ(繰り返し数)ごとに、find() を avgnum 回計測するシナリオを登録する。
+     */
+    void benchmark(final PerfHarness harness, final Pattern pattern, final int numOfRepeat,
+            final Function<Integer, String> gen, final int avgnum) {
         for (int i = 1; i <= numOfRepeat; i++) {
             final String s = gen.apply(i);
-
-            int matched = 0;
-            long sumOfElapsed = 0;
-            for (int j = 0; j < avgnum; j++) {
-                final long started = System.nanoTime();
-                final Matcher m = pattern.matcher(s);
-                // 戻り値を使わないと JIT などによって Matcher#find() 呼び出し自体が削除されてしまう可能性がある。
-                if (m.find()) {
-                    matched++;
-                }
-                final long elapsed = (System.nanoTime() - started);
-                sumOfElapsed += elapsed;
-            }
-            long avg = sumOfElapsed / (avgnum * 1000);
-            System.out.println(String.format("avg[%,10d us] repeat#%02d matched=%d", avg, i, matched));
+            harness.measure(String.format("pattern[%s] repeat#%02d", pattern.pattern(), i), avgnum, () -> s,
+                    (input, j, bh) -> bh.consume(pattern.matcher(input).find()));
         }
     }
 }
@@ -16,13 +16,9 @@
 
 package javasnack.snacks.perfs;
 
-import java.io.IOException;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javasnack.RunnableSnack;
-
 /* Javaの正規表現エンジンにおける量指定子の性能を比較するデモ。
  * 非常に単純なデモなので、greedy (無印) と possessive (+) の差はそれほど大きくない。
  * 
@@ -44,61 +40,42 @@ import javasnack.RunnableSnack;
  * ref[4]: Optimizing regular expressions in Java | JavaWorld
  *         https://www.javaworld.com/article/2077757/optimizing-regular-expressions-in-java.html
  */
-public class PerfRegexpQuantifiers implements RunnableSnack {
+public class PerfRegexpQuantifiers implements PerfSnack {
 
     @Override
-    public void run(final String... args) throws IOException {
+    public void define(final PerfHarness harness) {
         final int avgnum = 1000;
 
-        benchmark(Pattern.compile("ab*c"), 20, (num) -> {
+        benchmark(harness, Pattern.compile("ab*c"), 20, (num) -> {
             return "a" + "b".repeat(num * 10) + "c";
         }, avgnum);
-        benchmark(Pattern.compile("ab*?c"), 20, (num) -> {
+        benchmark(harness, Pattern.compile("ab*?c"), 20, (num) -> {
             return "a" + "b".repeat(num * 10) + "c";
         }, avgnum);
-        benchmark(Pattern.compile("ab*+c"), 20, (num) -> {
+        benchmark(harness, Pattern.compile("ab*+c"), 20, (num) -> {
             return "a" + "b".repeat(num * 10) + "c";
         }, avgnum);
 
-        benchmark(Pattern.compile("ab+c"), 20, (num) -> {
+        benchmark(harness, Pattern.compile("ab+c"), 20, (num) -> {
             return "a" + "b".repeat(num * 10) + "c";
         }, avgnum);
-        benchmark(Pattern.compile("ab+?c"), 20, (num) -> {
+        benchmark(harness, Pattern.compile("ab+?c"), 20, (num) -> {
             return "a" + "b".repeat(num * 10) + "c";
         }, avgnum);
-        benchmark(Pattern.compile("ab++c"), 20, (num) -> {
+        benchmark(harness, Pattern.compile("ab++c"), 20, (num) -> {
             return "a" + "b".repeat(num * 10) + "c";
         }, avgnum);
     }
 
-    void benchmark(final Pattern pattern, final int numOfRepeat, final Function<Integer, String> gen,
-            final int avgnum) throws IOException {
-        try {
-            benchmark0(pattern, numOfRepeat, gen, avgnum);
-        } catch (Throwable t) {
-            System.err.print("caught " + t.getClass() + ":" + t.getMessage());
-        }
-    }
-
-    void benchmark0(final Pattern pattern, final int numOfRepeat, final Function<Integer, String> gen,
-            final int avgnum) throws IOException {
-        final String patternLabel = pattern.pattern();
+    /**
+     * 入力文字列の長さ(繰り返し数)ごとに、find() を avgnum 回計測するシナリオを登録する。
+     */
+    void benchmark(final PerfHarness harness, final Pattern pattern, final int numOfRepeat,
+            final Function<Integer, String> gen, final int avgnum) {
         for (int i = 1; i <= numOfRepeat; i++) {
             final String s = gen.apply(i);
-            int matched = 0;
-            long sumOfElapsed = 0;
-            for (int j = 0; j < avgnum; j++) {
-                final long started = System.nanoTime();
-                final Matcher m = pattern.matcher(s);
-                if (m.find()) {
-                    matched++;
-                }
-                final long elapsed = (System.nanoTime() - started);
-                sumOfElapsed += elapsed;
-            }
-            long avg = sumOfElapsed / (avgnum * 1000);
-            System.out.println(
-                    String.format("pattern[%s] repeat#%02d avg[%,10d us] matched=%d", patternLabel, i, avg, matched));
+            harness.measure(String.format("pattern[%s] repeat#%02d", pattern.pattern(), i), avgnum, () -> s,
+                    (input, j, bh) -> bh.consume(pattern.matcher(input).find()));
         }
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import java.util.Objects;
+
+/**
+ * PerfHarness で計測した1つのシナリオの結果
+ */
+public class PerfResult {
+    /** シナリオ名 */
+    public final String name;
+    /** 1ラウンドあたりのサンプル数 */
+    public final int samplesPerRound;
+    /** 1サンプルあたりの操作数 (統計量は1操作あたりに換算している) */
+    public final int operationsPerSample;
+    /** 1操作あたりのナノ秒の統計量 (計測に失敗した場合は null) */
+    public final PerfStatistics statistics;
+    /** サンプルの番号 -> 全ラウンドでの1操作あたりのナノ秒の中央値 (サンプルの番号ごとの傾向を見るため) */
+    public final double[] medianByIndex;
+    /** メモリの割り当て量・GC・フットプリント (計測に失敗した場合は null) */
+    public final PerfMemory memory;
+    /** 計測中に発生した例外・エラー (成功した場合は null) */
+    public final String error;
+
+    public PerfResult(final String name, final int samplesPerRound, final int operationsPerSample,
+            final PerfStatistics statistics, final double[] medianByIndex, final PerfMemory memory,
+            final String error) {
+        this.name = name;
+        this.samplesPerRound = samplesPerRound;
+        this.operationsPerSample = operationsPerSample;
+        this.statistics = statistics;
+        this.medianByIndex = medianByIndex;
+        this.memory = memory;
+        this.error = error;
+    }
+
+    public static PerfResult failed(final String name, final int samplesPerRound, final int operationsPerSample,
+            final Throwable t) {
+        return new PerfResult(name, samplesPerRound, operationsPerSample, null, new double[0], null,
+                t.getClass().getName() + ":" + t.getMessage());
+    }
+
+    public boolean isFailed() {
+        return Objects.nonNull(this.error);
+    }
+}
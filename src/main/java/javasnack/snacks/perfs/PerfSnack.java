@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import javasnack.RunnableSnack;
+
+/**
+ * PerfHarness で計測するパフォーマンス計測用の snack
+ *
+ * 計測ループや統計処理は PerfHarness にまかせ、各 snack は計測したいシナリオ(準備処理と計測対象の処理)だけを定義する。
+ * 実行時の引数は PerfHarness のオプションとして解釈する。(書式は {@link PerfHarness#usage()} を参照)
+ */
+public interface PerfSnack extends RunnableSnack {
+
+    /**
+     * 計測するシナリオを {@link PerfHarness#measure(String, int, int, PerfHarness.Setup, PerfHarness.Operation)}
+     * などで登録する。
+     */
+    void define(PerfHarness harness) throws Exception;
+
+    @Override
+    default void run(final String... args) throws Exception {
+        PerfHarness.run(this, args);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import java.util.Arrays;
+
+/**
+ * 計測値(1操作あたりのナノ秒)の統計量
+ *
+ * 平均値は GC や JIT コンパイル、割り込みなどによる外れ値に引きずられるため、パーセンタイルも合わせて求める。
+ */
+public class PerfStatistics {
+    public final int count;
+    public final double min;
+    public final double p50;
+    public final double p90;
+    public final double p99;
+    public final double max;
+    public final double mean;
+    public final double stddev;
+
+    public PerfStatistics(final int count, final double min, final double p50, final double p90, final double p99,
+            final double max, final double mean, final double stddev) {
+        this.count = count;
+        this.min = min;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+        this.mean = mean;
+        this.stddev = stddev;
+    }
+
+    /**
+     * @param values 計測値 (1つ以上)
+     */
+    public static PerfStatistics of(final double[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("no values");
+        }
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (final double v : sorted) {
+            sum += v;
+        }
+        final double mean = sum / sorted.length;
+        double squares = 0;
+        for (final double v : sorted) {
+            squares += (v - mean) * (v - mean);
+        }
+        return new PerfStatistics(sorted.length, sorted[0], percentile(sorted, 50), percentile(sorted, 90),
+                percentile(sorted, 99), sorted[sorted.length - 1], mean, Math.sqrt(squares / sorted.length));
+    }
+
+    /**
+     * @return 昇順に並べた値の percentile % 点 (nearest-rank 法)
+     */
+    static double percentile(final double[] sorted, final double percentile) {
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, min=%.1f, p50=%.1f, p90=%.1f, p99=%.1f, max=%.1f, mean=%.1f, stddev=%.1f",
+                count, min, p50, p90, p99, max, mean, stddev);
+    }
+}
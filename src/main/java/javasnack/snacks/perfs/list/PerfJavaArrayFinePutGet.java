@@ -16,11 +16,9 @@
 
 package javasnack.snacks.perfs.list;
 
-import java.math.BigInteger;
-
-import javasnack.RunnableSnack;
-import javasnack.snacks.perfs.ElapsedWith;
-import javasnack.tool.RandomString;
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.RandomData;
 
 /**
  * インデックス 0 - 499 までのJava配列における代入と値取得の時間を細かくダンプ表示する。
@@ -30,52 +28,18 @@ import javasnack.tool.RandomString;
  * 
  * @author msakamoto
  */
-public class PerfJavaArrayFinePutGet implements RunnableSnack {
-
-    long setting(String[] arr, int index, String val) {
-        long startTime = System.nanoTime();
-        arr[index] = val;
-        return System.nanoTime() - startTime;
-    }
-
-    ElapsedWith<String> getting(String[] arr, int index) {
-        long startTime = System.nanoTime();
-        final String r = arr[index];
-        return ElapsedWith.of(r, System.nanoTime() - startTime);
-    }
+public class PerfJavaArrayFinePutGet implements PerfSnack {
 
     static final int MASS = 500;
 
     @Override
-    public void run(final String... args) {
-
-        String[] arr = new String[MASS];
-
-        BigInteger sumOfSetting = BigInteger.ZERO;
-        for (int i = 0; i < MASS; i++) {
-            long elapsed = setting(arr, i, RandomString.get(10, 30));
-            System.out.println(String.format("arr[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfSetting = sumOfSetting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg1 = sumOfSetting.divide(BigInteger.valueOf(MASS)).longValue();
-
-        BigInteger sumOfGetting = BigInteger.ZERO;
-        for (int i = 0; i < MASS; i++) {
-            long elapsed = getting(arr, i).elapsed;
-            System.out.println(String.format("get()[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfGetting = sumOfGetting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg2 = sumOfGetting.divide(BigInteger.valueOf(MASS)).longValue();
-
-        System.out.println("-----------------------------------------");
-        System.out.println(String.format("arr() avg = %d nano (%d milli) sec.",
-                avg1, avg1 / 1000000));
-        System.out.println(String.format("get() avg = %d nano (%d milli) sec.",
-                avg2, avg2 / 1000000));
-
-        System.out.println("(END)");
+    public void define(final PerfHarness harness) {
+        final String[] values = RandomData.parallelStrings(RandomData.current().nextLong(), MASS, 10, 30);
+        // サンプルの番号(配列のインデックス)ごとの傾向を出力する。
+        harness.detail(true);
+        harness.measure("set", MASS, () -> new String[MASS], (arr, i, bh) -> {
+            arr[i] = values[i];
+        });
+        harness.measure("get", MASS, () -> values.clone(), (arr, i, bh) -> bh.consume(arr[i]));
     }
-
 }
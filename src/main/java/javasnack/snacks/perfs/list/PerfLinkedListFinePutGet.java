@@ -16,12 +16,11 @@
 
 package javasnack.snacks.perfs.list;
 
-import java.math.BigInteger;
 import java.util.LinkedList;
 
-import javasnack.RunnableSnack;
-import javasnack.snacks.perfs.ElapsedWith;
-import javasnack.tool.RandomString;
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.RandomData;
 
 /**
  * インデックス 0 - 499 までの {@link LinkedList#add(Object)} と {@link LinkedList#get(int)}
@@ -33,57 +32,23 @@ import javasnack.tool.RandomString;
  * 
  * @author msakamoto
  */
-public class PerfLinkedListFinePutGet implements RunnableSnack {
-
-    long adding(LinkedList<String> list, String val) {
-        long startTime = System.nanoTime();
-        list.add(val);
-        return System.nanoTime() - startTime;
-    }
-
-    ElapsedWith<String> getting(LinkedList<String> list, int index) {
-        long startTime = System.nanoTime();
-        final String r = list.get(index);
-        return ElapsedWith.of(r, System.nanoTime() - startTime);
-    }
+public class PerfLinkedListFinePutGet implements PerfSnack {
 
     static final int MASS = 500;
 
     @Override
-    public void run(final String... args) {
-
-        String[] keys = new String[MASS];
-        for (int i = 0; i < MASS; i++) {
-            keys[i] = RandomString.get(10, 30);
-        }
-
-        LinkedList<String> list = new LinkedList<String>();
-
-        BigInteger sumOfAdding = BigInteger.ZERO;
-        for (int i = 0; i < MASS; i++) {
-            long elapsed = adding(list, keys[i]);
-            System.out.println(String.format("add()[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfAdding = sumOfAdding.add(BigInteger.valueOf(elapsed));
-        }
-        long avg1 = sumOfAdding.divide(BigInteger.valueOf(MASS)).longValue();
-
-        BigInteger sumOfGetting = BigInteger.ZERO;
-        for (int i = 0; i < MASS; i++) {
-            long elapsed = getting(list, i).elapsed;
-            System.out.println(String.format("get()[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfGetting = sumOfGetting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg2 = sumOfGetting.divide(BigInteger.valueOf(MASS)).longValue();
-
-        System.out.println("-----------------------------------------");
-        System.out.println(String.format("add() avg = %d nano (%d milli) sec.",
-                avg1, avg1 / 1000000));
-        System.out.println(String.format("get() avg = %d nano (%d milli) sec.",
-                avg2, avg2 / 1000000));
-
-        System.out.println("(END)");
+    public void define(final PerfHarness harness) {
+        final String[] keys = RandomData.parallelStrings(RandomData.current().nextLong(), MASS, 10, 30);
+        // 各ラウンドで空の状態からadd()し直し、サンプルの番号(何回目の呼び出しか)ごとの傾向を出力する。
+        harness.detail(true);
+        harness.measure("add", MASS, () -> new LinkedList<String>(),
+                (c, i, bh) -> bh.consume(c.add(keys[i])));
+        harness.measure("get", MASS, () -> {
+            final LinkedList<String> c = new LinkedList<String>();
+            for (int i = 0; i < MASS; i++) {
+                c.add(keys[i]);
+            }
+            return c;
+        }, (c, i, bh) -> bh.consume(c.get(i)));
     }
-
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.list;
+
+import java.util.ArrayList;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.ChunkedLongList;
+import javasnack.tool.IntArrayList;
+import javasnack.tool.LongArrayList;
+import javasnack.tool.LongLongMap;
+
+/**
+ * ボクシングする ArrayList&lt;Long&gt; / ArrayList&lt;Integer&gt; と、
+ * {@link LongArrayList}, {@link ChunkedLongList}, {@link IntArrayList} の追加・ランダムアクセス・走査を比較するサンプル。
+ *
+ * - append : 容量を指定せずに空のリストから追加する。(拡張のコストを含む)
+ *   ArrayList は要素ごとに Long / Integer を作るため、alloc/op が大きく GC も多い。
+ *   LongArrayList は拡張時の全体コピー分だけ割り当てが発生し、ChunkedLongList はチャンク分だけで済む。
+ * - get : ランダムな添字で読む。ArrayList は参照先の Long を読むためキャッシュミスが増える。
+ * - iterate : 先頭から順に合計する。
+ * - footprint (get/iterate シナリオの heap) / 要素数 = 要素あたりのメモリ量
+ *   (ArrayList&lt;Long&gt; は 20 バイト以上、LongArrayList / ChunkedLongList は 8 バイト + 余白)
+ *
+ * args: sizes=1000000,10000000,100000000 (件数, 大きな件数では -Xmx を指定すること)
+ */
+public class PerfPrimitiveListTotalAvg implements PerfSnack {
+
+    static final String DEFAULT_SIZES = "1000000,10000000";
+    static final int ITER = 5;
+
+    /**
+     * @return j 回目のランダムアクセスの添字 (0 以上 mass 未満)
+     */
+    static int index(final int j, final int mass) {
+        return (int) ((LongLongMap.mix(j) >>> 1) % mass);
+    }
+
+    static ArrayList<Long> boxedLongs(final int mass) {
+        final ArrayList<Long> l = new ArrayList<>();
+        for (int j = 0; j < mass; j++) {
+            l.add(j * 16L);
+        }
+        return l;
+    }
+
+    static LongArrayList longs(final int mass) {
+        final LongArrayList l = new LongArrayList();
+        for (int j = 0; j < mass; j++) {
+            l.add(j * 16L);
+        }
+        return l;
+    }
+
+    static ChunkedLongList chunkedLongs(final int mass) {
+        final ChunkedLongList l = new ChunkedLongList();
+        for (int j = 0; j < mass; j++) {
+            l.add(j * 16L);
+        }
+        return l;
+    }
+
+    static ArrayList<Integer> boxedInts(final int mass) {
+        final ArrayList<Integer> l = new ArrayList<>();
+        for (int j = 0; j < mass; j++) {
+            l.add(j);
+        }
+        return l;
+    }
+
+    static IntArrayList ints(final int mass) {
+        final IntArrayList l = new IntArrayList();
+        for (int j = 0; j < mass; j++) {
+            l.add(j);
+        }
+        return l;
+    }
+
+    @Override
+    public void define(final PerfHarness harness) {
+        harness.warmupRounds(2).measurementRounds(ITER).footprint(true);
+        for (final String size : harness.param("sizes", DEFAULT_SIZES).split(",")) {
+            final int mass = Integer.parseInt(size.trim());
+            final String n = " n=" + mass;
+            // 実装ごとに別のループにして、呼び出し先が1つに定まる(インライン展開される)ようにしている。
+            harness.measure("ArrayList<Long> append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(boxedLongs(m)));
+            harness.measure("LongArrayList append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(longs(m)));
+            harness.measure("ChunkedLongList append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(chunkedLongs(m)));
+            harness.measure("ArrayList<Integer> append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(boxedInts(m)));
+            harness.measure("IntArrayList append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(ints(m)));
+
+            harness.measure("ArrayList<Long> get" + n, 1, mass, () -> boxedLongs(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(l.get(index(j, mass)).longValue());
+                }
+            });
+            harness.measure("LongArrayList get" + n, 1, mass, () -> longs(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(l.get(index(j, mass)));
+                }
+            });
+            harness.measure("ChunkedLongList get" + n, 1, mass, () -> chunkedLongs(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(l.get(index(j, mass)));
+                }
+            });
+            harness.measure("ArrayList<Integer> get" + n, 1, mass, () -> boxedInts(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(l.get(index(j, mass)).intValue());
+                }
+            });
+            harness.measure("IntArrayList get" + n, 1, mass, () -> ints(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(l.get(index(j, mass)));
+                }
+            });
+
+            harness.measure("ArrayList<Long> iterate" + n, 1, mass, () -> boxedLongs(mass), (l, i, bh) -> {
+                long sum = 0;
+                for (final Long v : l) {
+                    sum += v;
+                }
+                bh.consume(sum);
+            });
+            harness.measure("LongArrayList iterate" + n, 1, mass, () -> longs(mass), (l, i, bh) -> {
+                long sum = 0;
+                for (int j = 0; j < l.size(); j++) {
+                    sum += l.get(j);
+                }
+                bh.consume(sum);
+            });
+            harness.measure("ChunkedLongList iterate" + n, 1, mass, () -> chunkedLongs(mass), (l, i, bh) -> {
+                final long[] sum = new long[1];
+                l.forEach(v -> sum[0] += v);
+                bh.consume(sum[0]);
+            });
+            harness.measure("ArrayList<Integer> iterate" + n, 1, mass, () -> boxedInts(mass), (l, i, bh) -> {
+                long sum = 0;
+                for (final Integer v : l) {
+                    sum += v;
+                }
+                bh.consume(sum);
+            });
+            harness.measure("IntArrayList iterate" + n, 1, mass, () -> ints(mass), (l, i, bh) -> {
+                long sum = 0;
+                for (int j = 0; j < l.size(); j++) {
+                    sum += l.get(j);
+                }
+                bh.consume(sum);
+            });
+        }
+    }
+}
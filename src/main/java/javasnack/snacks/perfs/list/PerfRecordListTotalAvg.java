@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.list;
+
+import java.util.ArrayList;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.LongLongMap;
+import javasnack.tool.SoaRecordList;
+
+/**
+ * id(long), price(double), quantity(int) のレコードを、オブジェクトの ArrayList (array of structs) と
+ * {@link SoaRecordList} (struct of arrays) に保持した場合を比較するサンプル。
+ *
+ * - append : 空のリストから追加する。ArrayList はレコードごとにオブジェクトを作る。
+ * - get : ランダムな行の全フィールドを読む。
+ * - iterate : price * quantity の合計を求める。SoaRecordList は2つの列の配列を順に読むだけで済む。
+ * - footprint / 件数 = レコードあたりのメモリ量
+ *   (オブジェクト版はヘッダ + パディング + 参照で 36 - 40 バイト程度、SoaRecordList は 20 バイト + 余白)
+ *
+ * args: sizes=1000000,10000000 (件数)
+ */
+public class PerfRecordListTotalAvg implements PerfSnack {
+
+    static final String DEFAULT_SIZES = "1000000,10000000";
+    static final int ITER = 5;
+
+    /* SoaRecordList の列番号 (long / int / double の型ごとに 0 から数える) */
+    static final int ID = 0;
+    static final int PRICE = 0;
+    static final int QUANTITY = 0;
+
+    static class Trade {
+        final long id;
+        final double price;
+        final int quantity;
+
+        Trade(final long id, final double price, final int quantity) {
+            this.id = id;
+            this.price = price;
+            this.quantity = quantity;
+        }
+    }
+
+    static ArrayList<Trade> objects(final int mass) {
+        final ArrayList<Trade> l = new ArrayList<>();
+        for (int j = 0; j < mass; j++) {
+            l.add(new Trade(j, j * 0.5, j & 0xFF));
+        }
+        return l;
+    }
+
+    static SoaRecordList columns(final int mass) {
+        final SoaRecordList l = new SoaRecordList(1, 1, 1);
+        for (int j = 0; j < mass; j++) {
+            final int row = l.add();
+            l.setLong(row, ID, j);
+            l.setDouble(row, PRICE, j * 0.5);
+            l.setInt(row, QUANTITY, j & 0xFF);
+        }
+        return l;
+    }
+
+    static int index(final int j, final int mass) {
+        return (int) ((LongLongMap.mix(j) >>> 1) % mass);
+    }
+
+    @Override
+    public void define(final PerfHarness harness) {
+        harness.warmupRounds(2).measurementRounds(ITER).footprint(true);
+        for (final String size : harness.param("sizes", DEFAULT_SIZES).split(",")) {
+            final int mass = Integer.parseInt(size.trim());
+            final String n = " n=" + mass;
+            harness.measure("ArrayList<Trade> append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(objects(m)));
+            harness.measure("SoaRecordList append" + n, 1, mass, () -> mass,
+                    (m, i, bh) -> bh.consume(columns(m)));
+            harness.measure("ArrayList<Trade> get" + n, 1, mass, () -> objects(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    final Trade t = l.get(index(j, mass));
+                    bh.consume(t.id);
+                    bh.consume(t.price * t.quantity);
+                }
+            });
+            harness.measure("SoaRecordList get" + n, 1, mass, () -> columns(mass), (l, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    final int row = index(j, mass);
+                    bh.consume(l.getLong(row, ID));
+                    bh.consume(l.getDouble(row, PRICE) * l.getInt(row, QUANTITY));
+                }
+            });
+            harness.measure("ArrayList<Trade> iterate" + n, 1, mass, () -> objects(mass), (l, i, bh) -> {
+                double sum = 0;
+                for (final Trade t : l) {
+                    sum += t.price * t.quantity;
+                }
+                bh.consume(sum);
+            });
+            harness.measure("SoaRecordList iterate" + n, 1, mass, () -> columns(mass), (l, i, bh) -> {
+                double sum = 0;
+                for (int row = 0; row < l.size(); row++) {
+                    sum += l.getDouble(row, PRICE) * l.getInt(row, QUANTITY);
+                }
+                bh.consume(sum);
+            });
+        }
+    }
+}
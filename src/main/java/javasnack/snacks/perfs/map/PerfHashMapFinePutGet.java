@@ -16,12 +16,11 @@
 
 package javasnack.snacks.perfs.map;
 
-import java.math.BigInteger;
 import java.util.HashMap;
 
-import javasnack.RunnableSnack;
-import javasnack.snacks.perfs.ElapsedWith;
-import javasnack.tool.RandomString;
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.RandomData;
 
 /**
  * {@link HashMap#put(Object, Object)} と {@link HashMap#get(Object)} の処理時間を細かくダンプするサンプル。
@@ -32,57 +31,24 @@ import javasnack.tool.RandomString;
  * 
  * @author msakamoto
  */
-public class PerfHashMapFinePutGet implements RunnableSnack {
-
-    long putting(HashMap<String, String> m, String key, final String filling) {
-        long startTime = System.nanoTime();
-        m.put(key, filling);
-        return System.nanoTime() - startTime;
-    }
-
-    ElapsedWith<String> getting(HashMap<String, String> m, String key) {
-        long startTime = System.nanoTime();
-        final String r = m.get(key);
-        return ElapsedWith.of(r, System.nanoTime() - startTime);
-    }
+public class PerfHashMapFinePutGet implements PerfSnack {
 
     static final int MASS = 500;
 
     @Override
-    public void run(final String... args) {
-
-        String[] keys = new String[MASS];
-        for (int i = 0; i < MASS; i++) {
-            keys[i] = RandomString.get(10, 30);
-        }
-
-        HashMap<String, String> m = new HashMap<String, String>(16, 0.75f);
-
-        BigInteger sumOfPutting = BigInteger.ZERO;
-        for (int i = 0; i < MASS; i++) {
-            long elapsed = putting(m, keys[i], RandomString.get(10, 30));
-            System.out.println(String.format("put()[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfPutting = sumOfPutting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg1 = sumOfPutting.divide(BigInteger.valueOf(MASS)).longValue();
-
-        BigInteger sumOfGetting = BigInteger.ZERO;
-        for (int i = 0; i < MASS; i++) {
-            long elapsed = getting(m, keys[i]).elapsed;
-            System.out.println(String.format("get()[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfGetting = sumOfGetting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg2 = sumOfGetting.divide(BigInteger.valueOf(MASS)).longValue();
-
-        System.out.println("-----------------------------------------");
-        System.out.println(String.format("put() avg = %d nano (%d milli) sec.",
-                avg1, avg1 / 1000000));
-        System.out.println(String.format("get() avg = %d nano (%d milli) sec.",
-                avg2, avg2 / 1000000));
-
-        System.out.println("(END)");
+    public void define(final PerfHarness harness) {
+        final String[] keys = RandomData.parallelStrings(RandomData.current().nextLong(), MASS, 10, 30);
+        final String[] fillings = RandomData.parallelStrings(RandomData.current().nextLong(), MASS, 10, 30);
+        // 各ラウンドで空の状態からput()し直し、サンプルの番号(何回目の呼び出しか)ごとの傾向を出力する。
+        harness.detail(true);
+        harness.measure("put", MASS, () -> new HashMap<String, String>(16, 0.75f),
+                (c, i, bh) -> bh.consume(c.put(keys[i], fillings[i])));
+        harness.measure("get", MASS, () -> {
+            final HashMap<String, String> c = new HashMap<String, String>(16, 0.75f);
+            for (int i = 0; i < MASS; i++) {
+                c.put(keys[i], fillings[i]);
+            }
+            return c;
+        }, (c, i, bh) -> bh.consume(c.get(keys[i])));
     }
-
 }
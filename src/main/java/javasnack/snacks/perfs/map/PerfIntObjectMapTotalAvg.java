@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.map;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.IntObjectMap;
+import javasnack.tool.RandomString;
+
+/**
+ * int -> オブジェクト の対応を、{@link HashMap} / {@link TreeMap} / {@link LinkedHashMap} と {@link IntObjectMap} に
+ * 保持した場合を比較するサンプル。
+ *
+ * 値は全て同じオブジェクトにして、マップ自体のコスト(キーのボクシングと Node)だけを比べる。
+ * HashMap&lt;Integer, V&gt; はエントリーごとに Node と Integer を作るが、IntObjectMap は int[] と Object[] に並べるだけで済む。
+ *
+ * args: sizes=500000,5000000,50000000 (件数, 大きな件数では -Xmx を指定すること)
+ * args: jmh (JMH の GC プロファイラ付きで計測する)
+ */
+public class PerfIntObjectMapTotalAvg implements PerfSnack {
+
+    static final String DEFAULT_SIZES = "500000,5000000";
+    static final int ITER = 5;
+
+    /**
+     * @return i 番目のキー (0 以外の、連番ではない値)
+     */
+    static int key(final int i) {
+        return IntObjectMap.mix(i + 1);
+    }
+
+    static void measure(final PerfHarness harness, final String label, final int mass, final String filling,
+            final Supplier<Map<Integer, String>> factory) {
+        harness.measure(label + " put n=" + mass, 1, mass, factory::get, (m, i, bh) -> {
+            for (int j = 0; j < mass; j++) {
+                m.put(key(j), filling);
+            }
+            bh.consume(m);
+        });
+        harness.measure(label + " get n=" + mass, 1, mass, () -> {
+            final Map<Integer, String> m = factory.get();
+            for (int j = 0; j < mass; j++) {
+                m.put(key(j), filling);
+            }
+            return m;
+        }, (m, i, bh) -> {
+            for (int j = 0; j < mass; j++) {
+                bh.consume(m.get(key(j)));
+            }
+        });
+    }
+
+    @Override
+    public void define(final PerfHarness harness) {
+        final String filling = RandomString.get(10, 30);
+        // put シナリオの準備処理は空のマップを作るだけなので、フットプリントは get シナリオ(全件を詰めたマップ)で計測する。
+        harness.warmupRounds(2).measurementRounds(ITER).footprint(" get ");
+        for (final String size : harness.param("sizes", DEFAULT_SIZES).split(",")) {
+            final int mass = Integer.parseInt(size.trim());
+            measure(harness, "HashMap", mass, filling, HashMap::new);
+            measure(harness, "TreeMap", mass, filling, TreeMap::new);
+            measure(harness, "LinkedHashMap", mass, filling, LinkedHashMap::new);
+            harness.measure("IntObjectMap put n=" + mass, 1, mass, () -> new IntObjectMap<String>(), (m, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    m.put(key(j), filling);
+                }
+                bh.consume(m);
+            });
+            harness.measure("IntObjectMap get n=" + mass, 1, mass, () -> {
+                final IntObjectMap<String> m = new IntObjectMap<>();
+                for (int j = 0; j < mass; j++) {
+                    m.put(key(j), filling);
+                }
+                return m;
+            }, (m, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(m.get(key(j)));
+                }
+            });
+        }
+    }
+}
@@ -16,13 +16,11 @@
 
 package javasnack.snacks.perfs.map;
 
-import java.math.BigInteger;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.List;
 
-import javasnack.RunnableSnack;
-import javasnack.snacks.perfs.ElapsedWith;
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.RandomData;
 import javasnack.tool.RandomString;
 
 /**
@@ -32,69 +30,33 @@ import javasnack.tool.RandomString;
  * 
  * @author msakamoto
  */
-public class PerfLinkedHashMapTotalAvg implements RunnableSnack {
-
-    long putting(LinkedHashMap<String, String> m, String[] seeds, int mass, final String filling) {
-        long startTime = System.nanoTime();
-        for (int i = 0; i < mass; i++) {
-            m.put(seeds[i], filling);
-        }
-        return System.nanoTime() - startTime;
-    }
-
-    ElapsedWith<List<String>> getting(LinkedHashMap<String, String> m, String[] keys, int mass) {
-        // put() のコストが一定範囲に収まるようにして、影響を平準化する。
-        final List<String> drop = new LinkedList<>();
-        long startTime = System.nanoTime();
-        for (int i = 0; i < mass; i++) {
-            drop.add(m.get(keys[i]));
-        }
-        return ElapsedWith.of(drop, System.nanoTime() - startTime);
-    }
+public class PerfLinkedHashMapTotalAvg implements PerfSnack {
 
     static final int MASS = 500000;
     static final int ITER = 50;
 
     @Override
-    public void run(final String... args) {
-
-        String[] keys = new String[MASS];
-        for (int i = 0; i < MASS; i++) {
-            keys[i] = RandomString.get(10, 30);
-        }
-
-        @SuppressWarnings("unchecked")
-        LinkedHashMap<String, String>[] maps = new LinkedHashMap[ITER];
-
-        BigInteger sumOfPutting = BigInteger.ZERO;
-        for (int i = 0; i < ITER; i++) {
-            LinkedHashMap<String, String> m = new LinkedHashMap<String, String>(
-                    16, 0.75f);
-            long elapsed = putting(m, keys, MASS, RandomString.get(10, 30));
-            maps[i] = m;
-            System.out.println(String.format("puttings[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfPutting = sumOfPutting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg1 = sumOfPutting.divide(BigInteger.valueOf(ITER)).longValue();
-
-        BigInteger sumOfGetting = BigInteger.ZERO;
-        for (int i = 0; i < ITER; i++) {
-            LinkedHashMap<String, String> m = maps[i];
-            long elapsed = getting(m, keys, MASS).elapsed;
-            System.out.println(String.format("gettings[%d] = %d nano sec.", i,
-                    elapsed));
-            sumOfGetting = sumOfGetting.add(BigInteger.valueOf(elapsed));
-        }
-        long avg2 = sumOfGetting.divide(BigInteger.valueOf(ITER)).longValue();
-
-        System.out.println("-----------------------------------------");
-        System.out.println(String.format(
-                "putting avg = %d nano (%d milli) sec.", avg1, avg1 / 1000000));
-        System.out.println(String.format(
-                "getting avg = %d nano (%d milli) sec.", avg2, avg2 / 1000000));
-
-        System.out.println("(END)");
+    public void define(final PerfHarness harness) {
+        final String[] keys = RandomData.parallelStrings(RandomData.current().nextLong(), MASS, 10, 30);
+        final String filling = RandomString.get(10, 30);
+        // MASS 回の呼び出しをまとめて1サンプルとし、1回あたりの平均を求める。
+        harness.measurementRounds(ITER);
+        harness.measure("put", 1, MASS, () -> new LinkedHashMap<String, String>(16, 0.75f), (m, i, bh) -> {
+            for (int j = 0; j < MASS; j++) {
+                m.put(keys[j], filling);
+            }
+            bh.consume(m);
+        });
+        harness.measure("get", 1, MASS, () -> {
+            final LinkedHashMap<String, String> m = new LinkedHashMap<String, String>(16, 0.75f);
+            for (int j = 0; j < MASS; j++) {
+                m.put(keys[j], filling);
+            }
+            return m;
+        }, (m, i, bh) -> {
+            for (int j = 0; j < MASS; j++) {
+                bh.consume(m.get(keys[j]));
+            }
+        });
     }
-
 }
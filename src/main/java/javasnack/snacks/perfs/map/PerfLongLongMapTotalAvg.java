@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.map;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.LongLongMap;
+
+/**
+ * id -> オフセット のような long -> long の索引を、{@link HashMap} / {@link TreeMap} / {@link LinkedHashMap} と
+ * {@link LongLongMap} に保持した場合を比較するサンプル。
+ *
+ * HashMap&lt;Long, Long&gt; はエントリーごとに Node と Long x 2 を作るため、put() のたびにヒープへの割り当てが発生し、
+ * 保持している間のフットプリントもエントリーあたり 80 バイト程度になる。(GC が辿るオブジェクトも3個ずつ増える)
+ * (TreeMap は赤黒木の Entry、LinkedHashMap は双方向リンクの分だけ HashMap より更に重い)
+ * LongLongMap は long[] x 2 に直接並べるため、put() は(拡張時以外)割り当てが無く、フットプリントは 1/3 以下になる。
+ *
+ * args: sizes=500000,5000000,50000000 (件数, 50M件の HashMap には数GBのヒープが必要なので -Xmx を指定すること)
+ * args: jmh (JMH の GC プロファイラ付きで計測する)
+ */
+public class PerfLongLongMapTotalAvg implements PerfSnack {
+
+    static final String DEFAULT_SIZES = "500000,5000000";
+    static final int ITER = 5;
+
+    /**
+     * @return i 番目のキー (0 以外の、連番ではない値)
+     */
+    static long key(final int i) {
+        return LongLongMap.mix(i + 1L);
+    }
+
+    static void measure(final PerfHarness harness, final String label, final int mass,
+            final Supplier<Map<Long, Long>> factory) {
+        harness.measure(label + " put n=" + mass, 1, mass, factory::get, (m, i, bh) -> {
+            for (int j = 0; j < mass; j++) {
+                m.put(key(j), j * 16L);
+            }
+            bh.consume(m);
+        });
+        harness.measure(label + " get n=" + mass, 1, mass, () -> {
+            final Map<Long, Long> m = factory.get();
+            for (int j = 0; j < mass; j++) {
+                m.put(key(j), j * 16L);
+            }
+            return m;
+        }, (m, i, bh) -> {
+            for (int j = 0; j < mass; j++) {
+                bh.consume(m.get(key(j)));
+            }
+        });
+    }
+
+    @Override
+    public void define(final PerfHarness harness) {
+        // put シナリオの準備処理は空のマップを作るだけなので、フットプリントは get シナリオ(全件を詰めたマップ)で計測する。
+        harness.warmupRounds(2).measurementRounds(ITER).footprint(" get ");
+        for (final String size : harness.param("sizes", DEFAULT_SIZES).split(",")) {
+            final int mass = Integer.parseInt(size.trim());
+            measure(harness, "HashMap", mass, HashMap::new);
+            measure(harness, "TreeMap", mass, TreeMap::new);
+            measure(harness, "LinkedHashMap", mass, LinkedHashMap::new);
+            harness.measure("LongLongMap put n=" + mass, 1, mass, () -> new LongLongMap(), (m, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    m.put(key(j), j * 16L);
+                }
+                bh.consume(m);
+            });
+            harness.measure("LongLongMap get n=" + mass, 1, mass, () -> {
+                final LongLongMap m = new LongLongMap();
+                for (int j = 0; j < mass; j++) {
+                    m.put(key(j), j * 16L);
+                }
+                return m;
+            }, (m, i, bh) -> {
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(m.get(key(j)));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.map;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.LongLongMap;
+import javasnack.tool.OffHeapBytesMap;
+
+/**
+ * 16バイトのキー -> 8バイトの値 の対応を、{@link HashMap} / {@link TreeMap} / {@link LinkedHashMap} と
+ * {@link OffHeapBytesMap} に保持した場合を比較するサンプル。
+ *
+ * java.util のマップでは byte[] をそのままキーにできないため ByteBuffer で包む。(TreeMap では ByteBuffer の順序で並ぶ)
+ * (エントリーごとに Node, ByteBuffer, byte[] x 2 の4オブジェクトがヒープに残る)
+ * OffHeapBytesMap はヒープにほとんど何も残さない代わりに、put() / get() のたびにバイト列をコピーする。
+ * get() は値のコピーを返すため、1操作あたりの割り当て量は値の byte[] 1つ分となる。
+ *
+ * args: sizes=500000,5000000,50000000 (件数, 大きな件数では -Xmx / -XX:MaxDirectMemorySize を指定すること)
+ * args: jmh (JMH の GC プロファイラ付きで計測する)
+ */
+public class PerfOffHeapBytesMapTotalAvg implements PerfSnack {
+
+    static final String DEFAULT_SIZES = "500000,5000000";
+    static final int ITER = 5;
+    static final int KEY_BYTES = 16;
+    static final int VALUE_BYTES = 8;
+
+    static void putLong(final byte[] dst, final int offset, final long v) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            dst[offset + i] = (byte) (v >>> (56 - i * 8));
+        }
+    }
+
+    /**
+     * i 番目のキー(連番ではない値)を dst に書き込む。
+     * (割り当て量にキーの生成分が混ざらないよう、ByteBuffer を使わずに書き込む)
+     */
+    static byte[] key(final int i, final byte[] dst) {
+        putLong(dst, 0, LongLongMap.mix(i + 1L));
+        putLong(dst, 8, LongLongMap.mix(~i));
+        return dst;
+    }
+
+    static byte[] value(final int i, final byte[] dst) {
+        putLong(dst, 0, i * 16L);
+        return dst;
+    }
+
+    static void fill(final Map<ByteBuffer, byte[]> m, final int mass) {
+        for (int j = 0; j < mass; j++) {
+            m.put(ByteBuffer.wrap(key(j, new byte[KEY_BYTES])), value(j, new byte[VALUE_BYTES]));
+        }
+    }
+
+    static void fill(final OffHeapBytesMap m, final int mass) {
+        final byte[] k = new byte[KEY_BYTES];
+        final byte[] v = new byte[VALUE_BYTES];
+        for (int j = 0; j < mass; j++) {
+            m.put(key(j, k), value(j, v));
+        }
+    }
+
+    static void measure(final PerfHarness harness, final String label, final int mass,
+            final Supplier<Map<ByteBuffer, byte[]>> factory) {
+        harness.measure(label + " put n=" + mass, 1, mass, factory::get, (m, i, bh) -> {
+            fill(m, mass);
+            bh.consume(m);
+        });
+        harness.measure(label + " get n=" + mass, 1, mass, () -> {
+            final Map<ByteBuffer, byte[]> m = factory.get();
+            fill(m, mass);
+            return m;
+        }, (m, i, bh) -> {
+            final byte[] k = new byte[KEY_BYTES];
+            for (int j = 0; j < mass; j++) {
+                bh.consume(m.get(ByteBuffer.wrap(key(j, k))));
+            }
+        });
+    }
+
+    @Override
+    public void define(final PerfHarness harness) {
+        // put シナリオの準備処理は空のマップを作るだけなので、フットプリントは get シナリオ(全件を詰めたマップ)で計測する。
+        harness.warmupRounds(2).measurementRounds(ITER).footprint(" get ");
+        for (final String size : harness.param("sizes", DEFAULT_SIZES).split(",")) {
+            final int mass = Integer.parseInt(size.trim());
+            measure(harness, "HashMap", mass, HashMap::new);
+            measure(harness, "TreeMap", mass, TreeMap::new);
+            measure(harness, "LinkedHashMap", mass, LinkedHashMap::new);
+            harness.measure("OffHeapBytesMap put n=" + mass, 1, mass, () -> new OffHeapBytesMap(),
+                    (m, i, bh) -> {
+                        fill(m, mass);
+                        bh.consume(m);
+                    });
+            harness.measure("OffHeapBytesMap get n=" + mass, 1, mass, () -> {
+                final OffHeapBytesMap m = new OffHeapBytesMap();
+                fill(m, mass);
+                return m;
+            }, (m, i, bh) -> {
+                final byte[] k = new byte[KEY_BYTES];
+                for (int j = 0; j < mass; j++) {
+                    bh.consume(m.get(key(j, k)));
+                }
+            });
+        }
+    }
+}
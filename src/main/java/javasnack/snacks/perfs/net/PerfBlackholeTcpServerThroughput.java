@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.BlackholeTcpServer;
+
+/**
+ * BlackholeTcpServer がループバックで受け止められるスループットを計測するサンプル。
+ *
+ * clients 個の接続から同時に 64KB ずつ chunks 回書き込み、サーバが全て読み終わるまでを1サンプルとする。
+ * 結果の1操作 = 64KB の書き込みのため、Gbit/s に換算するには 524288 / (ナノ秒) とする。
+ * ワーカースレッド数を増やすと、接続の読み込みが複数のコアに分散される。(1コアの環境では差は出ない)
+ * CAPTURE モードでは加えて一時ファイル(メモリマップ)への書き込みのコストがかかる。
+ * (一時ファイルはラウンドごとに削除する)
+ *
+ * args: modes=DISCARD workers=1,2,4 clients=1,8 chunks=256
+ */
+public class PerfBlackholeTcpServerThroughput implements PerfSnack {
+
+    static final int ITER = 5;
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /** 計測後に停止するため、define() で起動したサーバを保持する。 */
+    private final List<BlackholeTcpServer> servers = new ArrayList<>();
+
+    /**
+     * クライアント側の接続と、同時に書き込むためのスレッド
+     */
+    static class Clients {
+        final BlackholeTcpServer server;
+        final SocketChannel[] channels;
+        final ExecutorService pool;
+
+        Clients(final BlackholeTcpServer server, final int port, final int clients) throws IOException {
+            this.server = server;
+            this.channels = new SocketChannel[clients];
+            final InetSocketAddress connectTo = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            for (int i = 0; i < clients; i++) {
+                this.channels[i] = SocketChannel.open(connectTo);
+            }
+            this.pool = Executors.newFixedThreadPool(clients, r -> {
+                final Thread t = new Thread(r, "perf-blackhole-client");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /**
+         * @return 全てのクライアントが書き込んだバイト数
+         */
+        long send(final int chunks) throws Exception {
+            final long before = this.server.getTotalReceivedBytes();
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (final SocketChannel channel : this.channels) {
+                futures.add(this.pool.submit(() -> {
+                    // ダイレクトバッファから書き込み、クライアント側のコピーを計測に含めない。
+                    final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                    long written = 0;
+                    for (int i = 0; i < chunks; i++) {
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            written += channel.write(buffer);
+                        }
+                    }
+                    return written;
+                }));
+            }
+            long written = 0;
+            for (final Future<Long> f : futures) {
+                written += f.get();
+            }
+            // カーネルのバッファに残っている分も含め、サーバが読み終わるまで待つ。
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (this.server.getTotalReceivedBytes() - before < written) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("server did not receive all bytes in time");
+                }
+                Thread.onSpinWait();
+            }
+            return written;
+        }
+
+        void close() {
+            this.pool.shutdownNow();
+            for (final SocketChannel channel : this.channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    @Override
+    public void define(final PerfHarness harness) throws Exception {
+        harness.warmupRounds(2).measurementRounds(ITER);
+        final int chunks = Integer.parseInt(harness.param("chunks", "256"));
+        for (final String m : harness.param("modes", "DISCARD").split(",")) {
+            final BlackholeTcpServer.Mode mode = BlackholeTcpServer.Mode.valueOf(m.trim());
+            for (final String w : harness.param("workers", "1,2,4").split(",")) {
+                final int workers = Integer.parseInt(w.trim());
+                final BlackholeTcpServer server = new BlackholeTcpServer(0, workers, mode);
+                final int port = server.start();
+                this.servers.add(server);
+                for (final String c : harness.param("clients", "1,8").split(",")) {
+                    final int clients = Integer.parseInt(c.trim());
+                    // 前のラウンドの接続は、次のラウンドの準備処理で閉じる。
+                    final Clients[] previous = new Clients[1];
+                    harness.measure(mode + " workers=" + workers + " clients=" + clients, 1, clients * chunks,
+                            () -> {
+                                if (Objects.nonNull(previous[0])) {
+                                    previous[0].close();
+                                }
+                                server.deleteCapturedFiles();
+                                previous[0] = new Clients(server, port, clients);
+                                return previous[0];
+                            }, (state, i, bh) -> bh.consume(state.send(chunks)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run(final String... args) throws Exception {
+        try {
+            PerfHarness.run(this, args);
+        } finally {
+            for (final BlackholeTcpServer server : this.servers) {
+                server.stop();
+                server.deleteCapturedFiles();
+            }
+        }
+    }
+}
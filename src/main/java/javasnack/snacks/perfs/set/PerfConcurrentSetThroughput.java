@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs.set;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javasnack.snacks.perfs.PerfHarness;
+import javasnack.snacks.perfs.PerfSnack;
+import javasnack.tool.StripedConcurrentHashSet;
+
+/**
+ * 複数のスレッドから同時に読み書き・走査するセットのスループットを比較するサンプル。
+ * (SynchronizedSetConcurrentModifyDemo の続き)
+ *
+ * 各スレッドが opsPerThread 回の操作を行い、操作は割合に応じて以下から選ぶ。
+ * - 書き込み (writes %) : ランダムなキーを add() または remove() する。
+ * - 走査 (iterations %) : 全要素を走査して合計する。(synchronizedSet はセット全体を synchronized で囲む)
+ * - それ以外 : ランダムなキーを contains() する。
+ * 結果の1操作あたりの時間は「全スレッドの操作数 / 経過時間」の逆数 = スループットの逆数となる。
+ *
+ * - synchronizedSet : スレッド数を増やしても全操作が1つのロックで直列化されるため、スループットは増えない(むしろ下がる)。
+ * - CopyOnWriteArraySet : 書き込みのたびに全体をコピーするため、書き込みが多いと極端に遅い。
+ * - ConcurrentHashMap.newKeySet() / StripedConcurrentHashSet : スレッド数に応じてスループットが伸びる。
+ *   StripedConcurrentHashSet は書き込みが無い間の走査がキャッシュしたスナップショットを読むだけになる。
+ *
+ * args: threads=1,2,4,8,16,32,64 writes=10 iterations=1 keys=1024 opsPerThread=20000
+ */
+public class PerfConcurrentSetThroughput implements PerfSnack {
+
+    static final int ITER = 5;
+
+    /**
+     * スレッドを使い回すための共有プール (デーモンスレッドのため、snack 終了時に止めなくてよい)
+     */
+    static final ExecutorService POOL = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "perf-concurrent-set");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static class Workload {
+        final int writes;
+        final int iterations;
+        final Integer[] keys;
+        final int opsPerThread;
+
+        Workload(final int writes, final int iterations, final int keyCount, final int opsPerThread) {
+            this.writes = writes;
+            this.iterations = iterations;
+            // 全スレッドで同じキーのオブジェクトを使い、ボクシングによる割り当てを除く。
+            this.keys = new Integer[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                this.keys[i] = i;
+            }
+            this.opsPerThread = opsPerThread;
+        }
+
+        /**
+         * @return 走査した要素の合計など (最適化で削除されないよう結果を返す)
+         */
+        long run(final Set<Integer> set, final boolean lockForIteration, final long seed) {
+            final SplittableRandom rnd = new SplittableRandom(seed);
+            long result = 0;
+            for (int i = 0; i < this.opsPerThread; i++) {
+                final int dice = rnd.nextInt(100);
+                final Integer key = this.keys[rnd.nextInt(this.keys.length)];
+                if (dice < this.writes) {
+                    if (rnd.nextBoolean()) {
+                        set.add(key);
+                    } else {
+                        set.remove(key);
+                    }
+                } else if (dice < this.writes + this.iterations) {
+                    if (lockForIteration) {
+                        synchronized (set) {
+                            for (final Integer v : set) {
+                                result += v;
+                            }
+                        }
+                    } else {
+                        for (final Integer v : set) {
+                            result += v;
+                        }
+                    }
+                } else if (set.contains(key)) {
+                    result++;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 半分のキーを入れたセットを作る。
+     */
+    static Set<Integer> prefilled(final Supplier<Set<Integer>> factory, final Workload workload) {
+        final Set<Integer> set = factory.get();
+        for (int i = 0; i < workload.keys.length; i += 2) {
+            set.add(workload.keys[i]);
+        }
+        return set;
+    }
+
+    /**
+     * threads 個のスレッドで同時に workload を実行し、全スレッドが終わるまで待つ。
+     */
+    static long runConcurrently(final Set<Integer> set, final boolean lockForIteration, final Workload workload,
+            final int threads) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        @SuppressWarnings("unchecked")
+        final Future<Long>[] futures = (Future<Long>[]) new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            futures[t] = POOL.submit(() -> {
+                start.await();
+                return workload.run(set, lockForIteration, seed);
+            });
+        }
+        start.countDown();
+        long result = 0;
+        for (final Future<Long> f : futures) {
+            result += f.get();
+        }
+        return result;
+    }
+
+    void measure(final PerfHarness harness, final String label, final Supplier<Set<Integer>> factory,
+            final boolean lockForIteration, final Workload workload, final int threads) {
+        harness.measure(label + " threads=" + threads, 1, workload.opsPerThread * threads,
+                () -> prefilled(factory, workload),
+                (set, i, bh) -> bh.consume(runConcurrently(set, lockForIteration, workload, threads)));
+    }
+
+    @Override
+    public void define(final PerfHarness harness) {
+        harness.warmupRounds(2).measurementRounds(ITER);
+        final Workload workload = new Workload(
+                Integer.parseInt(harness.param("writes", "10")),
+                Integer.parseInt(harness.param("iterations", "1")),
+                Integer.parseInt(harness.param("keys", "1024")),
+                Integer.parseInt(harness.param("opsPerThread", "20000")));
+        if (workload.writes + workload.iterations > 100) {
+            throw new IllegalArgumentException("writes + iterations must be <= 100");
+        }
+        for (final String t : harness.param("threads", "1,2,4,8,16,32,64").split(",")) {
+            final int threads = Integer.parseInt(t.trim());
+            this.measure(harness, "synchronizedSet", () -> Collections.synchronizedSet(new HashSet<>()), true,
+                    workload, threads);
+            this.measure(harness, "CopyOnWriteArraySet", CopyOnWriteArraySet::new, false, workload, threads);
+            this.measure(harness, "ConcurrentHashMap.newKeySet", ConcurrentHashMap::newKeySet, false, workload,
+                    threads);
+            this.measure(harness, "StripedConcurrentHashSet", StripedConcurrentHashSet::new, false, workload,
+                    threads);
+        }
+    }
+}
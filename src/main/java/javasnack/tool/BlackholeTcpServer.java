@@ -16,70 +16,186 @@
 
 package javasnack.tool;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 受信したデータを捨てる(または記録するだけの) TCP サーバ
+ *
+ * accept 専用のスレッドと、接続を振り分けた N 個のワーカースレッド(それぞれが Selector を持つ reactor)で動作する。
+ * - ワーカーはスレッドごとに1つのダイレクトバッファを使い回して読み込むため、読み込みごとのオブジェクト生成は無い。
+ * - {@link Mode#DISCARD} では受信したバイト数と読み込み回数を LongAdder で数えるだけで、内容は保持しない。
+ *   (負荷試験の受け側として、ループバックで数 Gbit/s を受け止めることを想定)
+ * - {@link Mode#RECORD} では加えて接続ごとに受信した内容を保持する。(テストで内容を確認する用途)
+ * - {@link Mode#CAPTURE} では接続ごとに先頭・末尾の一定サイズだけをメモリに保持し、全体は一時ファイルに書き出す。
+ *   (長時間の試験でも受信した内容を確認でき、ヒープ使用量は接続数 x (head + tail) で頭打ちとなる)
+ *
+ * 受信状況の取得メソッドは、受信中に別のスレッドから呼んでもよい。(各接続の値はその時点までの内容となる)
+ * TCP にはメッセージの区切りが無いため、"メッセージ数" は read() で1バイト以上読み込めた回数とする。
+ */
 public class BlackholeTcpServer {
 
+    public enum Mode {
+        /** 受信したバイト数・読み込み回数だけを数える。 */
+        DISCARD,
+        /** 受信した内容を接続ごとに保持する。 */
+        RECORD,
+        /** 受信した内容の先頭・末尾をメモリに、全体を一時ファイルに保持する。 */
+        CAPTURE,
+    }
+
+    /** ワーカースレッドごとの読み込みバッファのサイズ */
+    public static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** CAPTURE モードで先頭・末尾から保持するバイト数のデフォルト値 */
+    public static final int DEFAULT_CAPTURE_WINDOW = 4 * 1024;
+
     final int port;
+    final int workerThreads;
+    final Mode mode;
+    final int headBytes;
+    final int tailBytes;
+    final Path spillDirectory;
 
     public BlackholeTcpServer() {
-        this.port = 0; // auto bind
+        this(0); // auto bind
     }
 
     public BlackholeTcpServer(final int port) {
+        this(port, 1, Mode.RECORD);
+    }
+
+    /**
+     * @param port 待ち受けポート (0 なら自動で割り当てる)
+     * @param workerThreads 接続を読み込むワーカースレッドの数
+     * @param mode 受信した内容を保持するか
+     */
+    public BlackholeTcpServer(final int port, final int workerThreads, final Mode mode) {
+        this(port, workerThreads, mode, DEFAULT_CAPTURE_WINDOW, DEFAULT_CAPTURE_WINDOW, null);
+    }
+
+    /**
+     * @param port 待ち受けポート (0 なら自動で割り当てる)
+     * @param workerThreads 接続を読み込むワーカースレッドの数
+     * @param mode 受信した内容を保持するか
+     * @param headBytes CAPTURE モードで接続ごとに先頭から保持するバイト数
+     * @param tailBytes CAPTURE モードで接続ごとに末尾から保持するバイト数
+     * @param spillDirectory CAPTURE モードで一時ファイルを作るディレクトリ (null の場合はシステムの一時ディレクトリ)
+     */
+    public BlackholeTcpServer(final int port, final int workerThreads, final Mode mode, final int headBytes,
+            final int tailBytes, final Path spillDirectory) {
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("workerThreads must be >= 1");
+        }
+        if (headBytes < 0 || tailBytes < 0) {
+            throw new IllegalArgumentException("headBytes and tailBytes must be >= 0");
+        }
         this.port = port;
+        this.workerThreads = workerThreads;
+        this.mode = Objects.requireNonNull(mode);
+        this.headBytes = headBytes;
+        this.tailBytes = tailBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * 接続ごとの受信状況
+     */
+    static class Connection {
+        final InetSocketAddress remote;
+        final LongAdder bytes = new LongAdder();
+        final LongAdder messages = new LongAdder();
+        /** RECORD モードの場合のみ (ByteArrayOutputStream の各メソッドは synchronized) */
+        final ByteArrayOutputStream received;
+        /** CAPTURE モードの場合のみ */
+        final CapturedStream captured;
+
+        Connection(final InetSocketAddress remote, final ByteArrayOutputStream received,
+                final CapturedStream captured) {
+            this.remote = remote;
+            this.received = received;
+            this.captured = captured;
+        }
     }
 
-    private final Map<InetSocketAddress, ByteArrayOutputStream> receivedBytesMap = new HashMap<>();
+    private final Map<InetSocketAddress, Connection> connections = new ConcurrentHashMap<>();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder totalMessages = new LongAdder();
+    private final LongAdder acceptedConnections = new LongAdder();
 
     ServerSocketChannel serverChannel = null;
 
     ExecutorService es = null;
 
+    Worker[] workers = null;
+
     public int start() throws IOException {
         if (Objects.nonNull(serverChannel) || Objects.nonNull(es)) {
             throw new IllegalStateException();
         }
-        final Selector selector = Selector.open();
         serverChannel = ServerSocketChannel.open();
         serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-        serverChannel.bind(new InetSocketAddress(port), 10);
-        serverChannel.configureBlocking(false);
-        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        // 大量の接続を同時に受け付けても取りこぼさないよう、backlog は OS のデフォルトに任せる。
+        serverChannel.bind(new InetSocketAddress(port), 0);
         final int localPort = serverChannel.socket().getLocalPort();
 
-        receivedBytesMap.clear();
-        es = Executors.newSingleThreadExecutor();
+        deleteCapturedFiles();
+        connections.clear();
+        totalBytes.reset();
+        totalMessages.reset();
+        acceptedConnections.reset();
+        workers = new Worker[workerThreads];
+        for (int i = 0; i < workerThreads; i++) {
+            workers[i] = new Worker(Selector.open());
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        es = Executors.newFixedThreadPool(workerThreads + 1, r -> {
+            final Thread t = new Thread(r, "BlackholeTcpServer-" + localPort + "-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        for (Worker worker : workers) {
+            es.submit(worker);
+        }
+        final ServerSocketChannel acceptChannel = serverChannel;
+        final Worker[] acceptWorkers = workers;
         es.submit(new Runnable() {
             @Override
             public void run() {
+                System.out.println("BlackHoleTcpServer: listener started at port " + localPort + " ("
+                        + workerThreads + " workers, " + mode + ").");
+                int next = 0;
                 try {
-                    System.out.println("BlackHoleTcpServer: listener started at port " + localPort + ".");
-                    while (selector.select() > 0) {
-                        Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
-                        while (keyIterator.hasNext()) {
-                            SelectionKey key = keyIterator.next();
-                            keyIterator.remove();
-                            if (key.isAcceptable()) {
-                                doAccept(selector, key);
-                            } else if (key.isReadable()) {
-                                doRead(key);
-                            }
-                        }
+                    while (true) {
+                        // accept 専用のスレッドのため、ブロッキングモードのまま accept() する。
+                        // (stop() でチャネルを閉じると AsynchronousCloseException で抜ける)
+                        final SocketChannel socketChannel = acceptChannel.accept();
+                        acceptWorkers[next].assign(socketChannel);
+                        next = (next + 1) % acceptWorkers.length;
                     }
                 } catch (IOException ignore) {
                     System.out.println("BlackHoleTcpServer: listener interrupted.");
@@ -94,52 +210,247 @@ public class BlackholeTcpServer {
         es.shutdown();
         try {
             serverChannel.close();
-            es.shutdownNow();
         } catch (IOException ignore) {
+        }
+        for (Worker worker : workers) {
+            worker.close();
+        }
+        // 一時ファイルは deleteCapturedFiles() を呼ぶ(または再度 start() する)まで残し、停止後も読み出せるようにする。
+        for (Connection c : connections.values()) {
+            if (Objects.nonNull(c.captured)) {
+                try {
+                    c.captured.finish();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        try {
+            es.shutdownNow();
+            es.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
             es = null;
             serverChannel = null;
+            workers = null;
         }
     }
 
+    /**
+     * @return 接続ごとの受信した内容 (RECORD モードの場合のみ, DISCARD モードでは空)
+     */
     public Map<InetSocketAddress, byte[]> getReceivedBytes() {
         final Map<InetSocketAddress, byte[]> r = new HashMap<>();
-        for (Map.Entry<InetSocketAddress, ByteArrayOutputStream> e : receivedBytesMap.entrySet()) {
-            r.put(e.getKey(), e.getValue().toByteArray());
+        for (Connection c : connections.values()) {
+            if (Objects.nonNull(c.received)) {
+                r.put(c.remote, c.received.toByteArray());
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return 接続ごとの受信した内容 (CAPTURE モードの場合のみ, それ以外のモードでは空)
+     */
+    public Map<InetSocketAddress, CapturedStream> getCapturedStreams() {
+        final Map<InetSocketAddress, CapturedStream> r = new HashMap<>();
+        for (Connection c : connections.values()) {
+            if (Objects.nonNull(c.captured)) {
+                r.put(c.remote, c.captured);
+            }
+        }
+        return Collections.unmodifiableMap(r);
+    }
+
+    /**
+     * 接続の受信した内容を先頭から読み出すチャネルを開く。(使い終わったら close() すること)
+     *
+     * CAPTURE モードでは一時ファイルから読み出すため、受信した内容全体をメモリにコピーしない。
+     * (RECORD モードでは呼び出した時点の内容のコピーから読み出す)
+     *
+     * @throws IllegalArgumentException 接続が無いか、受信した内容を保持していない(DISCARD モード)場合
+     */
+    public ReadableByteChannel openReceivedChannel(final InetSocketAddress remote) throws IOException {
+        final Connection c = connections.get(remote);
+        if (Objects.nonNull(c) && Objects.nonNull(c.captured)) {
+            return c.captured.openChannel();
+        }
+        if (Objects.nonNull(c) && Objects.nonNull(c.received)) {
+            return Channels.newChannel(new ByteArrayInputStream(c.received.toByteArray()));
+        }
+        throw new IllegalArgumentException("no received data for " + remote);
+    }
+
+    /**
+     * CAPTURE モードの一時ファイルを削除する。(以降は getCapturedStreams() の内容を読み出せない)
+     * 受信中の接続は、次に受信した時点でサーバ側から閉じる。
+     */
+    public void deleteCapturedFiles() {
+        for (Connection c : connections.values()) {
+            if (Objects.nonNull(c.captured)) {
+                try {
+                    c.captured.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 接続ごとの受信したバイト数
+     */
+    public Map<InetSocketAddress, Long> getReceivedByteCounts() {
+        final Map<InetSocketAddress, Long> r = new HashMap<>();
+        for (Connection c : connections.values()) {
+            r.put(c.remote, c.bytes.sum());
         }
         return r;
     }
 
-    private void doAccept(Selector selector, SelectionKey key) throws IOException {
-        final ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
-        final SocketChannel socketChannel = serverChannel.accept();
-        final InetSocketAddress sa = (InetSocketAddress) socketChannel.socket().getRemoteSocketAddress();
-        this.receivedBytesMap.put(sa, new ByteArrayOutputStream());
-        socketChannel.configureBlocking(false);
-        socketChannel.register(selector, SelectionKey.OP_READ);
-    }
-
-    private void doRead(SelectionKey key) throws IOException {
-        final SocketChannel channel = (SocketChannel) key.channel();
-        final InetSocketAddress sa = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
-        final ByteArrayOutputStream out = this.receivedBytesMap.get(sa);
-        final ByteBuffer buffer = ByteBuffer.allocate(1024);
-        int readlen = 0;
-        do {
-            buffer.clear();
-            readlen = channel.read(buffer);
-            if (readlen < 0) {
-                channel.close();
-                return;
+    /**
+     * @return 接続ごとの読み込み回数
+     */
+    public Map<InetSocketAddress, Long> getReceivedMessageCounts() {
+        final Map<InetSocketAddress, Long> r = new HashMap<>();
+        for (Connection c : connections.values()) {
+            r.put(c.remote, c.messages.sum());
+        }
+        return r;
+    }
+
+    public long getTotalReceivedBytes() {
+        return totalBytes.sum();
+    }
+
+    public long getTotalReceivedMessages() {
+        return totalMessages.sum();
+    }
+
+    public long getAcceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    /**
+     * 割り当てられた接続を1つの Selector で読み込むワーカー
+     */
+    class Worker implements Runnable {
+        final Selector selector;
+        /** accept スレッドから渡された、まだ Selector に登録していない接続 */
+        final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        /** RECORD モードでダイレクトバッファから取り出すための作業用配列 (CAPTURE モードは直接書き込む) */
+        final byte[] scratch = mode == Mode.RECORD ? new byte[READ_BUFFER_SIZE] : null;
+
+        Worker(final Selector selector) {
+            this.selector = selector;
+        }
+
+        void assign(final SocketChannel socketChannel) {
+            pending.add(socketChannel);
+            selector.wakeup();
+        }
+
+        void close() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException | RuntimeException ignore) {
+                // 既にワーカースレッドが Selector を閉じている場合など。
+            }
+            for (SocketChannel socketChannel; Objects.nonNull(socketChannel = pending.poll());) {
+                try {
+                    socketChannel.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    registerPending();
+                    final Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        final SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            try {
+                                doRead(key);
+                            } catch (IOException | IllegalStateException e) {
+                                // 一時ファイルへの書き込みに失敗した場合や、受信中に deleteCapturedFiles() された場合など :
+                                // この接続だけを閉じ、他の接続の読み込みは続ける。
+                                key.cancel();
+                                key.channel().close();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException ignore) {
+                // stop() で Selector を閉じた場合 (ClosedSelectorException) など。
+            }
+        }
+
+        private void registerPending() {
+            for (SocketChannel socketChannel; Objects.nonNull(socketChannel = pending.poll());) {
+                try {
+                    final InetSocketAddress sa = (InetSocketAddress) socketChannel.getRemoteAddress();
+                    final Connection connection = new Connection(sa,
+                            mode == Mode.RECORD ? new ByteArrayOutputStream() : null,
+                            mode == Mode.CAPTURE ? new CapturedStream(headBytes, tailBytes, spillDirectory) : null);
+                    connections.put(sa, connection);
+                    acceptedConnections.increment();
+                    socketChannel.configureBlocking(false);
+                    socketChannel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    // 登録前に接続が閉じられた場合など : この接続だけを諦める。
+                    try {
+                        socketChannel.close();
+                    } catch (IOException ignore) {
+                    }
+                }
             }
-            buffer.flip();
-            final byte[] data = new byte[buffer.remaining()];
-            buffer.get(data);
-            out.write(data);
-        } while (readlen > 0);
-
-        if (key.interestOps() != SelectionKey.OP_READ) {
-            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void doRead(final SelectionKey key) throws IOException {
+            final SocketChannel channel = (SocketChannel) key.channel();
+            final Connection connection = (Connection) key.attachment();
+            int readlen = 0;
+            do {
+                buffer.clear();
+                try {
+                    readlen = channel.read(buffer);
+                } catch (IOException e) {
+                    // 接続がリセットされた場合など
+                    readlen = -1;
+                }
+                if (readlen < 0) {
+                    key.cancel();
+                    channel.close();
+                    if (Objects.nonNull(connection.captured)) {
+                        connection.captured.finish();
+                    }
+                    return;
+                }
+                if (readlen > 0) {
+                    connection.bytes.add(readlen);
+                    connection.messages.increment();
+                    totalBytes.add(readlen);
+                    totalMessages.increment();
+                    if (Objects.nonNull(connection.received)) {
+                        buffer.flip();
+                        buffer.get(scratch, 0, readlen);
+                        connection.received.write(scratch, 0, readlen);
+                    } else if (Objects.nonNull(connection.captured)) {
+                        buffer.flip();
+                        connection.captured.write(buffer);
+                    }
+                }
+                // バッファが一杯になるまで読めた場合は、まだ読めるデータが残っている可能性がある。
+            } while (readlen == READ_BUFFER_SIZE);
         }
     }
 }
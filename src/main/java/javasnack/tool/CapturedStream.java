@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * 書き込まれたバイト列を、先頭と末尾の一定サイズだけメモリに保持し、全体は一時ファイルに書き出すバッファ
+ *
+ * 長時間受信し続けてもヒープ使用量は head + tail のサイズで一定となる。
+ * 一時ファイルへは FileChannel の位置指定の write() で書き込むため、ダイレクトバッファから書き込む場合はヒープを経由しない。
+ * (メモリマップは使わない。map した領域は GC されるまで解放されず、Windows では解放されるまで一時ファイルを削除できないため)
+ * 全体は {@link #openChannel()} でファイルから順に読み出す。(1つの巨大な byte[] にはコピーしない)
+ *
+ * write() するスレッドは1つを想定するが、head() / tail() / length() / openChannel() は別のスレッドから呼んでもよい。
+ */
+public class CapturedStream implements AutoCloseable {
+
+    private final byte[] head;
+    private int headLength = 0;
+    /** 末尾を保持するリングバッファ (total % tail.length が次に書き込む位置) */
+    private final byte[] tail;
+    private long total = 0;
+
+    private final Path file;
+    private FileChannel channel;
+    /** 一時ファイルに書き込み済みのバイト数 (openChannel() はロックを取らずにこれを読む) */
+    private volatile long length = 0;
+    private boolean closed = false;
+
+    /**
+     * @param headBytes 先頭から保持するバイト数
+     * @param tailBytes 末尾から保持するバイト数
+     * @param directory 一時ファイルを作るディレクトリ (null の場合はシステムの一時ディレクトリ)
+     */
+    public CapturedStream(final int headBytes, final int tailBytes, final Path directory) throws IOException {
+        if (headBytes < 0 || tailBytes < 0) {
+            throw new IllegalArgumentException("headBytes and tailBytes must be >= 0");
+        }
+        this.head = new byte[headBytes];
+        this.tail = new byte[tailBytes];
+        this.file = Objects.isNull(directory)
+                ? Files.createTempFile("captured-stream-", ".bin")
+                : Files.createTempFile(directory, "captured-stream-", ".bin");
+        this.channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * src の残り全てを書き込む。(src の position は limit まで進む)
+     */
+    public synchronized void write(final ByteBuffer src) throws IOException {
+        if (Objects.isNull(this.channel)) {
+            throw new IllegalStateException("already finished");
+        }
+        final int n = src.remaining();
+        if (n == 0) {
+            return;
+        }
+        final int p = src.position();
+        if (this.headLength < this.head.length) {
+            final int c = Math.min(n, this.head.length - this.headLength);
+            src.get(p, this.head, this.headLength, c);
+            this.headLength += c;
+        }
+        if (this.tail.length > 0) {
+            // リングバッファに収まらない分は読み飛ばし、最後の tail.length バイトだけを書き込む。
+            final int skip = Math.max(0, n - this.tail.length);
+            long at = this.total + skip;
+            int from = p + skip;
+            int remaining = n - skip;
+            while (remaining > 0) {
+                final int pos = (int) (at % this.tail.length);
+                final int c = Math.min(remaining, this.tail.length - pos);
+                src.get(from, this.tail, pos, c);
+                from += c;
+                at += c;
+                remaining -= c;
+            }
+        }
+        long position = this.total;
+        while (src.hasRemaining()) {
+            position += this.channel.write(src, position);
+        }
+        this.total += n;
+        this.length = this.total;
+    }
+
+    /**
+     * @return これまでに書き込まれたバイト数
+     */
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * @return 先頭から保持しているバイト列のコピー
+     */
+    public synchronized byte[] head() {
+        final byte[] r = new byte[this.headLength];
+        System.arraycopy(this.head, 0, r, 0, this.headLength);
+        return r;
+    }
+
+    /**
+     * @return 末尾から保持しているバイト列のコピー (書き込まれた順)
+     */
+    public synchronized byte[] tail() {
+        final int len = (int) Math.min(this.total, this.tail.length);
+        final byte[] r = new byte[len];
+        if (len == 0) {
+            return r;
+        }
+        final int start = (int) ((this.total - len) % this.tail.length);
+        final int first = Math.min(len, this.tail.length - start);
+        System.arraycopy(this.tail, start, r, 0, first);
+        System.arraycopy(this.tail, 0, r, first, len - first);
+        return r;
+    }
+
+    /**
+     * 呼び出した時点までに書き込まれた内容を先頭から読み出すチャネルを開く。(使い終わったら close() すること)
+     */
+    public ReadableByteChannel openChannel() throws IOException {
+        synchronized (this) {
+            if (this.closed) {
+                throw new ClosedChannelException();
+            }
+        }
+        final long limit = this.length;
+        final FileChannel fc = FileChannel.open(this.file, StandardOpenOption.READ);
+        return new ReadableByteChannel() {
+            private long position = 0;
+
+            @Override
+            public int read(final ByteBuffer dst) throws IOException {
+                if (this.position >= limit) {
+                    return -1;
+                }
+                // 開いた後に書き込まれた分は読み出さないよう、開いた時点の長さまでに制限する。
+                final int max = (int) Math.min(dst.remaining(), limit - this.position);
+                final int oldLimit = dst.limit();
+                dst.limit(dst.position() + max);
+                try {
+                    final int n = fc.read(dst, this.position);
+                    if (n > 0) {
+                        this.position += n;
+                    }
+                    return n;
+                } finally {
+                    dst.limit(oldLimit);
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return fc.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                fc.close();
+            }
+        };
+    }
+
+    /**
+     * 書き込みを終了し、一時ファイルへの書き込み用のチャネルを閉じる。(内容は close() するまで読み出せる)
+     */
+    public synchronized void finish() throws IOException {
+        if (Objects.nonNull(this.channel)) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    /**
+     * 書き込みを終了し、一時ファイルを削除する。
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.finish();
+        this.closed = true;
+        Files.deleteIfExists(this.file);
+    }
+}
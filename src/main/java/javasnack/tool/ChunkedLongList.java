@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * 固定長のチャンク(long[])を並べた long の可変長リスト
+ *
+ * ArrayList や LongArrayList は容量が足りなくなると1つの大きな配列を確保し直して全体をコピーするため、
+ * 1億件規模では拡張のたびに数百MBのコピーが発生し、一時的に新旧2つの配列分のメモリが必要になる。
+ * こちらは末尾のチャンクが埋まったら新しいチャンクを追加するだけで、既存の要素はコピーしない。
+ * (コピーするのはチャンクへの参照の配列だけで、要素数 / チャンクの長さ 個と小さい)
+ *
+ * - チャンクの長さは2の冪とし、添字からチャンクと位置をシフトとマスクで求める。
+ * - 添字は long のため、int の範囲を超える要素数も扱える。
+ * - スレッドセーフではない。
+ */
+public class ChunkedLongList {
+    /** チャンクの長さ(要素数)のデフォルト値 (512KB) */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    private final int shift;
+    private final int mask;
+    private long[][] chunks = new long[8][];
+    private int chunkCount;
+    private long size;
+
+    /**
+     * @param chunkSize チャンクの長さ (2の冪)
+     */
+    public ChunkedLongList(final int chunkSize) {
+        if (chunkSize < 1 || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("chunkSize must be a power of two: " + chunkSize);
+        }
+        this.shift = Integer.numberOfTrailingZeros(chunkSize);
+        this.mask = chunkSize - 1;
+    }
+
+    public ChunkedLongList() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public void add(final long value) {
+        final int offset = (int) this.size & this.mask;
+        if (offset == 0 && (this.size >>> this.shift) == this.chunkCount) {
+            this.addChunk();
+        }
+        this.chunks[(int) (this.size >>> this.shift)][offset] = value;
+        this.size++;
+    }
+
+    private void addChunk() {
+        if (this.chunkCount == this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, LongArrayList.grownCapacity(this.chunks.length,
+                    this.chunkCount + 1));
+        }
+        this.chunks[this.chunkCount++] = new long[this.mask + 1];
+    }
+
+    private void checkIndex(final long index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + this.size);
+        }
+    }
+
+    public long get(final long index) {
+        this.checkIndex(index);
+        return this.chunks[(int) (index >>> this.shift)][(int) index & this.mask];
+    }
+
+    /**
+     * @return 以前の値
+     */
+    public long set(final long index, final long value) {
+        this.checkIndex(index);
+        final long[] chunk = this.chunks[(int) (index >>> this.shift)];
+        final int offset = (int) index & this.mask;
+        final long old = chunk[offset];
+        chunk[offset] = value;
+        return old;
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * 全要素を削除する。(チャンクは再利用のため保持する)
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * チャンク単位で走査する。(要素ごとに添字からチャンクを求めるより速い)
+     */
+    public void forEach(final LongConsumer consumer) {
+        long remaining = this.size;
+        for (int c = 0; remaining > 0; c++) {
+            final long[] chunk = this.chunks[c];
+            final int n = (int) Math.min(chunk.length, remaining);
+            for (int i = 0; i < n; i++) {
+                consumer.accept(chunk[i]);
+            }
+            remaining -= n;
+        }
+    }
+
+    /**
+     * @return 確保したチャンクの要素数の合計 (容量)
+     */
+    public long capacity() {
+        return (long) this.chunkCount * (this.mask + 1);
+    }
+}
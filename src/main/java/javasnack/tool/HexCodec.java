@@ -0,0 +1,583 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 呼び出し側が用意した byte[] / char[] / ByteBuffer に書き込む、オブジェクトを生成しない16進数・2進数の変換
+ *
+ * - 1バイト -> 16進数2文字 (先頭の0を省略しない), 16進数2文字 -> 1バイト, 1バイト -> 2進数8文字
+ * - byte[] への16進数変換は、8バイトを long に読み込み、ニブルを各バイトに広げて
+ *   '0'-'9' / 'a'-'f' への変換を long 単位でまとめて行う。(SWAR : SIMD within a register)
+ *   それ以外は256要素の変換表を引く。
+ * - {@link EncodingOutputStream} / {@link DecodingInputStream} でストリームのまま変換し、
+ *   {@link DumpOutputStream} で xxd 形式 (オフセット + 16進数 + ASCII) のダンプを出力する。
+ *
+ * jdk.incubator.vector はコンパイル・実行の両方で --add-modules が必要になるため使わず、
+ * 同じ考え方(複数バイトをまとめて変換する)を long の演算で行っている。
+ */
+public final class HexCodec {
+
+    private HexCodec() {
+    }
+
+    /** xxd 形式のダンプの1行あたりのバイト数 */
+    public static final int DUMP_LINE_BYTES = 16;
+
+    /** xxd 形式のダンプの1行の最大の長さ (改行を含む) : "%08x: " + 16進数40文字 + " " + ASCII 16文字 + "\n" */
+    public static final int DUMP_LINE_LENGTH = 10 + 40 + 1 + DUMP_LINE_BYTES + 1;
+
+    static final byte[] LOWER_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] UPPER_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    /** バイト値 b の16進数2文字 : [b * 2] と [b * 2 + 1] */
+    static final byte[] LOWER_PAIRS = pairs(LOWER_DIGITS);
+    static final byte[] UPPER_PAIRS = pairs(UPPER_DIGITS);
+
+    /** 文字 -> ニブル (16進数の文字でなければ -1) */
+    static final byte[] NIBBLES = new byte[256];
+
+    /** バイト値 b の2進数8文字を big endian で詰めた long */
+    static final long[] BITS = new long[256];
+
+    static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[LOWER_DIGITS[i]] = (byte) i;
+            NIBBLES[UPPER_DIGITS[i]] = (byte) i;
+        }
+        for (int b = 0; b < 256; b++) {
+            long v = 0;
+            for (int bit = 7; bit >= 0; bit--) {
+                v = (v << 8) | (((b >>> bit) & 1) == 0 ? '0' : '1');
+            }
+            BITS[b] = v;
+        }
+    }
+
+    private static byte[] pairs(final byte[] digits) {
+        final byte[] r = new byte[512];
+        for (int b = 0; b < 256; b++) {
+            r[b * 2] = digits[b >>> 4];
+            r[b * 2 + 1] = digits[b & 0xF];
+        }
+        return r;
+    }
+
+    private static void checkRange(final int length, final int off, final int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + length);
+        }
+    }
+
+    /**
+     * 4バイト(int)を、1ニブルずつ8バイトに広げた16進数の文字列 (big endian の long) に変換する。
+     */
+    private static long swar8(final int x, final long letterOffset) {
+        long v = x & 0xFFFFFFFFL;
+        // [b0 b1 b2 b3] -> [0 0 b0 b1 0 0 b2 b3] -> [0 b0 0 b1 0 b2 0 b3] -> [h0 l0 h1 l1 h2 l2 h3 l3]
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        // 各バイトが 10 以上なら 1 : (n + 6) の bit4 (どのバイトも 0x15 以下のため、隣のバイトに桁上がりしない)
+        final long ge10 = ((v + 0x0606060606060606L) >>> 4) & 0x0101010101010101L;
+        return v + 0x3030303030303030L + ge10 * letterOffset;
+    }
+
+    /**
+     * src[srcOff, srcOff + len) を16進数の文字(ASCII)として dst[dstOff, ...) に書き込む。
+     *
+     * @return 書き込んだバイト数 (len * 2)
+     */
+    public static int encode(final byte[] src, final int srcOff, final int len, final byte[] dst, final int dstOff,
+            final boolean upperCase) {
+        checkRange(src.length, srcOff, len);
+        checkRange(dst.length, dstOff, len * 2);
+        // 'a' - '0' - 10 = 39, 'A' - '0' - 10 = 7
+        final long letterOffset = upperCase ? 7L : 39L;
+        int s = srcOff;
+        int d = dstOff;
+        final int swarEnd = srcOff + (len & ~7);
+        while (s < swarEnd) {
+            final long x = (long) LONG_BE.get(src, s);
+            LONG_BE.set(dst, d, swar8((int) (x >>> 32), letterOffset));
+            LONG_BE.set(dst, d + 8, swar8((int) x, letterOffset));
+            s += 8;
+            d += 16;
+        }
+        final byte[] pairs = upperCase ? UPPER_PAIRS : LOWER_PAIRS;
+        final int end = srcOff + len;
+        for (; s < end; s++, d += 2) {
+            final int i = (src[s] & 0xFF) << 1;
+            dst[d] = pairs[i];
+            dst[d + 1] = pairs[i + 1];
+        }
+        return len * 2;
+    }
+
+    /**
+     * src[srcOff, srcOff + len) を16進数の文字として dst[dstOff, ...) に書き込む。
+     *
+     * @return 書き込んだ文字数 (len * 2)
+     */
+    public static int encode(final byte[] src, final int srcOff, final int len, final char[] dst, final int dstOff,
+            final boolean upperCase) {
+        checkRange(src.length, srcOff, len);
+        checkRange(dst.length, dstOff, len * 2);
+        final byte[] pairs = upperCase ? UPPER_PAIRS : LOWER_PAIRS;
+        for (int s = srcOff, d = dstOff, end = srcOff + len; s < end; s++, d += 2) {
+            final int i = (src[s] & 0xFF) << 1;
+            dst[d] = (char) pairs[i];
+            dst[d + 1] = (char) pairs[i + 1];
+        }
+        return len * 2;
+    }
+
+    /**
+     * src の残りを、dst の空きに収まる分だけ16進数の文字(ASCII)に変換する。(両方の position を進める)
+     *
+     * @return 変換したバイト数
+     */
+    public static int encode(final ByteBuffer src, final ByteBuffer dst, final boolean upperCase) {
+        final int len = Math.min(src.remaining(), dst.remaining() / 2);
+        if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+            encode(src.array(), src.arrayOffset() + src.position(), len, dst.array(),
+                    dst.arrayOffset() + dst.position(), upperCase);
+            src.position(src.position() + len);
+            dst.position(dst.position() + len * 2);
+            return len;
+        }
+        // ダイレクトバッファなど : 変換表を引いて2文字ずつ書き込む。
+        final byte[] pairs = upperCase ? UPPER_PAIRS : LOWER_PAIRS;
+        for (int i = 0; i < len; i++) {
+            final int p = (src.get() & 0xFF) << 1;
+            dst.put(pairs[p]).put(pairs[p + 1]);
+        }
+        return len;
+    }
+
+    private static int decodePair(final int hi, final int lo, final long position) {
+        final int h = hi < 256 ? NIBBLES[hi] : -1;
+        final int l = lo < 256 ? NIBBLES[lo] : -1;
+        if ((h | l) < 0) {
+            throw new IllegalArgumentException("not a hex digit at " + (h < 0 ? position : position + 1));
+        }
+        return (h << 4) | l;
+    }
+
+    private static void checkEven(final int len) {
+        if ((len & 1) != 0) {
+            throw new IllegalArgumentException("hex string length must be even: " + len);
+        }
+    }
+
+    /**
+     * 16進数の文字(ASCII) src[srcOff, srcOff + len) をバイト列として dst[dstOff, ...) に書き込む。(大文字・小文字は問わない)
+     *
+     * @return 書き込んだバイト数 (len / 2)
+     * @throws IllegalArgumentException len が奇数か、16進数の文字以外を含む場合
+     */
+    public static int decode(final byte[] src, final int srcOff, final int len, final byte[] dst, final int dstOff) {
+        checkEven(len);
+        checkRange(src.length, srcOff, len);
+        checkRange(dst.length, dstOff, len / 2);
+        for (int s = srcOff, d = dstOff, end = srcOff + len; s < end; s += 2, d++) {
+            dst[d] = (byte) decodePair(src[s] & 0xFF, src[s + 1] & 0xFF, s - srcOff);
+        }
+        return len / 2;
+    }
+
+    /**
+     * 16進数の文字列 src[srcOff, srcOff + len) をバイト列として dst[dstOff, ...) に書き込む。
+     *
+     * @return 書き込んだバイト数 (len / 2)
+     */
+    public static int decode(final CharSequence src, final int srcOff, final int len, final byte[] dst,
+            final int dstOff) {
+        checkEven(len);
+        checkRange(src.length(), srcOff, len);
+        checkRange(dst.length, dstOff, len / 2);
+        for (int s = srcOff, d = dstOff, end = srcOff + len; s < end; s += 2, d++) {
+            dst[d] = (byte) decodePair(src.charAt(s), src.charAt(s + 1), s - srcOff);
+        }
+        return len / 2;
+    }
+
+    /**
+     * src の残り(16進数の文字)を、dst の空きに収まる分だけバイト列に変換する。(両方の position を進める)
+     *
+     * @return 書き込んだバイト数
+     */
+    public static int decode(final ByteBuffer src, final ByteBuffer dst) {
+        final int len = Math.min(src.remaining() / 2, dst.remaining());
+        for (int i = 0; i < len; i++) {
+            final int hi = src.get() & 0xFF;
+            dst.put((byte) decodePair(hi, src.get() & 0xFF, src.position() - 2));
+        }
+        return len;
+    }
+
+    /**
+     * src[srcOff, srcOff + len) を2進数の文字(ASCII, 1バイトあたり8文字)として dst[dstOff, ...) に書き込む。
+     *
+     * @return 書き込んだバイト数 (len * 8)
+     */
+    public static int encodeBits(final byte[] src, final int srcOff, final int len, final byte[] dst,
+            final int dstOff) {
+        checkRange(src.length, srcOff, len);
+        checkRange(dst.length, dstOff, len * 8);
+        for (int s = srcOff, d = dstOff, end = srcOff + len; s < end; s++, d += 8) {
+            LONG_BE.set(dst, d, BITS[src[s] & 0xFF]);
+        }
+        return len * 8;
+    }
+
+    /**
+     * src[srcOff, srcOff + len) を2進数の文字(1バイトあたり8文字)として dst[dstOff, ...) に書き込む。
+     *
+     * @return 書き込んだ文字数 (len * 8)
+     */
+    public static int encodeBits(final byte[] src, final int srcOff, final int len, final char[] dst,
+            final int dstOff) {
+        checkRange(src.length, srcOff, len);
+        checkRange(dst.length, dstOff, len * 8);
+        for (int s = srcOff, d = dstOff, end = srcOff + len; s < end; s++) {
+            final long bits = BITS[src[s] & 0xFF];
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                dst[d++] = (char) ((bits >>> shift) & 0xFF);
+            }
+        }
+        return len * 8;
+    }
+
+    /**
+     * @return src の16進数の文字列 (先頭の0を省略しない)
+     */
+    public static String toHexString(final byte[] src, final boolean upperCase) {
+        final byte[] dst = new byte[src.length * 2];
+        encode(src, 0, src.length, dst, 0, upperCase);
+        return new String(dst, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return 16進数の文字列をデコードしたバイト列
+     */
+    public static byte[] fromHexString(final CharSequence src) {
+        checkEven(src.length());
+        final byte[] dst = new byte[src.length() / 2];
+        decode(src, 0, src.length(), dst, 0);
+        return dst;
+    }
+
+    /**
+     * src[srcOff, srcOff + len) (最大 DUMP_LINE_BYTES バイト) を xxd 形式の1行として dst[dstOff, ...) に書き込む。
+     *
+     * 例: "00000010: 4865 6c6c 6f2c 2077 6f72 6c64 210a 0001  Hello, world!...\n"
+     * (ASCII の部分は 0x20 - 0x7e 以外を '.' とし、16バイトに満たない行も16進数の部分は空白で埋める)
+     *
+     * @param offset 行の先頭のオフセット
+     * @return 書き込んだバイト数 (最大 DUMP_LINE_LENGTH)
+     */
+    public static int dumpLine(final byte[] src, final int srcOff, final int len, final long offset,
+            final byte[] dst, final int dstOff) {
+        if (len > DUMP_LINE_BYTES) {
+            throw new IllegalArgumentException("len must be <= " + DUMP_LINE_BYTES + ": " + len);
+        }
+        checkRange(src.length, srcOff, len);
+        final int lineLength = 10 + 40 + 1 + len + 1;
+        checkRange(dst.length, dstOff, lineLength);
+        int d = dstOff;
+        // オフセットは32ビットを超えたら桁を増やさずに下位32ビットを表示する。(xxd と同じ)
+        final int o = (int) offset;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            final int i = ((o >>> shift) & 0xFF) << 1;
+            dst[d++] = LOWER_PAIRS[i];
+            dst[d++] = LOWER_PAIRS[i + 1];
+        }
+        dst[d++] = ':';
+        dst[d++] = ' ';
+        for (int i = 0; i < DUMP_LINE_BYTES; i++) {
+            if (i < len) {
+                final int p = (src[srcOff + i] & 0xFF) << 1;
+                dst[d++] = LOWER_PAIRS[p];
+                dst[d++] = LOWER_PAIRS[p + 1];
+            } else {
+                dst[d++] = ' ';
+                dst[d++] = ' ';
+            }
+            if ((i & 1) == 1) {
+                dst[d++] = ' ';
+            }
+        }
+        dst[d++] = ' ';
+        for (int i = 0; i < len; i++) {
+            final byte b = src[srcOff + i];
+            dst[d++] = (b >= 0x20 && b <= 0x7e) ? b : (byte) '.';
+        }
+        dst[d++] = '\n';
+        return lineLength;
+    }
+
+    /**
+     * @return src 全体の xxd 形式のダンプ
+     */
+    public static String dump(final byte[] src) {
+        final int lines = (src.length + DUMP_LINE_BYTES - 1) / DUMP_LINE_BYTES;
+        final byte[] dst = new byte[lines * DUMP_LINE_LENGTH];
+        int d = 0;
+        for (int s = 0; s < src.length; s += DUMP_LINE_BYTES) {
+            d += dumpLine(src, s, Math.min(DUMP_LINE_BYTES, src.length - s), s, dst, d);
+        }
+        return new String(dst, 0, d, StandardCharsets.ISO_8859_1);
+    }
+
+    /** ストリームの変換で使うバッファのサイズ */
+    static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * 書き込まれたバイト列を16進数の文字(ASCII)に変換して、下位のストリームに書き込む。
+     */
+    public static class EncodingOutputStream extends FilterOutputStream {
+        private final boolean upperCase;
+        private final byte[] buffer = new byte[STREAM_BUFFER_SIZE * 2];
+
+        public EncodingOutputStream(final OutputStream out, final boolean upperCase) {
+            super(out);
+            this.upperCase = upperCase;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            final int i = (b & 0xFF) << 1;
+            final byte[] pairs = this.upperCase ? UPPER_PAIRS : LOWER_PAIRS;
+            this.out.write(pairs[i]);
+            this.out.write(pairs[i + 1]);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            checkRange(b.length, off, len);
+            for (int done = 0; done < len;) {
+                final int n = Math.min(STREAM_BUFFER_SIZE, len - done);
+                final int written = encode(b, off + done, n, this.buffer, 0, this.upperCase);
+                this.out.write(this.buffer, 0, written);
+                done += n;
+            }
+        }
+    }
+
+    /**
+     * 下位のストリームから16進数の文字を読み込み、バイト列に変換する。(空白・改行は読み飛ばす)
+     */
+    public static class DecodingInputStream extends FilterInputStream {
+        private final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        private long position = 0;
+
+        public DecodingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        private int nextDigit() throws IOException {
+            while (true) {
+                final int c = this.in.read();
+                if (c < 0) {
+                    return -1;
+                }
+                this.position++;
+                if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                    return c;
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int hi = this.nextDigit();
+            if (hi < 0) {
+                return -1;
+            }
+            final int lo = this.nextDigit();
+            if (lo < 0) {
+                throw new IOException("unexpected end of hex stream at " + this.position);
+            }
+            try {
+                return decodePair(hi, lo, this.position - 2);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("invalid hex stream: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkRange(b.length, off, len);
+            if (len == 0) {
+                return 0;
+            }
+            // 空白を読み飛ばすため、まず2文字ずつまとめて読み込み、数字だけを詰める。
+            final int want = Math.min(this.buffer.length, len * 2);
+            final int n = this.in.read(this.buffer, 0, want);
+            if (n < 0) {
+                return -1;
+            }
+            int digits = 0;
+            for (int i = 0; i < n; i++) {
+                final byte c = this.buffer[i];
+                if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                    this.buffer[digits++] = c;
+                }
+            }
+            final long base = this.position;
+            this.position += n;
+            if ((digits & 1) != 0) {
+                // 奇数個で区切れた場合は、次の1文字を読み足す。
+                final int c = this.nextDigit();
+                if (c < 0) {
+                    throw new IOException("unexpected end of hex stream at " + this.position);
+                }
+                this.buffer[digits++] = (byte) c;
+            }
+            if (digits == 0) {
+                // 空白だけだった場合は、データか終端が来るまで1バイトずつ読む。
+                final int v = this.read();
+                if (v < 0) {
+                    return -1;
+                }
+                b[off] = (byte) v;
+                return 1;
+            }
+            try {
+                return decode(this.buffer, 0, digits, b, off);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("invalid hex stream near " + base + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && this.read() >= 0) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.in.available() / 2;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * 書き込まれたバイト列を xxd 形式でダンプして、下位のストリームに書き込む。
+     * 16バイトに満たない最後の行は close() (または finish()) で書き込む。
+     */
+    public static class DumpOutputStream extends FilterOutputStream {
+        private final byte[] line = new byte[DUMP_LINE_BYTES];
+        private int lineLength = 0;
+        private long offset = 0;
+        private final byte[] buffer = new byte[DUMP_LINE_LENGTH * (STREAM_BUFFER_SIZE / DUMP_LINE_BYTES)];
+
+        /**
+         * @param offset 最初の行のオフセット
+         */
+        public DumpOutputStream(final OutputStream out, final long offset) {
+            super(out);
+            this.offset = offset;
+        }
+
+        public DumpOutputStream(final OutputStream out) {
+            this(out, 0L);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.line[this.lineLength++] = (byte) b;
+            if (this.lineLength == DUMP_LINE_BYTES) {
+                this.flushLine();
+            }
+        }
+
+        private void flushLine() throws IOException {
+            final int n = dumpLine(this.line, 0, this.lineLength, this.offset, this.buffer, 0);
+            this.out.write(this.buffer, 0, n);
+            this.offset += this.lineLength;
+            this.lineLength = 0;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            checkRange(b.length, off, len);
+            int s = off;
+            final int end = off + len;
+            // 途中まで埋まっている行を先に埋める。
+            while (this.lineLength > 0 && s < end) {
+                this.write(b[s++]);
+            }
+            // 以降は1行分ずつ、まとめて変換して書き込む。
+            int d = 0;
+            while (end - s >= DUMP_LINE_BYTES) {
+                d += dumpLine(b, s, DUMP_LINE_BYTES, this.offset, this.buffer, d);
+                this.offset += DUMP_LINE_BYTES;
+                s += DUMP_LINE_BYTES;
+                if (d + DUMP_LINE_LENGTH > this.buffer.length) {
+                    this.out.write(this.buffer, 0, d);
+                    d = 0;
+                }
+            }
+            if (d > 0) {
+                this.out.write(this.buffer, 0, d);
+            }
+            while (s < end) {
+                this.write(b[s++]);
+            }
+        }
+
+        /**
+         * 16バイトに満たない最後の行を書き込む。(以降に書き込んだ内容は次の行から始まる)
+         */
+        public void finish() throws IOException {
+            if (this.lineLength > 0) {
+                this.flushLine();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.finish();
+            super.close();
+        }
+    }
+}
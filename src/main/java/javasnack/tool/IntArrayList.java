@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * int の可変長リスト (ボクシングしない ArrayList)
+ *
+ * ArrayList&lt;Integer&gt; は要素ごとに Integer オブジェクト(16 バイト) + 参照(4 - 8 バイト)を使うが、
+ * こちらは int[] に直接並べるため要素あたり 4 バイト(+ 拡張の余白)で済む。
+ * 拡張の方法は ArrayList と同じ(1.5倍にして全体をコピー)なので、要素数が事前に分かる場合は容量を指定すること。
+ * スレッドセーフではない。
+ */
+public class IntArrayList {
+    public static final int DEFAULT_INITIAL_CAPACITY = 10;
+
+    private int[] elements;
+    private int size;
+
+    public IntArrayList(final int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0");
+        }
+        this.elements = new int[initialCapacity];
+    }
+
+    public IntArrayList() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public void ensureCapacity(final int minCapacity) {
+        if (minCapacity > this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements,
+                    LongArrayList.grownCapacity(this.elements.length, minCapacity));
+        }
+    }
+
+    public void add(final int value) {
+        if (this.size == this.elements.length) {
+            this.ensureCapacity(this.size + 1);
+        }
+        this.elements[this.size++] = value;
+    }
+
+    public int get(final int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + this.size);
+        }
+        return this.elements[index];
+    }
+
+    /**
+     * @return 以前の値
+     */
+    public int set(final int index, final int value) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + this.size);
+        }
+        final int old = this.elements[index];
+        this.elements[index] = value;
+        return old;
+    }
+
+    /**
+     * @return 削除した末尾の値
+     */
+    public int removeLast() {
+        if (this.size == 0) {
+            throw new IndexOutOfBoundsException("empty list");
+        }
+        return this.elements[--this.size];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * 容量を要素数まで縮める。
+     */
+    public void trimToSize() {
+        if (this.size < this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.size);
+        }
+    }
+
+    public void forEach(final IntConsumer consumer) {
+        final int[] es = this.elements;
+        for (int i = 0; i < this.size; i++) {
+            consumer.accept(es[i]);
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(this.elements, this.size);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * int -> オブジェクト のハッシュマップ (オープンアドレス法 + 線形探索)
+ *
+ * HashMap&lt;Integer, V&gt; と異なりキーをボクシングせず、Node も作らずに int[] と Object[] に直接並べる。
+ * (LongLongMap と同じ構造で、値だけオブジェクトにしたもの)
+ *
+ * - キー 0 は空きスロットの印として使うため、別のフィールドで保持する。
+ * - 値に null は使えない。(get() の「見つからない」と区別できないため)
+ * - スレッドセーフではない。
+ */
+public class IntObjectMap<V> {
+    public static final int DEFAULT_INITIAL_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private final float loadFactor;
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    /** キー 0 以外のエントリー数 */
+    private int count;
+    private int threshold;
+    private V zeroKeyValue;
+
+    public IntObjectMap(final int initialCapacity, final float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0");
+        }
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("loadFactor must be in (0, 1)");
+        }
+        this.loadFactor = loadFactor;
+        this.allocate(LongLongMap.capacityFor(initialCapacity, loadFactor));
+    }
+
+    public IntObjectMap(final int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntObjectMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * 連続したキーが隣接したスロットに固まらないよう、ビットを撹拌する。(MurmurHash3 の fmix32)
+     */
+    public static int mix(int k) {
+        k ^= k >>> 16;
+        k *= 0x85ebca6b;
+        k ^= k >>> 13;
+        k *= 0xc2b2ae35;
+        k ^= k >>> 16;
+        return k;
+    }
+
+    private void allocate(final int capacity) {
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.threshold = Math.min(capacity - 1, (int) (capacity * (double) this.loadFactor));
+    }
+
+    /**
+     * @return key のスロット、無ければ key を置くべき空きスロットを (-1 - スロット) で返す。
+     */
+    private int indexOf(final int key) {
+        final int[] ks = this.keys;
+        final int m = this.mask;
+        int i = mix(key) & m;
+        while (true) {
+            final int k = ks[i];
+            if (k == key) {
+                return i;
+            }
+            if (k == 0) {
+                return -1 - i;
+            }
+            i = (i + 1) & m;
+        }
+    }
+
+    /**
+     * @return 値 (無ければ null)
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        if (key == 0) {
+            return this.zeroKeyValue;
+        }
+        final int i = this.indexOf(key);
+        return i < 0 ? null : (V) this.values[i];
+    }
+
+    public boolean containsKey(final int key) {
+        if (key == 0) {
+            return Objects.nonNull(this.zeroKeyValue);
+        }
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * @return 以前の値 (無ければ null)
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final int key, final V value) {
+        Objects.requireNonNull(value, "null value is not allowed.");
+        if (key == 0) {
+            final V old = this.zeroKeyValue;
+            this.zeroKeyValue = value;
+            return old;
+        }
+        final int i = this.indexOf(key);
+        if (i >= 0) {
+            final V old = (V) this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        final int slot = -1 - i;
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.count > this.threshold) {
+            this.rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return 削除した値 (無ければ null)
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final int key) {
+        if (key == 0) {
+            final V old = this.zeroKeyValue;
+            this.zeroKeyValue = null;
+            return old;
+        }
+        final int i = this.indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        final V old = (V) this.values[i];
+        this.shiftBack(i);
+        this.count--;
+        return old;
+    }
+
+    /**
+     * スロット hole を空け、探索が途切れないように後続のエントリーを前に詰める。
+     */
+    private void shiftBack(int hole) {
+        final int[] ks = this.keys;
+        final Object[] vs = this.values;
+        final int m = this.mask;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & m;
+            final int k = ks[i];
+            if (k == 0) {
+                break;
+            }
+            final int home = mix(k) & m;
+            if (((i - home) & m) >= ((i - hole) & m)) {
+                ks[hole] = k;
+                vs[hole] = vs[i];
+                hole = i;
+            }
+        }
+        ks[hole] = 0;
+        // 削除した値への参照を残さない。
+        vs[hole] = null;
+    }
+
+    private void rehash(final int capacity) {
+        if (capacity > LongLongMap.MAX_CAPACITY) {
+            throw new IllegalStateException("too many entries: " + this.count);
+        }
+        final int[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.allocate(capacity);
+        final int[] ks = this.keys;
+        final int m = this.mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            final int k = oldKeys[j];
+            if (k == 0) {
+                continue;
+            }
+            int i = mix(k) & m;
+            while (ks[i] != 0) {
+                i = (i + 1) & m;
+            }
+            ks[i] = k;
+            this.values[i] = oldValues[j];
+        }
+    }
+
+    public int size() {
+        return this.count + (Objects.nonNull(this.zeroKeyValue) ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.count = 0;
+        this.zeroKeyValue = null;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    /**
+     * 全エントリーを(順不同で)列挙する。
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final EntryConsumer<? super V> consumer) {
+        if (Objects.nonNull(this.zeroKeyValue)) {
+            consumer.accept(0, this.zeroKeyValue);
+        }
+        final int[] ks = this.keys;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != 0) {
+                consumer.accept(ks[i], (V) this.values[i]);
+            }
+        }
+    }
+}
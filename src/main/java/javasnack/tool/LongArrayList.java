@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * long の可変長リスト (ボクシングしない ArrayList)
+ *
+ * ArrayList&lt;Long&gt; は要素ごとに Long オブジェクト(16 - 24 バイト) + 参照(4 - 8 バイト)を使うが、
+ * こちらは long[] に直接並べるため要素あたり 8 バイト(+ 拡張の余白)で済む。
+ * 拡張の方法は ArrayList と同じ(1.5倍にして全体をコピー)なので、要素数が事前に分かる場合は容量を指定すること。
+ * (コピーせずに拡張したい場合は ChunkedLongList を使う)
+ * スレッドセーフではない。
+ */
+public class LongArrayList {
+    public static final int DEFAULT_INITIAL_CAPACITY = 10;
+
+    private long[] elements;
+    private int size;
+
+    public LongArrayList(final int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0");
+        }
+        this.elements = new long[initialCapacity];
+    }
+
+    public LongArrayList() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return 現在の容量から 1.5 倍以上、かつ minCapacity 以上の容量
+     */
+    static int grownCapacity(final int current, final int minCapacity) {
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("required capacity overflows int");
+        }
+        final long grown = (long) current + (current >> 1) + 1L;
+        // 配列の長さの上限付近(VM によってはヘッダ分だけ確保できない)は、必要な分だけ確保する。
+        return Math.max(minCapacity, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+    }
+
+    public void ensureCapacity(final int minCapacity) {
+        if (minCapacity > this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, grownCapacity(this.elements.length, minCapacity));
+        }
+    }
+
+    public void add(final long value) {
+        if (this.size == this.elements.length) {
+            this.ensureCapacity(this.size + 1);
+        }
+        this.elements[this.size++] = value;
+    }
+
+    public long get(final int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + this.size);
+        }
+        return this.elements[index];
+    }
+
+    /**
+     * @return 以前の値
+     */
+    public long set(final int index, final long value) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + this.size);
+        }
+        final long old = this.elements[index];
+        this.elements[index] = value;
+        return old;
+    }
+
+    /**
+     * @return 削除した末尾の値
+     */
+    public long removeLast() {
+        if (this.size == 0) {
+            throw new IndexOutOfBoundsException("empty list");
+        }
+        return this.elements[--this.size];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * 容量を要素数まで縮める。
+     */
+    public void trimToSize() {
+        if (this.size < this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.size);
+        }
+    }
+
+    public void forEach(final LongConsumer consumer) {
+        final long[] es = this.elements;
+        for (int i = 0; i < this.size; i++) {
+            consumer.accept(es[i]);
+        }
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(this.elements, this.size);
+    }
+}
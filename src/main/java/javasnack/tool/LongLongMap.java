@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.Arrays;
+
+/**
+ * long -> long のハッシュマップ (オープンアドレス法 + 線形探索)
+ *
+ * HashMap&lt;Long, Long&gt; はエントリーごとに Node と Long x 2 のオブジェクトを持つため、
+ * 大量のエントリー(id -> オフセットなどの索引)を保持するとヒープの使用量と GC の負荷が大きくなる。
+ * こちらはキーと値を long[] に直接並べるため、エントリーあたり約 16 - 32 バイトで済み、GC が辿るオブジェクトも配列2つのみとなる。
+ *
+ * - キー 0 は空きスロットの印として使うため、別のフィールドで保持する。
+ * - 削除時は墓標(tombstone)を残さず、後続のエントリーを前に詰める。(backward shift deletion)
+ * - スレッドセーフではない。
+ */
+public class LongLongMap {
+    public static final int DEFAULT_INITIAL_CAPACITY = 16;
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    /** 配列の長さの上限 (2の冪) */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    /** get() などでキーが見つからなかった場合に返す値 */
+    private final long noEntryValue;
+    private final float loadFactor;
+    private long[] keys;
+    private long[] values;
+    /** keys.length - 1 (keys.length は2の冪) */
+    private int mask;
+    /** キー 0 以外のエントリー数 */
+    private int count;
+    private int threshold;
+    private boolean hasZeroKey;
+    private long zeroKeyValue;
+
+    public LongLongMap(final int initialCapacity, final float loadFactor, final long noEntryValue) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0");
+        }
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("loadFactor must be in (0, 1)");
+        }
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        this.allocate(capacityFor(initialCapacity, loadFactor));
+    }
+
+    public LongLongMap(final int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR, 0L);
+    }
+
+    public LongLongMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return expected 個のエントリーを拡張せずに保持できる配列の長さ (2の冪)
+     */
+    static int capacityFor(final int expected, final float loadFactor) {
+        final long required = Math.max(2L, (long) Math.ceil(expected / (double) loadFactor) + 1L);
+        if (required > MAX_CAPACITY) {
+            throw new IllegalStateException("too many entries: " + expected);
+        }
+        return Integer.highestOneBit((int) required - 1) << 1;
+    }
+
+    /**
+     * 連続したキー(連番の id など)が隣接したスロットに固まらないよう、ビットを撹拌する。(MurmurHash3 の fmix64)
+     */
+    public static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private void allocate(final int capacity) {
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+        this.threshold = Math.min(capacity - 1, (int) (capacity * (double) this.loadFactor));
+    }
+
+    /**
+     * @return key のスロット、無ければ key を置くべき空きスロットを (-1 - スロット) で返す。
+     */
+    private int indexOf(final long key) {
+        final long[] ks = this.keys;
+        final int m = this.mask;
+        int i = (int) mix(key) & m;
+        while (true) {
+            final long k = ks[i];
+            if (k == key) {
+                return i;
+            }
+            if (k == 0L) {
+                return -1 - i;
+            }
+            i = (i + 1) & m;
+        }
+    }
+
+    public long get(final long key) {
+        return this.getOrDefault(key, this.noEntryValue);
+    }
+
+    public long getOrDefault(final long key, final long defaultValue) {
+        if (key == 0L) {
+            return this.hasZeroKey ? this.zeroKeyValue : defaultValue;
+        }
+        final int i = this.indexOf(key);
+        return i < 0 ? defaultValue : this.values[i];
+    }
+
+    public boolean containsKey(final long key) {
+        if (key == 0L) {
+            return this.hasZeroKey;
+        }
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * @return 以前の値 (無ければ noEntryValue)
+     */
+    public long put(final long key, final long value) {
+        if (key == 0L) {
+            final long old = this.hasZeroKey ? this.zeroKeyValue : this.noEntryValue;
+            this.hasZeroKey = true;
+            this.zeroKeyValue = value;
+            return old;
+        }
+        final int i = this.indexOf(key);
+        if (i >= 0) {
+            final long old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        final int slot = -1 - i;
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.count > this.threshold) {
+            this.rehash(this.keys.length << 1);
+        }
+        return this.noEntryValue;
+    }
+
+    /**
+     * @return 削除した値 (無ければ noEntryValue)
+     */
+    public long remove(final long key) {
+        if (key == 0L) {
+            final long old = this.hasZeroKey ? this.zeroKeyValue : this.noEntryValue;
+            this.hasZeroKey = false;
+            return old;
+        }
+        final int i = this.indexOf(key);
+        if (i < 0) {
+            return this.noEntryValue;
+        }
+        final long old = this.values[i];
+        this.shiftBack(i);
+        this.count--;
+        return old;
+    }
+
+    /**
+     * スロット hole を空け、探索が途切れないように後続のエントリーを前に詰める。
+     */
+    private void shiftBack(int hole) {
+        final long[] ks = this.keys;
+        final long[] vs = this.values;
+        final int m = this.mask;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & m;
+            final long k = ks[i];
+            if (k == 0L) {
+                break;
+            }
+            final int home = (int) mix(k) & m;
+            // home から i までの探索範囲に hole が含まれていれば、i のエントリーを hole に移せる。
+            if (((i - home) & m) >= ((i - hole) & m)) {
+                ks[hole] = k;
+                vs[hole] = vs[i];
+                hole = i;
+            }
+        }
+        ks[hole] = 0L;
+        vs[hole] = 0L;
+    }
+
+    private void rehash(final int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("too many entries: " + this.count);
+        }
+        final long[] oldKeys = this.keys;
+        final long[] oldValues = this.values;
+        this.allocate(capacity);
+        final long[] ks = this.keys;
+        final int m = this.mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            final long k = oldKeys[j];
+            if (k == 0L) {
+                continue;
+            }
+            int i = (int) mix(k) & m;
+            while (ks[i] != 0L) {
+                i = (i + 1) & m;
+            }
+            ks[i] = k;
+            this.values[i] = oldValues[j];
+        }
+    }
+
+    public int size() {
+        return this.count + (this.hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0L);
+        Arrays.fill(this.values, 0L);
+        this.count = 0;
+        this.hasZeroKey = false;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    /**
+     * 全エントリーを(順不同で)列挙する。
+     */
+    public void forEach(final EntryConsumer consumer) {
+        if (this.hasZeroKey) {
+            consumer.accept(0L, this.zeroKeyValue);
+        }
+        final long[] ks = this.keys;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != 0L) {
+                consumer.accept(ks[i], this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return キーと値の配列が使っているヒープのバイト数 (配列のヘッダを除く)
+     */
+    public long arrayBytes() {
+        return (long) this.keys.length * Long.BYTES * 2;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 複数の書き込みスレッドと複数の読み込みスレッドの間でメッセージ(バイト列)を受け渡す、ロックを使わないリングバッファ
+ * (Multi Producer / Multi Consumer)
+ *
+ * 固定長のスロットの配列を使う、Dmitry Vyukov の bounded MPMC queue の方式:
+ * - 各スロットはシーケンス番号を持つ。スロット i の初期値は i で、
+ *   書き込み位置 pos のスロットのシーケンスが pos なら書き込め、pos + 1 なら読み込める。
+ * - 書き込み(読み込み)スレッドは書き込み(読み込み)位置を CAS で1つ進めてスロットを確保し、
+ *   内容をコピーした後でスロットのシーケンスを setRelease で更新して相手側に公開する。
+ * - 1回の offer() が1つのメッセージとなり、読み込み側はメッセージ単位で受け取る。(途中で別のメッセージと混ざらない)
+ *
+ * スロット数は2の冪に切り上げ、位置はマスクで求める。書き込み位置と読み込み位置は
+ * SpscByteRingBuffer と同様にクラス階層を使ったパディングで別々のキャッシュラインに置く。
+ * メッセージの内容は事前に確保したスロットにコピーするため、受け渡しでオブジェクトを生成しない。
+ */
+public class MpmcByteRingBuffer extends MpmcByteRingBufferPad2 {
+
+    /**
+     * 読み込んだメッセージを受け取る。(buffer はリングバッファ内部の配列のため、呼び出しから戻った後は参照しないこと)
+     */
+    @FunctionalInterface
+    public interface MessageHandler {
+        void onMessage(byte[] buffer, int off, int len);
+    }
+
+    /**
+     * @param slots スロット数 = 保持できるメッセージの数 (2の冪に切り上げる)
+     * @param maxMessageSize 1つのメッセージの最大バイト数
+     */
+    public MpmcByteRingBuffer(final int slots, final int maxMessageSize) {
+        super(SpscByteRingBuffer.checkedCapacity(slots), checkedMessageSize(slots, maxMessageSize));
+    }
+
+    static int checkedMessageSize(final int slots, final int maxMessageSize) {
+        final long total = (long) SpscByteRingBuffer.checkedCapacity(slots) * maxMessageSize;
+        if (maxMessageSize < 1 || total > SpscByteRingBuffer.MAX_CAPACITY) {
+            throw new IllegalArgumentException("maxMessageSize must be >= 1 and slots * maxMessageSize must be <= "
+                    + SpscByteRingBuffer.MAX_CAPACITY + ": " + maxMessageSize);
+        }
+        return maxMessageSize;
+    }
+
+    /**
+     * @return スロット数
+     */
+    public int capacity() {
+        return this.lengths.length;
+    }
+
+    public int maxMessageSize() {
+        return this.maxMessageSize;
+    }
+
+    /**
+     * @return 書き込み済みで読み込まれていないメッセージの数 (概算)
+     */
+    public int size() {
+        final long h = (long) HEAD.getVolatile(this);
+        final long t = (long) TAIL.getVolatile(this);
+        return (int) Math.max(0L, Math.min(this.lengths.length, t - h));
+    }
+
+    /**
+     * src[off, off + len) を1つのメッセージとして書き込む。
+     *
+     * @return 空いているスロットが無く書き込まなかった場合は false
+     */
+    public boolean offer(final byte[] src, final int off, final int len) {
+        if (off < 0 || len < 0 || off > src.length - len) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", src.length=" + src.length);
+        }
+        if (len > this.maxMessageSize) {
+            throw new IllegalArgumentException("len must be <= maxMessageSize(" + this.maxMessageSize + "): " + len);
+        }
+        long pos = (long) TAIL.getVolatile(this);
+        int index;
+        while (true) {
+            index = (int) (pos & this.mask);
+            final long seq = (long) SEQUENCES.getAcquire(this.sequences, index);
+            final long dif = seq - pos;
+            if (dif == 0) {
+                if (TAIL.compareAndSet(this, pos, pos + 1)) {
+                    break;
+                }
+                pos = (long) TAIL.getVolatile(this);
+            } else if (dif < 0) {
+                // 1周前のメッセージがまだ読み込まれていない = 満杯
+                return false;
+            } else {
+                // 他の書き込みスレッドに先を越された。
+                pos = (long) TAIL.getVolatile(this);
+            }
+        }
+        System.arraycopy(src, off, this.data, index * this.maxMessageSize, len);
+        this.lengths[index] = len;
+        SEQUENCES.setRelease(this.sequences, index, pos + 1);
+        return true;
+    }
+
+    /**
+     * @return 読み込むメッセージのスロットの位置 (空の場合は -1)
+     */
+    private long claimForRead() {
+        long pos = (long) HEAD.getVolatile(this);
+        while (true) {
+            final int index = (int) (pos & this.mask);
+            final long seq = (long) SEQUENCES.getAcquire(this.sequences, index);
+            final long dif = seq - (pos + 1);
+            if (dif == 0) {
+                if (HEAD.compareAndSet(this, pos, pos + 1)) {
+                    return pos;
+                }
+                pos = (long) HEAD.getVolatile(this);
+            } else if (dif < 0) {
+                return -1L;
+            } else {
+                pos = (long) HEAD.getVolatile(this);
+            }
+        }
+    }
+
+    private void release(final long pos) {
+        // 次の周の書き込み位置として公開する。
+        SEQUENCES.setRelease(this.sequences, (int) (pos & this.mask), pos + this.mask + 1);
+    }
+
+    /**
+     * メッセージを1つ dst[off, ...) に読み込む。(dst には maxMessageSize バイト以上の空きが必要)
+     *
+     * @return 読み込んだメッセージのバイト数 (空の場合は -1)
+     */
+    public int poll(final byte[] dst, final int off) {
+        if (off < 0 || off > dst.length - this.maxMessageSize) {
+            throw new IndexOutOfBoundsException("dst must have maxMessageSize(" + this.maxMessageSize
+                    + ") bytes from off=" + off + ", dst.length=" + dst.length);
+        }
+        final long pos = this.claimForRead();
+        if (pos < 0) {
+            return -1;
+        }
+        final int index = (int) (pos & this.mask);
+        final int len = this.lengths[index];
+        System.arraycopy(this.data, index * this.maxMessageSize, dst, off, len);
+        this.release(pos);
+        return len;
+    }
+
+    /**
+     * 最大 limit 個のメッセージを、コピーせずにスロットの内容のまま handler に渡す。
+     *
+     * @return handler に渡したメッセージの数
+     */
+    public int drain(final MessageHandler handler, final int limit) {
+        int count = 0;
+        while (count < limit) {
+            final long pos = this.claimForRead();
+            if (pos < 0) {
+                break;
+            }
+            final int index = (int) (pos & this.mask);
+            try {
+                handler.onMessage(this.data, index * this.maxMessageSize, this.lengths[index]);
+            } finally {
+                // handler が例外をスローしてもスロットは解放し、リングバッファが止まらないようにする。
+                this.release(pos);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    static final VarHandle HEAD;
+    static final VarHandle TAIL;
+    static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(MpmcByteRingBufferConsumerFields.class, "head", long.class);
+            TAIL = lookup.findVarHandle(MpmcByteRingBufferProducerFields.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
+
+/*
+ * パディング用のクラス階層 (SpscByteRingBuffer と同じ構成)
+ */
+
+abstract class MpmcByteRingBufferFields {
+    final byte[] data;
+    final int[] lengths;
+    /** スロットごとのシーケンス番号 (MpmcByteRingBuffer.SEQUENCES 経由で読み書きする) */
+    final long[] sequences;
+    final int maxMessageSize;
+    final long mask;
+
+    MpmcByteRingBufferFields(final int slots, final int maxMessageSize) {
+        this.data = new byte[slots * maxMessageSize];
+        this.lengths = new int[slots];
+        this.sequences = new long[slots];
+        for (int i = 0; i < slots; i++) {
+            this.sequences[i] = i;
+        }
+        this.maxMessageSize = maxMessageSize;
+        this.mask = slots - 1;
+    }
+}
+
+abstract class MpmcByteRingBufferPad0 extends MpmcByteRingBufferFields {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpmcByteRingBufferPad0(final int slots, final int maxMessageSize) {
+        super(slots, maxMessageSize);
+    }
+}
+
+abstract class MpmcByteRingBufferProducerFields extends MpmcByteRingBufferPad0 {
+    /** 次に書き込む位置 (書き込みスレッドが CAS で進める) */
+    volatile long tail;
+
+    MpmcByteRingBufferProducerFields(final int slots, final int maxMessageSize) {
+        super(slots, maxMessageSize);
+    }
+}
+
+abstract class MpmcByteRingBufferPad1 extends MpmcByteRingBufferProducerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+
+    MpmcByteRingBufferPad1(final int slots, final int maxMessageSize) {
+        super(slots, maxMessageSize);
+    }
+}
+
+abstract class MpmcByteRingBufferConsumerFields extends MpmcByteRingBufferPad1 {
+    /** 次に読み込む位置 (読み込みスレッドが CAS で進める) */
+    volatile long head;
+
+    MpmcByteRingBufferConsumerFields(final int slots, final int maxMessageSize) {
+        super(slots, maxMessageSize);
+    }
+}
+
+abstract class MpmcByteRingBufferPad2 extends MpmcByteRingBufferConsumerFields {
+    long p40, p41, p42, p43, p44, p45, p46, p47;
+    long p50, p51, p52, p53, p54, p55, p56, p57;
+
+    MpmcByteRingBufferPad2(final int slots, final int maxMessageSize) {
+        super(slots, maxMessageSize);
+    }
+}
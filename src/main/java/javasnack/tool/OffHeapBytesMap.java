@@ -0,0 +1,381 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * byte[] -> byte[] のハッシュマップで、キー・値・ハッシュテーブルを全てヒープ外(direct buffer)に置くもの
+ *
+ * ヒープに置くのはこのオブジェクトと direct buffer の参照だけなので、何千万件のエントリーを保持しても
+ * GC が辿るオブジェクトは増えず、GC の停止時間にも影響しない。
+ * (代わりに put() / get() のたびにヒープとの間でバイト列をコピーする)
+ *
+ * レイアウト:
+ * - データ領域 : レコード [int キーの長さ][int 値の長さ][キー][値] を追記していく。
+ *   レコードはチャンク(1つの direct buffer)をまたがないように配置する。
+ * - スロット表 : オープンアドレス法 + 線形探索のハッシュテーブルで、1スロット16バイト
+ *   [long レコードのアドレス + 1 (0 = 空き)][int ハッシュ値][int キーの長さ]
+ *   ハッシュ値とキーの長さが一致した場合のみデータ領域のキーと比較する。
+ *   拡張時もハッシュ値だけで再配置できるため、データ領域は読まない。
+ *
+ * 値を異なる長さで上書きした場合や削除した場合、古いレコードの領域はそのまま残る。(garbageBytes() で確認できる)
+ * 領域の詰め直し(compaction)は行わないため、更新や削除が多い用途では作り直すこと。
+ *
+ * direct buffer のメモリは参照が無くなり GC で回収される際に解放されるため、close() 後もすぐには解放されない。
+ * (上限は -XX:MaxDirectMemorySize で指定する)
+ * スレッドセーフではない。
+ */
+public class OffHeapBytesMap implements AutoCloseable {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    /** データ領域のチャンクの大きさのデフォルト値 (1レコードの大きさの上限でもある) */
+    public static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int SLOT_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 8;
+    /** スロット表のチャンクの大きさの上限 (SLOT_BYTES の倍数) */
+    static final int SLOT_CHUNK_SIZE = 16 << 20;
+    static final long MAX_CAPACITY = 1L << 30;
+
+    /**
+     * 同じ大きさ(2の冪)の direct buffer を並べ、long のアドレスで読み書きできるようにしたもの
+     */
+    static class Memory {
+        final int chunkSize;
+        final int shift;
+        final int mask;
+        final List<ByteBuffer> chunks = new ArrayList<>();
+
+        Memory(final int chunkSize) {
+            if (Integer.bitCount(chunkSize) != 1) {
+                throw new IllegalArgumentException("chunk size must be a power of two: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            this.shift = Integer.numberOfTrailingZeros(chunkSize);
+            this.mask = chunkSize - 1;
+        }
+
+        /**
+         * アドレス [0, size) を使えるようにチャンクを追加する。
+         */
+        void ensure(final long size) {
+            while ((long) this.chunks.size() * this.chunkSize < size) {
+                this.chunks.add(ByteBuffer.allocateDirect(this.chunkSize));
+            }
+        }
+
+        long allocated() {
+            return (long) this.chunks.size() * this.chunkSize;
+        }
+
+        ByteBuffer chunk(final long address) {
+            return this.chunks.get((int) (address >>> this.shift));
+        }
+
+        int offset(final long address) {
+            return (int) address & this.mask;
+        }
+
+        long getLong(final long address) {
+            return this.chunk(address).getLong(this.offset(address));
+        }
+
+        int getInt(final long address) {
+            return this.chunk(address).getInt(this.offset(address));
+        }
+
+        void putLong(final long address, final long v) {
+            this.chunk(address).putLong(this.offset(address), v);
+        }
+
+        void putInt(final long address, final int v) {
+            this.chunk(address).putInt(this.offset(address), v);
+        }
+    }
+
+    private final int chunkSize;
+    private Memory slots;
+    private long capacity;
+    private long threshold;
+    private Memory data;
+    /** データ領域の次のレコードのアドレス */
+    private long dataTop;
+    private long garbageBytes;
+    private int count;
+    private boolean closed;
+
+    public OffHeapBytesMap(final int initialCapacity, final int chunkSize) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0");
+        }
+        this.chunkSize = chunkSize;
+        this.data = new Memory(chunkSize);
+        long c = 16;
+        while (c * LOAD_FACTOR < initialCapacity) {
+            c <<= 1;
+        }
+        this.allocateSlots(c);
+    }
+
+    public OffHeapBytesMap(final int initialCapacity) {
+        this(initialCapacity, DEFAULT_CHUNK_SIZE);
+    }
+
+    public OffHeapBytesMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    private void allocateSlots(final long newCapacity) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("too many entries: " + this.count);
+        }
+        final long bytes = newCapacity * SLOT_BYTES;
+        this.slots = new Memory((int) Math.min(SLOT_CHUNK_SIZE, bytes));
+        this.slots.ensure(bytes);
+        this.capacity = newCapacity;
+        this.threshold = (long) (newCapacity * LOAD_FACTOR);
+    }
+
+    static int hash(final byte[] key) {
+        return IntObjectMap.mix(Arrays.hashCode(key));
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("already closed.");
+        }
+    }
+
+    /**
+     * @return key のスロットのアドレス、無ければ key を置くべき空きスロットのアドレスを (-1 - アドレス) で返す。
+     */
+    private long find(final byte[] key, final int h) {
+        final Memory s = this.slots;
+        final long m = this.capacity - 1;
+        long i = h & m;
+        while (true) {
+            final long slot = i * SLOT_BYTES;
+            final long record = s.getLong(slot);
+            if (record == 0L) {
+                return -1L - slot;
+            }
+            if (s.getInt(slot + 8) == h && s.getInt(slot + 12) == key.length
+                    && this.keyEquals(record - 1L, key)) {
+                return slot;
+            }
+            i = (i + 1) & m;
+        }
+    }
+
+    private boolean keyEquals(final long record, final byte[] key) {
+        final ByteBuffer chunk = this.data.chunk(record);
+        final int offset = this.data.offset(record) + RECORD_HEADER_BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (chunk.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 追加したレコードのアドレス
+     */
+    private long append(final byte[] key, final byte[] value) {
+        final long length = (long) RECORD_HEADER_BYTES + key.length + value.length;
+        if (length > this.chunkSize) {
+            throw new IllegalArgumentException("too large entry: " + length + " bytes (chunk size=" + this.chunkSize
+                    + ")");
+        }
+        long address = this.dataTop;
+        if (this.data.offset(address) + length > this.chunkSize) {
+            // チャンクの残りには収まらないため、次のチャンクの先頭に置く。
+            final long next = (address | this.data.mask) + 1L;
+            this.garbageBytes += next - address;
+            address = next;
+        }
+        this.data.ensure(address + length);
+        final ByteBuffer chunk = this.data.chunk(address);
+        final int offset = this.data.offset(address);
+        chunk.putInt(offset, key.length);
+        chunk.putInt(offset + 4, value.length);
+        chunk.put(offset + RECORD_HEADER_BYTES, key);
+        chunk.put(offset + RECORD_HEADER_BYTES + key.length, value);
+        this.dataTop = address + length;
+        return address;
+    }
+
+    private long recordBytes(final long record) {
+        return (long) RECORD_HEADER_BYTES + this.data.getInt(record) + this.data.getInt(record + 4);
+    }
+
+    /**
+     * @return 新しく追加した場合は true, 既存の値を上書きした場合は false
+     */
+    public boolean put(final byte[] key, final byte[] value) {
+        this.ensureOpen();
+        final int h = hash(key);
+        final long slot = this.find(key, h);
+        if (slot >= 0) {
+            final long record = this.slots.getLong(slot) - 1L;
+            if (this.data.getInt(record + 4) == value.length) {
+                // 同じ長さの値であればその場で上書きする。
+                this.data.chunk(record).put(this.data.offset(record) + RECORD_HEADER_BYTES + key.length, value);
+            } else {
+                this.garbageBytes += this.recordBytes(record);
+                this.slots.putLong(slot, this.append(key, value) + 1L);
+            }
+            return false;
+        }
+        final long empty = -1L - slot;
+        this.slots.putLong(empty, this.append(key, value) + 1L);
+        this.slots.putInt(empty + 8, h);
+        this.slots.putInt(empty + 12, key.length);
+        if (++this.count > this.threshold) {
+            this.rehash(this.capacity << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @return 値のコピー (無ければ null)
+     */
+    public byte[] get(final byte[] key) {
+        this.ensureOpen();
+        final long slot = this.find(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        final long record = this.slots.getLong(slot) - 1L;
+        final byte[] value = new byte[this.data.getInt(record + 4)];
+        this.data.chunk(record).get(this.data.offset(record) + RECORD_HEADER_BYTES + key.length, value);
+        return value;
+    }
+
+    public boolean containsKey(final byte[] key) {
+        this.ensureOpen();
+        return this.find(key, hash(key)) >= 0;
+    }
+
+    /**
+     * @return 削除した場合は true
+     */
+    public boolean remove(final byte[] key) {
+        this.ensureOpen();
+        final long slot = this.find(key, hash(key));
+        if (slot < 0) {
+            return false;
+        }
+        this.garbageBytes += this.recordBytes(this.slots.getLong(slot) - 1L);
+        this.shiftBack(slot / SLOT_BYTES);
+        this.count--;
+        return true;
+    }
+
+    /**
+     * スロット hole を空け、探索が途切れないように後続のスロットを前に詰める。(LongLongMap と同じ)
+     */
+    private void shiftBack(long hole) {
+        final Memory s = this.slots;
+        final long m = this.capacity - 1;
+        long i = hole;
+        while (true) {
+            i = (i + 1) & m;
+            final long slot = i * SLOT_BYTES;
+            final long record = s.getLong(slot);
+            if (record == 0L) {
+                break;
+            }
+            final long home = s.getInt(slot + 8) & m;
+            if (((i - home) & m) >= ((i - hole) & m)) {
+                final long dst = hole * SLOT_BYTES;
+                s.putLong(dst, record);
+                s.putInt(dst + 8, s.getInt(slot + 8));
+                s.putInt(dst + 12, s.getInt(slot + 12));
+                hole = i;
+            }
+        }
+        s.putLong(hole * SLOT_BYTES, 0L);
+    }
+
+    private void rehash(final long newCapacity) {
+        final Memory old = this.slots;
+        final long oldCapacity = this.capacity;
+        this.allocateSlots(newCapacity);
+        final Memory s = this.slots;
+        final long m = newCapacity - 1;
+        for (long j = 0; j < oldCapacity; j++) {
+            final long src = j * SLOT_BYTES;
+            final long record = old.getLong(src);
+            if (record == 0L) {
+                continue;
+            }
+            final int h = old.getInt(src + 8);
+            long i = h & m;
+            while (s.getLong(i * SLOT_BYTES) != 0L) {
+                i = (i + 1) & m;
+            }
+            final long dst = i * SLOT_BYTES;
+            s.putLong(dst, record);
+            s.putInt(dst + 8, h);
+            s.putInt(dst + 12, old.getInt(src + 12));
+        }
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * @return 確保したヒープ外のメモリのバイト数 (スロット表 + データ領域)
+     */
+    public long offHeapBytes() {
+        if (this.closed) {
+            return 0L;
+        }
+        return this.slots.allocated() + this.data.allocated();
+    }
+
+    /**
+     * @return データ領域のうち、上書きや削除で使われなくなったバイト数
+     */
+    public long garbageBytes() {
+        return this.garbageBytes;
+    }
+
+    /**
+     * direct buffer への参照を手放す。(メモリは GC で direct buffer が回収される際に解放される)
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.slots.chunks.clear();
+        this.data.chunks.clear();
+        this.count = 0;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+import java.util.stream.IntStream;
+
+/**
+ * {@link RandomGenerator} (JDK17 以降) を使った、テストデータ・ベンチマーク用のランダムなバイト列/文字列の生成
+ *
+ * - {@link #current()} : スレッドごとのインスタンス。共有の乱数生成器から split() したものを各スレッドで使うため、
+ *   {@link java.util.Random} を複数スレッドで共有した場合のような CAS の競合が起きない。
+ * - {@link #seeded(long)} : 同じシードであれば同じ結果となるインスタンス。(スレッド間では共有しないこと)
+ * - {@link #nextBytes(byte[], int, int)} / {@link #nextBytes(ByteBuffer)} : nextLong() 1回で8バイトをまとめて書き込む。
+ * - {@link #nextAscii(byte[], int, int, int, int)} : nextLong() 1回分の64bitを16bitずつ4つに分け、
+ *   範囲 [origin, bound) への変換 (v * 範囲 &gt;&gt;&gt; 16) を2つずつ long の演算でまとめて行う。(SWAR)
+ *   範囲 94 文字の場合、文字ごとの出現確率の偏りは 1/697 程度となる。(テストデータ用途のため許容する)
+ * - {@link #parallelStrings(long, int, int, int)} / {@link #parallelLongs(long, int)} :
+ *   大量のキーを {@link #PARALLEL_CHUNK} 個ずつのチャンクに分け、並列ストリームで生成する。
+ *   各チャンクはシードとチャンク番号から決まる乱数生成器を使うため、
+ *   並列ストリームの Spliterator がどう分割しても(スレッド数が違っても)同じシードであれば同じ結果となる。
+ *
+ * jdk.incubator.vector はコンパイル・実行の両方で --add-modules が必要になるため使わず、
+ * {@link HexCodec} と同様に long の演算で複数バイトをまとめて変換している。
+ */
+public final class RandomData {
+
+    /** 乱数生成器のアルゴリズム (split() できる LXM 系) */
+    public static final String ALGORITHM = "L64X128MixRandom";
+
+    /** 既定の文字の範囲の先頭 : '!' */
+    public static final int PRINTABLE_ORIGIN = 0x21;
+
+    /** 既定の文字の範囲の末尾 (この値を含まない) : '~' の次 */
+    public static final int PRINTABLE_BOUND = 0x7F;
+
+    /** 並列生成のチャンクあたりの要素数 */
+    public static final int PARALLEL_CHUNK = 4096;
+
+    static final long LANES_16 = 0x0000FFFF0000FFFFL;
+
+    static final long LANES_8 = 0x000000FF000000FFL;
+
+    static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final RandomGeneratorFactory<SplittableGenerator> FACTORY = RandomGeneratorFactory.of(ALGORITHM);
+
+    /** スレッドごとのインスタンスの split() 元 (split() は状態を更新するため、ロックしてから呼ぶ) */
+    private static final SplittableGenerator ROOT = FACTORY.create();
+
+    private static final ThreadLocal<RandomData> CURRENT = ThreadLocal.withInitial(() -> {
+        synchronized (ROOT) {
+            return new RandomData(ROOT.split());
+        }
+    });
+
+    private final RandomGenerator generator;
+
+    public RandomData(final RandomGenerator generator) {
+        this.generator = Objects.requireNonNull(generator);
+    }
+
+    /**
+     * @return 呼び出したスレッド専用のインスタンス (他のスレッドに渡さないこと)
+     */
+    public static RandomData current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return 同じシードであれば同じ値を順に返すインスタンス
+     */
+    public static RandomData seeded(final long seed) {
+        return new RandomData(FACTORY.create(seed));
+    }
+
+    public RandomGenerator generator() {
+        return this.generator;
+    }
+
+    public int nextInt(final int bound) {
+        return this.generator.nextInt(bound);
+    }
+
+    public int nextInt(final int origin, final int bound) {
+        return this.generator.nextInt(origin, bound);
+    }
+
+    public long nextLong() {
+        return this.generator.nextLong();
+    }
+
+    /**
+     * @return 長さ size のランダムなバイト列 (size が0以下なら空の配列)
+     */
+    public byte[] nextBytes(final int size) {
+        if (size <= 0) {
+            return new byte[0];
+        }
+        final byte[] r = new byte[size];
+        this.nextBytes(r, 0, size);
+        return r;
+    }
+
+    public void nextBytes(final byte[] dst, final int off, final int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        final int end = off + len;
+        int i = off;
+        for (; i + 8 <= end; i += 8) {
+            LONG_LE.set(dst, i, this.generator.nextLong());
+        }
+        if (i < end) {
+            long r = this.generator.nextLong();
+            for (; i < end; i++, r >>>= 8) {
+                dst[i] = (byte) r;
+            }
+        }
+    }
+
+    /**
+     * dst の position から limit までをランダムなバイト列で埋め、position を limit まで進める。
+     * (direct buffer の場合も putLong() で8バイトずつ書き込む)
+     */
+    public void nextBytes(final ByteBuffer dst) {
+        final int len = dst.remaining();
+        if (dst.hasArray()) {
+            this.nextBytes(dst.array(), dst.arrayOffset() + dst.position(), len);
+            dst.position(dst.limit());
+            return;
+        }
+        // byte order によらず、byte[] に生成した場合と同じバイト列とする。
+        final boolean bigEndian = dst.order() == ByteOrder.BIG_ENDIAN;
+        for (int i = 0; i < len / 8; i++) {
+            final long r = this.generator.nextLong();
+            dst.putLong(bigEndian ? Long.reverseBytes(r) : r);
+        }
+        if (dst.hasRemaining()) {
+            long r = this.generator.nextLong();
+            while (dst.hasRemaining()) {
+                dst.put((byte) r);
+                r >>>= 8;
+            }
+        }
+    }
+
+    /**
+     * dst の [off, off + len) を [origin, bound) の範囲の文字 (US-ASCII) で埋める。
+     *
+     * @param origin 文字の範囲の先頭 (0 以上)
+     * @param bound 文字の範囲の末尾 (この値を含まない, origin より大きく 0x80 以下)
+     */
+    public void nextAscii(final byte[] dst, final int off, final int len, final int origin, final int bound) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        if (origin < 0 || bound > 0x80 || origin >= bound) {
+            throw new IllegalArgumentException("invalid range : [" + origin + ", " + bound + ")");
+        }
+        final int range = bound - origin;
+        final int origins = origin * 0x01010101;
+        final int end = off + len;
+        int i = off;
+        for (; i + 4 <= end; i += 4) {
+            INT_LE.set(dst, i, scale4(this.generator.nextLong(), range) + origins);
+        }
+        if (i < end) {
+            int r = scale4(this.generator.nextLong(), range) + origins;
+            for (; i < end; i++, r >>>= 8) {
+                dst[i] = (byte) r;
+            }
+        }
+    }
+
+    /**
+     * 64bit を16bitずつ4つに分け、それぞれを [0, range) に変換して下位から1バイトずつ詰める。
+     *
+     * 16bit の値 v を32bit のレーンに置けば v * range (range は 0x80 以下) は桁あふれしないため、
+     * 偶数番目と奇数番目の2つずつを1回の掛け算で変換できる。
+     */
+    static int scale4(final long r, final int range) {
+        // 結果の上位16bit (レーン内の bit16-23) が [0, range) の値となる。
+        final long even = (((r & LANES_16) * range) >>> 16) & LANES_8;
+        final long odd = ((((r >>> 16) & LANES_16) * range) >>> 16) & LANES_8;
+        // byte0 : v0, byte1 : v1, byte4 : v2, byte5 : v3
+        final long packed = even | (odd << 8);
+        return (int) (packed & 0xFFFF) | (int) ((packed >>> 16) & 0xFFFF0000L);
+    }
+
+    /**
+     * @return '!' から '~' までの文字からなる、長さ len の文字列
+     */
+    public String nextString(final int len) {
+        return this.nextAsciiString(len, PRINTABLE_ORIGIN, PRINTABLE_BOUND);
+    }
+
+    /**
+     * @return '!' から '~' までの文字からなる、長さ minLen 以上 maxLen 未満の文字列 (maxLen &lt;= minLen なら長さ minLen)
+     */
+    public String nextString(final int minLen, final int maxLen) {
+        return this.nextString(this.nextLength(minLen, maxLen));
+    }
+
+    /**
+     * @return [origin, bound) の範囲の文字からなる、長さ len の文字列
+     */
+    public String nextAsciiString(final int len, final int origin, final int bound) {
+        final byte[] b = new byte[len];
+        this.nextAscii(b, 0, len, origin, bound);
+        // Latin-1 で表せる文字列は byte[] のまま保持される (compact strings) ため、コピー1回で String となる。
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+
+    int nextLength(final int minLen, final int maxLen) {
+        return maxLen <= minLen ? minLen : this.generator.nextInt(minLen, maxLen);
+    }
+
+    /**
+     * @return '!' から '~' までの文字からなる、長さ minLen 以上 maxLen 未満の文字列 count 個 (同じシードであれば同じ結果)
+     */
+    public static String[] parallelStrings(final long seed, final int count, final int minLen, final int maxLen) {
+        if (minLen < 0) {
+            throw new IllegalArgumentException("minLen must be >= 0");
+        }
+        final String[] r = new String[checkedCount(count)];
+        parallelFill(seed, count, (rd, i) -> r[i] = rd.nextString(minLen, maxLen));
+        return r;
+    }
+
+    /**
+     * @return ランダムな long の値 count 個 (同じシードであれば同じ結果)
+     */
+    public static long[] parallelLongs(final long seed, final int count) {
+        final long[] r = new long[checkedCount(count)];
+        parallelFill(seed, count, (rd, i) -> r[i] = rd.nextLong());
+        return r;
+    }
+
+    /**
+     * [0, count) を {@link #PARALLEL_CHUNK} 個ずつのチャンクに分けて並列に action を呼び出す。
+     *
+     * チャンク番号の IntStream の Spliterator が範囲を分割して各スレッドに割り振り、
+     * 各チャンクの中ではシードとチャンク番号から作った乱数生成器で先頭から順に action を呼び出す。
+     * (チャンクの途中では分割されないため、分割のされ方によらず各要素で使われる乱数は同じになる)
+     */
+    public static void parallelFill(final long seed, final int count, final ObjIntConsumer<RandomData> action) {
+        final int chunks = (int) ((checkedCount(count) + (long) PARALLEL_CHUNK - 1) / PARALLEL_CHUNK);
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final RandomData rd = seeded(chunkSeed(seed, chunk));
+            final int start = chunk * PARALLEL_CHUNK;
+            final int end = start + Math.min(count - start, PARALLEL_CHUNK);
+            for (int i = start; i < end; i++) {
+                action.accept(rd, i);
+            }
+        });
+    }
+
+    static int checkedCount(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must be >= 0");
+        }
+        return count;
+    }
+
+    /**
+     * シードとチャンク番号から、チャンクごとのシードを作る。(SplittableRandom と同じ golden gamma と mix64)
+     */
+    static long chunkSeed(final long seed, final int chunk) {
+        long z = seed + (chunk + 1L) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -16,27 +16,26 @@
 
 package javasnack.tool;
 
-import java.util.Random;
-
+/**
+ * '!' から '}' までの文字からなるランダムな文字列
+ *
+ * スレッドごとの {@link RandomData#current()} を使うため、複数スレッドから呼び出しても乱数生成器で競合しない。
+ * (大量に生成する場合は {@link RandomData#parallelStrings(long, int, int, int)} を使う)
+ */
 public class RandomString {
 
     protected static int STD_AL_NUM_MARK_START = 33; // '!'
     protected static int STD_AL_NUM_MARK_END = 126; // '~'
     protected static int STD_AL_NUM_MARK_RANGE = STD_AL_NUM_MARK_END
             - STD_AL_NUM_MARK_START;
-    protected static Random rand = new Random();
 
     public static char getRandomChar() {
-        int r = rand.nextInt(STD_AL_NUM_MARK_RANGE) + STD_AL_NUM_MARK_START;
+        int r = RandomData.current().nextInt(STD_AL_NUM_MARK_RANGE) + STD_AL_NUM_MARK_START;
         return (char) r;
     }
 
     public static String get(int len) {
-        StringBuilder sb = new StringBuilder(len);
-        for (int i = 0; i < len; i++) {
-            sb.append(getRandomChar());
-        }
-        return sb.toString();
+        return RandomData.current().nextAsciiString(len, STD_AL_NUM_MARK_START, STD_AL_NUM_MARK_END);
     }
 
     public static String get(int minLen, int maxLen) {
@@ -50,7 +49,7 @@ public class RandomString {
             return get(minLen);
         }
         int range = maxLen - minLen;
-        int len = rand.nextInt(range) + minLen;
+        int len = RandomData.current().nextInt(range) + minLen;
         return get(len);
     }
 }
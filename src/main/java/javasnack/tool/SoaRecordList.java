@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.Arrays;
+
+/**
+ * 固定のフィールド(long / int / double の列)を持つレコードのリストを、列ごとの配列で保持するもの (struct of arrays)
+ *
+ * レコードをオブジェクトにして ArrayList に入れると(array of structs)、レコードごとに
+ * オブジェクトヘッダ(12 - 16 バイト) + パディング + 参照 が必要になり、GC が辿るオブジェクトも件数分増える。
+ * 列ごとの配列に並べるとこれらが無くなり、1つの列だけを走査する処理(合計や検索)は連続したメモリを読むだけで済む。
+ * 代わりにレコードはオブジェクトとしては取り出せず、(行, 列) を指定して値を読み書きする。
+ *
+ * 例: id(long), price(double), quantity(int) のレコード
+ * <pre>
+ * SoaRecordList trades = new SoaRecordList(1, 1, 1);
+ * int row = trades.add();
+ * trades.setLong(row, 0, id);
+ * trades.setDouble(row, 0, price);
+ * trades.setInt(row, 0, quantity);
+ * </pre>
+ * スレッドセーフではない。
+ */
+public class SoaRecordList {
+    public static final int DEFAULT_INITIAL_CAPACITY = 10;
+
+    private final long[][] longColumns;
+    private final int[][] intColumns;
+    private final double[][] doubleColumns;
+    private int capacity;
+    private int size;
+
+    public SoaRecordList(final int longColumnCount, final int intColumnCount, final int doubleColumnCount,
+            final int initialCapacity) {
+        if (longColumnCount < 0 || intColumnCount < 0 || doubleColumnCount < 0 || initialCapacity < 0) {
+            throw new IllegalArgumentException("column counts and initialCapacity must be >= 0");
+        }
+        this.longColumns = new long[longColumnCount][initialCapacity];
+        this.intColumns = new int[intColumnCount][initialCapacity];
+        this.doubleColumns = new double[doubleColumnCount][initialCapacity];
+        this.capacity = initialCapacity;
+    }
+
+    public SoaRecordList(final int longColumnCount, final int intColumnCount, final int doubleColumnCount) {
+        this(longColumnCount, intColumnCount, doubleColumnCount, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public void ensureCapacity(final int minCapacity) {
+        if (minCapacity <= this.capacity) {
+            return;
+        }
+        final int c = LongArrayList.grownCapacity(this.capacity, minCapacity);
+        for (int i = 0; i < this.longColumns.length; i++) {
+            this.longColumns[i] = Arrays.copyOf(this.longColumns[i], c);
+        }
+        for (int i = 0; i < this.intColumns.length; i++) {
+            this.intColumns[i] = Arrays.copyOf(this.intColumns[i], c);
+        }
+        for (int i = 0; i < this.doubleColumns.length; i++) {
+            this.doubleColumns[i] = Arrays.copyOf(this.doubleColumns[i], c);
+        }
+        this.capacity = c;
+    }
+
+    /**
+     * 全ての列が 0 のレコードを末尾に追加する。
+     *
+     * @return 追加したレコードの行番号
+     */
+    public int add() {
+        if (this.size == this.capacity) {
+            this.ensureCapacity(this.size + 1);
+        }
+        return this.size++;
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("row=" + row + ", size=" + this.size);
+        }
+    }
+
+    public long getLong(final int row, final int column) {
+        this.checkRow(row);
+        return this.longColumns[column][row];
+    }
+
+    public void setLong(final int row, final int column, final long value) {
+        this.checkRow(row);
+        this.longColumns[column][row] = value;
+    }
+
+    public int getInt(final int row, final int column) {
+        this.checkRow(row);
+        return this.intColumns[column][row];
+    }
+
+    public void setInt(final int row, final int column, final int value) {
+        this.checkRow(row);
+        this.intColumns[column][row] = value;
+    }
+
+    public double getDouble(final int row, final int column) {
+        this.checkRow(row);
+        return this.doubleColumns[column][row];
+    }
+
+    public void setDouble(final int row, final int column, final double value) {
+        this.checkRow(row);
+        this.doubleColumns[column][row] = value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * 全レコードを削除する。(配列は再利用のため保持する)
+     */
+    public void clear() {
+        // add() したレコードが 0 になるよう、使っていた範囲を消しておく。
+        for (final long[] column : this.longColumns) {
+            Arrays.fill(column, 0, this.size, 0L);
+        }
+        for (final int[] column : this.intColumns) {
+            Arrays.fill(column, 0, this.size, 0);
+        }
+        for (final double[] column : this.doubleColumns) {
+            Arrays.fill(column, 0, this.size, 0.0);
+        }
+        this.size = 0;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 1つの書き込みスレッドと1つの読み込みスレッドの間でバイト列を受け渡す、ロックを使わないリングバッファ
+ * (Single Producer / Single Consumer)
+ *
+ * - 容量は2の冪に切り上げ、位置は剰余ではなくマスクで求める。位置(シーケンス)は long で単調増加させ、周回しても一意となる。
+ * - 書き込みは空きが足りなければ何も書き込まずに false を返す。(読み込まれていない内容を上書きしない)
+ * - 書き込み位置と読み込み位置は、それぞれ1つのスレッドだけが更新する。
+ *   相手の位置は setRelease / getAcquire で受け渡し、CAS もロックも使わない。
+ * - 相手の位置は自スレッド側にキャッシュし、キャッシュで足りる間は相手のキャッシュラインを読まない。
+ * - 書き込み側と読み込み側のフィールドはクラス階層を使ったパディングで別々のキャッシュラインに置き、
+ *   false sharing を避ける。(JmhSamples22FalseSharing の "CLASS HIERARCHY TRICK")
+ *
+ * オブジェクトを生成せずに、ネットワークの読み込みスレッドからパーサのスレッドにバイト列を渡す用途を想定している。
+ * メッセージの区切りは保持しない。(バイトストリームとして扱う)
+ */
+public class SpscByteRingBuffer extends SpscByteRingBufferPad2 {
+
+    /** 容量の上限 */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * @param capacity 容量(バイト数, 2の冪に切り上げる)
+     */
+    public SpscByteRingBuffer(final int capacity) {
+        super(checkedCapacity(capacity));
+    }
+
+    static int checkedCapacity(final int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be in [1, " + MAX_CAPACITY + "]: " + capacity);
+        }
+        return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    /**
+     * @return 読み込まれていないバイト数 (別のスレッドから呼んだ場合は概算)
+     */
+    public int size() {
+        // 読み込み位置を先に読み、書き込み位置との差が負にならないようにする。
+        final long h = (long) HEAD.getAcquire(this);
+        final long t = (long) TAIL.getAcquire(this);
+        return (int) Math.max(0L, t - h);
+    }
+
+    /**
+     * src[off, off + len) を書き込む。(書き込みスレッドからのみ呼ぶこと)
+     *
+     * @return 空きが足りずに書き込まなかった場合は false
+     */
+    public boolean offer(final byte[] src, final int off, final int len) {
+        if (off < 0 || len < 0 || off > src.length - len) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", src.length=" + src.length);
+        }
+        final int capacity = this.buffer.length;
+        if (len > capacity) {
+            throw new IllegalArgumentException("len must be <= capacity(" + capacity + "): " + len);
+        }
+        final long t = this.tail;
+        if (t + len - this.headCache > capacity) {
+            this.headCache = (long) HEAD.getAcquire(this);
+            if (t + len - this.headCache > capacity) {
+                return false;
+            }
+        }
+        final int index = (int) (t & this.mask);
+        final int first = Math.min(len, capacity - index);
+        System.arraycopy(src, off, this.buffer, index, first);
+        System.arraycopy(src, off + first, this.buffer, 0, len - first);
+        // 内容を書き込んでから位置を公開する。
+        TAIL.setRelease(this, t + len);
+        return true;
+    }
+
+    /**
+     * 最大 len バイトを dst[off, ...) に読み込む。(読み込みスレッドからのみ呼ぶこと)
+     *
+     * @return 読み込んだバイト数 (空の場合は 0)
+     */
+    public int drain(final byte[] dst, final int off, final int len) {
+        if (off < 0 || len < 0 || off > dst.length - len) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", dst.length=" + dst.length);
+        }
+        final long h = this.head;
+        long available = this.tailCache - h;
+        if (available < len) {
+            this.tailCache = (long) TAIL.getAcquire(this);
+            available = this.tailCache - h;
+        }
+        final int n = (int) Math.min(len, available);
+        if (n == 0) {
+            return 0;
+        }
+        final int index = (int) (h & this.mask);
+        final int first = Math.min(n, this.buffer.length - index);
+        System.arraycopy(this.buffer, index, dst, off, first);
+        System.arraycopy(this.buffer, 0, dst, off + first, n - first);
+        // 内容を読み終えてから位置を公開する。(以降は書き込みスレッドが上書きしてよい)
+        HEAD.setRelease(this, h + n);
+        return n;
+    }
+
+    static final VarHandle HEAD;
+    static final VarHandle TAIL;
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(SpscByteRingBufferConsumerFields.class, "head", long.class);
+            TAIL = lookup.findVarHandle(SpscByteRingBufferProducerFields.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
+
+/*
+ * パディング用のクラス階層 : スーパークラスのフィールドが先に配置されることを利用し、
+ * 書き込み側と読み込み側のフィールドの間に 128 バイト(隣接キャッシュラインのプリフェッチも考慮)以上の空きを入れる。
+ */
+
+abstract class SpscByteRingBufferFields {
+    final byte[] buffer;
+    final long mask;
+
+    SpscByteRingBufferFields(final int capacity) {
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+}
+
+abstract class SpscByteRingBufferPad0 extends SpscByteRingBufferFields {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpscByteRingBufferPad0(final int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscByteRingBufferProducerFields extends SpscByteRingBufferPad0 {
+    /** 次に書き込む位置 (書き込みスレッドだけが更新する) */
+    volatile long tail;
+    /** 書き込みスレッドが最後に読んだ読み込み位置 */
+    long headCache;
+
+    SpscByteRingBufferProducerFields(final int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscByteRingBufferPad1 extends SpscByteRingBufferProducerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+
+    SpscByteRingBufferPad1(final int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscByteRingBufferConsumerFields extends SpscByteRingBufferPad1 {
+    /** 次に読み込む位置 (読み込みスレッドだけが更新する) */
+    volatile long head;
+    /** 読み込みスレッドが最後に読んだ書き込み位置 */
+    long tailCache;
+
+    SpscByteRingBufferConsumerFields(final int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscByteRingBufferPad2 extends SpscByteRingBufferConsumerFields {
+    long p40, p41, p42, p43, p44, p45, p46, p47;
+    long p50, p51, p52, p53, p54, p55, p56, p57;
+
+    SpscByteRingBufferPad2(final int capacity) {
+        super(capacity);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ハッシュ値で要素を複数のストライプ(HashSet + ロック)に振り分けた、スレッドセーフなセット
+ *
+ * Collections.synchronizedSet() は全操作が1つのロックを取り合う上に、走査中はセット全体を synchronized で囲む必要があるため、
+ * 走査している間は全ての書き込みが止まる。
+ * こちらは以下のようにして、読み書きが互いに止め合う範囲を小さくしている。
+ * - add() / remove() は要素のストライプの書き込みロックだけを取る。(異なるストライプへの書き込みは並行に進む)
+ * - contains() はストライプの読み込みロックを取る。(同じストライプの読み込み同士は止め合わない)
+ * - 走査はストライプごとのスナップショット(配列)を順に読む。
+ *   スナップショットは書き込み時に捨て、次に走査する際に読み込みロックの範囲で作り直してキャッシュする。
+ *   (書き込みが無ければ、走査はロックもコピーもせずにキャッシュを読むだけになる)
+ *
+ * 走査は ConcurrentHashMap と同様に weakly consistent となる。
+ * ConcurrentModificationException は発生せず、各ストライプは走査がそのストライプに達した時点の内容を返すが、
+ * セット全体としてある時点の内容と一致するとは限らない。size() も同様に並行して変更されている間は概算となる。
+ * null は要素にできない。
+ */
+public class StripedConcurrentHashSet<E> extends AbstractSet<E> {
+
+    static final class Stripe<E> {
+        final StampedLock lock = new StampedLock();
+        final HashSet<E> elements = new HashSet<>();
+        /** 走査用のスナップショット (書き込みで無効化し、null になる) */
+        volatile Object[] snapshot = new Object[0];
+
+        Object[] snapshot() {
+            final Object[] cached = this.snapshot;
+            if (Objects.nonNull(cached)) {
+                return cached;
+            }
+            final long stamp = this.lock.readLock();
+            try {
+                // 読み込みロックの間は書き込みが無いため、複数の走査スレッドが作り直しても同じ内容になる。
+                final Object[] rebuilt = this.elements.toArray();
+                this.snapshot = rebuilt;
+                return rebuilt;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private final Stripe<E>[] stripes;
+    private final int mask;
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * @param stripeCount ストライプの数 (2の冪に切り上げる)
+     */
+    @SuppressWarnings("unchecked")
+    public StripedConcurrentHashSet(final int stripeCount) {
+        if (stripeCount < 1 || stripeCount > (1 << 16)) {
+            throw new IllegalArgumentException("stripeCount must be in [1, 65536]: " + stripeCount);
+        }
+        final int n = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = (Stripe<E>[]) new Stripe<?>[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.mask = n - 1;
+    }
+
+    /**
+     * ストライプの数を CPU コア数の4倍(を2の冪に切り上げた数)とする。
+     */
+    public StripedConcurrentHashSet() {
+        this(Math.min(1 << 16, Runtime.getRuntime().availableProcessors() * 4));
+    }
+
+    private Stripe<E> stripeOf(final Object o) {
+        // HashSet 内でのハッシュ値の下位ビットと偏らないよう、撹拌してから上位ビットで選ぶ。
+        return this.stripes[(IntObjectMap.mix(o.hashCode()) >>> 16) & this.mask];
+    }
+
+    int stripeCount() {
+        return this.stripes.length;
+    }
+
+    @Override
+    public boolean add(final E e) {
+        Objects.requireNonNull(e);
+        final Stripe<E> stripe = this.stripeOf(e);
+        final long stamp = stripe.lock.writeLock();
+        try {
+            if (!stripe.elements.add(e)) {
+                return false;
+            }
+            stripe.snapshot = null;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        this.size.increment();
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        if (Objects.isNull(o)) {
+            return false;
+        }
+        final Stripe<E> stripe = this.stripeOf(o);
+        final long stamp = stripe.lock.writeLock();
+        try {
+            if (!stripe.elements.remove(o)) {
+                return false;
+            }
+            stripe.snapshot = null;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        this.size.decrement();
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (Objects.isNull(o)) {
+            return false;
+        }
+        final Stripe<E> stripe = this.stripeOf(o);
+        final long stamp = stripe.lock.readLock();
+        try {
+            return stripe.elements.contains(o);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0L, Math.min(Integer.MAX_VALUE, this.size.sum()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size.sum() <= 0L;
+    }
+
+    @Override
+    public void clear() {
+        for (final Stripe<E> stripe : this.stripes) {
+            final long stamp = stripe.lock.writeLock();
+            try {
+                final int removed = stripe.elements.size();
+                stripe.elements.clear();
+                stripe.snapshot = null;
+                this.size.add(-removed);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * weakly consistent なイテレータを返す。(remove() はセットから削除する)
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int stripeIndex = 0;
+            private Object[] current = new Object[0];
+            private int position = 0;
+            private E lastReturned = null;
+
+            @Override
+            public boolean hasNext() {
+                while (this.position >= this.current.length) {
+                    if (this.stripeIndex >= stripes.length) {
+                        return false;
+                    }
+                    this.current = stripes[this.stripeIndex++].snapshot();
+                    this.position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.lastReturned = (E) this.current[this.position++];
+                return this.lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (Objects.isNull(this.lastReturned)) {
+                    throw new IllegalStateException();
+                }
+                StripedConcurrentHashSet.this.remove(this.lastReturned);
+                this.lastReturned = null;
+            }
+        };
+    }
+}
@@ -49,45 +49,48 @@ public class UnsignedByte {
         return conv[v];
     }
 
+    /**
+     * @return 0x00 から 0xFF までのランダムな1バイト
+     */
     public static byte random() {
-        final int r = (int) Math.floor(Math.random() * (0xFF - 1));
-        return from(r);
+        return from(RandomData.current().nextInt(0x100));
     }
 
+    /**
+     * @return 長さ size のランダムなバイト列 (size が0以下なら空の配列, {@link RandomData#nextBytes(int)} で8バイトずつ生成する)
+     */
     public static byte[] random(int size) {
-        final byte[] e = new byte[0];
-        if (size <= 0) {
-            return e;
-        }
-        final byte[] r = new byte[size];
-        for (int i = 0; i < size; i++) {
-            r[i] = random();
-        }
-        return r;
+        return RandomData.current().nextBytes(size);
     }
 
+    /**
+     * 各バイトを prefix + 16進数 で連結する。
+     * 互換のため、0x10 未満のバイトは先頭の0を省略して1桁とする。(2桁固定の場合は {@link HexCodec} を使う)
+     */
     public static String hex(String prefix, byte[] src) {
         final int len = src.length;
         if (0 == len) {
             return "";
         }
-
-        StringBuilder sb = new StringBuilder(len * (prefix.length() + 2));
+        final int plen = prefix.length();
+        final char[] dst = new char[len * (plen + 2)];
+        int d = 0;
         for (int i = 0; i < len; i++) {
-            byte b = src[i];
-            sb.append(prefix);
-            sb.append(Integer.toHexString(b & 0xFF));
+            prefix.getChars(0, plen, dst, d);
+            d += plen;
+            final int v = src[i] & 0xFF;
+            if (v >= 0x10) {
+                dst[d++] = (char) HexCodec.LOWER_DIGITS[v >>> 4];
+            }
+            dst[d++] = (char) HexCodec.LOWER_DIGITS[v & 0xF];
         }
-        return sb.toString();
+        return new String(dst, 0, d);
     }
 
     public static String bits(byte[] src) {
-        final StringBuilder sb = new StringBuilder(src.length * Byte.SIZE);
-        for (int i = 0; i < Byte.SIZE * src.length; i++) {
-            sb.append((src[i / Byte.SIZE] << i % Byte.SIZE & 0x80) == 0 ? '0'
-                    : '1');
-        }
-        return sb.toString();
+        final char[] dst = new char[src.length * Byte.SIZE];
+        HexCodec.encodeBits(src, 0, src.length, dst, 0);
+        return new String(dst);
     }
 
     /**
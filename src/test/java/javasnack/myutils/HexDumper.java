@@ -42,6 +42,8 @@ package javasnack.myutils;
 
 import java.util.Objects;
 
+import javasnack.tool.HexCodec;
+
 /**
  * @author sakamoto.gsyc.3s@gmail.com
  */
@@ -74,21 +76,21 @@ public class HexDumper {
         if (srcbytes.length == 0) {
             return "";
         }
-        StringBuilder sb = new StringBuilder(srcbytes.length * 4);
+        // 変換表を引く HexCodec で、結果の長さちょうどの char[] に直接書き込む。
         final int len = srcbytes.length;
-        final int seplimit = len - 1;
+        final int plen = prefix.length();
+        final int slen = separator.length();
+        final char[] dst = new char[len * (plen + 2) + (len - 1) * slen];
+        int d = 0;
         for (int i = 0; i < len; i++) {
-            byte b = srcbytes[i];
-            sb.append(prefix);
-            if (toUpperCase) {
-                sb.append(String.format("%02X", b));
-            } else {
-                sb.append(String.format("%02x", b));
-            }
-            if (i < seplimit) {
-                sb.append(separator);
+            if (i > 0) {
+                separator.getChars(0, slen, dst, d);
+                d += slen;
             }
+            prefix.getChars(0, plen, dst, d);
+            d += plen;
+            d += HexCodec.encode(srcbytes, i, 1, dst, d, toUpperCase);
         }
-        return sb.toString();
+        return new String(dst);
     }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 遅延評価型のDFA (lazy DFA) の共通部分
+ *
+ * DFAの状態の「中身」(型パラメータ S) を初めて出現したときに連番の整数値(DFAの状態番号)に割り当て(intern)、
+ * 遷移結果は状態番号ごとの int[] の行に保存する。
+ * キャッシュする状態数が上限に達したら、キャッシュ全体を破棄して作り直す。
+ *
+ * 状態の中身の遷移や受理可能かの判定はサブクラスで実装する。
+ *
+ * @param <S> DFAの状態の中身 (equals() / hashCode() で同値判定できること)
+ */
+public abstract class AbstractLazyDfa<S> {
+    /** 入力文字の集合が分からないNFAの場合の遷移表の行の幅 : 0x00 - 0xFF の範囲の文字のみ表で遷移をキャッシュする。 */
+    static final int ROW_WIDTH = 0x100;
+
+    /** 遷移表で未計算の遷移先を表すマーカ */
+    private static final int UNKNOWN = -1;
+
+    /** 入力文字 -> 入力文字のクラス番号 (入力文字の集合が分からないNFAの場合は null) */
+    private final AlphabetPartition alphabet;
+    /** 遷移表の行の幅 */
+    private final int rowWidth;
+    private final int maxCachedStates;
+    private final String traceLabel;
+    protected final boolean enableTraceLog;
+
+    /** DFAの状態の中身 -> DFAの状態番号 */
+    private final Map<S, Integer> stateIds = new HashMap<>();
+    /** DFAの状態番号 -> DFAの状態の中身 */
+    private final List<S> stateSets = new ArrayList<>();
+    /** DFAの状態番号 -> 遷移表の行 (入力文字のクラス番号 -> 遷移先のDFAの状態番号) */
+    private final int[][] rows;
+    /** DFAの状態番号 -> 受理可能か */
+    private final boolean[] acceptable;
+    /** DFAの状態番号 -> これ以上どの文字を入力しても受理可能とならないか */
+    private final boolean[] dead;
+
+    private S initialState;
+    private int start;
+    private int countOfFlush = 0;
+    /*
+     * 以下は RegexpMetrics に報告するためのカウンタ。
+     * (このクラスはスレッドごとに使うため、1文字ごとの遷移では競合しない通常のフィールドを加算し、
+     * まとめて reportTo() で報告した分を差し引く)
+     */
+    private long countOfCacheHit = 0;
+    private long countOfCacheMiss = 0;
+    private long countOfCreatedStates = 0;
+    private int countOfReportedFlush = 0;
+
+    protected AbstractLazyDfa(final AlphabetPartition alphabet, final int maxCachedStates,
+            final String traceLabel, final boolean enableTraceLog) {
+        if (maxCachedStates < 2) {
+            // キャッシュ破棄後も「初期状態 + 遷移先の状態」の2つは保持できる必要がある。
+            throw new IllegalArgumentException("maxCachedStates must be >= 2");
+        }
+        this.alphabet = alphabet;
+        this.rowWidth = Objects.isNull(alphabet) ? ROW_WIDTH : alphabet.size();
+        this.maxCachedStates = maxCachedStates;
+        this.traceLabel = traceLabel;
+        this.enableTraceLog = enableTraceLog;
+        this.rows = new int[maxCachedStates][];
+        this.acceptable = new boolean[maxCachedStates];
+        this.dead = new boolean[maxCachedStates];
+    }
+
+    /**
+     * 初期状態を登録する。サブクラスのコンストラクタの最後に呼び出すこと。
+     */
+    protected final void init(final S initialState) {
+        this.initialState = initialState;
+        this.start = this.intern(initialState);
+    }
+
+    /**
+     * @return 状態の中身 s から入力文字 c で遷移した先の状態の中身
+     */
+    protected abstract S step(S s, char c);
+
+    protected abstract boolean isAcceptableStateSet(S s);
+
+    protected abstract boolean isDeadStateSet(S s);
+
+    /**
+     * @return 初期状態のDFAの状態番号 (キャッシュ破棄により変化しうる)
+     */
+    public int start() {
+        return this.start;
+    }
+
+    public boolean isAcceptable(final int state) {
+        return this.acceptable[state];
+    }
+
+    public boolean isDead(final int state) {
+        return this.dead[state];
+    }
+
+    /**
+     * @param state DFAの状態番号
+     * @return DFAの状態の中身
+     */
+    S stateSetOf(final int state) {
+        return this.stateSets.get(state);
+    }
+
+    /**
+     * @return 現在キャッシュしているDFAの状態数
+     */
+    public int getCountOfCachedStates() {
+        return this.stateSets.size();
+    }
+
+    /**
+     * @return キャッシュ上限に達してキャッシュを破棄した回数
+     */
+    public int getCountOfFlush() {
+        return this.countOfFlush;
+    }
+
+    /**
+     * 前回の報告以降の遷移のキャッシュヒット・ミス、生成した状態数、キャッシュ破棄の回数を metrics に加算する。
+     */
+    void reportTo(final RegexpMetrics metrics) {
+        metrics.addLazyDfaCounts(this.countOfCacheHit, this.countOfCacheMiss, this.countOfCreatedStates,
+                this.countOfFlush - this.countOfReportedFlush);
+        this.countOfCacheHit = 0;
+        this.countOfCacheMiss = 0;
+        this.countOfCreatedStates = 0;
+        this.countOfReportedFlush = this.countOfFlush;
+    }
+
+    /**
+     * DFAの状態遷移関数
+     *
+     * 引数の状態番号は、直前の呼び出しの戻り値(またはキャッシュ破棄後の {@link #start()})である必要がある。
+     *
+     * @param state 現在のDFAの状態番号
+     * @param c 入力文字
+     * @return 遷移先のDFAの状態番号
+     */
+    public int next(final int state, final char c) {
+        final int[] row = this.rows[state];
+        final int column = this.columnOf(c);
+        if (column != UNKNOWN) {
+            final int cached = row[column];
+            if (cached != UNKNOWN) {
+                this.countOfCacheHit++;
+                return cached;
+            }
+        }
+        this.countOfCacheMiss++;
+        final S setOfCurrentState = this.stateSets.get(state);
+        final S setOfNextState = this.step(setOfCurrentState, c);
+        final int flushed = this.countOfFlush;
+        final int r = this.intern(setOfNextState);
+        if (enableTraceLog) {
+            System.out.println(traceLabel + " TRANSITION: (" + state + setOfCurrentState + ", '" + c + "') => "
+                    + r + setOfNextState);
+        }
+        if (column != UNKNOWN && flushed == this.countOfFlush) {
+            // キャッシュ破棄が発生した場合は遷移元の行も破棄されているため、保存しない。
+            row[column] = r;
+        }
+        return r;
+    }
+
+    /**
+     * @return 遷移表の列番号 (表で遷移をキャッシュしない文字の場合は UNKNOWN)
+     */
+    private int columnOf(final char c) {
+        if (Objects.isNull(this.alphabet)) {
+            return c < ROW_WIDTH ? c : UNKNOWN;
+        }
+        return this.alphabet.classOf(c);
+    }
+
+    private int intern(final S states) {
+        final Integer id = this.stateIds.get(states);
+        if (id != null) {
+            return id;
+        }
+        if (this.stateSets.size() >= this.maxCachedStates) {
+            this.flush();
+        }
+        final int r = this.stateSets.size();
+        this.stateIds.put(states, r);
+        this.countOfCreatedStates++;
+        this.stateSets.add(states);
+        final int[] row = new int[this.rowWidth];
+        Arrays.fill(row, UNKNOWN);
+        this.rows[r] = row;
+        this.acceptable[r] = this.isAcceptableStateSet(states);
+        this.dead[r] = this.isDeadStateSet(states);
+        return r;
+    }
+
+    private void flush() {
+        if (enableTraceLog) {
+            System.out.println(traceLabel + " CACHE FLUSH: " + this.stateSets.size() + " states");
+        }
+        this.countOfFlush++;
+        this.stateIds.clear();
+        this.stateSets.clear();
+        Arrays.fill(this.rows, null);
+        // 初期状態は常に再登録しておく。
+        this.start = this.intern(this.initialState);
+    }
+}
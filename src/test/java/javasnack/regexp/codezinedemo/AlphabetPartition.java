@@ -0,0 +1,269 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 入力文字 -> 入力文字のクラス番号 の対応表 (alphabet compression)
+ *
+ * DFAの遷移表や遷移のキャッシュを「状態 x 入力文字(65536種類)」で持つと巨大になる。
+ * そこで「どの状態から入力しても、全く同じ遷移先になる文字」を同値なものとして1つのクラスにまとめ、
+ * 遷移表や遷移のキャッシュは「状態 x 入力文字のクラス番号」で持つ。
+ *
+ * 考え方:
+ * 正規表現中に現れる文字 c について c と c + 1 を境界として 0x0000 - 0xFFFF を区間に区切ると、
+ * 同じ区間内の文字はどの状態から入力しても同じ遷移先になる。
+ * (区間 [c, c + 1) は文字 c 1つだけ、それ以外の区間は正規表現中に現れない文字か、文字クラス [a-z] などの範囲の内側の文字だけを含む。
+ * 範囲 [lo, hi] の遷移は両端の文字 lo, hi を正規表現中に現れる文字とすることで、範囲の内側が1つの区間にまとまる)
+ * さらに全ての状態について遷移先が同じになる区間同士を、同じクラスにまとめる。
+ * 正規表現中に現れない文字はどの状態からも遷移先が無いので、全て1つのクラス(クラス番号0)にまとまる。
+ */
+public class AlphabetPartition {
+    /** 正規表現中に現れない文字のクラス番号 (全ての文字が正規表現中に現れる場合は、通常のクラス番号となる) */
+    public static final int OTHERS = 0;
+
+    /** 0x00 - 0xFF の範囲の文字は、二分探索せずに表から直接クラス番号を引く。 */
+    private static final int DIRECT_TABLE_SIZE = 0x100;
+
+    /** 区間の先頭の文字 (昇順, 先頭は常に 0x0000) */
+    private final char[] intervalStarts;
+    /** 区間 -> クラス番号 */
+    private final int[] classOfInterval;
+    /** クラス番号 -> そのクラスに属する文字の1つ */
+    private final char[] representatives;
+    private final int[] directTable = new int[DIRECT_TABLE_SIZE];
+    /** 正規表現中に現れない文字が存在するか (= クラス番号0がそれらの文字のクラスか) */
+    private final boolean othersExists;
+
+    /**
+     * @param intervalStarts 区間の先頭の文字
+     * @param classOfInterval 区間 -> クラス番号 (どの状態からも遷移先が無い区間はクラス番号0とする)
+     */
+    private AlphabetPartition(final char[] intervalStarts, final int[] classOfInterval) {
+        this(intervalStarts, compact(classOfInterval), Arrays.stream(classOfInterval).anyMatch(c -> c == OTHERS));
+    }
+
+    /**
+     * 詰め直し済みのクラス番号から組み立てる。(RegexpSerializer で直列化した対応表を復元する場合にも使う)
+     *
+     * @param intervalStarts 区間の先頭の文字
+     * @param classOfInterval 区間 -> クラス番号 (詰め直し済み)
+     * @param othersExists 正規表現中に現れない文字が存在するか
+     */
+    AlphabetPartition(final char[] intervalStarts, final int[] classOfInterval, final boolean othersExists) {
+        this.intervalStarts = intervalStarts;
+        this.othersExists = othersExists;
+        this.classOfInterval = classOfInterval;
+        this.representatives = representativesOf(intervalStarts, this.classOfInterval);
+        for (int c = 0; c < DIRECT_TABLE_SIZE; c++) {
+            this.directTable[c] = this.search((char) c);
+        }
+    }
+
+    /**
+     * 全ての文字が正規表現中に現れる場合は、クラス番号0のクラスが空になるため詰め直す。
+     */
+    private static int[] compact(final int[] classOfInterval) {
+        return Arrays.stream(classOfInterval).anyMatch(c -> c == OTHERS) ? classOfInterval
+                : Arrays.stream(classOfInterval).map(c -> c - 1).toArray();
+    }
+
+    /**
+     * 遷移先を考慮せず、正規表現中に現れる文字ごとに1つのクラスを割り当てる。
+     *
+     * @param alphabet 正規表現中に現れる文字の集合
+     */
+    public AlphabetPartition(final Set<Character> alphabet) {
+        this(intervalStartsOf(alphabet), alphabet);
+    }
+
+    private AlphabetPartition(final char[] intervalStarts, final Set<Character> alphabet) {
+        this(intervalStarts, classifyByCharacter(intervalStarts, alphabet));
+    }
+
+    /**
+     * NFAの遷移先が全く同じになる文字を同じクラスにまとめる。
+     * NFAの alphabet の各文字 c について c と c + 1 で区切った区間内では、遷移先が同じであるものとして扱う。
+     *
+     * @param nfa 入力文字の集合が分かっているNFA
+     * @return 入力文字 -> 入力文字のクラス番号 の対応表
+     */
+    public static AlphabetPartition of(final Nfa nfa) {
+        if (Objects.isNull(nfa.alphabet)) {
+            throw new IllegalArgumentException("alphabet of NFA is unknown");
+        }
+        final char[] intervalStarts = intervalStartsOf(nfa.alphabet);
+
+        /* 各区間について、区間の先頭の文字での全状態での遷移先の一覧を「署名」として求め、
+         * 署名が同じ区間に同じクラス番号を割り当てる。
+         * 署名は遷移先がある状態のみの (状態, 遷移先) の一覧とし、
+         * 初期状態から到達可能な状態を列挙しながら、全ての区間の署名を同じ状態の順序で組み立てる。
+         * (遷移関数の呼び出しは 状態数 x 区間数 の1回ずつで済む)
+         */
+        final List<List<Object>> signatures = new ArrayList<>();
+        for (int i = 0; i < intervalStarts.length; i++) {
+            signatures.add(new ArrayList<>());
+        }
+        final Set<Integer> done = new HashSet<>();
+        final Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(nfa.start);
+        done.add(nfa.start);
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            for (final int nextState : nfa.transition.apply(state, Optional.empty())) {
+                if (done.add(nextState)) {
+                    queue.add(nextState);
+                }
+            }
+            for (int i = 0; i < intervalStarts.length; i++) {
+                final Set<Integer> next = nfa.transition.apply(state, Optional.of(intervalStarts[i]));
+                if (next.isEmpty()) {
+                    continue;
+                }
+                signatures.get(i).add(state);
+                signatures.get(i).add(next);
+                for (final int nextState : next) {
+                    if (done.add(nextState)) {
+                        queue.add(nextState);
+                    }
+                }
+            }
+        }
+
+        // 全状態で遷移先が無い空の署名(= 正規表現中に現れない文字)には、クラス番号0を割り当てておく。
+        final Map<List<Object>, Integer> classOfSignature = new HashMap<>();
+        classOfSignature.put(List.of(), OTHERS);
+        final int[] classOfInterval = new int[intervalStarts.length];
+        for (int i = 0; i < intervalStarts.length; i++) {
+            final List<Object> signature = signatures.get(i);
+            Integer classId = classOfSignature.get(signature);
+            if (classId == null) {
+                classId = classOfSignature.size();
+                classOfSignature.put(signature, classId);
+            }
+            classOfInterval[i] = classId;
+        }
+        return new AlphabetPartition(intervalStarts, classOfInterval);
+    }
+
+    private static char[] intervalStartsOf(final Set<Character> alphabet) {
+        final TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        for (final char c : alphabet) {
+            boundaries.add((int) c);
+            if (c < Character.MAX_VALUE) {
+                boundaries.add(c + 1);
+            }
+        }
+        final char[] r = new char[boundaries.size()];
+        int i = 0;
+        for (final int b : boundaries) {
+            r[i++] = (char) b;
+        }
+        return r;
+    }
+
+    private static int[] classifyByCharacter(final char[] intervalStarts, final Set<Character> alphabet) {
+        final int[] r = new int[intervalStarts.length];
+        int classId = OTHERS;
+        for (int i = 0; i < intervalStarts.length; i++) {
+            r[i] = alphabet.contains(intervalStarts[i]) ? ++classId : OTHERS;
+        }
+        return r;
+    }
+
+    private static char[] representativesOf(final char[] intervalStarts, final int[] classOfInterval) {
+        final int classCount = Arrays.stream(classOfInterval).max().getAsInt() + 1;
+        final char[] r = new char[classCount];
+        final boolean[] found = new boolean[classCount];
+        for (int i = 0; i < intervalStarts.length; i++) {
+            if (!found[classOfInterval[i]]) {
+                found[classOfInterval[i]] = true;
+                r[classOfInterval[i]] = intervalStarts[i];
+            }
+        }
+        return r;
+    }
+
+    private int search(final char c) {
+        int idx = Arrays.binarySearch(this.intervalStarts, c);
+        if (idx < 0) {
+            // 見つからない場合は挿入位置の1つ前の区間に属する。
+            idx = -idx - 2;
+        }
+        return this.classOfInterval[idx];
+    }
+
+    char[] intervalStarts() {
+        return this.intervalStarts;
+    }
+
+    int[] classOfInterval() {
+        return this.classOfInterval;
+    }
+
+    boolean othersExists() {
+        return this.othersExists;
+    }
+
+    /**
+     * @return クラス数
+     */
+    public int size() {
+        return this.representatives.length;
+    }
+
+    public int classOf(final char c) {
+        return c < DIRECT_TABLE_SIZE ? this.directTable[c] : this.search(c);
+    }
+
+    /**
+     * @param classId クラス番号
+     * @return そのクラスに属する文字の1つ (同じクラスの文字はどれを入力しても同じ遷移となるため、遷移の計算に使う)
+     */
+    public char representativeOf(final int classId) {
+        return this.representatives[classId];
+    }
+
+    /**
+     * @param c 入力文字
+     * @return 入力文字が属するクラスの代表となる文字
+     */
+    public char canonicalize(final char c) {
+        return this.representatives[this.classOf(c)];
+    }
+
+    /**
+     * @param c 入力文字
+     * @return どの状態から入力しても遷移先が無い(= 正規表現中に現れない)文字か
+     */
+    public boolean hasNoTransition(final char c) {
+        return this.othersExists && this.classOf(c) == OTHERS;
+    }
+}
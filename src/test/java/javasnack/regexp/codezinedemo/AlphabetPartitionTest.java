@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class AlphabetPartitionTest {
+    @Test
+    public void testAlphabetPartition() {
+        final AlphabetPartition p = new AlphabetPartition(Set.of('b', 'a', 'あ'));
+        assertThat(p.size()).isEqualTo(4);
+        // 昇順にクラス番号が割り当てられる。
+        assertThat(p.classOf('a')).isEqualTo(1);
+        assertThat(p.classOf('b')).isEqualTo(2);
+        assertThat(p.classOf('あ')).isEqualTo(3);
+        // 正規表現中に現れない文字は全て同じクラス
+        assertThat(p.classOf('\0')).isEqualTo(AlphabetPartition.OTHERS);
+        assertThat(p.classOf('c')).isEqualTo(AlphabetPartition.OTHERS);
+        assertThat(p.classOf('い')).isEqualTo(AlphabetPartition.OTHERS);
+
+        assertThat(p.representativeOf(1)).isEqualTo('a');
+        assertThat(p.representativeOf(2)).isEqualTo('b');
+        assertThat(p.representativeOf(3)).isEqualTo('あ');
+        assertThat(p.classOf(p.representativeOf(AlphabetPartition.OTHERS))).isEqualTo(AlphabetPartition.OTHERS);
+    }
+
+    @Test
+    public void testAlphabetPartitionOfNfa() {
+        final Nfa nfa0 = new Parser(new Lexer("(ab|c)*")).expression();
+        assertThat(nfa0.alphabet).isEqualTo(Set.of('a', 'b', 'c'));
+        assertThat(AlphabetPartition.of(nfa0).size()).isEqualTo(4);
+
+        final Nfa nfa1 = Nfa.of((state, c) -> Collections.emptySet(), 0, Set.of(0));
+        assertThat(nfa1.alphabet).isNull();
+        assertThrows(IllegalArgumentException.class, () -> {
+            AlphabetPartition.of(nfa1);
+        });
+        assertThat(nfa1.transition.apply(0, Optional.empty())).isEmpty();
+    }
+
+    @Test
+    public void testEquivalentCharactersAreMerged() {
+        // 'x' と 'y' はどの状態から入力しても同じ遷移先となるため、同じクラスにまとまる。
+        final NfaStateTransitFunction f0 = (state, c) -> {
+            if (state == 0 && c.isPresent() && (c.get() == 'x' || c.get() == 'y')) {
+                return Set.of(1);
+            }
+            if (state == 1 && c.isPresent() && c.get() == 'z') {
+                return Set.of(2);
+            }
+            return Collections.emptySet();
+        };
+        final Nfa nfa0 = Nfa.of(f0, 0, Set.of(2), false, Set.of('x', 'y', 'z'));
+        final AlphabetPartition p = AlphabetPartition.of(nfa0);
+        assertThat(p.size()).isEqualTo(3);
+        assertThat(p.classOf('x')).isEqualTo(p.classOf('y'));
+        assertThat(p.classOf('x')).isNotEqualTo(p.classOf('z'));
+        assertThat(p.classOf('a')).isEqualTo(AlphabetPartition.OTHERS);
+        assertThat(p.classOf('{')).isEqualTo(AlphabetPartition.OTHERS);
+        assertThat(p.canonicalize('y')).isEqualTo(p.canonicalize('x'));
+
+        assertThat(p.hasNoTransition('a')).isTrue();
+        assertThat(p.hasNoTransition('あ')).isTrue();
+        assertThat(p.hasNoTransition('x')).isFalse();
+        assertThat(p.hasNoTransition('z')).isFalse();
+    }
+
+    @Test
+    public void testWithoutOthers() {
+        // 全ての文字が正規表現中に現れる場合は、クラス番号0も通常のクラスとして使う。
+        final Set<Character> all = new HashSet<>();
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            all.add((char) c);
+        }
+        final AlphabetPartition p = new AlphabetPartition(all);
+        assertThat(p.size()).isEqualTo(0x10000);
+        assertThat(p.classOf('\0')).isEqualTo(0);
+        assertThat(p.classOf('a')).isEqualTo('a');
+        assertThat(p.classOf('\uffff')).isEqualTo(0xffff);
+        assertThat(p.hasNoTransition('あ')).isFalse();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * AmbiguityAnalyzer で求めた、NFAの曖昧さ(同じ入力文字列を読む経路の数)の程度
+ *
+ * バックトラック方式のランタイムは、マッチしない場合にこれらの経路を全て辿り直す可能性があるため、
+ * 曖昧さの程度がそのまま最悪の計算時間の目安になる。(NfaBackTrackRuntime のコメントの EDA, IDA を参照)
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public class Ambiguity implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        /** 経路の数は入力文字列の長さによらず有限 */
+        FINITE,
+        /** IDA : Infinite Degree of Ambiguity, 経路の数が入力文字列の長さの多項式で増える。(例: a*a*) */
+        POLYNOMIAL,
+        /** EDA : Exponential Degree of Ambiguity, 経路の数が入力文字列の長さの指数で増える。(例: (a|a)*, (a*)*) */
+        EXPONENTIAL,
+        /** NFAが大きく、解析の上限を超えたため判定できなかった。 */
+        UNKNOWN
+    }
+
+    public static final Ambiguity FINITE = Ambiguity.of(Kind.FINITE, 0);
+    public static final Ambiguity EXPONENTIAL = Ambiguity.of(Kind.EXPONENTIAL, 0);
+    public static final Ambiguity UNKNOWN = Ambiguity.of(Kind.UNKNOWN, 0);
+
+    public final Kind kind;
+    /**
+     * POLYNOMIAL の場合の次数 (経路の数が O(N^degree) で増える。それ以外は 0)
+     * 例: a*a* は 1, a*a*a*a* は 3
+     */
+    public final int degree;
+
+    /**
+     * @return バックトラック方式のランタイムで、入力文字列の長さに対して線形時間を超えるおそれがあるか
+     *         (判定できなかった場合も安全側に倒して true とする)
+     */
+    public boolean isReDoSProne() {
+        return this.kind != Kind.FINITE;
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * NFAの曖昧さを静的に解析し、バックトラック方式のランタイムで指数時間・多項式時間がかかるおそれ(ReDoS)を判定する。
+ *
+ * 参考: README.md の [15] `Static Analysis of Regular Expressions` (Weideman, 2017)
+ *
+ * 1. 空文字(ε)の遷移を除去したNFAを組み立てる。
+ *    状態は「初期状態 + 入力文字で遷移した先」とし、p から入力文字 c で q に遷移する経路が
+ *    (空文字(ε)の遷移の辿り方の違いにより) 何通りあるかも数えておく。(2通り以上は 2 に丸める)
+ * 2. EDA : ある状態 q から q に戻る、同じ文字列を読む異なる経路が2つあれば、経路の数は指数で増える。
+ *    -> 同じ強連結成分の中の遷移で経路が2通り以上あるか、
+ *       NFA同士の積 (状態の組) の強連結成分に (p, p) と (q, r) (q != r) が両方含まれていれば EDA となる。
+ * 3. IDA : 異なる状態 p, q と文字列 w について p -w-> p, p -w-> q, q -w-> q であれば、経路の数は多項式で増える。
+ *    -> NFA 3つの積で (p, p, q) から (p, q, q) に到達できれば IDA となる。
+ *       この関係で繋がる強連結成分の連なりの長さが、多項式の次数となる。
+ *
+ * 状態の組の数はNFAの状態数の2乗・3乗で増えるため、辿った組の数が上限を超えたら UNKNOWN とする。
+ */
+public class AmbiguityAnalyzer {
+    /** 解析で辿る状態の組の数のデフォルトの上限 */
+    public static final int DEFAULT_MAX_STEPS = 1_000_000;
+
+    /** 解析の上限を超えた場合に、解析を打ち切るための例外 */
+    private static class LimitExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        LimitExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final int classCount;
+    /** 空文字(ε)の遷移を除去した後の状態数 */
+    private final int stateCount;
+    /** [状態番号 * classCount + 入力文字のクラス番号] -> 遷移先の状態番号の一覧 (遷移先が無い場合は null) */
+    private final int[][] next;
+    /** next と同じ並びで、その遷移の経路の数 (2 以上は 2) */
+    private final int[][] multiplicity;
+    /** 状態番号 -> 強連結成分の番号 (番号の大きい成分から小さい成分へのみ遷移する) */
+    private final int[] component;
+    /** 強連結成分の番号 -> 成分に含まれる状態番号の一覧 */
+    private final int[][] members;
+    /** 強連結成分の番号 -> 成分の中で循環するか (状態が2つ以上か、自分自身への遷移がある) */
+    private final boolean[] cyclic;
+    private final int maxSteps;
+    private int steps = 0;
+
+    private AmbiguityAnalyzer(final NfaTable nfa, final int maxSteps) {
+        this.maxSteps = maxSteps;
+        this.classCount = nfa.classCount;
+        final int n = nfa.stateCount;
+
+        // ε除去後の状態 : 初期状態(0) + 入力文字で遷移した先
+        final int[] idOf = new int[n];
+        Arrays.fill(idOf, -1);
+        final List<Integer> originals = new ArrayList<>();
+        idOf[0] = 0;
+        originals.add(0);
+        for (final int[] targets : nfa.targets) {
+            if (targets == null) {
+                continue;
+            }
+            for (final int q : targets) {
+                if (idOf[q] < 0) {
+                    idOf[q] = originals.size();
+                    originals.add(q);
+                }
+            }
+        }
+        this.stateCount = originals.size();
+
+        final int[] epsilonComponent = stronglyConnectedComponents(nfa.epsilons);
+        final int[][] epsilonMembers = membersOf(epsilonComponent);
+        final boolean[] epsilonCyclic = cyclicOf(nfa.epsilons, epsilonComponent, epsilonMembers);
+
+        this.next = new int[this.stateCount * this.classCount][];
+        this.multiplicity = new int[this.stateCount * this.classCount][];
+        // paths[r] : p から空文字(ε)で r に至る経路の数, counts[q] : p から入力文字で q に至る経路の数
+        final int[] paths = new int[n];
+        final int[] counts = new int[n];
+        final int[] touched = new int[n];
+        for (int i = 0; i < this.stateCount; i++) {
+            final int p = originals.get(i);
+            Arrays.fill(paths, 0);
+            paths[p] = 1;
+            // 空文字(ε)の遷移の強連結成分を、遷移の向きに沿った順で辿る。(循環を通る経路は無数にあるため 2 とする)
+            for (int k = epsilonComponent[p]; k >= 0; k--) {
+                this.consume(epsilonMembers[k].length);
+                if (epsilonCyclic[k] && Arrays.stream(epsilonMembers[k]).anyMatch(x -> paths[x] > 0)) {
+                    for (final int x : epsilonMembers[k]) {
+                        paths[x] = 2;
+                    }
+                }
+                for (final int x : epsilonMembers[k]) {
+                    if (paths[x] == 0) {
+                        continue;
+                    }
+                    for (final int y : nfa.epsilons[x]) {
+                        if (epsilonComponent[y] != k) {
+                            paths[y] = Math.min(2, paths[y] + paths[x]);
+                        }
+                    }
+                }
+            }
+            for (int c = 0; c < this.classCount; c++) {
+                int touchedCount = 0;
+                for (int r = 0; r < n; r++) {
+                    final int[] targets = nfa.targets[r * this.classCount + c];
+                    if (paths[r] == 0 || targets == null) {
+                        continue;
+                    }
+                    for (final int q : targets) {
+                        if (counts[q] == 0) {
+                            touched[touchedCount++] = q;
+                        }
+                        counts[q] = Math.min(2, counts[q] + paths[r]);
+                    }
+                }
+                this.consume(n);
+                if (touchedCount == 0) {
+                    continue;
+                }
+                final int[] nexts = new int[touchedCount];
+                final int[] multiplicities = new int[touchedCount];
+                for (int t = 0; t < touchedCount; t++) {
+                    nexts[t] = idOf[touched[t]];
+                    multiplicities[t] = counts[touched[t]];
+                    counts[touched[t]] = 0;
+                }
+                this.next[i * this.classCount + c] = nexts;
+                this.multiplicity[i * this.classCount + c] = multiplicities;
+            }
+        }
+
+        final int[][] successors = new int[this.stateCount][];
+        for (int i = 0; i < this.stateCount; i++) {
+            final Set<Integer> s = new HashSet<>();
+            for (int c = 0; c < this.classCount; c++) {
+                final int[] nexts = this.next[i * this.classCount + c];
+                if (nexts != null) {
+                    for (final int q : nexts) {
+                        s.add(q);
+                    }
+                }
+            }
+            successors[i] = s.stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.component = stronglyConnectedComponents(successors);
+        this.members = membersOf(this.component);
+        this.cyclic = cyclicOf(successors, this.component, this.members);
+    }
+
+    /**
+     * @param nfa 表形式のNFA
+     * @param maxSteps 解析で辿る状態の組の数の上限
+     * @return NFAの曖昧さ (上限を超えた場合は UNKNOWN)
+     */
+    public static Ambiguity analyze(final NfaTable nfa, final int maxSteps) {
+        try {
+            return new AmbiguityAnalyzer(nfa, maxSteps).analyze();
+        } catch (LimitExceeded e) {
+            return Ambiguity.UNKNOWN;
+        }
+    }
+
+    public static Ambiguity analyze(final NfaTable nfa) {
+        return analyze(nfa, DEFAULT_MAX_STEPS);
+    }
+
+    /**
+     * @param nfa NFA (入力文字の集合が分かっている必要がある)
+     */
+    public static Ambiguity analyze(final Nfa nfa) {
+        return analyze(NfaTable.from(nfa));
+    }
+
+    private Ambiguity analyze() {
+        if (this.hasParallelTransitionInCycle()) {
+            return Ambiguity.EXPONENTIAL;
+        }
+        for (int k = 0; k < this.members.length; k++) {
+            if (this.cyclic[k] && this.hasAmbiguousCycle(k)) {
+                return Ambiguity.EXPONENTIAL;
+            }
+        }
+        final int degree = this.polynomialDegree();
+        return degree > 0 ? Ambiguity.of(Ambiguity.Kind.POLYNOMIAL, degree) : Ambiguity.FINITE;
+    }
+
+    private void consume(final int count) {
+        this.steps += count;
+        if (this.steps > this.maxSteps || this.steps < 0) {
+            throw new LimitExceeded();
+        }
+    }
+
+    /**
+     * @return 同じ強連結成分の中の遷移で、経路が2通り以上あるものがあるか
+     */
+    private boolean hasParallelTransitionInCycle() {
+        for (int i = 0; i < this.stateCount; i++) {
+            for (int c = 0; c < this.classCount; c++) {
+                final int[] nexts = this.next[i * this.classCount + c];
+                if (nexts == null) {
+                    continue;
+                }
+                for (int t = 0; t < nexts.length; t++) {
+                    if (this.multiplicity[i * this.classCount + c][t] >= 2
+                            && this.component[nexts[t]] == this.component[i]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param k 強連結成分の番号
+     * @return 成分の中の状態の組 (NFA同士の積) の強連結成分に、(p, p) と (q, r) (q != r) が両方含まれるものがあるか
+     */
+    private boolean hasAmbiguousCycle(final int k) {
+        final int[] ms = this.members[k];
+        final int s = ms.length;
+        this.consume(s * s);
+        final int[] local = new int[this.stateCount];
+        for (int i = 0; i < s; i++) {
+            local[ms[i]] = i;
+        }
+        // 状態の組 (a, b) を a * s + b の番号で表す。
+        final int[][] successors = new int[s * s][];
+        int[] buf = new int[16];
+        for (int a = 0; a < s; a++) {
+            for (int b = 0; b < s; b++) {
+                int len = 0;
+                for (int c = 0; c < this.classCount; c++) {
+                    final int[] na = this.next[ms[a] * this.classCount + c];
+                    final int[] nb = this.next[ms[b] * this.classCount + c];
+                    if (na == null || nb == null) {
+                        continue;
+                    }
+                    for (final int x : na) {
+                        if (this.component[x] != k) {
+                            continue;
+                        }
+                        for (final int y : nb) {
+                            if (this.component[y] != k) {
+                                continue;
+                            }
+                            if (len == buf.length) {
+                                buf = Arrays.copyOf(buf, len * 2);
+                            }
+                            buf[len++] = local[x] * s + local[y];
+                        }
+                    }
+                }
+                this.consume(len);
+                successors[a * s + b] = Arrays.copyOf(buf, len);
+            }
+        }
+        final int[] pairComponent = stronglyConnectedComponents(successors);
+        final int pairComponentCount = Arrays.stream(pairComponent).max().orElse(-1) + 1;
+        final boolean[] hasDiagonal = new boolean[pairComponentCount];
+        final boolean[] hasOffDiagonal = new boolean[pairComponentCount];
+        for (int a = 0; a < s; a++) {
+            for (int b = 0; b < s; b++) {
+                final int pc = pairComponent[a * s + b];
+                if (a == b) {
+                    hasDiagonal[pc] = true;
+                } else {
+                    hasOffDiagonal[pc] = true;
+                }
+                if (hasDiagonal[pc] && hasOffDiagonal[pc]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return IDA の関係で繋がる、循環する強連結成分の連なりの最大の長さ (IDA が無ければ 0)
+     */
+    private int polynomialDegree() {
+        final int componentCount = this.members.length;
+        // reaches[k] : 強連結成分 k から到達できる強連結成分 (番号の小さい成分から順に求める)
+        final BitSet[] reaches = new BitSet[componentCount];
+        for (int k = 0; k < componentCount; k++) {
+            reaches[k] = new BitSet(componentCount);
+            reaches[k].set(k);
+            for (final int x : this.members[k]) {
+                for (int c = 0; c < this.classCount; c++) {
+                    final int[] nexts = this.next[x * this.classCount + c];
+                    if (nexts == null) {
+                        continue;
+                    }
+                    for (final int y : nexts) {
+                        if (this.component[y] != k) {
+                            reaches[k].or(reaches[this.component[y]]);
+                        }
+                    }
+                }
+            }
+            this.consume(componentCount / 64 + 1);
+        }
+        final int[] degrees = new int[componentCount];
+        int max = 0;
+        for (int a = 0; a < componentCount; a++) {
+            if (!this.cyclic[a]) {
+                continue;
+            }
+            for (int b = 0; b < a; b++) {
+                if (!this.cyclic[b] || !reaches[a].get(b) || degrees[b] + 1 <= degrees[a]) {
+                    continue;
+                }
+                if (this.hasPolynomialAmbiguity(a, b, reaches)) {
+                    degrees[a] = degrees[b] + 1;
+                }
+            }
+            max = Math.max(max, degrees[a]);
+        }
+        return max;
+    }
+
+    /**
+     * @return 強連結成分 a の状態 p と b の状態 q で、NFA 3つの積で (p, p, q) から (p, q, q) に到達できるものがあるか
+     */
+    private boolean hasPolynomialAmbiguity(final int a, final int b, final BitSet[] reaches) {
+        final long n = this.stateCount;
+        for (final int p : this.members[a]) {
+            for (final int q : this.members[b]) {
+                final long goal = (p * n + q) * n + q;
+                final Set<Long> visited = new HashSet<>();
+                final Queue<int[]> queue = new ArrayDeque<>();
+                visited.add((p * n + p) * n + q);
+                queue.add(new int[] { p, p, q });
+                while (!queue.isEmpty()) {
+                    final int[] xyz = queue.remove();
+                    this.consume(1);
+                    for (int c = 0; c < this.classCount; c++) {
+                        final int[] nx = this.next[xyz[0] * this.classCount + c];
+                        final int[] ny = this.next[xyz[1] * this.classCount + c];
+                        final int[] nz = this.next[xyz[2] * this.classCount + c];
+                        if (nx == null || ny == null || nz == null) {
+                            continue;
+                        }
+                        for (final int x : nx) {
+                            if (this.component[x] != a) {
+                                continue;
+                            }
+                            for (final int y : ny) {
+                                // 2つ目は p から q に向かう経路なので、q の成分に到達できない状態は辿らない。
+                                if (!reaches[this.component[y]].get(b)) {
+                                    continue;
+                                }
+                                for (final int z : nz) {
+                                    if (this.component[z] != b) {
+                                        continue;
+                                    }
+                                    final long key = (x * n + y) * n + z;
+                                    if (key == goal) {
+                                        return true;
+                                    }
+                                    if (visited.add(key)) {
+                                        queue.add(new int[] { x, y, z });
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tarjan のアルゴリズムで強連結成分を求める。(長いNFAでもスタックを使い切らないよう、再帰呼び出しは使わない)
+     *
+     * @param successors 頂点番号 -> 遷移先の頂点番号の一覧
+     * @return 頂点番号 -> 強連結成分の番号 (遷移先の成分の番号は遷移元の成分の番号以下となる)
+     */
+    static int[] stronglyConnectedComponents(final int[][] successors) {
+        final int n = successors.length;
+        final int[] index = new int[n];
+        final int[] lowlink = new int[n];
+        final int[] component = new int[n];
+        final boolean[] onStack = new boolean[n];
+        final int[] stack = new int[n];
+        final int[] callStack = new int[n];
+        final int[] edgeIndex = new int[n];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int componentCount = 0;
+        int sp = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int csp = 0;
+            index[root] = lowlink[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            callStack[csp++] = root;
+            while (csp > 0) {
+                final int v = callStack[csp - 1];
+                if (edgeIndex[v] < successors[v].length) {
+                    final int w = successors[v][edgeIndex[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowlink[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        callStack[csp++] = w;
+                    } else if (onStack[w]) {
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                    continue;
+                }
+                csp--;
+                if (lowlink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        component[w] = componentCount;
+                    } while (w != v);
+                    componentCount++;
+                }
+                if (csp > 0) {
+                    final int u = callStack[csp - 1];
+                    lowlink[u] = Math.min(lowlink[u], lowlink[v]);
+                }
+            }
+        }
+        return component;
+    }
+
+    private static int[][] membersOf(final int[] component) {
+        final int componentCount = Arrays.stream(component).max().orElse(-1) + 1;
+        final int[] sizes = new int[componentCount];
+        for (final int k : component) {
+            sizes[k]++;
+        }
+        final int[][] r = new int[componentCount][];
+        for (int k = 0; k < componentCount; k++) {
+            r[k] = new int[sizes[k]];
+            sizes[k] = 0;
+        }
+        for (int v = 0; v < component.length; v++) {
+            final int k = component[v];
+            r[k][sizes[k]++] = v;
+        }
+        return r;
+    }
+
+    private static boolean[] cyclicOf(final int[][] successors, final int[] component, final int[][] members) {
+        final boolean[] r = new boolean[members.length];
+        for (int k = 0; k < members.length; k++) {
+            r[k] = members[k].length > 1;
+        }
+        for (int v = 0; v < successors.length; v++) {
+            for (final int w : successors[v]) {
+                if (w == v) {
+                    r[component[v]] = true;
+                }
+            }
+        }
+        return r;
+    }
+}
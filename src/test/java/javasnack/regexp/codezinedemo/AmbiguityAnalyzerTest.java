@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class AmbiguityAnalyzerTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "abc, FINITE, 0",
+            "a|ab, FINITE, 0",
+            "(a|b)*c, FINITE, 0",
+            "(ab|ac)*d, FINITE, 0",
+            "a*b*, FINITE, 0",
+            "a*ba*, FINITE, 0",
+            "[a-c]+d?, FINITE, 0",
+            "(a|a)*, EXPONENTIAL, 0",
+            "(a|a)*b, EXPONENTIAL, 0",
+            "(a*)*, EXPONENTIAL, 0",
+            "(a|aa)*b, EXPONENTIAL, 0",
+            "([a-c]|b)*, EXPONENTIAL, 0",
+            "(a+)+b, EXPONENTIAL, 0",
+            "a*a*, POLYNOMIAL, 1",
+            "a*a*b, POLYNOMIAL, 1",
+            "[a-c]*[b-d]*, POLYNOMIAL, 1",
+            "a*a*a*a*, POLYNOMIAL, 3",
+            ".*x.*, POLYNOMIAL, 1",
+            ".*.*=.*, POLYNOMIAL, 2",
+    })
+    public void testAnalyze(final String regexp, final Ambiguity.Kind kind, final int degree) {
+        final Ambiguity r = Regexp.analyzeAmbiguity(regexp);
+        assertThat(r).isEqualTo(Ambiguity.of(kind, degree));
+        assertThat(r.isReDoSProne()).isEqualTo(kind != Ambiguity.Kind.FINITE);
+    }
+
+    @Test
+    public void testMaxSteps() {
+        final NfaTable nfa = NfaTable.from(new Parser(new Lexer("a*a*a*a*")).expression());
+        assertThat(AmbiguityAnalyzer.analyze(nfa, 10)).isEqualTo(Ambiguity.UNKNOWN);
+        assertThat(Ambiguity.UNKNOWN.isReDoSProne()).isTrue();
+        assertThat(AmbiguityAnalyzer.analyze(nfa)).isEqualTo(Ambiguity.of(Ambiguity.Kind.POLYNOMIAL, 3));
+    }
+
+    @Test
+    public void testStronglyConnectedComponents() {
+        // 0 -> 1 -> 2 -> 1, 2 -> 3, 3 -> 3
+        final int[] r = AmbiguityAnalyzer.stronglyConnectedComponents(new int[][] {
+                { 1 }, { 2 }, { 1, 3 }, { 3 } });
+        assertThat(r[1]).isEqualTo(r[2]);
+        assertThat(r[0]).isNotEqualTo(r[1]);
+        assertThat(r[3]).isNotEqualTo(r[1]);
+        // 遷移先の成分の番号は遷移元の成分の番号以下となる。
+        assertThat(r[0]).isGreaterThan(r[1]);
+        assertThat(r[1]).isGreaterThan(r[3]);
+    }
+}
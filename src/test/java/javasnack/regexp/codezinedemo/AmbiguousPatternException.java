@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+/**
+ * RegexpOption.REJECT_AMBIGUOUS_PATTERN を指定してコンパイルした正規表現が、
+ * バックトラック方式のランタイムで指数時間・多項式時間がかかるおそれのあるものだった場合の例外
+ */
+public class AmbiguousPatternException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String pattern;
+    private final Ambiguity ambiguity;
+
+    public AmbiguousPatternException(final String pattern, final Ambiguity ambiguity) {
+        super("ReDoS prone pattern rejected : " + pattern + " (" + ambiguity + ")");
+        this.pattern = pattern;
+        this.ambiguity = ambiguity;
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    public Ambiguity getAmbiguity() {
+        return this.ambiguity;
+    }
+}
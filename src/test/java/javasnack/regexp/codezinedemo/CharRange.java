@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * 入力文字の範囲 [lo, hi] (両端を含む)
+ *
+ * 文字クラス [a-z] や任意の1文字 "." の遷移を、範囲内の文字ごとの遷移ではなく1つの範囲の遷移として表現するためのもの。
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public class CharRange {
+    public final char lo;
+    public final char hi;
+
+    public boolean contains(final char c) {
+        return lo <= c && c <= hi;
+    }
+
+    /**
+     * @return 範囲の先頭の文字(同じ場合は末尾の文字)の昇順に並べた範囲の一覧
+     */
+    public static List<CharRange> sort(final Collection<CharRange> ranges) {
+        final List<CharRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingInt((CharRange r) -> r.lo).thenComparingInt(r -> r.hi));
+        return sorted;
+    }
+
+    /**
+     * @param ranges 範囲の一覧 (重なりや順序は問わない)
+     * @return 昇順に並べ、重なったり隣接する範囲を1つにまとめた範囲の一覧
+     */
+    public static List<CharRange> normalize(final List<CharRange> ranges) {
+        final List<CharRange> r = new ArrayList<>();
+        for (final CharRange range : sort(ranges)) {
+            if (!r.isEmpty()) {
+                final CharRange last = r.get(r.size() - 1);
+                if (range.lo <= last.hi + 1) {
+                    r.set(r.size() - 1, CharRange.of(last.lo, (char) Math.max(last.hi, range.hi)));
+                    continue;
+                }
+            }
+            r.add(range);
+        }
+        return r;
+    }
+
+    /**
+     * @param ranges normalize() 済みの範囲の一覧
+     * @return 0x0000 - 0xFFFF のうち、いずれの範囲にも含まれない文字の範囲の一覧 ([^a-z] のような否定の文字クラス)
+     */
+    public static List<CharRange> complement(final List<CharRange> ranges) {
+        final List<CharRange> r = new ArrayList<>();
+        int next = Character.MIN_VALUE;
+        for (final CharRange range : ranges) {
+            if (range.lo > next) {
+                r.add(CharRange.of((char) next, (char) (range.lo - 1)));
+            }
+            next = range.hi + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            r.add(CharRange.of((char) next, Character.MAX_VALUE));
+        }
+        return r;
+    }
+}
@@ -16,6 +16,8 @@
 
 package javasnack.regexp.codezinedemo;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import lombok.AllArgsConstructor;
@@ -35,4 +37,26 @@ public class Dfa {
     public final int start;
     /** set of acceptable states */
     public final Set<Integer> accept;
+    /** transition table (遷移関数を直接組み立てた場合は null) */
+    public final DfaTable table;
+
+    public static Dfa of(final DfaStateTransitFunction transition, final int start, final Set<Integer> accept) {
+        return of(transition, start, accept, null);
+    }
+
+    /**
+     * 表形式のDFAを元に、遷移関数や受理可能状態の集合を組み立てる。
+     * 
+     * @param table 表形式のDFA
+     * @return 表形式のDFAを参照する遷移関数を持つDFA
+     */
+    public static Dfa from(final DfaTable table) {
+        final Set<Integer> accept = new HashSet<>();
+        for (int state = 0; state < table.stateCount; state++) {
+            if (table.acceptable[state]) {
+                accept.add(state);
+            }
+        }
+        return of(table::next, table.start, Collections.unmodifiableSet(accept), table);
+    }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Hopcroft のアルゴリズムによる DFA の最小化
+ *
+ * 考え方:
+ * 最初に状態を「受理可能な状態」「受理可能でない状態」の2つのブロックに分割する。
+ * あるブロックAと入力文字のクラスaについて「aを入力するとAに遷移する状態の集合X」を求め、
+ * Xと一部だけ重なるブロックYがあれば、Yは「aを入力したときの振る舞いが異なる状態」を含んでいるので、
+ * Y∩X と Y\X に分割する。(この(A, a)を splitter と呼ぶ)
+ * 分割できなくなるまで繰り返すと、残ったブロックが最小化後のDFAの状態になる。
+ *
+ * 分割したブロックのうち小さい方だけを splitter の候補に追加すれば十分であることが知られており、
+ * これにより O(k * n log n) (k = 入力文字のクラス数, n = 状態数) で最小化できる。
+ */
+public class DfaMinimizer {
+    private final DfaTable dfa;
+    private final int classCount;
+
+    /* ブロックの管理:
+     * elements は全状態を並べた配列で、各ブロックは elements 上の連続した区間 [blockStart, blockEnd) を占める。
+     * ブロックを分割するときは、分割する側の状態を区間の先頭に寄せてから区間を2つに切る。
+     */
+    private final int[] elements;
+    private final int[] locationOf;
+    private final int[] blockOf;
+    private final int[] blockStart;
+    private final int[] blockEnd;
+    /** ブロック内で splitter の逆像に含まれた(= 区間の先頭に寄せた)状態の数 */
+    private final int[] markedCount;
+    private int blockCount = 0;
+
+    /** [ブロック番号 * classCount + 入力文字のクラス番号] -> splitter の候補として登録済みか */
+    private final boolean[] inWaiting;
+    private final Deque<Integer> waiting = new ArrayDeque<>();
+
+    /* 逆向きの遷移表 (CSR形式):
+     * 入力文字のクラスc, 遷移先の状態tについて、
+     * inverseSources[c][inverseStart[c][t] .. inverseStart[c][t + 1]) が遷移元の状態の一覧となる。
+     */
+    private final int[][] inverseStart;
+    private final int[][] inverseSources;
+
+    private DfaMinimizer(final DfaTable dfa) {
+        this.dfa = dfa;
+        this.classCount = dfa.classCount;
+        final int n = dfa.stateCount;
+        this.elements = new int[n];
+        this.locationOf = new int[n];
+        this.blockOf = new int[n];
+        this.blockStart = new int[n];
+        this.blockEnd = new int[n];
+        this.markedCount = new int[n];
+        this.inWaiting = new boolean[n * classCount];
+
+        this.inverseStart = new int[classCount][];
+        this.inverseSources = new int[classCount][];
+        for (int c = 0; c < classCount; c++) {
+            final int[] start = new int[n + 1];
+            for (int s = 0; s < n; s++) {
+                start[dfa.transitions[s * classCount + c] + 1]++;
+            }
+            for (int t = 0; t < n; t++) {
+                start[t + 1] += start[t];
+            }
+            final int[] fill = start.clone();
+            final int[] sources = new int[n];
+            for (int s = 0; s < n; s++) {
+                sources[fill[dfa.transitions[s * classCount + c]]++] = s;
+            }
+            this.inverseStart[c] = start;
+            this.inverseSources[c] = sources;
+        }
+    }
+
+    /**
+     * @param dfa 最小化するDFA (全ての状態が初期状態から到達可能であること)
+     * @return 最小化したDFA
+     */
+    public static DfaTable minimize(final DfaTable dfa) {
+        return new DfaMinimizer(dfa).run();
+    }
+
+    private DfaTable run() {
+        final int n = dfa.stateCount;
+        // 初期分割 : 受理可能な状態を先頭に、受理可能でない状態を後ろに並べる。
+        int countOfAcceptable = 0;
+        for (int s = 0; s < n; s++) {
+            if (dfa.acceptable[s]) {
+                countOfAcceptable++;
+            }
+        }
+        int head = 0;
+        int tail = countOfAcceptable;
+        for (int s = 0; s < n; s++) {
+            final int pos = dfa.acceptable[s] ? head++ : tail++;
+            this.elements[pos] = s;
+            this.locationOf[s] = pos;
+        }
+        if (countOfAcceptable > 0) {
+            this.newBlock(0, countOfAcceptable);
+        }
+        if (countOfAcceptable < n) {
+            this.newBlock(countOfAcceptable, n);
+        }
+        if (this.blockCount == 2) {
+            // 小さい方のブロックだけを splitter の候補とすれば十分。
+            final int smaller = this.sizeOf(0) <= this.sizeOf(1) ? 0 : 1;
+            for (int c = 0; c < classCount; c++) {
+                this.addWaiting(smaller, c);
+            }
+        }
+
+        final int[] touched = new int[n];
+        while (!this.waiting.isEmpty()) {
+            final int splitter = this.waiting.remove();
+            final int splitterBlock = splitter / classCount;
+            final int c = splitter % classCount;
+            this.inWaiting[splitter] = false;
+
+            // splitter の逆像 X に含まれる状態を、それぞれのブロックの先頭に寄せる。
+            int touchedCount = 0;
+            // 分割中に splitter 自身のブロックも変化しうるため、先に区間内の状態をコピーしておく。
+            final int[] members = Arrays.copyOfRange(this.elements,
+                    this.blockStart[splitterBlock], this.blockEnd[splitterBlock]);
+            for (final int target : members) {
+                for (int i = this.inverseStart[c][target]; i < this.inverseStart[c][target + 1]; i++) {
+                    final int source = this.inverseSources[c][i];
+                    final int b = this.blockOf[source];
+                    if (this.markedCount[b] == 0) {
+                        touched[touchedCount++] = b;
+                    }
+                    this.mark(source);
+                }
+            }
+
+            // 一部の状態だけが X に含まれるブロックを分割する。
+            for (int i = 0; i < touchedCount; i++) {
+                final int b = touched[i];
+                final int marked = this.markedCount[b];
+                this.markedCount[b] = 0;
+                if (marked == this.sizeOf(b)) {
+                    continue;
+                }
+                final int nb = this.newBlock(this.blockStart[b], this.blockStart[b] + marked);
+                this.blockStart[b] += marked;
+                for (int cc = 0; cc < classCount; cc++) {
+                    if (this.inWaiting[b * classCount + cc]) {
+                        this.addWaiting(nb, cc);
+                    } else {
+                        this.addWaiting(this.sizeOf(nb) <= this.sizeOf(b) ? nb : b, cc);
+                    }
+                }
+            }
+        }
+        return this.build();
+    }
+
+    private int sizeOf(final int block) {
+        return this.blockEnd[block] - this.blockStart[block];
+    }
+
+    private int newBlock(final int start, final int end) {
+        final int b = this.blockCount++;
+        this.blockStart[b] = start;
+        this.blockEnd[b] = end;
+        for (int i = start; i < end; i++) {
+            this.blockOf[this.elements[i]] = b;
+        }
+        return b;
+    }
+
+    private void addWaiting(final int block, final int c) {
+        final int key = block * classCount + c;
+        if (!this.inWaiting[key]) {
+            this.inWaiting[key] = true;
+            this.waiting.add(key);
+        }
+    }
+
+    private void mark(final int state) {
+        final int b = this.blockOf[state];
+        final int pos = this.locationOf[state];
+        final int markedPos = this.blockStart[b] + this.markedCount[b];
+        if (pos < markedPos) {
+            // 既に先頭に寄せ済み
+            return;
+        }
+        // 区間内の未マーク領域の先頭と入れ替える。
+        final int swapped = this.elements[markedPos];
+        this.elements[markedPos] = state;
+        this.locationOf[state] = markedPos;
+        this.elements[pos] = swapped;
+        this.locationOf[swapped] = pos;
+        this.markedCount[b]++;
+    }
+
+    private DfaTable build() {
+        final int n = this.blockCount;
+        final int[] transitions = new int[n * classCount];
+        final boolean[] acceptable = new boolean[n];
+        for (int b = 0; b < n; b++) {
+            // 同じブロックの状態はどれも同じ振る舞いなので、先頭の状態の遷移を代表として使う。
+            final int representative = this.elements[this.blockStart[b]];
+            for (int c = 0; c < classCount; c++) {
+                transitions[b * classCount + c] = this.blockOf[dfa.transitions[representative * classCount + c]];
+            }
+            acceptable[b] = dfa.acceptable[representative];
+        }
+        final int dead = dfa.dead == DfaTable.NO_DEAD_STATE ? DfaTable.NO_DEAD_STATE : this.blockOf[dfa.dead];
+        return new DfaTable(dfa.alphabet, n, transitions, acceptable, this.blockOf[dfa.start], dead);
+    }
+}
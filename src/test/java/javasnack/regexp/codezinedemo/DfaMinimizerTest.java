@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class DfaMinimizerTest {
+    static DfaTable compile(final String regexp) {
+        final Nfa nfa0 = new Parser(new Lexer(regexp)).expression();
+        return DfaTable.from(nfa0, DfaTable.DEFAULT_MAX_DFA_STATES).get();
+    }
+
+    static boolean accept(final DfaTable dfa, final String input) {
+        return new DfaRuntime(Dfa.from(dfa)).accept(input);
+    }
+
+    @Test
+    public void testMinimize() {
+        // 教科書的な例 : (a|b)*abb の最小DFAは4状態 (+ 正規表現中に現れない文字による空集合状態)
+        final DfaTable dfa = compile("(a|b)*abb");
+        final DfaTable minimized = DfaMinimizer.minimize(dfa);
+        System.out.println(minimized);
+        assertThat(dfa.stateCount).isGreaterThan(minimized.stateCount);
+        assertThat(minimized.stateCount).isEqualTo(5);
+        assertThat(minimized.classCount).isEqualTo(dfa.classCount);
+        for (final String s : new String[] { "abb", "aabb", "babb", "abababb", "abbabb" }) {
+            assertThat(accept(minimized, s)).isTrue();
+            assertThat(accept(dfa, s)).isTrue();
+        }
+        for (final String s : new String[] { "", "ab", "abba", "abbx", "x" }) {
+            assertThat(accept(minimized, s)).isFalse();
+            assertThat(accept(dfa, s)).isFalse();
+        }
+    }
+
+    @Test
+    public void testMinimizeMergesEquivalentBranches() {
+        // (ab|ab)* の 'a' 遷移先は2つのNFA状態に分かれるが、最小化すると1つに統合される。
+        final DfaTable minimized = DfaMinimizer.minimize(compile("(ab|ab)*"));
+        // 初期状態(受理可能), 'a' 入力後, 空集合
+        assertThat(minimized.stateCount).isEqualTo(3);
+        assertThat(minimized.acceptable[minimized.start]).isTrue();
+        assertThat(minimized.dead).isNotEqualTo(DfaTable.NO_DEAD_STATE);
+        assertThat(accept(minimized, "abab")).isTrue();
+        assertThat(accept(minimized, "aba")).isFalse();
+    }
+
+    @Test
+    public void testMinimizeWithoutAcceptableStates() {
+        // 受理可能状態が無いDFA : 全ての状態が1つのブロックに統合される。
+        final DfaTable dfa = new DfaTable(new AlphabetPartition(Set.of('a')), 2,
+                new int[] { 1, 1, 1, 1 }, new boolean[] { false, false }, 0, 1);
+        final DfaTable minimized = DfaMinimizer.minimize(dfa);
+        assertThat(minimized.stateCount).isEqualTo(1);
+        assertThat(minimized.start).isEqualTo(minimized.dead);
+    }
+}
@@ -16,7 +16,9 @@
 
 package javasnack.regexp.codezinedemo;
 
-public class DfaRuntime {
+import java.util.Objects;
+
+public class DfaRuntime implements IncrementalRuntime {
     private final Dfa dfa;
     private int currentState;
 
@@ -33,8 +35,66 @@ public class DfaRuntime {
         return this.dfa.accept.contains(Integer.valueOf(currentState));
     }
 
+    @Override
+    public void reset() {
+        this.currentState = dfa.start;
+    }
+
+    @Override
+    public boolean feed(final char c) {
+        final DfaTable table = this.dfa.table;
+        if (Objects.isNull(table)) {
+            // 遷移関数を直接組み立てたDFAでは、空集合の状態か判別できない。
+            this.transit(c);
+            return true;
+        }
+        this.currentState = table.transitions[currentState * table.classCount + table.alphabet.classOf(c)];
+        return this.currentState != table.dead;
+    }
+
+    @Override
+    public boolean isAcceptable() {
+        if (Objects.nonNull(this.dfa.table)) {
+            return this.dfa.table.acceptable[currentState];
+        }
+        return this.isCurrentStatusAcceptable();
+    }
+
     public boolean accept(final String input) {
-        input.codePoints().mapToObj(c -> (char) c).forEach(c -> this.transit(c));
+        if (Objects.nonNull(this.dfa.table)) {
+            return this.acceptByTable(input);
+        }
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            this.transit((char) c);
+        }
         return this.isCurrentStatusAcceptable();
     }
+
+    /**
+     * 表形式のDFAであれば、遷移関数(ラムダ式)を経由せずに遷移表を直接参照して遷移させる。
+     * 遷移表と受理可能状態の判定表をローカル変数に取り出し、分岐の少ないループで処理する。
+     */
+    private boolean acceptByTable(final String input) {
+        final DfaTable table = this.dfa.table;
+        final AlphabetPartition alphabet = table.alphabet;
+        final int[] transitions = table.transitions;
+        final int classCount = table.classCount;
+        final int dead = table.dead;
+        int state = this.currentState;
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            state = transitions[state * classCount + alphabet.classOf((char) c)];
+            if (state == dead) {
+                // 空集合の状態からはどの文字を入力しても抜け出せないため、残りの文字列は読まずに打ち切る。
+                break;
+            }
+        }
+        this.currentState = state;
+        return table.acceptable[state];
+    }
 }
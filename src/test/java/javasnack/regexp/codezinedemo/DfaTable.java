@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * 表形式のDFA
+ *
+ * 遷移関数をラムダ式ではなく「状態番号 x 入力文字のクラス番号」で引ける1次元の int 配列として持つ。
+ * 1文字あたりの遷移が配列参照1回で済むため、一度コンパイルしたら何度もマッチングするような用途に向く。
+ */
+public class DfaTable {
+    /** 部分集合構成法で生成するDFAの状態数のデフォルトの上限 */
+    public static final int DEFAULT_MAX_DFA_STATES = 10_000;
+
+    /** 空集合(= これ以上どの文字を入力しても受理可能とならない)の状態が無い場合の状態番号 */
+    public static final int NO_DEAD_STATE = -1;
+
+    /** 入力文字 -> 入力文字のクラス番号 */
+    public final AlphabetPartition alphabet;
+    /** 入力文字のクラス数 (= 遷移表の行の幅) */
+    public final int classCount;
+    /** 状態数 */
+    public final int stateCount;
+    /** 遷移表 : [状態番号 * classCount + 入力文字のクラス番号] -> 遷移先の状態番号 */
+    public final int[] transitions;
+    /** 状態番号 -> 受理可能か */
+    public final boolean[] acceptable;
+    /** 初期状態 */
+    public final int start;
+    /** 空集合の状態 (無い場合は NO_DEAD_STATE) */
+    public final int dead;
+
+    public DfaTable(final AlphabetPartition alphabet, final int stateCount, final int[] transitions,
+            final boolean[] acceptable, final int start, final int dead) {
+        this.alphabet = alphabet;
+        this.classCount = alphabet.size();
+        this.stateCount = stateCount;
+        this.transitions = transitions;
+        this.acceptable = acceptable;
+        this.start = start;
+        this.dead = dead;
+    }
+
+    public int next(final int state, final char c) {
+        return this.transitions[state * this.classCount + this.alphabet.classOf(c)];
+    }
+
+    /**
+     * 部分集合構成法により、NFAから到達可能な全てのDFAの状態を事前に生成して遷移表を作成する。
+     *
+     * Nfa2Dfa では遷移の都度計算していた「NFAの状態の集合」の遷移を、コンパイル時に全て計算しておくイメージ。
+     * 入力文字は1文字ずつではなくクラス単位で計算する。(同じクラスの文字は全て同じ遷移となるため)
+     *
+     * @param nfa 元のNFA (入力文字の集合が分かっている必要がある)
+     * @param maxDfaStates 生成するDFAの状態数の上限
+     * @return 遷移表形式のDFA (状態数が上限を超えた場合は empty)
+     */
+    public static Optional<DfaTable> from(final Nfa nfa, final int maxDfaStates) {
+        final AlphabetPartition alphabet = AlphabetPartition.of(nfa);
+        final int classCount = alphabet.size();
+        final Map<Set<Integer>, Integer> stateIds = new HashMap<>();
+        final List<Set<Integer>> stateSets = new ArrayList<>();
+        final List<int[]> rows = new ArrayList<>();
+        final Queue<Integer> queue = new ArrayDeque<>();
+
+        final Set<Integer> setOfInitialState = nfa.expandEpsilon(Set.of(nfa.start));
+        stateIds.put(setOfInitialState, 0);
+        stateSets.add(setOfInitialState);
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            final Set<Integer> setOfCurrentState = stateSets.get(state);
+            final int[] row = new int[classCount];
+            for (int classId = 0; classId < classCount; classId++) {
+                final char c = alphabet.representativeOf(classId);
+                final Set<Integer> setOfNextState = new HashSet<>();
+                for (int currentState : setOfCurrentState) {
+                    setOfNextState.addAll(nfa.transition.apply(currentState, Optional.of(c)));
+                }
+                final Set<Integer> expanded = nfa.expandEpsilon(setOfNextState);
+                Integer nextState = stateIds.get(expanded);
+                if (nextState == null) {
+                    if (stateSets.size() >= maxDfaStates) {
+                        return Optional.empty();
+                    }
+                    nextState = stateSets.size();
+                    stateIds.put(expanded, nextState);
+                    stateSets.add(expanded);
+                    queue.add(nextState);
+                }
+                row[classId] = nextState;
+            }
+            rows.add(row);
+        }
+
+        final int stateCount = stateSets.size();
+        final int[] transitions = new int[stateCount * classCount];
+        final boolean[] acceptable = new boolean[stateCount];
+        int dead = NO_DEAD_STATE;
+        for (int state = 0; state < stateCount; state++) {
+            System.arraycopy(rows.get(state), 0, transitions, state * classCount, classCount);
+            final Set<Integer> states = stateSets.get(state);
+            acceptable[state] = !Nfa2DfaRuntime.intersectIsEmpty(nfa.accept, states);
+            if (states.isEmpty()) {
+                dead = state;
+            }
+        }
+        return Optional.of(new DfaTable(alphabet, stateCount, transitions, acceptable, 0, dead));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("----[DFA Table]----\n");
+        sb.append("initial state = " + this.start + ", dead state = " + this.dead + "\n");
+        for (int state = 0; state < this.stateCount; state++) {
+            sb.append(this.acceptable[state] ? "acceptable-" : "");
+            sb.append("state: " + state + "\n");
+            for (int classId = 0; classId < this.classCount; classId++) {
+                final int next = this.transitions[state * this.classCount + classId];
+                if (next == this.dead) {
+                    // 空集合状態に向かう遷移は略記
+                    continue;
+                }
+                // 全ての文字が正規表現中に現れる場合は、クラス番号0も通常のクラスとなる。
+                final String label = this.alphabet.othersExists() && classId == AlphabetPartition.OTHERS ? "(others)"
+                        : "'" + this.alphabet.representativeOf(classId) + "'";
+                sb.append("    " + label + " -> " + next + "\n");
+            }
+        }
+        return sb.toString();
+    }
+}
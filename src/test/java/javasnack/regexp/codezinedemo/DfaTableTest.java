@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class DfaTableTest {
+    @Test
+    public void testSubsetConstruction() {
+        final Nfa nfa0 = new Parser(new Lexer("ab|cd")).expression();
+        final Optional<DfaTable> r = DfaTable.from(nfa0, DfaTable.DEFAULT_MAX_DFA_STATES);
+        assertThat(r).isPresent();
+        final DfaTable dfa = r.get();
+        System.out.println(dfa);
+        // 初期状態, 'a', 'c', 'ab', 'cd', 空集合
+        assertThat(dfa.stateCount).isEqualTo(6);
+        assertThat(dfa.classCount).isEqualTo(5);
+        assertThat(dfa.transitions).hasSize(6 * 5);
+        assertThat(dfa.dead).isNotEqualTo(DfaTable.NO_DEAD_STATE);
+        assertThat(dfa.acceptable[dfa.dead]).isFalse();
+
+        int s = dfa.next(dfa.start, 'a');
+        assertThat(dfa.acceptable[s]).isFalse();
+        s = dfa.next(s, 'b');
+        assertThat(dfa.acceptable[s]).isTrue();
+        assertThat(dfa.next(s, 'b')).isEqualTo(dfa.dead);
+        assertThat(dfa.next(dfa.start, 'x')).isEqualTo(dfa.dead);
+        assertThat(dfa.next(dfa.start, 'あ')).isEqualTo(dfa.dead);
+        for (char c : new char[] { 'a', 'b', 'c', 'd', 'x' }) {
+            assertThat(dfa.next(dfa.dead, c)).isEqualTo(dfa.dead);
+        }
+    }
+
+    @Test
+    public void testMaxDfaStates() {
+        // (a|b)*a(a|b)(a|b) は部分集合構成法で 2^3 + 1(空集合) 以上の状態が必要になる。
+        final Nfa nfa0 = new Parser(new Lexer("(a|b)*a(a|b)(a|b)")).expression();
+        assertThat(DfaTable.from(nfa0, 4)).isEmpty();
+        assertThat(DfaTable.from(nfa0, DfaTable.DEFAULT_MAX_DFA_STATES)).isPresent();
+    }
+
+    @Test
+    public void testToStringLabelOfClassZero() {
+        final int[] transitions = { 1, 2, 2, 2, 2, 2 };
+        final boolean[] acceptable = { false, true, false };
+        final DfaTable withOthers = new DfaTable(
+                new AlphabetPartition(new char[] { 0, 'x', 'y' }, new int[] { 0, 1, 0 }, true), 3,
+                transitions, acceptable, 0, 2);
+        assertThat(withOthers.toString()).contains("    (others) -> 1\n");
+        // クラス番号0が通常のクラスの場合は、代表となる文字を表示する。
+        final DfaTable withoutOthers = new DfaTable(
+                new AlphabetPartition(new char[] { 0, 'x' }, new int[] { 0, 1 }, false), 3,
+                transitions, acceptable, 0, 2);
+        assertThat(withoutOthers.toString()).doesNotContain("(others)").contains("    '\0' -> 1\n");
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+/**
+ * 入力文字を1文字ずつ与えて遷移させられるランタイム
+ *
+ * 現在の状態をランタイム自身が保持するため、入力文字列を分割して(チャンク単位で)与えてもよい。
+ * バックトラック方式のランタイムは入力文字列全体を行き来するため、このインターフェイスは実装できない。
+ */
+public interface IncrementalRuntime {
+    /**
+     * 初期状態に戻す。
+     */
+    void reset();
+
+    /**
+     * @param c 入力文字
+     * @return 以降どの文字を入力しても受理可能とならない(空集合の状態に遷移した)場合は false
+     */
+    boolean feed(char c);
+
+    /**
+     * @return 現在の状態が受理可能か
+     */
+    boolean isAcceptable();
+}
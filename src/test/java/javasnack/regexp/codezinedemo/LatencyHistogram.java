@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HdrHistogram と同じ考え方の、対数・線形の区間に分けたヒストグラム (値は 0 以上の long)
+ *
+ * 値を 2 のべき乗ごとの区間に分け、さらに各区間を SUB_BUCKETS 個に等分して数える。
+ * -> 値の大きさによらず相対誤差は 1 / SUB_BUCKETS 以内となり、区間の数は固定 (値の範囲全体で 960 個) で済む。
+ * 複数のスレッドから記録できるよう、各区間の数は AtomicLongArray で数える。
+ * (RegexpMetrics では間引いて記録するため、同じ区間への書き込みの競合はほとんど起きない)
+ */
+public class LatencyHistogram {
+    /** 2 のべき乗ごとの区間を等分する数 (2 のべき乗) */
+    static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    /** Long.MAX_VALUE までの値を数えるのに必要な区間の数 */
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @return 値 v を数える区間の番号
+     */
+    static int indexOf(final long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) Math.max(0, v);
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(v)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return 区間に含まれる最大の値
+     */
+    static long highestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    public void record(final long value) {
+        this.counts.incrementAndGet(indexOf(value));
+    }
+
+    /**
+     * @return 記録した値の数
+     */
+    public long getCount() {
+        long r = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            r += this.counts.get(i);
+        }
+        return r;
+    }
+
+    /**
+     * @param percentile パーセンタイル (0.0 - 100.0)
+     * @return 記録した値のうち percentile % がこの値以下となる値 (区間の最大の値で近似する, 記録が無ければ 0)
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    /**
+     * @return 記録した最大の値 (区間の最大の値で近似する, 記録が無ければ 0)
+     */
+    public long getMaxValue() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (this.counts.get(i) != 0) {
+                return highestValueOf(i);
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * NFA to DFA representation (lazy DFA)
+ *
+ * Nfa2Dfa は「NFAの状態の集合」をそのままDFAの状態として扱うため、
+ * 1文字遷移するたびに状態の集合全体を hash 計算することになる。
+ * LazyDfa では初めて出現した「NFAの状態の集合」に連番の整数値(DFAの状態番号)を割り当て(intern)、
+ * 遷移結果は状態番号ごとの int[] の行に保存する。
+ * 2回目以降の同じ遷移は配列参照のみで完了し、状態の集合の hash 計算は発生しない。
+ *
+ * 遷移表の行は入力文字のクラス番号(AlphabetPartition)で引く。
+ * 正規表現中に現れない文字は全て1つのクラスにまとまるため、行の幅は正規表現中の文字の種類数 + 1 程度に収まり、
+ * 0x100 以上の文字(日本語など)の遷移もキャッシュできる。
+ * (入力文字の集合が分からないNFAの場合は、0x00 - 0xFF の範囲の文字のみ文字コードで引く表とする)
+ *
+ * キャッシュする状態数には上限を設け、上限に達したらキャッシュ全体を破棄して作り直す。
+ * (RE2 の lazy DFA と同じ方針で、メモリ使用量が正規表現や入力文字列によらず一定に収まる。)
+ *
+ * 遷移のキャッシュを更新しながら動くため、1つのインスタンスを複数のスレッドで同時に使うことはできない。
+ * (Regexp, RegexpSet ではスレッドごとにインスタンスを生成している)
+ */
+public class LazyDfa extends AbstractLazyDfa<Set<Integer>> {
+    /** キャッシュする状態数のデフォルトの上限 */
+    public static final int DEFAULT_MAX_CACHED_STATES = 10_000;
+
+    private final Nfa nfa;
+
+    /**
+     * @param alphabet NFAから求めた入力文字のクラス分け (入力文字の集合が分からないNFAの場合は null)
+     *        (同じNFAから複数の LazyDfa を生成する場合に、クラス分けを共有するためのもの)
+     */
+    public LazyDfa(final Nfa nfa, final AlphabetPartition alphabet, final int maxCachedStates,
+            final boolean enableTraceLog) {
+        super(alphabet, maxCachedStates, "LAZY DFA", enableTraceLog);
+        this.nfa = nfa;
+        // 元のNFAの初期状態から空文字(ε)遷移可能な状態も集約した集合を初期状態とする。
+        this.init(nfa.expandEpsilon(Set.of(nfa.start)));
+    }
+
+    public LazyDfa(final Nfa nfa, final int maxCachedStates, final boolean enableTraceLog) {
+        this(nfa, Objects.isNull(nfa.alphabet) ? null : AlphabetPartition.of(nfa), maxCachedStates, enableTraceLog);
+    }
+
+    public LazyDfa(final Nfa nfa) {
+        this(nfa, DEFAULT_MAX_CACHED_STATES, false);
+    }
+
+    @Override
+    protected Set<Integer> step(final Set<Integer> setOfCurrentState, final char c) {
+        final Set<Integer> setOfNextState = new HashSet<>();
+        for (int currentState : setOfCurrentState) {
+            setOfNextState.addAll(nfa.transition.apply(currentState, Optional.of(c)));
+        }
+        return nfa.expandEpsilon(setOfNextState);
+    }
+
+    @Override
+    protected boolean isAcceptableStateSet(final Set<Integer> states) {
+        return !Nfa2DfaRuntime.intersectIsEmpty(nfa.accept, states);
+    }
+
+    @Override
+    protected boolean isDeadStateSet(final Set<Integer> states) {
+        return states.isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+public class LazyDfaRuntime implements IncrementalRuntime {
+    private final LazyDfa dfa;
+    private int currentState;
+
+    public LazyDfaRuntime(final LazyDfa dfa) {
+        this.dfa = dfa;
+        this.currentState = dfa.start();
+    }
+
+    private void transit(final char c) {
+        this.currentState = dfa.next(currentState, c);
+    }
+
+    private boolean isCurrentStatusAcceptable() {
+        return this.dfa.isAcceptable(currentState);
+    }
+
+    @Override
+    public void reset() {
+        // キャッシュ破棄により初期状態の状態番号が変化しうるため、その都度取得し直す。
+        this.currentState = dfa.start();
+    }
+
+    @Override
+    public boolean feed(final char c) {
+        this.transit(c);
+        return !this.dfa.isDead(currentState);
+    }
+
+    @Override
+    public boolean isAcceptable() {
+        return this.isCurrentStatusAcceptable();
+    }
+
+    public boolean accept(final String input) {
+        /* 他のランタイムと同様にコードポイント単位で char に変換して遷移させるが、
+         * Stream API は使わずにループで処理し、1文字ごとの boxing を避ける。
+         */
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            this.transit((char) c);
+            if (this.dfa.isDead(currentState)) {
+                // 空集合の状態からはどの文字を入力しても抜け出せないため、残りの文字列は読まずに打ち切る。
+                return false;
+            }
+        }
+        return this.isCurrentStatusAcceptable();
+    }
+}
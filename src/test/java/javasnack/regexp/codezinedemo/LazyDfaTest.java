@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyDfaTest {
+    static Nfa nfa0() {
+        final Map<StateAndInputCharacter, Set<Integer>> tbl0 = new HashMap<>();
+        tbl0.put(StateAndInputCharacter.of(0, Optional.of('a')), Set.of(1));
+        tbl0.put(StateAndInputCharacter.of(1, Optional.of('b')), Set.of(3)); // ab
+        tbl0.put(StateAndInputCharacter.of(0, Optional.of('c')), Set.of(4));
+        tbl0.put(StateAndInputCharacter.of(4, Optional.of('d')), Set.of(5)); // cd
+        tbl0.put(StateAndInputCharacter.of(0, Optional.empty()), Set.of(6));
+        tbl0.put(StateAndInputCharacter.of(6, Optional.of('e')), Set.of(7));
+        tbl0.put(StateAndInputCharacter.of(7, Optional.of('f')), Set.of(8)); // ef
+        tbl0.put(StateAndInputCharacter.of(7, Optional.empty()), Set.of(9)); // e = ef*
+        tbl0.put(StateAndInputCharacter.of(0, Optional.of('あ')), Set.of(10)); // 'あ' (表の範囲外の文字)
+
+        final NfaStateTransitFunction f0 = (int start, Optional<Character> input) -> {
+            return tbl0.getOrDefault(StateAndInputCharacter.of(start, input), Collections.emptySet());
+        };
+        return Nfa.of(f0, 0, Set.of(3, 5, 8, 9, 10));
+    }
+
+    @Test
+    public void testLazyDfa() {
+        final LazyDfa dfa = new LazyDfa(nfa0());
+        final int s0 = dfa.start();
+        assertThat(dfa.isAcceptable(s0)).isFalse();
+        assertThat(dfa.isDead(s0)).isFalse();
+        assertThat(dfa.getCountOfCachedStates()).isEqualTo(1);
+
+        final int s1 = dfa.next(s0, 'a');
+        assertThat(dfa.isAcceptable(s1)).isFalse();
+        final int s3 = dfa.next(s1, 'b');
+        assertThat(dfa.isAcceptable(s3)).isTrue(); // ab
+        assertThat(dfa.getCountOfCachedStates()).isEqualTo(3);
+
+        // 2回目以降は同じ状態番号が返され、状態も増えない。
+        assertThat(dfa.next(s0, 'a')).isEqualTo(s1);
+        assertThat(dfa.next(s1, 'b')).isEqualTo(s3);
+        assertThat(dfa.getCountOfCachedStates()).isEqualTo(3);
+
+        final int s79 = dfa.next(s0, 'e');
+        assertThat(dfa.isAcceptable(s79)).isTrue(); // e
+        assertThat(dfa.isAcceptable(dfa.next(s79, 'f'))).isTrue(); // ef
+
+        // 表の範囲外の文字でも遷移できる。
+        final int s10 = dfa.next(s0, 'あ');
+        assertThat(dfa.isAcceptable(s10)).isTrue();
+        assertThat(dfa.next(s0, 'あ')).isEqualTo(s10);
+
+        final int dead = dfa.next(s0, 'x');
+        assertThat(dfa.isAcceptable(dead)).isFalse();
+        assertThat(dfa.isDead(dead)).isTrue();
+        assertThat(dfa.next(dead, 'a')).isEqualTo(dead);
+        assertThat(dfa.getCountOfFlush()).isEqualTo(0);
+    }
+
+    @Test
+    public void testLazyDfaCacheFlush() {
+        final LazyDfa dfa = new LazyDfa(nfa0(), 2, false);
+        final int s0 = dfa.start();
+        final int s1 = dfa.next(s0, 'a');
+        assertThat(dfa.getCountOfCachedStates()).isEqualTo(2);
+        assertThat(dfa.getCountOfFlush()).isEqualTo(0);
+
+        // 上限に達しているため、キャッシュを破棄して初期状態と遷移先のみ再登録される。
+        final int s3 = dfa.next(s1, 'b');
+        assertThat(dfa.isAcceptable(s3)).isTrue();
+        assertThat(dfa.getCountOfCachedStates()).isEqualTo(2);
+        assertThat(dfa.getCountOfFlush()).isEqualTo(1);
+
+        // キャッシュ破棄後も正しくマッチングできる。
+        for (final String s : new String[] { "ab", "cd", "e", "ef", "あ" }) {
+            assertThat(new LazyDfaRuntime(dfa).accept(s)).isTrue();
+        }
+        for (final String s : new String[] { "", "a", "abc", "efx", "x" }) {
+            assertThat(new LazyDfaRuntime(dfa).accept(s)).isFalse();
+        }
+        assertThat(dfa.getCountOfFlush()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testInvalidMaxCachedStates() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new LazyDfa(nfa0(), 1, false);
+        });
+    }
+
+    @Test
+    public void testLazyDfaWithAlphabetPartition() {
+        final Nfa nfa0 = new Parser(new Lexer("(あ|い)*う")).expression();
+        final LazyDfa dfa = new LazyDfa(nfa0);
+        final LazyDfaRuntime rt = new LazyDfaRuntime(dfa);
+        assertThat(rt.accept("あいあう")).isTrue();
+        final int cached = dfa.getCountOfCachedStates();
+
+        // 0x100 以上の文字の遷移もキャッシュされ、同じ入力では状態が増えない。
+        final int s0 = dfa.start();
+        final int s1 = dfa.next(s0, 'あ');
+        assertThat(dfa.next(s0, 'あ')).isEqualTo(s1);
+        assertThat(new LazyDfaRuntime(dfa).accept("あいあう")).isTrue();
+        assertThat(dfa.getCountOfCachedStates()).isEqualTo(cached);
+
+        // 正規表現中に現れない文字は全て同じクラスとなり、同じ遷移先(空集合の状態)となる。
+        final int dead = dfa.next(s0, 'x');
+        assertThat(dfa.isDead(dead)).isTrue();
+        assertThat(dfa.next(s0, 'ん')).isEqualTo(dead);
+        assertThat(new LazyDfaRuntime(dfa).accept("あいxう")).isFalse();
+    }
+}
@@ -47,6 +47,26 @@ public class Lexer {
             return Token.of(c, TokenType.RPAREN);
         case '*':
             return Token.of(c, TokenType.OPE_STAR);
+        case '+':
+            return Token.of(c, TokenType.OPE_PLUS);
+        case '?':
+            return Token.of(c, TokenType.OPE_QUESTION);
+        case '{':
+            return Token.of(c, TokenType.LBRACE);
+        case '}':
+            return Token.of(c, TokenType.RBRACE);
+        case '[':
+            return Token.of(c, TokenType.LBRACKET);
+        case ']':
+            return Token.of(c, TokenType.RBRACKET);
+        case '-':
+            return Token.of(c, TokenType.HYPHEN);
+        case '.':
+            return Token.of(c, TokenType.DOT);
+        case '^':
+            return Token.of(c, TokenType.CARET);
+        case '$':
+            return Token.of(c, TokenType.DOLLAR);
         default:
             return Token.of(c, TokenType.CHARACTER);
         }
@@ -43,4 +43,26 @@ public class LexerTest {
         assertEquals(Token.of('c', TokenType.CHARACTER), lex0.nextToken());
         assertEquals(Token.of('\0', TokenType.EOF), lex0.nextToken());
     }
+
+    @Test
+    public void testExtendedTokens() {
+        final var lex0 = new Lexer("^a+?[^b-c]{1}.\\.$");
+        assertEquals(Token.of('^', TokenType.CARET), lex0.nextToken());
+        assertEquals(Token.of('a', TokenType.CHARACTER), lex0.nextToken());
+        assertEquals(Token.of('+', TokenType.OPE_PLUS), lex0.nextToken());
+        assertEquals(Token.of('?', TokenType.OPE_QUESTION), lex0.nextToken());
+        assertEquals(Token.of('[', TokenType.LBRACKET), lex0.nextToken());
+        assertEquals(Token.of('^', TokenType.CARET), lex0.nextToken());
+        assertEquals(Token.of('b', TokenType.CHARACTER), lex0.nextToken());
+        assertEquals(Token.of('-', TokenType.HYPHEN), lex0.nextToken());
+        assertEquals(Token.of('c', TokenType.CHARACTER), lex0.nextToken());
+        assertEquals(Token.of(']', TokenType.RBRACKET), lex0.nextToken());
+        assertEquals(Token.of('{', TokenType.LBRACE), lex0.nextToken());
+        assertEquals(Token.of('1', TokenType.CHARACTER), lex0.nextToken());
+        assertEquals(Token.of('}', TokenType.RBRACE), lex0.nextToken());
+        assertEquals(Token.of('.', TokenType.DOT), lex0.nextToken());
+        assertEquals(Token.of('.', TokenType.CHARACTER), lex0.nextToken());
+        assertEquals(Token.of('$', TokenType.DOLLAR), lex0.nextToken());
+        assertEquals(Token.of('\0', TokenType.EOF), lex0.nextToken());
+    }
 }
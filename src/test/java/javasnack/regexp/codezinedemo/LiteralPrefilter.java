@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * 正規表現の構文木から求めた固定文字列(Literals)で、オートマトンを動かす前に入力文字列をふるい落とす。
+ *
+ * 例えば "ab(c|d)*ef" にマッチする文字列は必ず "ab" で始まり "ef" で終わるため、
+ * そうでない入力文字列はオートマトンを動かすまでもなくマッチしないと判定できる。
+ * 固定文字列の検索には String.indexOf() / startsWith() / endsWith() を使う。
+ * (HotSpot では indexOf() などは SIMD 命令を使う intrinsic となっており、1文字ずつDFAを遷移させるよりはるかに速い)
+ * String 以外の CharSequence の場合は Boyer-Moore-Horspool 法で検索する。
+ *
+ * 注意 : 各ランタイムはサロゲートペアをコードポイントにした上で char に切り詰めて遷移させるため、
+ * サロゲートペアを含む入力文字列は固定文字列を含まなくてもマッチしうる。
+ * そのため、サロゲートを含む入力文字列はふるい落とさない。
+ */
+public class LiteralPrefilter {
+    private final Literals literals;
+    /** String 以外の CharSequence を検索する場合の、required のずらし表 (固定文字列はコンパイル時に決まるため、事前に作っておく) */
+    private final int[] requiredShift;
+    /** String 以外の CharSequence を検索する場合の、prefix のずらし表 */
+    private final int[] prefixShift;
+
+    private LiteralPrefilter(final Literals literals) {
+        this.literals = literals;
+        this.requiredShift = shiftTable(literals.required);
+        this.prefixShift = shiftTable(literals.prefix);
+    }
+
+    /**
+     * @param regexp 正規表現
+     * @return ふるい落としに使える固定文字列が無い場合は empty
+     */
+    public static Optional<LiteralPrefilter> of(final String regexp) {
+        return of(new Parser(new Lexer(regexp)).parse().literals());
+    }
+
+    /**
+     * @param literals 正規表現の構文木から求めた固定文字列
+     * @return ふるい落としに使える固定文字列が無い場合は empty
+     */
+    public static Optional<LiteralPrefilter> of(final Literals literals) {
+        if (literals.required.isEmpty()) {
+            // required は prefix, suffix のうち長い方以上の長さとなるため、全て空文字列となる。
+            return Optional.empty();
+        }
+        return Optional.of(new LiteralPrefilter(literals));
+    }
+
+    public Literals getLiterals() {
+        return this.literals;
+    }
+
+    /**
+     * @param input 入力文字列
+     * @return 入力文字列全体が正規表現にマッチしうるか (false なら確実にマッチしない)
+     */
+    public boolean mayMatch(final String input) {
+        if (input.startsWith(this.literals.prefix)
+                && input.endsWith(this.literals.suffix)
+                && input.contains(this.literals.required)) {
+            return true;
+        }
+        return hasSurrogate(input, 0);
+    }
+
+    /**
+     * @return 入力文字列をふるい落としに使えるか (サロゲートを含まないか)
+     */
+    public static boolean canFilter(final CharSequence input) {
+        return !hasSurrogate(input, 0);
+    }
+
+    /**
+     * 入力文字列中の検索で、マッチが始まりうる最初の位置を求める。
+     * マッチする部分は必ず prefix で始まるため、from 以降で prefix が最初に現れる位置より前からはマッチしない。
+     * 入力文字列について {@link #canFilter(CharSequence)} が true であること。
+     *
+     * @param input 入力文字列
+     * @param from 検索を開始する位置
+     * @return マッチが始まりうる最初の位置 (from 以降でマッチしないことが確実な場合は -1)
+     */
+    public int candidateStart(final CharSequence input, final int from) {
+        if (indexOf(input, this.literals.required, this.requiredShift, from) < 0) {
+            return -1;
+        }
+        return indexOf(input, this.literals.prefix, this.prefixShift, from);
+    }
+
+    private static boolean hasSurrogate(final CharSequence input, final int from) {
+        final int len = input.length();
+        for (int i = from; i < len; i++) {
+            if (Character.isSurrogate(input.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int indexOf(final CharSequence input, final String literal, final int[] shift, final int from) {
+        if (input instanceof String) {
+            return ((String) input).indexOf(literal, from);
+        }
+        return horspool(input, literal, shift, from);
+    }
+
+    /**
+     * @return Boyer-Moore-Horspool 法のずらし表 (0x00 - 0xFF の範囲の文字 -> ずらす量)
+     */
+    static int[] shiftTable(final String literal) {
+        final int m = literal.length();
+        final int[] shift = new int[0x100];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++) {
+            final char c = literal.charAt(i);
+            if (c < 0x100) {
+                shift[c] = m - 1 - i;
+            }
+        }
+        return shift;
+    }
+
+    static int horspool(final CharSequence input, final String literal, final int from) {
+        return horspool(input, literal, shiftTable(literal), from);
+    }
+
+    /**
+     * Boyer-Moore-Horspool 法による検索
+     *
+     * パターン末尾の位置の文字で、次に比較する位置までずらせる量を決める。
+     * ずらし表は 0x00 - 0xFF の範囲の文字のみ持ち、それ以外の文字は (パターン中に現れうるため) 1文字ずつずらす。
+     *
+     * @param shift {@link #shiftTable(String)} で literal から作ったずらし表
+     */
+    static int horspool(final CharSequence input, final String literal, final int[] shift, final int from) {
+        final int m = literal.length();
+        final int n = input.length();
+        if (m == 0) {
+            return Math.min(from, n);
+        }
+        int pos = Math.max(from, 0);
+        while (pos + m <= n) {
+            int j = m - 1;
+            while (j >= 0 && input.charAt(pos + j) == literal.charAt(j)) {
+                j--;
+            }
+            if (j < 0) {
+                return pos;
+            }
+            final char last = input.charAt(pos + m - 1);
+            pos += last < 0x100 ? shift[last] : 1;
+        }
+        return -1;
+    }
+}
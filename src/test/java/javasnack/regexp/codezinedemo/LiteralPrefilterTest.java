@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+
+public class LiteralPrefilterTest {
+    static Literals literalsOf(final String regexp) {
+        return new Parser(new Lexer(regexp)).parse().literals();
+    }
+
+    @Test
+    public void testLiterals() {
+        assertThat(literalsOf("abc")).isEqualTo(Literals.exact("abc"));
+        assertThat(literalsOf("")).isEqualTo(Literals.exact(""));
+        assertThat(literalsOf("ab*")).isEqualTo(Literals.of(null, "a", "", "a"));
+        assertThat(literalsOf("ab(c|d)*ef")).isEqualTo(Literals.of(null, "ab", "ef", "ef"));
+        assertThat(literalsOf("(a|b)*xyz(c|d)*")).isEqualTo(Literals.of(null, "", "", "xyz"));
+        // 前後の固定文字列を連結した部分も必ず現れる。
+        assertThat(literalsOf("a*(bc|dc)(ef|eg)h*")).isEqualTo(Literals.of(null, "", "", "ce"));
+        // 共通する接頭辞・接尾辞
+        assertThat(literalsOf("abcx|abdx")).isEqualTo(Literals.of(null, "ab", "x", "ab"));
+        assertThat(literalsOf("abc|abc")).isEqualTo(Literals.exact("abc"));
+        assertThat(literalsOf("(a|b)*")).isEqualTo(Literals.NONE);
+        assertThat(literalsOf("()*abc")).isEqualTo(Literals.exact("abc"));
+        assertThat(LiteralPrefilter.of("a*|b")).isEmpty();
+    }
+
+    @Test
+    public void testMayMatch() {
+        final LiteralPrefilter f = LiteralPrefilter.of("ab(c|d)*ef").get();
+        assertThat(f.mayMatch("abcdef")).isTrue();
+        assertThat(f.mayMatch("abxxef")).isTrue(); // ふるい落としはマッチしないことの確定のみ
+        assertThat(f.mayMatch("xbcdef")).isFalse();
+        assertThat(f.mayMatch("abcdex")).isFalse();
+        assertThat(f.mayMatch("")).isFalse();
+        // サロゲートを含む入力文字列はふるい落とさない。
+        assertThat(f.mayMatch("𠮷")).isTrue();
+    }
+
+    @Test
+    public void testCandidateStart() {
+        final LiteralPrefilter f = LiteralPrefilter.of("ab(c|d)*ef").get();
+        assertThat(f.candidateStart("xxabcefab", 0)).isEqualTo(2);
+        assertThat(f.candidateStart("xxabcefab", 3)).isEqualTo(7);
+        assertThat(f.candidateStart("xxabcefab", 6)).isEqualTo(-1);
+        assertThat(f.candidateStart(new StringBuilder("xxabcefab"), 0)).isEqualTo(2);
+        assertThat(f.candidateStart(new StringBuilder("xxabcefab"), 6)).isEqualTo(-1);
+        assertThat(LiteralPrefilter.canFilter("abc")).isTrue();
+        assertThat(LiteralPrefilter.canFilter("a𠮷c")).isFalse();
+    }
+
+    @Test
+    public void testHorspool() {
+        final Random rnd = new Random(1234);
+        for (int n = 0; n < 1000; n++) {
+            final StringBuilder input = new StringBuilder();
+            final int len = rnd.nextInt(20);
+            for (int i = 0; i < len; i++) {
+                input.append("abcあ".charAt(rnd.nextInt(4)));
+            }
+            final StringBuilder literal = new StringBuilder();
+            final int m = 1 + rnd.nextInt(3);
+            for (int i = 0; i < m; i++) {
+                literal.append("abcあ".charAt(rnd.nextInt(4)));
+            }
+            final int from = rnd.nextInt(len + 1);
+            assertThat(LiteralPrefilter.horspool(input, literal.toString(), from))
+                    .as(input + ", " + literal + ", " + from)
+                    .isEqualTo(input.toString().indexOf(literal.toString(), from));
+        }
+    }
+
+    @Test
+    public void testSameResultsWithoutPrefilter() {
+        final String[] patterns = { "abc", "ab*", "ab(c|d)*ef", "(a|b)*c(a|b)*", "a*(bc|dc)(ef|eg)h*", "abcx|abdx" };
+        final Random rnd = new Random(5678);
+        for (final String pattern : patterns) {
+            final Regexp filtered = Regexp.compileDfa(pattern);
+            final Regexp unfiltered = Regexp.compileDfa(pattern, RegexpOption.DISABLE_LITERAL_PREFILTER);
+            for (int n = 0; n < 300; n++) {
+                final StringBuilder sb = new StringBuilder();
+                final int len = rnd.nextInt(10);
+                for (int i = 0; i < len; i++) {
+                    sb.append("abcdefgh".charAt(rnd.nextInt(8)));
+                }
+                final String input = sb.toString();
+                assertThat(filtered.match(input)).as(pattern + " : " + input).isEqualTo(unfiltered.match(input));
+                assertThat(filtered.findAll(input)).as(pattern + " : " + input)
+                        .isEqualTo(unfiltered.findAll(input));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Objects;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * 構文木のnodeにマッチする全ての文字列に共通する固定文字列(リテラル)
+ *
+ * 各nodeについて以下を求め、ConcatNode / UnionNode / StarNode ではそれを組み合わせて求める。
+ * <ul>
+ * <li>exact : マッチする文字列が1通りしかない場合はその文字列 (それ以外は null)</li>
+ * <li>prefix : マッチする全ての文字列の先頭に現れる文字列</li>
+ * <li>suffix : マッチする全ての文字列の末尾に現れる文字列</li>
+ * <li>required : マッチする全ての文字列のどこかに現れる文字列 (prefix, suffix のうち長い方以上の長さ)</li>
+ * </ul>
+ * いずれも「分からない」場合は空文字列 "" となり、必ず成り立つ条件となる。
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public class Literals {
+    /** 固定文字列が分からない (= どんな文字列にもマッチしうる) 場合 */
+    public static final Literals NONE = Literals.of(null, "", "", "");
+
+    public final String exact;
+    public final String prefix;
+    public final String suffix;
+    public final String required;
+
+    public static Literals exact(final String s) {
+        return Literals.of(s, s, s, s);
+    }
+
+    /**
+     * @return AB の連結にマッチする文字列に共通する固定文字列
+     */
+    public static Literals concat(final Literals a, final Literals b) {
+        if (Objects.nonNull(a.exact) && Objects.nonNull(b.exact)) {
+            return exact(a.exact + b.exact);
+        }
+        final String prefix = Objects.nonNull(a.exact) ? a.exact + b.prefix : a.prefix;
+        final String suffix = Objects.nonNull(b.exact) ? a.suffix + b.exact : b.suffix;
+        // A の末尾と B の先頭は、連結した文字列の中で必ず隣り合う。
+        String required = longer(a.required, b.required);
+        required = longer(required, a.suffix + b.prefix);
+        required = longer(required, prefix);
+        required = longer(required, suffix);
+        return Literals.of(null, prefix, suffix, required);
+    }
+
+    /**
+     * @return (A|B) にマッチする文字列に共通する固定文字列
+     */
+    public static Literals union(final Literals a, final Literals b) {
+        if (Objects.nonNull(a.exact) && a.exact.equals(b.exact)) {
+            return a;
+        }
+        final String prefix = commonPrefix(a.prefix, b.prefix);
+        final String suffix = commonSuffix(a.suffix, b.suffix);
+        final String required = a.required.equals(b.required) ? a.required : longer(prefix, suffix);
+        return Literals.of(null, prefix, suffix, required);
+    }
+
+    /**
+     * @return A* にマッチする文字列に共通する固定文字列 (0回の繰り返しで空文字列にもマッチするため、空文字列のみ)
+     */
+    public static Literals star(final Literals a) {
+        return "".equals(a.exact) ? a : NONE;
+    }
+
+    private static String longer(final String s1, final String s2) {
+        return s2.length() > s1.length() ? s2 : s1;
+    }
+
+    static String commonPrefix(final String s1, final String s2) {
+        final int max = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < max && s1.charAt(i) == s2.charAt(i)) {
+            i++;
+        }
+        return s1.substring(0, i);
+    }
+
+    static String commonSuffix(final String s1, final String s2) {
+        final int max = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < max && s1.charAt(s1.length() - 1 - i) == s2.charAt(s2.length() - 1 - i)) {
+            i++;
+        }
+        return s1.substring(s1.length() - i);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import java.io.Serializable;
+import java.time.Duration;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * バックトラック方式のランタイムで、1回のマッチングに使ってよいステップ数と時間の上限
+ *
+ * バックトラック方式では正規表現と入力文字列の組み合わせによって指数時間・多項式時間がかかる(ReDoS)ため、
+ * 上限を超えた時点で MatchBudgetExceededException を投げて打ち切る。
+ * ステップ数はランタイムがNFAの状態を1つ辿るごとに1つ数える。
+ * (時間は System.nanoTime() の呼び出しを抑えるため、TIME_CHECK_INTERVAL ステップごとに確認する)
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public class MatchBudget implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 上限を設けない場合の値 */
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+
+    /** 経過時間を確認する間隔(ステップ数, 2のべき乗) */
+    static final int TIME_CHECK_INTERVAL = 1024;
+
+    /** 上限なし */
+    public static final MatchBudget UNLIMITED = MatchBudget.of(NO_LIMIT, NO_LIMIT);
+
+    /**
+     * NfaBackTrackRuntime のデフォルト
+     * (プログラムバグによる無限ループを防ぐための安全リミットとして、元々設定していた値)
+     */
+    public static final MatchBudget DEFAULT = MatchBudget.of(0xFFFFF, NO_LIMIT);
+
+    /** ステップ数の上限 */
+    public final long maxSteps;
+    /** 経過時間(ナノ秒)の上限 */
+    public final long timeoutNanos;
+
+    public static MatchBudget ofSteps(final long maxSteps) {
+        return MatchBudget.of(maxSteps, NO_LIMIT);
+    }
+
+    public static MatchBudget ofTimeout(final Duration timeout) {
+        return MatchBudget.of(NO_LIMIT, timeout.toNanos());
+    }
+
+    /**
+     * @param steps マッチング開始からのステップ数
+     * @param startedAt マッチング開始時の System.nanoTime()
+     * @throws MatchBudgetExceededException ステップ数か経過時間が上限を超えた場合
+     */
+    void check(final long steps, final long startedAt) {
+        if (steps > this.maxSteps) {
+            throw new MatchBudgetExceededException(this, steps, System.nanoTime() - startedAt);
+        }
+        if (this.timeoutNanos != NO_LIMIT && (steps & (TIME_CHECK_INTERVAL - 1)) == 0) {
+            final long elapsed = System.nanoTime() - startedAt;
+            if (elapsed > this.timeoutNanos) {
+                throw new MatchBudgetExceededException(this, steps, elapsed);
+            }
+        }
+    }
+}
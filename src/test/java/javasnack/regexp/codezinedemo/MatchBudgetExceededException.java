@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+/**
+ * バックトラック方式のランタイムで、マッチングが MatchBudget の上限を超えた場合の例外
+ *
+ * 元々の安全リミット(IllegalStateException)と互換性を保つため、IllegalStateException を継承する。
+ */
+public class MatchBudgetExceededException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    /** 超えた上限 */
+    private final MatchBudget budget;
+    /** 打ち切るまでのステップ数 */
+    private final long steps;
+    /** 打ち切るまでの経過時間(ナノ秒) */
+    private final long elapsedNanos;
+
+    public MatchBudgetExceededException(final MatchBudget budget, final long steps, final long elapsedNanos) {
+        super("match budget exceeded : steps=" + steps + ", elapsed=" + elapsedNanos + "ns, budget=" + budget);
+        this.budget = budget;
+        this.steps = steps;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public MatchBudget getBudget() {
+        return this.budget;
+    }
+
+    public long getSteps() {
+        return this.steps;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+}
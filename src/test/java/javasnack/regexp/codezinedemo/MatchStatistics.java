@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * 1回のマッチングの結果と、その統計情報
+ *
+ * コンパイル済みの Regexp を複数のスレッドで共有できるよう、統計情報は Regexp のフィールドに残さず呼び出しごとに返す。
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public class MatchStatistics {
+    /** バックトラックしないランタイムでマッチした場合 (オブジェクト生成を避けるため使い回す) */
+    public static final MatchStatistics MATCHED = MatchStatistics.of(true, 0, 0L);
+    /** バックトラックしないランタイムでマッチしなかった場合 (オブジェクト生成を避けるため使い回す) */
+    public static final MatchStatistics UNMATCHED = MatchStatistics.of(false, 0, 0L);
+
+    /** 入力文字列全体にマッチしたか */
+    public final boolean matched;
+    /** バックトラック方式のランタイムでバックトラックした回数 (それ以外のランタイムでは 0) */
+    public final int countOfBackTrack;
+    /** バックトラック方式のランタイムで辿ったステップ数 (MatchBudget で上限を設けるもの, それ以外のランタイムでは 0) */
+    public final long countOfSteps;
+
+    public static MatchStatistics of(final boolean matched) {
+        return matched ? MATCHED : UNMATCHED;
+    }
+}
@@ -42,6 +42,17 @@ public class Nfa {
     public final Set<Integer> accept;
     /** 展開時に遷移関数を動かすときに、トレースログを区別しやすくするためのマーカを挿入するときはON */
     public final boolean enableExpandEpsilonTrace;
+    /**
+     * 遷移関数に現れる入力文字の集合 (遷移関数を直接組み立てた場合など、不明な場合は null)
+     * 文字クラス [a-z] などの範囲の遷移は、範囲の両端の文字で表す。
+     * (各文字 c について c と c + 1 で区切った区間内の文字は、どの状態からも同じ遷移先となること)
+     */
+    public final Set<Character> alphabet;
+
+    public static Nfa of(final NfaStateTransitFunction transition, final int start, final Set<Integer> accept,
+            final boolean enableExpandEpsilonTrace) {
+        return of(transition, start, accept, enableExpandEpsilonTrace, null);
+    }
 
     public static Nfa of(final NfaStateTransitFunction transition, final int start, final Set<Integer> accept) {
         return of(transition, start, accept, false);
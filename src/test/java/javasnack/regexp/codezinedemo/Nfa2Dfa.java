@@ -16,11 +16,12 @@
 
 package javasnack.regexp.codezinedemo;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -45,18 +46,27 @@ public class Nfa2Dfa {
     public final Set<Integer> nfaAcceptableStateSet;
 
     public static Nfa2Dfa from(final Nfa nfa, final boolean enableTraceLog, final boolean enableTransitionCache) {
-        // パフォーマンス向上のため、遷移関数の引数と値ペアをキャッシュしておくmap
-        final Map<StateSetAndInputCharacter, Set<Integer>> memocache = new HashMap<>();
+        /* パフォーマンス向上のため、遷移関数の引数と値ペアをキャッシュしておくmap
+         * 遷移関数は複数のスレッドから同時に呼ばれうるため、ConcurrentHashMap を使う。
+         * (同じキーの遷移先を複数のスレッドが同時に計算しても、結果は同じ集合になるため問題ない)
+         */
+        final Map<StateSetAndInputCharacter, Set<Integer>> memocache = new ConcurrentHashMap<>();
+        /* 入力文字の集合が分かっている場合は、キャッシュのキーとなる文字をクラスの代表となる文字に置き換える。
+         * -> 同じクラスの文字(特に正規表現中に現れない文字全て)で、キャッシュのエントリが共有される。
+         */
+        final AlphabetPartition alphabet = Objects.isNull(nfa.alphabet) ? null : AlphabetPartition.of(nfa);
 
         final Nfa2DfaStateTransitFunction transition0 = (
                 final Set<Integer> setOfCurrentState,
                 final char character) -> {
 
             // キャッシュ用のkey
-            final StateSetAndInputCharacter cacheKey = StateSetAndInputCharacter.of(setOfCurrentState, character);
-            if (enableTransitionCache && memocache.containsKey(cacheKey)) {
+            final char canonical = Objects.isNull(alphabet) ? character : alphabet.canonicalize(character);
+            final StateSetAndInputCharacter cacheKey = StateSetAndInputCharacter.of(setOfCurrentState, canonical);
+            final Set<Integer> cached = enableTransitionCache ? memocache.get(cacheKey) : null;
+            if (Objects.nonNull(cached)) {
                 // キャッシュ有効でキャッシュhitしたときは、その値を返す。
-                final Set<Integer> r = memocache.get(cacheKey);
+                final Set<Integer> r = cached;
                 if (enableTraceLog) {
                     System.out.println("NFA2DFA TRANSITION: (" + setOfCurrentState + ", '" + character + "') => " + r
                             + " (cached)");
@@ -66,7 +76,7 @@ public class Nfa2Dfa {
 
             final Set<Integer> setOfNextState = new HashSet<>();
             for (int currentState : setOfCurrentState) {
-                final Set<Integer> nfaResult = nfa.transition.apply(currentState, Optional.of(character));
+                final Set<Integer> nfaResult = nfa.transition.apply(currentState, Optional.of(canonical));
                 setOfNextState.addAll(nfaResult);
             }
             final Set<Integer> r = nfa.expandEpsilon(setOfNextState);
@@ -19,7 +19,7 @@ package javasnack.regexp.codezinedemo;
 import java.util.HashSet;
 import java.util.Set;
 
-public class Nfa2DfaRuntime {
+public class Nfa2DfaRuntime implements IncrementalRuntime {
     private final Nfa2Dfa nfa2dfa;
     private Set<Integer> currentState;
 
@@ -32,6 +32,22 @@ public class Nfa2DfaRuntime {
         this.currentState = nfa2dfa.transition.apply(currentState, c);
     }
 
+    @Override
+    public void reset() {
+        this.currentState = nfa2dfa.start;
+    }
+
+    @Override
+    public boolean feed(final char c) {
+        this.transit(c);
+        return !this.currentState.isEmpty();
+    }
+
+    @Override
+    public boolean isAcceptable() {
+        return this.isCurrentStatusAcceptable();
+    }
+
     public static <T> Set<T> intersect(final Set<T> a, final Set<T> b) {
         /* java collections api では積集合が破壊的な処理となっている。
          * -> 破壊される方の引数についてコピーを作成し、そちらで破壊的な処理を行う。
@@ -56,7 +72,12 @@ public class Nfa2DfaRuntime {
     }
 
     public boolean accept(final String input) {
-        input.codePoints().mapToObj(c -> (char) c).forEach(c -> this.transit(c));
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            this.transit((char) c);
+        }
         return this.isCurrentStatusAcceptable();
     }
 }
@@ -68,11 +68,16 @@ public class NfaBackTrackRuntime {
     private final boolean enableTraceLog;
     private final boolean enableTracedBackTrackSkipping;
     private int countOfBackTracked = 0;
+    private long countOfSteps = 0;
 
     public int getCountOfBackTracked() {
         return this.countOfBackTracked;
     }
 
+    public long getCountOfSteps() {
+        return this.countOfSteps;
+    }
+
     public NfaBackTrackRuntime(
             final Nfa nfa,
             final boolean enableTraceLog,
@@ -195,25 +200,42 @@ public class NfaBackTrackRuntime {
         return this.nfa.accept.contains(this.currentState);
     }
 
-    /** バックトラック方式ではプログラムバグで無限ループが発生する危険があるため、安全リミットを設定する。*/
-    private static final int LOOP_LIMITTER = 0xFFFFF;
+    /**
+     * バックトラック方式ではプログラムバグで無限ループが発生する危険があるため、安全リミット(MatchBudget.DEFAULT)を設定する。
+     */
+    public boolean accept(final String input) {
+        return this.accept(input, MatchBudget.DEFAULT);
+    }
 
-    private void checkLimit(final int limitter) {
-        if (limitter > LOOP_LIMITTER) {
-            throw new IllegalStateException("loop limit over");
+    /**
+     * 初期状態に戻す。(1つのインスタンスでマッチングを繰り返す場合に、前回のバックトラックの記録を持ち越さないため)
+     */
+    public void reset() {
+        this.currentState = this.nfa.start;
+        this.left = null;
+        this.branches.clear();
+        if (!this.alreadyTracedBranches.isEmpty()) {
+            // 大きくなったハッシュ表を clear() で使い回すと、次回以降も表全体を走査することになるため作り直す。
+            this.alreadyTracedBranches = new HashSet<>();
         }
+        this.countOfBackTracked = 0;
+        this.countOfSteps = 0;
     }
 
-    public boolean accept(final String input) {
+    /**
+     * @param input 入力文字列
+     * @param budget ステップ数と時間の上限 (ステップ数は辿った分岐ポイントの数)
+     * @throws MatchBudgetExceededException 上限を超えた場合
+     */
+    public boolean accept(final String input, final MatchBudget budget) {
+        this.reset();
         this.left = input;
-        int limitter = 0;
+        final long startedAt = System.nanoTime();
         while (true) {
-            limitter++;
-            checkLimit(limitter);
+            budget.check(++this.countOfSteps, startedAt);
             while (this.transitSingleChar()) {
                 // 適当な経路でNFAを辿れるところまで辿り、分岐ポイントもセーブしておく。
-                limitter++;
-                checkLimit(limitter);
+                budget.check(++this.countOfSteps, startedAt);
             }
             if (this.isCurrentStatusAcceptable()) {
                 // 辿れる範囲で辿り終わった時点で受理可能状態であれば、受理。
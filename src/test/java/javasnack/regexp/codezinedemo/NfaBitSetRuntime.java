@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Arrays;
+
+public class NfaBitSetRuntime implements IncrementalRuntime {
+    /* NfaRuntime と同じく幅優先で探索するタイプだが、「選択可能な状態の集合」を TreeSet ではなく
+     * long[] のビット集合で扱う。(Thompson の NFA シミュレーション / Pike VM と同じ考え方)
+     *
+     * 現在の状態と次の状態の2つのビット集合はインスタンス生成時に確保し、以降は使い回す。
+     * -> 1回の accept() 呼び出し中はオブジェクトを一切生成しないため、同じインスタンスで繰り返しマッチングすれば
+     * ウォームアップ後はGCの対象となるゴミが発生しない。
+     * (そのため、1つのインスタンスを複数のスレッドで同時に使うことはできない)
+     */
+    private final NfaTable nfa;
+    private long[] currentState;
+    private long[] nextState;
+
+    public NfaBitSetRuntime(final NfaTable nfa) {
+        this.nfa = nfa;
+        this.currentState = new long[nfa.words];
+        this.nextState = new long[nfa.words];
+        this.reset();
+    }
+
+    public NfaTable getNfaTable() {
+        return this.nfa;
+    }
+
+    @Override
+    public void reset() {
+        System.arraycopy(this.nfa.initial, 0, this.currentState, 0, this.nfa.words);
+    }
+
+    @Override
+    public boolean feed(final char c) {
+        return !this.transit(this.nfa.alphabet.classOf(c));
+    }
+
+    @Override
+    public boolean isAcceptable() {
+        return this.isCurrentStatusAcceptable();
+    }
+
+    /**
+     * @return 遷移先の状態の集合が空集合か
+     */
+    private boolean transit(final int classId) {
+        final long[] next = this.nextState;
+        Arrays.fill(next, 0L);
+        final long[] current = this.currentState;
+        final long[][] steps = this.nfa.steps;
+        final int classCount = this.nfa.classCount;
+        for (int w = 0; w < current.length; w++) {
+            long bits = current[w];
+            while (bits != 0L) {
+                final int state = (w << 6) + Long.numberOfTrailingZeros(bits);
+                // 最下位のビットを落とす
+                bits &= bits - 1;
+                final long[] step = steps[state * classCount + classId];
+                if (step != null) {
+                    NfaTable.or(next, step);
+                }
+            }
+        }
+        this.nextState = current;
+        this.currentState = next;
+        return isEmpty(next);
+    }
+
+    private static boolean isEmpty(final long[] bits) {
+        for (final long w : bits) {
+            if (w != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isCurrentStatusAcceptable() {
+        final long[] acceptMask = this.nfa.acceptMask;
+        for (int w = 0; w < acceptMask.length; w++) {
+            if ((this.currentState[w] & acceptMask[w]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean accept(final String input) {
+        this.reset();
+        final AlphabetPartition alphabet = this.nfa.alphabet;
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            if (this.transit(alphabet.classOf((char) c))) {
+                // 空集合からはどの文字を入力しても抜け出せないため、残りの文字列は読まずに打ち切る。
+                return false;
+            }
+        }
+        return this.isCurrentStatusAcceptable();
+    }
+}
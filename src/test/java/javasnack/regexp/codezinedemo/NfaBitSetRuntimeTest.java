@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+public class NfaBitSetRuntimeTest {
+    static NfaBitSetRuntime compile(final String regexp) {
+        return new NfaBitSetRuntime(NfaTable.from(new Parser(new Lexer(regexp)).expression()));
+    }
+
+    @Test
+    public void testNfaBitSetRuntimeAcceptance() {
+        final NfaBitSetRuntime rt = compile("(ab*|cd*)*ef*");
+        // 同じインスタンスで繰り返しマッチングできる。
+        for (final String s : new String[] { "e", "abe", "abbefff", "abcde", "abbbabbbbefff", "cdabefff" }) {
+            assertThat(rt.accept(s)).isTrue();
+        }
+        for (final String s : new String[] { "", "ab", "abx", "efe", "x" }) {
+            assertThat(rt.accept(s)).isFalse();
+        }
+    }
+
+    @Test
+    public void testManyStates() {
+        // 状態数が64を超える(= long 1つに収まらない)場合
+        final String abc = "abcdefghijklmnopqrstuvwxyz";
+        final NfaTable nfa = NfaTable.from(new Parser(new Lexer("(" + abc + "|" + abc.toUpperCase() + ")*0"))
+                .expression());
+        assertThat(nfa.stateCount).isGreaterThan(64);
+        assertThat(nfa.words).isGreaterThan(1);
+        final NfaBitSetRuntime rt = new NfaBitSetRuntime(nfa);
+        assertThat(rt.accept("0")).isTrue();
+        assertThat(rt.accept(abc + abc.toUpperCase() + abc + "0")).isTrue();
+        assertThat(rt.accept(abc + abc.toUpperCase() + abc)).isFalse();
+        assertThat(rt.accept(abc.substring(1) + "0")).isFalse();
+    }
+
+    @Test
+    public void testNoAllocationAfterWarmUp() {
+        final java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean tmx = (com.sun.management.ThreadMXBean) mx;
+        if (!tmx.isThreadAllocatedMemorySupported() || !tmx.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        final NfaBitSetRuntime rt = compile("(ab*|cd*)*ef*");
+        final String input = "abbbabbbbcdddabcdefff";
+        for (int i = 0; i < 20_000; i++) {
+            rt.accept(input);
+        }
+        final long before = tmx.getCurrentThreadAllocatedBytes();
+        int matched = 0;
+        for (int i = 0; i < 100_000; i++) {
+            matched += rt.accept(input) ? 1 : 0;
+        }
+        final long allocated = tmx.getCurrentThreadAllocatedBytes() - before;
+        assertThat(matched).isEqualTo(100_000);
+        // 計測処理自体のわずかな生成を除き、マッチング回数に比例したオブジェクト生成が無いこと。
+        assertThat(allocated).isLessThan(100_000L);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Arrays;
+
+public class NfaBitStateBackTrackRuntime {
+    /* NfaBackTrackRuntime と同じく深さ優先で探索するタイプだが、以下の点が異なる。
+     * (Go の regexp や RE2 の "bit-state backtracker" と同じ考え方)
+     *
+     * 1. 残りの文字列を substring() で切り出すのではなく、入力文字列中の位置(int)で扱う。
+     * 2. 分岐ポイントは (状態, 位置) の int のペアとして、int[] のスタックに積む。
+     * 3. 一度辿った (状態, 位置) は「状態数 x (文字列長 + 1)」ビットのビットマップに記録し、二度と辿らない。
+     *    同じ (状態, 位置) から先の探索結果は何度辿っても同じなので、これで結果は変わらない。
+     *
+     * 3. により1つの (状態, 位置) は高々1回しか辿らないため、計算量は O(状態数 x 文字列長) で抑えられ、
+     * (a|a)* や a*a*a*a* のような正規表現でも、指数時間や多項式時間に劣化しない。
+     *
+     * ビットマップは文字列長に比例して大きくなるため、上限を超える場合は NfaBitSetRuntime(幅優先)で判定する。
+     */
+
+    /** ビットマップのビット数のデフォルトの上限 (256KB 分) */
+    public static final int DEFAULT_MAX_VISITED_BITS = 256 * 1024 * 8;
+
+    private final NfaTable nfa;
+    private final int maxVisitedBits;
+    private final boolean enableTraceLog;
+    /** ビットマップの上限を超える場合に使う幅優先のランタイム */
+    private final NfaBitSetRuntime fallback;
+
+    /** [状態番号 * (文字列長 + 1) + 位置] -> 辿ったか */
+    private long[] visited = new long[0];
+    /** 分岐ポイントのスタック : 状態番号と位置を交互に積む。 */
+    private int[] stack = new int[64];
+    private int countOfBackTracked = 0;
+    private long countOfSteps = 0;
+
+    public NfaBitStateBackTrackRuntime(final NfaTable nfa, final int maxVisitedBits, final boolean enableTraceLog) {
+        this.nfa = nfa;
+        this.maxVisitedBits = maxVisitedBits;
+        this.enableTraceLog = enableTraceLog;
+        this.fallback = new NfaBitSetRuntime(nfa);
+    }
+
+    public NfaBitStateBackTrackRuntime(final NfaTable nfa) {
+        this(nfa, DEFAULT_MAX_VISITED_BITS, false);
+    }
+
+    public int getCountOfBackTracked() {
+        return this.countOfBackTracked;
+    }
+
+    public long getCountOfSteps() {
+        return this.countOfSteps;
+    }
+
+    /**
+     * @param input 入力文字列
+     * @return ビットマップの上限に収まり、バックトラック方式で判定できるか
+     */
+    public boolean canBackTrack(final String input) {
+        return (long) this.nfa.stateCount * (input.length() + 1) <= this.maxVisitedBits;
+    }
+
+    public boolean accept(final String input) {
+        return this.accept(input, MatchBudget.UNLIMITED);
+    }
+
+    /**
+     * 辿る (状態, 位置) は O(状態数 x 文字列長) で抑えられるが、巨大な入力文字列で時間がかかりすぎないよう上限を設けられる。
+     *
+     * @param input 入力文字列
+     * @param budget ステップ数と時間の上限 (ステップ数はスタックから取り出した分岐ポイントの数)
+     * @throws MatchBudgetExceededException 上限を超えた場合
+     */
+    public boolean accept(final String input, final MatchBudget budget) {
+        this.countOfBackTracked = 0;
+        this.countOfSteps = 0;
+        if (!this.canBackTrack(input)) {
+            if (this.enableTraceLog) {
+                System.out.println("BITSTATE: input too long (" + input.length() + " chars), fallback to NFA BITSET");
+            }
+            return this.fallback.accept(input);
+        }
+        final int len = input.length();
+        final int width = len + 1;
+        final int words = (this.nfa.stateCount * width + 63) >>> 6;
+        if (this.visited.length < words) {
+            this.visited = new long[words];
+        } else {
+            Arrays.fill(this.visited, 0, words, 0L);
+        }
+
+        final AlphabetPartition alphabet = this.nfa.alphabet;
+        final int classCount = this.nfa.classCount;
+        final long startedAt = System.nanoTime();
+        int sp = 0;
+        sp = this.push(sp, 0, 0);
+        while (sp > 0) {
+            budget.check(++this.countOfSteps, startedAt);
+            final int pos = this.stack[--sp];
+            final int state = this.stack[--sp];
+            final int key = state * width + pos;
+            if ((this.visited[key >>> 6] & (1L << key)) != 0L) {
+                continue;
+            }
+            this.visited[key >>> 6] |= 1L << key;
+            if (this.enableTraceLog) {
+                System.out.println("BITSTATE: state=" + state + ", pos=" + pos);
+            }
+            if (pos == len && this.nfa.isAcceptable(state)) {
+                return true;
+            }
+
+            final int spBefore = sp;
+            /* スタックなので、後に積んだものから先に辿る。
+             * 入力文字での遷移を先に積み、空文字(ε)での遷移を後に積む(= 空文字(ε)での遷移を優先して辿る)。
+             */
+            if (pos < len) {
+                final int c = input.codePointAt(pos);
+                final int[] nexts = this.nfa.targets[state * classCount + alphabet.classOf((char) c)];
+                if (nexts != null) {
+                    final int nextPos = pos + Character.charCount(c);
+                    for (int i = nexts.length - 1; i >= 0; i--) {
+                        sp = this.push(sp, nexts[i], nextPos);
+                    }
+                }
+            }
+            final int[] epsilons = this.nfa.epsilons[state];
+            for (int i = epsilons.length - 1; i >= 0; i--) {
+                sp = this.push(sp, epsilons[i], pos);
+            }
+            if (sp == spBefore && sp > 0) {
+                // 行き止まりのため、スタックに積んだ分岐ポイントに戻る。
+                this.countOfBackTracked++;
+            }
+        }
+        return false;
+    }
+
+    private int push(final int sp, final int state, final int pos) {
+        if (sp + 2 > this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+        }
+        this.stack[sp] = state;
+        this.stack[sp + 1] = pos;
+        return sp + 2;
+    }
+}
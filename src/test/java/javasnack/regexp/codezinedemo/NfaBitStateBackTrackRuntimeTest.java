@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class NfaBitStateBackTrackRuntimeTest {
+    static NfaTable compile(final String regexp) {
+        return NfaTable.from(new Parser(new Lexer(regexp)).expression());
+    }
+
+    @Test
+    public void testAcceptance() {
+        final NfaBitStateBackTrackRuntime rt = new NfaBitStateBackTrackRuntime(compile("(ab*|cd*)*ef*"));
+        for (final String s : new String[] { "e", "abe", "abbefff", "abcde", "abbbabbbbefff", "cdabefff" }) {
+            assertThat(rt.accept(s)).isTrue();
+        }
+        for (final String s : new String[] { "", "ab", "abx", "efe", "x" }) {
+            assertThat(rt.accept(s)).isFalse();
+        }
+        final NfaBitStateBackTrackRuntime rt2 = new NfaBitStateBackTrackRuntime(compile("(あ|い)*う"));
+        assertThat(rt2.accept("あいあいう")).isTrue();
+        assertThat(rt2.accept("あいあい")).isFalse();
+        // サロゲートペアの文字は1文字(コードポイント)として扱う。
+        assertThat(rt2.accept("あ𠮷う")).isFalse();
+    }
+
+    @Test
+    public void testNoExponentialBackTrack() {
+        /* NfaBackTrackPerformanceDoSDemoTest で指数時間・多項式時間に劣化するパターンでも、
+         * (状態, 位置) を高々1回しか辿らないため、バックトラック回数は 状態数 x (文字列長 + 1) を超えない。
+         */
+        final int len = 2000;
+        final String nonMatch = "a".repeat(len) + "b";
+        for (final String regexp : new String[] { "(a|a)*", "(a*)*", "a*a*", "a*a*a*a*" }) {
+            final NfaTable nfa = compile(regexp);
+            final NfaBitStateBackTrackRuntime rt = new NfaBitStateBackTrackRuntime(nfa);
+            assertThat(rt.canBackTrack(nonMatch)).isTrue();
+            assertThat(rt.accept(nonMatch)).isFalse();
+            assertThat(rt.getCountOfBackTracked()).isLessThanOrEqualTo(nfa.stateCount * (nonMatch.length() + 1));
+            assertThat(rt.accept("a".repeat(len))).isTrue();
+        }
+    }
+
+    @Test
+    public void testFallbackToNfaBitSet() {
+        final NfaTable nfa = compile("(a|a)*b");
+        // ビットマップの上限を小さくし、幅優先のランタイムにフォールバックさせる。
+        final NfaBitStateBackTrackRuntime rt = new NfaBitStateBackTrackRuntime(nfa, 64, false);
+        final String longInput = "a".repeat(100) + "b";
+        assertThat(rt.canBackTrack(longInput)).isFalse();
+        assertThat(rt.accept(longInput)).isTrue();
+        assertThat(rt.accept(longInput + "b")).isFalse();
+        assertThat(rt.getCountOfBackTracked()).isEqualTo(0);
+        // 上限に収まる入力ではバックトラック方式で判定する。
+        assertThat(rt.canBackTrack("ab")).isTrue();
+        assertThat(rt.accept("ab")).isTrue();
+    }
+}
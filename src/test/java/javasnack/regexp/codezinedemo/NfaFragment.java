@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
@@ -44,6 +45,10 @@ public class NfaFragment {
      */
     private Map<StateAndInputCharacter, Set<Integer>> stateTransitionMatrix = new HashMap<>();
 
+    /* 文字クラス [a-z] などの範囲の遷移は、範囲内の文字ごとに展開せず、状態S -> (範囲R -> 遷移先状態S'の集合) として保持する。
+     */
+    private Map<Integer, Map<CharRange, Set<Integer>>> rangeTransitionMatrix = new HashMap<>();
+
     /**
      * このNFAフラグメントの状態遷移マトリクスに、新たな遷移設定を追加する。(= 副作用あり)
      * 
@@ -58,6 +63,33 @@ public class NfaFragment {
         this.stateTransitionMatrix.put(key, transitionSet);
     }
 
+    /**
+     * このNFAフラグメントの状態遷移マトリクスに、範囲内のいずれかの文字で遷移する設定を追加する。(= 副作用あり)
+     * 
+     * @param stateFrom 初期状態
+     * @param range 入力文字の範囲
+     * @param stateTo 遷移先状態
+     */
+    public void connect(final int stateFrom, final CharRange range, final int stateTo) {
+        this.rangeTransitionMatrix
+                .computeIfAbsent(stateFrom, k -> new HashMap<>())
+                .computeIfAbsent(range, k -> new HashSet<>())
+                .add(stateTo);
+    }
+
+    /**
+     * 引数で指定されたNFAフラグメントの範囲の遷移を、このNFAフラグメントに deep-copy する。(= 副作用あり)
+     */
+    private void copyRangeTransitionMatrixFrom(final NfaFragment fragment) {
+        for (final Entry<Integer, Map<CharRange, Set<Integer>>> e : fragment.rangeTransitionMatrix.entrySet()) {
+            final Map<CharRange, Set<Integer>> ranges = this.rangeTransitionMatrix
+                    .computeIfAbsent(e.getKey(), k -> new HashMap<>());
+            for (final Entry<CharRange, Set<Integer>> e2 : e.getValue().entrySet()) {
+                ranges.computeIfAbsent(e2.getKey(), k -> new HashSet<>()).addAll(e2.getValue());
+            }
+        }
+    }
+
     /**
      * @return このNFAフラグメントの状態遷移マトリクスだけを deep-copy した、新しいNFAフラグメント(初期状態/受理可能状態の集合は未設定)
      */
@@ -71,6 +103,7 @@ public class NfaFragment {
                     originalKey.inputCharacter);
             r.stateTransitionMatrix.put(deepCopiedKey, new HashSet<>(e.getValue()));
         }
+        r.copyRangeTransitionMatrixFrom(this);
         return r;
     }
 
@@ -91,9 +124,28 @@ public class NfaFragment {
                     originalKey.inputCharacter);
             r.stateTransitionMatrix.put(deepCopiedKey, new HashSet<>(e.getValue()));
         }
+        r.copyRangeTransitionMatrixFrom(fragment);
         return r;
     }
 
+    /**
+     * 引数で指定されたNFAフラグメントの状態遷移マトリクスを、このNFAフラグメントの状態遷移マトリクスに合成する。(= 副作用あり)
+     * 多数のNFAフラグメントを合成する場合に、都度 deep-copy するのを避けるためのもの。
+     * 状態S x 入力文字C における状態Sについては、全体として重複が無いことを前提とする。
+     * 
+     * @param fragment 合成対象のNFAフラグメント
+     */
+    public void mergeStateTransitionMatrix(final NfaFragment fragment) {
+        for (final Entry<StateAndInputCharacter, Set<Integer>> e : fragment.stateTransitionMatrix.entrySet()) {
+            final StateAndInputCharacter originalKey = e.getKey();
+            final StateAndInputCharacter deepCopiedKey = StateAndInputCharacter.of(
+                    originalKey.currentState,
+                    originalKey.inputCharacter);
+            this.stateTransitionMatrix.put(deepCopiedKey, new HashSet<>(e.getValue()));
+        }
+        this.copyRangeTransitionMatrixFrom(fragment);
+    }
+
     /**
      * 状態遷移マトリクスを元に生成した状態遷移関数を持つNFAを作成する。
      * 
@@ -102,15 +154,45 @@ public class NfaFragment {
      */
     public Nfa build(final boolean enableTraceLog) {
         final Map<StateAndInputCharacter, Set<Integer>> mapref = this.stateTransitionMatrix;
+        final Map<Integer, Map<CharRange, Set<Integer>>> rangeref = this.rangeTransitionMatrix;
         final NfaStateTransitFunction transition = (final int currentState, final Optional<Character> input) -> {
             final StateAndInputCharacter key = StateAndInputCharacter.of(currentState, input);
-            final Set<Integer> r = mapref.getOrDefault(key, Collections.emptySet());
+            Set<Integer> r = mapref.getOrDefault(key, Collections.emptySet());
+            final Map<CharRange, Set<Integer>> ranges = input.isPresent() ? rangeref.get(currentState) : null;
+            if (Objects.nonNull(ranges)) {
+                // 入力文字を含む範囲の遷移先も合わせる。
+                final char c = input.get();
+                Set<Integer> merged = null;
+                for (final Entry<CharRange, Set<Integer>> e : ranges.entrySet()) {
+                    if (e.getKey().contains(c)) {
+                        if (Objects.isNull(merged)) {
+                            merged = new HashSet<>(r);
+                        }
+                        merged.addAll(e.getValue());
+                    }
+                }
+                if (Objects.nonNull(merged)) {
+                    r = merged;
+                }
+            }
             if (enableTraceLog) {
                 System.out.println("NFA TRANSITION: (" + currentState + ", " + optchar(input) + ") => " + r);
             }
             return Collections.unmodifiableSet(r);
         };
-        return Nfa.of(transition, this.startState, this.acceptableStates, enableTraceLog);
+        final Set<Character> alphabet = new HashSet<>();
+        for (final StateAndInputCharacter key : mapref.keySet()) {
+            key.inputCharacter.ifPresent(alphabet::add);
+        }
+        for (final Map<CharRange, Set<Integer>> ranges : rangeref.values()) {
+            for (final CharRange range : ranges.keySet()) {
+                // 範囲の遷移は両端の文字で表す。(Nfa.alphabet の説明を参照)
+                alphabet.add(range.lo);
+                alphabet.add(range.hi);
+            }
+        }
+        return Nfa.of(transition, this.startState, this.acceptableStates, enableTraceLog,
+                Collections.unmodifiableSet(alphabet));
     }
 
     public Nfa build() {
@@ -154,6 +236,13 @@ public class NfaFragment {
             final Set<Integer> r = e.getValue();
             sb.append("[ " + currentState + ", " + optchar(input) + " -> " + r + " ]\n");
         }
+        for (final int currentState : new TreeMap<>(this.rangeTransitionMatrix).keySet()) {
+            for (final CharRange range : CharRange.sort(this.rangeTransitionMatrix.get(currentState).keySet())) {
+                final Set<Integer> r = this.rangeTransitionMatrix.get(currentState).get(range);
+                sb.append("[ " + currentState + ", " + optchar(Optional.of(range.lo)) + "-"
+                        + optchar(Optional.of(range.hi)) + " -> " + r + " ]\n");
+            }
+        }
         sb.append("set of acceptable state = " + this.acceptableStates + "\n");
         return sb.toString();
     }
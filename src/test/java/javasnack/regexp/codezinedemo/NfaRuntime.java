@@ -16,11 +16,12 @@
 
 package javasnack.regexp.codezinedemo;
 
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 
-public class NfaRuntime {
+public class NfaRuntime implements IncrementalRuntime {
     /* 連載記事中には解説が無いが、(6) からDLできるサンプルコードには dfareg/nfa.py として収録されている。
      * 2種類含まれており、こちらは幅優先で探索するタイプ。
      * 幅優先 : 選択しうる状態を集合とし、全ての可能性を保持しつつマッチするまで広げて行く
@@ -31,23 +32,70 @@ public class NfaRuntime {
      * 集合に対するiterate処理が常に昇順でどうさすることとなり、デバッグやトレース時に理解しやすくなる。
      */
     private final Nfa nfa;
+    /** 入力文字 -> 入力文字のクラス番号 (入力文字の集合が分からないNFAの場合は null) */
+    private final AlphabetPartition alphabet;
+    /** 初期状態 (空文字(ε)で遷移可能な選択肢をマージ済み) */
+    private final Set<Integer> initialState;
     /** 「選択可能な状態の集合」 = 現在遷移可能な全ての未来の選択肢 */
     private Set<Integer> currentState;
 
+    /**
+     * 入力文字のクラス分けをその場で求める。(マッチングのたびに生成する場合は、求めておいたものを渡すこと)
+     */
     public NfaRuntime(final Nfa nfa) {
+        this(nfa, Objects.isNull(nfa.alphabet) ? null : AlphabetPartition.of(nfa));
+    }
+
+    /**
+     * @param nfa NFA
+     * @param alphabet nfa から求めた入力文字のクラス分け (入力文字の集合が分からないNFAの場合は null)
+     */
+    public NfaRuntime(final Nfa nfa, final AlphabetPartition alphabet) {
         this.nfa = nfa;
+        this.alphabet = alphabet;
         // 初期状態について、空文字(ε)で遷移可能な選択肢をマージしておく。
-        this.currentState = new TreeSet<>(nfa.expandEpsilon(Set.of(nfa.start)));
+        this.initialState = new TreeSet<>(nfa.expandEpsilon(Set.of(nfa.start)));
+        this.currentState = this.initialState;
+    }
+
+    @Override
+    public void reset() {
+        this.currentState = this.initialState;
+    }
+
+    @Override
+    public boolean feed(final char c) {
+        this.transit(c);
+        return !this.currentState.isEmpty();
+    }
+
+    @Override
+    public boolean isAcceptable() {
+        return this.isCurrentStatusAcceptable();
     }
 
     private void transit(final char c) {
+        char key = c;
+        if (Objects.nonNull(alphabet)) {
+            final int classId = alphabet.classOf(c);
+            if (alphabet.othersExists() && classId == AlphabetPartition.OTHERS) {
+                /* 正規表現中に現れない文字は、どの状態からも遷移先が無い。
+                 * -> 状態ごとに遷移関数を実行するまでもなく、空集合に遷移する。
+                 */
+                this.currentState = new TreeSet<>();
+                return;
+            }
+            // 同じクラスの文字はどの状態から入力しても同じ遷移先になるため、クラスの代表となる文字で遷移させる。
+            key = alphabet.representativeOf(classId);
+        }
+        final Optional<Character> input = Optional.of(key);
         final Set<Integer> setOfNextState = new TreeSet<>();
         for (int state : currentState) {
             /* 現在の状態が「現在から選択可能な状態の集合」なので、それぞれについて遷移関数を実行。
              * -> 結果となる「遷移可能な状態の集合」の和集合が、新たな「現在の状態」となる。
              * こうした扱い方はDFAに近いイメージ。
              */
-            setOfNextState.addAll(nfa.transition.apply(state, Optional.of(c)));
+            setOfNextState.addAll(nfa.transition.apply(state, input));
         }
         /* 和集合から空文字(ε)で遷移可能な選択肢をマージする。
          * -> 初期状態でもマージしているので、全体として空文字(ε)の遷移を除去した形になっている。
@@ -68,7 +116,12 @@ public class NfaRuntime {
     }
 
     public boolean accept(final String input) {
-        input.codePoints().mapToObj(c -> (char) c).forEach(c -> this.transit(c));
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            this.transit((char) c);
+        }
         return this.isCurrentStatusAcceptable();
     }
 }
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -61,4 +62,34 @@ public class NfaRuntimeTest {
         // 念の為確認
         assertThat(acceptableStateSet).isEqualTo(Set.of(3, 5, 8, 9));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTransitByRepresentativeOfClass() {
+        final Nfa parsed = new Parser(new Lexer("[a-m]+x|[n-z]+y")).expression();
+        // 遷移関数に渡された入力文字を記録する。
+        final Set<Character> inputs = new HashSet<>();
+        final NfaStateTransitFunction recording = (int start, Optional<Character> input) -> {
+            input.ifPresent(inputs::add);
+            return parsed.transition.apply(start, input);
+        };
+        final Nfa nfa0 = Nfa.of(recording, parsed.start, parsed.accept, false, parsed.alphabet);
+        final AlphabetPartition alphabet = AlphabetPartition.of(nfa0);
+        inputs.clear();
+
+        final NfaRuntime runtime0 = new NfaRuntime(nfa0, alphabet);
+        assertThat(runtime0.accept("abcdefx")).isTrue();
+        runtime0.reset();
+        assertThat(runtime0.accept("nopqy")).isTrue();
+        runtime0.reset();
+        assertThat(runtime0.accept("abcy")).isFalse();
+        runtime0.reset();
+        assertThat(runtime0.accept("ab!x")).isFalse();
+        // 同じクラスの文字は、クラスの代表となる文字で遷移させる。(正規表現中に現れない '!' は遷移関数を呼ばない)
+        final Set<Character> representatives = new HashSet<>();
+        for (int classId = 0; classId < alphabet.size(); classId++) {
+            representatives.add(alphabet.representativeOf(classId));
+        }
+        assertThat(representatives).containsAll(inputs);
+        assertThat(inputs).doesNotContain('!').hasSizeLessThan(6);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 表形式のNFA (状態の集合を long[] のビット集合で扱う)
+ *
+ * NFAの状態を 0 から始まる連番に振り直し、「状態の集合」を long[] のビット集合(状態番号 = ビット位置)で表す。
+ * 空文字(ε)で遷移可能な状態の展開(expandEpsilon)はコンパイル時に状態ごとに計算しておき、
+ * 「状態 x 入力文字のクラス」ごとに「遷移先 + そこから空文字(ε)で遷移可能な状態」のビット集合を持つ。
+ * -> 実行時の1文字の遷移は、現在の状態のビットが立っている状態の遷移先を OR するだけとなり、
+ * オブジェクトの生成も hash 計算も発生しない。
+ */
+public class NfaTable {
+    /** 入力文字 -> 入力文字のクラス番号 */
+    public final AlphabetPartition alphabet;
+    /** 入力文字のクラス数 */
+    public final int classCount;
+    /** 状態数 */
+    public final int stateCount;
+    /** ビット集合の long[] の長さ */
+    public final int words;
+    /** 初期状態 + そこから空文字(ε)で遷移可能な状態 */
+    public final long[] initial;
+    /** 受理可能な状態 */
+    public final long[] acceptMask;
+    /**
+     * [状態番号 * classCount + 入力文字のクラス番号] -> 遷移先 + そこから空文字(ε)で遷移可能な状態
+     * (遷移先が無い場合は null)
+     */
+    public final long[][] steps;
+    /*
+     * 以下はバックトラック方式のランタイム向けに、空文字(ε)の展開前の遷移を保持しておくもの。
+     * (状態番号 0 が初期状態となる)
+     */
+    /** 状態番号 -> 空文字(ε)での遷移先の状態番号の一覧 */
+    public final int[][] epsilons;
+    /** [状態番号 * classCount + 入力文字のクラス番号] -> 遷移先の状態番号の一覧 (遷移先が無い場合は null) */
+    public final int[][] targets;
+
+    NfaTable(final AlphabetPartition alphabet, final int stateCount, final long[] initial,
+            final long[] acceptMask, final long[][] steps, final int[][] epsilons, final int[][] targets) {
+        this.alphabet = alphabet;
+        this.classCount = alphabet.size();
+        this.stateCount = stateCount;
+        this.words = wordsOf(stateCount);
+        this.initial = initial;
+        this.acceptMask = acceptMask;
+        this.steps = steps;
+        this.epsilons = epsilons;
+        this.targets = targets;
+    }
+
+    public boolean isAcceptable(final int state) {
+        return (this.acceptMask[state >>> 6] & (1L << state)) != 0L;
+    }
+
+    static int wordsOf(final int stateCount) {
+        return Math.max(1, (stateCount + 63) >>> 6);
+    }
+
+    /**
+     * @param nfa 元のNFA (入力文字の集合が分かっている必要がある)
+     * @return 表形式のNFA
+     */
+    public static NfaTable from(final Nfa nfa) {
+        final AlphabetPartition alphabet = AlphabetPartition.of(nfa);
+        final int classCount = alphabet.size();
+
+        // 初期状態から到達可能な状態に、0 から始まる連番を振る。
+        final Map<Integer, Integer> ids = new HashMap<>();
+        final List<Integer> originals = new ArrayList<>();
+        final Queue<Integer> queue = new ArrayDeque<>();
+        ids.put(nfa.start, 0);
+        originals.add(nfa.start);
+        queue.add(nfa.start);
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            for (int classId = -1; classId < classCount; classId++) {
+                // classId = -1 は空文字(ε)の遷移
+                final Optional<Character> c = classId < 0 ? Optional.empty()
+                        : Optional.of(alphabet.representativeOf(classId));
+                for (final int next : nfa.transition.apply(state, c)) {
+                    if (!ids.containsKey(next)) {
+                        ids.put(next, originals.size());
+                        originals.add(next);
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+
+        final int stateCount = originals.size();
+        final int words = wordsOf(stateCount);
+        // 状態ごとに、空文字(ε)で遷移可能な状態を展開したビット集合を事前に計算しておく。
+        final long[][] closures = new long[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            closures[state] = toBitSet(nfa.expandEpsilon(Set.of(originals.get(state))), ids, words);
+        }
+
+        final int[][] epsilons = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            epsilons[state] = toIds(nfa.transition.apply(originals.get(state), Optional.empty()), ids);
+        }
+
+        final long[][] steps = new long[stateCount * classCount][];
+        final int[][] targets = new int[stateCount * classCount][];
+        for (int state = 0; state < stateCount; state++) {
+            for (int classId = 0; classId < classCount; classId++) {
+                final Set<Integer> nexts = nfa.transition.apply(originals.get(state),
+                        Optional.of(alphabet.representativeOf(classId)));
+                if (nexts.isEmpty()) {
+                    continue;
+                }
+                targets[state * classCount + classId] = toIds(nexts, ids);
+                final long[] step = new long[words];
+                for (final int next : nexts) {
+                    or(step, closures[ids.get(next)]);
+                }
+                steps[state * classCount + classId] = step;
+            }
+        }
+
+        final long[] acceptMask = new long[words];
+        for (int state = 0; state < stateCount; state++) {
+            if (nfa.accept.contains(originals.get(state))) {
+                acceptMask[state >>> 6] |= 1L << state;
+            }
+        }
+        return new NfaTable(alphabet, stateCount, closures[0], acceptMask, steps, epsilons,
+                targets);
+    }
+
+    private static long[] toBitSet(final Set<Integer> states, final Map<Integer, Integer> ids, final int words) {
+        final long[] r = new long[words];
+        for (final int state : states) {
+            final int id = ids.get(state);
+            r[id >>> 6] |= 1L << id;
+        }
+        return r;
+    }
+
+    private static int[] toIds(final Set<Integer> states, final Map<Integer, Integer> ids) {
+        // 元のNFAの状態番号の昇順に並べておく。(探索順を安定させるため)
+        return new TreeSet<>(states).stream().mapToInt(ids::get).toArray();
+    }
+
+    static void or(final long[] dst, final long[] src) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] |= src[i];
+        }
+    }
+}
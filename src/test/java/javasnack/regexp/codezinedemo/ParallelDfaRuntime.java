@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 表形式のDFAで、巨大な入力文字列を分割して並列にマッチングする。(data-parallel finite automata)
+ *
+ * 考え方:
+ * DFAで文字列 w を読むことは「状態 -> 状態」の関数 f_w : s -> (s から w を読んだ後の状態) とみなせ、
+ * 連結 uv を読む関数は f_uv = f_v ∘ f_u となる。(関数の合成は結合的)
+ * 各チャンクの開始状態は手前のチャンクを読み終わるまで分からないが、
+ * 「全ての状態から同時に読み始めた結果」= f_w (int[状態数] の表) であれば、開始状態を知らなくても計算できる。
+ * -> 入力文字列を分割して各チャンクの f_w を並列に求め、最後に合成して初期状態に適用すれば、順に読んだ場合と同じ結果になる。
+ *
+ * 全ての状態から読み始めると1文字あたり状態数回の遷移が必要になるが、
+ * DFAの状態は読み進めるとすぐに少数の状態に収束する(同じ状態に遷移した以降は区別する必要が無い)ため、
+ * 定期的に重複する状態をまとめ、異なる状態だけを遷移させる。
+ * (全て空集合の状態に収束したら、残りは読まずに打ち切る)
+ *
+ * 他のランタイムと同様にコードポイント単位で char に切り詰めて遷移させるため、サロゲートペアの途中では分割しない。
+ */
+public class ParallelDfaRuntime {
+    /** チャンクの長さ(文字数)のデフォルト値 : これより短い入力文字列は分割しない。 */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /** 重複する状態をまとめる間隔(文字数) */
+    static final int DEDUPLICATE_INTERVAL = 64;
+
+    private final DfaTable dfa;
+    private final int chunkSize;
+
+    public ParallelDfaRuntime(final DfaTable dfa, final int chunkSize) {
+        if (chunkSize < 2) {
+            // サロゲートペアを分割しないよう、少なくとも2文字は必要。
+            throw new IllegalArgumentException("chunkSize must be >= 2");
+        }
+        this.dfa = dfa;
+        this.chunkSize = chunkSize;
+    }
+
+    public ParallelDfaRuntime(final DfaTable dfa) {
+        this(dfa, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param input 入力文字列
+     * @param pool 並列処理に使う ForkJoinPool
+     * @return 入力文字列全体がマッチするか
+     */
+    public boolean accept(final CharSequence input, final ForkJoinPool pool) {
+        final int[] f = pool.invoke(new TransferTask(input, 0, input.length()));
+        return this.dfa.acceptable[f[this.dfa.start]];
+    }
+
+    public boolean accept(final CharSequence input) {
+        return this.accept(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return 入力文字列の [from, to) を読む関数 (状態 -> 読み終わった後の状態) の表
+     */
+    int[] transfer(final CharSequence input, final int from, final int to) {
+        final int stateCount = this.dfa.stateCount;
+        final int classCount = this.dfa.classCount;
+        final int[] transitions = this.dfa.transitions;
+        final AlphabetPartition alphabet = this.dfa.alphabet;
+        final int dead = this.dfa.dead;
+
+        // active[k] : k番目の異なる状態の現在の状態, slotOf[s] : 状態 s から読み始めたものが active の何番目か
+        int[] active = new int[stateCount];
+        final int[] slotOf = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            active[s] = s;
+            slotOf[s] = s;
+        }
+        int activeCount = stateCount;
+        // 重複する状態をまとめる際の作業用 (以降は生成せずに使い回す)
+        int[] merged = new int[stateCount];
+        final int[] renumber = new int[stateCount];
+        final int[] slotMapping = new int[stateCount];
+        int sinceDeduplicate = 0;
+        for (int i = from; i < to;) {
+            final int c = Character.codePointAt(input, i);
+            i += Character.charCount(c);
+            final int column = alphabet.classOf((char) c);
+            for (int k = 0; k < activeCount; k++) {
+                active[k] = transitions[active[k] * classCount + column];
+            }
+            if (activeCount == 1) {
+                if (active[0] == dead) {
+                    // 空集合の状態からはどの文字を入力しても抜け出せないため、残りの文字列は読まずに打ち切る。
+                    break;
+                }
+                continue;
+            }
+            if (++sinceDeduplicate < DEDUPLICATE_INTERVAL) {
+                continue;
+            }
+            sinceDeduplicate = 0;
+            // 同じ状態に遷移したものを1つにまとめる。
+            Arrays.fill(renumber, -1);
+            int mergedCount = 0;
+            for (int k = 0; k < activeCount; k++) {
+                final int s = active[k];
+                if (renumber[s] < 0) {
+                    renumber[s] = mergedCount;
+                    merged[mergedCount++] = s;
+                }
+                slotMapping[k] = renumber[s];
+            }
+            for (int s = 0; s < stateCount; s++) {
+                slotOf[s] = slotMapping[slotOf[s]];
+            }
+            final int[] tmp = active;
+            active = merged;
+            merged = tmp;
+            activeCount = mergedCount;
+        }
+        final int[] r = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            r[s] = active[slotOf[s]];
+        }
+        return r;
+    }
+
+    /**
+     * @return g ∘ f (f を適用した後に g を適用する関数の表)
+     */
+    static int[] compose(final int[] f, final int[] g) {
+        final int[] r = new int[f.length];
+        for (int s = 0; s < f.length; s++) {
+            r[s] = g[f[s]];
+        }
+        return r;
+    }
+
+    /**
+     * @return from 以上 to 以下で mid に近い、サロゲートペアの途中ではない分割位置
+     */
+    static int splitPoint(final CharSequence input, final int from, final int to) {
+        int mid = from + (to - from) / 2;
+        if (mid > from && Character.isHighSurrogate(input.charAt(mid - 1))
+                && Character.isLowSurrogate(input.charAt(mid))) {
+            mid++;
+        }
+        return mid;
+    }
+
+    /**
+     * 入力文字列の [from, to) を読む関数を、チャンクの長さ以下になるまで分割して並列に求める。
+     */
+    private class TransferTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence input;
+        private final int from;
+        private final int to;
+
+        TransferTask(final CharSequence input, final int from, final int to) {
+            this.input = input;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (this.to - this.from <= chunkSize) {
+                return transfer(this.input, this.from, this.to);
+            }
+            final int mid = splitPoint(this.input, this.from, this.to);
+            final TransferTask left = new TransferTask(this.input, this.from, mid);
+            final TransferTask right = new TransferTask(this.input, mid, this.to);
+            left.fork();
+            final int[] g = right.compute();
+            final int[] f = left.join();
+            return compose(f, g);
+        }
+    }
+}
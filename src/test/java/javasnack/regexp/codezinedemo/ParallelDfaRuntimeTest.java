@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpType;
+
+public class ParallelDfaRuntimeTest {
+
+    static DfaTable dfaOf(final String regexp) {
+        final Nfa nfa = new Parser(new Lexer(regexp)).expression();
+        return DfaTable.from(nfa, DfaTable.DEFAULT_MAX_DFA_STATES).get();
+    }
+
+    static String randomString(final Random rnd, final String alphabet, final int len) {
+        final StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testSameResultAsSequentialMatching() {
+        final String[] patterns = { "(a|b)*c", "(ab|ac)*d", "a*b*c*", "(a|b)*a(a|b)(a|b)", "[a-c]+d?" };
+        final Random rnd = new Random(1234);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String pattern : patterns) {
+                final DfaTable dfa = dfaOf(pattern);
+                final Pattern expected = Pattern.compile(pattern);
+                for (int chunkSize : new int[] { 2, 3, 7, 64, ParallelDfaRuntime.DEFAULT_CHUNK_SIZE }) {
+                    final ParallelDfaRuntime runtime = new ParallelDfaRuntime(dfa, chunkSize);
+                    for (int i = 0; i < 200; i++) {
+                        final String s = randomString(rnd, "abcd", rnd.nextInt(300));
+                        assertThat(runtime.accept(s, pool))
+                                .as("%s, %s, %d", pattern, s, chunkSize)
+                                .isEqualTo(expected.matcher(s).matches());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLongInput() {
+        final DfaTable dfa = dfaOf("(a|b)*a(a|b)(a|b)");
+        final ParallelDfaRuntime runtime = new ParallelDfaRuntime(dfa, 1000);
+        final Random rnd = new Random(5678);
+        final String s = randomString(rnd, "ab", 100_000);
+        assertThat(runtime.accept(s + "abb")).isTrue();
+        assertThat(runtime.accept(s + "bbb")).isFalse();
+        assertThat(runtime.accept("")).isFalse();
+        assertThat(runtime.accept("abb")).isTrue();
+    }
+
+    @Test
+    public void testSurrogatePair() {
+        final DfaTable dfa = dfaOf("(a|😀)*b");
+        final ParallelDfaRuntime runtime = new ParallelDfaRuntime(dfa, 2);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sb.append(i % 3 == 0 ? "a" : "😀");
+        }
+        final String s = sb.toString();
+        // 分割位置をずらしても、サロゲートペアの途中では分割されない。
+        assertThat(runtime.accept(s + "b")).isTrue();
+        assertThat(runtime.accept("a" + s + "b")).isTrue();
+        assertThat(runtime.accept(s + "c")).isFalse();
+
+        final String pair = "a😀b";
+        assertThat(ParallelDfaRuntime.splitPoint(pair, 0, 3)).isEqualTo(1);
+        assertThat(ParallelDfaRuntime.splitPoint(pair, 1, 4)).isEqualTo(3);
+        assertThat(ParallelDfaRuntime.splitPoint(pair, 0, 4)).isEqualTo(3);
+    }
+
+    @Test
+    public void testTransferAndCompose() {
+        final DfaTable dfa = dfaOf("ab|cd");
+        final ParallelDfaRuntime runtime = new ParallelDfaRuntime(dfa, 2);
+        final String s = "abxcd";
+        for (int mid = 0; mid <= s.length(); mid++) {
+            final int[] f = runtime.transfer(s, 0, mid);
+            final int[] g = runtime.transfer(s, mid, s.length());
+            final int[] fg = ParallelDfaRuntime.compose(f, g);
+            assertThat(fg).isEqualTo(runtime.transfer(s, 0, s.length()));
+            for (int state = 0; state < dfa.stateCount; state++) {
+                int expected = state;
+                for (int i = 0; i < s.length(); i++) {
+                    expected = dfa.next(expected, s.charAt(i));
+                }
+                assertThat(fg[state]).isEqualTo(expected);
+            }
+        }
+        // 空集合の状態に収束した後は読まずに打ち切るが、結果は全て空集合の状態となる。
+        final int[] dead = runtime.transfer("x" + "ab".repeat(1000), 0, 2001);
+        for (int state = 0; state < dfa.stateCount; state++) {
+            assertThat(dead[state]).isEqualTo(dfa.dead);
+        }
+    }
+
+    @Test
+    public void testInvalidChunkSize() {
+        final DfaTable dfa = dfaOf("a");
+        assertThatThrownBy(() -> new ParallelDfaRuntime(dfa, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testRegexpMatchParallel() {
+        // バックトラック方式のランタイムは繰り返しを再帰呼び出しで処理するため、短めの入力文字列にしておく。
+        final String s = "ab".repeat(200);
+        for (RegexpType type : RegexpType.values()) {
+            final Regexp re = Regexp.compile(type, "(ab|ac)*");
+            assertThat(re.matchParallel(s)).as(type.name()).isTrue();
+            assertThat(re.matchParallel(s + "a")).as(type.name()).isFalse();
+        }
+        final Regexp dfa = Regexp.compileDfa("(ab|ac)*");
+        assertThat(dfa.matchParallel("ac".repeat(100_000), ForkJoinPool.commonPool())).isTrue();
+        // 状態数が上限を超えて LAZY_DFA タイプとなった場合は順に読む。
+        final Regexp lazy = Regexp.compileDfa("(a|b)*a(a|b)(a|b)", 4);
+        assertThat(lazy.getType()).isEqualTo(RegexpType.LAZY_DFA);
+        assertThat(lazy.matchParallel("babb")).isTrue();
+    }
+}
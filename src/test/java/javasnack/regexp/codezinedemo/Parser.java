@@ -16,13 +16,17 @@
 
 package javasnack.regexp.codezinedemo;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
 import javasnack.regexp.codezinedemo.Token.TokenType;
+import javasnack.regexp.codezinedemo.node.CharClassNode;
 import javasnack.regexp.codezinedemo.node.CharacterNode;
 import javasnack.regexp.codezinedemo.node.ConcatNode;
 import javasnack.regexp.codezinedemo.node.INodeAssembler;
+import javasnack.regexp.codezinedemo.node.RepeatNode;
 import javasnack.regexp.codezinedemo.node.StarNode;
 import javasnack.regexp.codezinedemo.node.UnionNode;
 
@@ -48,39 +52,183 @@ public class Parser {
     }
 
     /* rules:
-     * (A) expression -> subexpr EOF
+     * (A) expression -> '^'? subexpr '$'? EOF
      * (B) subexpr -> seq '|' subexpr | seq
      * (C) seq -> subseq | ''
      * (D) subseq -> star subseq | star
-     * (E) star -> factor '*' | factor
-     * (F) factor -> '(' subexpr ')' | CHARACTER
+     * (E) star -> factor quantifier '?'? | factor
+     * (F) quantifier -> '*' | '+' | '?' | '{' NUMBER (',' NUMBER?)? '}'
+     * (G) factor -> '(' subexpr ')' | '[' '^'? classitem+ ']' | '.' | CHARACTER
+     * (H) classitem -> CLASSCHAR '-' CLASSCHAR | CLASSCHAR
+     *
+     * アンカー '^', '$' は正規表現全体の先頭と末尾にのみ書ける。
+     * NFAは入力文字でしか遷移しないため、アンカーはNFAフラグメントにはせず、検索(find)時の条件として扱う。
+     * (match() は元々入力文字列全体とのマッチングのため、アンカーの有無で結果は変わらない)
+     * '^a|b' のように '|' と組み合わせると java.util.regex とは解釈が変わるため、'^(a|b)' のように括弧で囲むこと。
+     *
+     * 繰り返しの後の '?' (non-greedy) は受け付けるが、無視する。
+     * (マッチする文字列の集合は変わらず、検索は leftmost-longest で行うため)
      */
 
+    /** 正規表現の先頭に '^' があったか */
+    private boolean anchoredStart = false;
+    /** 正規表現の末尾に '$' があったか */
+    private boolean anchoredEnd = false;
+
+    private static RuntimeException syntaxError(final String message) {
+        return new RuntimeException("syntax error: " + message);
+    }
+
+    /**
+     * @return 現在のトークンから factor が始まるか ('-', ']', '}' は文字クラスや繰り返し回数の外では通常の文字)
+     */
+    private boolean lookStartsFactor() {
+        switch (this.look.type) {
+        case LPAREN:
+        case LBRACKET:
+        case DOT:
+        case CHARACTER:
+        case HYPHEN:
+        case RBRACKET:
+        case RBRACE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
     private INodeAssembler factor() {
-        if (this.look.type == TokenType.LPAREN) {
+        switch (this.look.type) {
+        case LPAREN:
             this.consume(TokenType.LPAREN);
             INodeAssembler node = this.subexpr();
             this.consume(TokenType.RPAREN);
             return node;
-        } else {
-            INodeAssembler node = new CharacterNode(Optional.of(this.look.value));
+        case LBRACKET:
+            return this.charClass();
+        case DOT:
+            this.consume(TokenType.DOT);
+            return CharClassNode.dot();
+        case HYPHEN:
+        case RBRACKET:
+        case RBRACE:
+            // 文字クラスや繰り返し回数の外では通常の文字として扱う。
+            node = new CharacterNode(Optional.of(this.look.value));
+            this.move();
+            return node;
+        default:
+            node = new CharacterNode(Optional.of(this.look.value));
             this.consume(TokenType.CHARACTER);
             return node;
         }
     }
 
+    private INodeAssembler charClass() {
+        this.consume(TokenType.LBRACKET);
+        boolean negated = false;
+        if (this.look.type == TokenType.CARET) {
+            this.consume(TokenType.CARET);
+            negated = true;
+        }
+        final List<CharRange> ranges = new ArrayList<>();
+        do {
+            final char lo = this.classChar();
+            if (this.look.type != TokenType.HYPHEN) {
+                ranges.add(CharRange.of(lo, lo));
+                continue;
+            }
+            this.consume(TokenType.HYPHEN);
+            if (this.look.type == TokenType.RBRACKET) {
+                // [a-] のように末尾の '-' は通常の文字として扱う。
+                ranges.add(CharRange.of(lo, lo));
+                ranges.add(CharRange.of('-', '-'));
+                continue;
+            }
+            final char hi = this.classChar();
+            if (hi < lo) {
+                throw syntaxError("illegal character range " + lo + "-" + hi);
+            }
+            ranges.add(CharRange.of(lo, hi));
+        } while (this.look.type != TokenType.RBRACKET);
+        this.consume(TokenType.RBRACKET);
+        return new CharClassNode(ranges, negated);
+    }
+
+    /**
+     * @return 文字クラス中の1文字 (文字クラス中では ']' と '-' 以外の記号も通常の文字として扱う)
+     */
+    private char classChar() {
+        if (this.look.type == TokenType.EOF) {
+            throw syntaxError("unclosed character class");
+        }
+        if (this.look.type == TokenType.RBRACKET || this.look.type == TokenType.HYPHEN) {
+            throw syntaxError("unexpected '" + this.look.value + "' in character class");
+        }
+        final char c = this.look.value;
+        this.move();
+        return c;
+    }
+
     private INodeAssembler star() {
         INodeAssembler node = this.factor();
-        if (this.look.type == TokenType.OPE_STAR) {
+        switch (this.look.type) {
+        case OPE_STAR:
             this.consume(TokenType.OPE_STAR);
             node = new StarNode(node);
+            break;
+        case OPE_PLUS:
+            this.consume(TokenType.OPE_PLUS);
+            node = new RepeatNode(node, 1, RepeatNode.UNBOUNDED);
+            break;
+        case OPE_QUESTION:
+            this.consume(TokenType.OPE_QUESTION);
+            node = new RepeatNode(node, 0, 1);
+            break;
+        case LBRACE:
+            node = this.repeat(node);
+            break;
+        default:
+            return node;
+        }
+        if (this.look.type == TokenType.OPE_QUESTION) {
+            // non-greedy の指定は無視する。
+            this.consume(TokenType.OPE_QUESTION);
         }
         return node;
     }
 
+    private INodeAssembler repeat(final INodeAssembler node) {
+        this.consume(TokenType.LBRACE);
+        final int min = this.number();
+        int max = min;
+        if (this.look.type == TokenType.CHARACTER && this.look.value == ',') {
+            this.consume(TokenType.CHARACTER);
+            max = this.look.type == TokenType.RBRACE ? RepeatNode.UNBOUNDED : this.number();
+        }
+        this.consume(TokenType.RBRACE);
+        try {
+            return new RepeatNode(node, min, max);
+        } catch (IllegalArgumentException e) {
+            throw syntaxError(e.getMessage());
+        }
+    }
+
+    private int number() {
+        final StringBuilder sb = new StringBuilder();
+        while (this.look.type == TokenType.CHARACTER && Character.isDigit(this.look.value)
+                && this.look.value < 0x80) {
+            sb.append(this.look.value);
+            this.move();
+        }
+        if (sb.length() == 0 || sb.length() > 9) {
+            throw syntaxError("illegal repetition");
+        }
+        return Integer.parseInt(sb.toString());
+    }
+
     private INodeAssembler subseq() {
         final INodeAssembler node1 = this.star();
-        if (this.look.type == TokenType.LPAREN || this.look.type == TokenType.CHARACTER) {
+        if (this.lookStartsFactor()) {
             final INodeAssembler node2 = this.subseq();
             return new ConcatNode(node1, node2);
         } else {
@@ -89,7 +237,7 @@ public class Parser {
     }
 
     private INodeAssembler seq() {
-        if (this.look.type == TokenType.LPAREN || this.look.type == TokenType.CHARACTER) {
+        if (this.lookStartsFactor()) {
             return this.subseq();
         } else {
             return new CharacterNode(Optional.empty());
@@ -106,11 +254,62 @@ public class Parser {
         return node;
     }
 
-    public Nfa expression(final StringBuilder dumpTo, final boolean enableTraceLog) {
-        final INodeAssembler node = this.subexpr();
+    /**
+     * 正規表現全体を解析し、NFAフラグメントを組み立てる。
+     * 
+     * 複数の正規表現を1つのNFAにまとめる場合(RegexpSet)は、状態番号が重複しないよう同じ Context を渡す。
+     * 
+     * @param context 状態番号の採番に使う Context
+     * @return 正規表現全体のNFAフラグメント
+     */
+    public NfaFragment fragment(final Context context) {
+        return this.parse().assemble(context);
+    }
+
+    /**
+     * 正規表現全体を解析し、構文木を組み立てる。(NFAフラグメントは組み立てない)
+     * 
+     * @return 構文木のroot node
+     */
+    public INodeAssembler parse() {
+        if (this.look.type == TokenType.CARET) {
+            this.consume(TokenType.CARET);
+            this.anchoredStart = true;
+        }
+        INodeAssembler node = this.seq();
+        boolean union = false;
+        if (this.look.type == TokenType.OPE_UNION) {
+            this.consume(TokenType.OPE_UNION);
+            node = new UnionNode(node, this.subexpr());
+            union = true;
+        }
+        if (this.look.type == TokenType.DOLLAR) {
+            this.consume(TokenType.DOLLAR);
+            this.anchoredEnd = true;
+        }
         this.consume(TokenType.EOF);
-        final Context context = new Context();
-        final NfaFragment fragment = node.assemble(context);
+        if (union && (this.anchoredStart || this.anchoredEnd)) {
+            throw syntaxError("anchor with top-level '|' is not supported, use ^(a|b)$ instead");
+        }
+        return node;
+    }
+
+    /**
+     * @return parse() した正規表現の先頭に '^' があったか
+     */
+    public boolean isAnchoredStart() {
+        return this.anchoredStart;
+    }
+
+    /**
+     * @return parse() した正規表現の末尾に '$' があったか
+     */
+    public boolean isAnchoredEnd() {
+        return this.anchoredEnd;
+    }
+
+    public Nfa expression(final StringBuilder dumpTo, final boolean enableTraceLog) {
+        final NfaFragment fragment = this.fragment(new Context());
         if (Objects.nonNull(dumpTo)) {
             dumpTo.append(fragment.toString());
         }
@@ -214,4 +214,41 @@ public class ParserTest {
         assertThat(nfa0.transition.apply(4, Optional.of('b'))).isEqualTo(Set.of(5));
         assertThat(nfa0.transition.apply(6, Optional.of('c'))).isEqualTo(Set.of(7));
     }
+
+    @Test
+    public void testCharClass() {
+        // factor('[') -> CharClassNode : 範囲ごとに1つの遷移を設定する。
+        final var lex0 = new Lexer("[a-cx]");
+        final var parser0 = new Parser(lex0);
+        final var debugTo = new StringBuilder();
+        final var nfa0 = parser0.expression(debugTo, TRACELOG);
+        assertThat(debugTo.toString()).isEqualTo("----[NFA Fragment]----\n"
+                + "initial state = 1\n"
+                + "[ 1, 'a'-'c' -> [2] ]\n"
+                + "[ 1, 'x'-'x' -> [2] ]\n"
+                + "set of acceptable state = [2]\n");
+        assertThat(nfa0.transition.apply(1, Optional.of('b'))).isEqualTo(Set.of(2));
+        assertThat(nfa0.transition.apply(1, Optional.of('x'))).isEqualTo(Set.of(2));
+        assertThat(nfa0.transition.apply(1, Optional.of('d'))).isEmpty();
+        // 範囲は両端の文字で alphabet に現れる。
+        assertThat(nfa0.alphabet).isEqualTo(Set.of('a', 'c', 'x'));
+    }
+
+    @Test
+    public void testAnchors() {
+        var parser0 = new Parser(new Lexer("^ab$"));
+        parser0.parse();
+        assertThat(parser0.isAnchoredStart()).isTrue();
+        assertThat(parser0.isAnchoredEnd()).isTrue();
+
+        parser0 = new Parser(new Lexer("^(a|b)"));
+        parser0.parse();
+        assertThat(parser0.isAnchoredStart()).isTrue();
+        assertThat(parser0.isAnchoredEnd()).isFalse();
+
+        parser0 = new Parser(new Lexer("a|b"));
+        parser0.parse();
+        assertThat(parser0.isAnchoredStart()).isFalse();
+        assertThat(parser0.isAnchoredEnd()).isFalse();
+    }
 }
@@ -16,43 +16,165 @@
 
 package javasnack.regexp.codezinedemo;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 public class Regexp {
     public enum RegexpType {
-        NFA, NFA_BACKTRACK, NFA2DFA
+        NFA, NFA_BACKTRACK, NFA_BITSTATE_BACKTRACK, NFA_BITSET, NFA2DFA, LAZY_DFA, DFA
     }
 
     public enum RegexpOption {
         DEBUG_LOG,
         ENABLE_NFA2DFA_TRANSITION_CACHE,
         NFA_BACKTRACK,
-        DISABLE_NFA_TRACED_BACKTRACK_SKIPPING
+        /** compileNfa() で、状態の集合をビット集合で扱うランタイム(NfaBitSetRuntime)を使う。 */
+        NFA_BITSET,
+        /**
+         * compileNfa() で、辿った (状態, 位置) をビットマップに記録するバックトラック方式のランタイム
+         * (NfaBitStateBackTrackRuntime)を使う。
+         */
+        NFA_BITSTATE_BACKTRACK,
+        DISABLE_NFA_TRACED_BACKTRACK_SKIPPING,
+        /** 正規表現中の固定文字列による入力文字列のふるい落とし(LiteralPrefilter)を使わない。 */
+        DISABLE_LITERAL_PREFILTER,
+        /**
+         * NFA_BACKTRACK で、指数時間・多項式時間がかかるおそれのある正規表現(AmbiguityAnalyzer で判定)を
+         * AmbiguousPatternException で拒否する。(他のランタイムは線形時間で済むため、拒否しない)
+         */
+        REJECT_AMBIGUOUS_PATTERN
     }
 
     private final RegexpType type;
+    /** 元の正規表現 */
+    private final String regexp;
+    /** コンパイル時に指定されたオプション */
+    private final Set<RegexpOption> options;
+    /** 元のNFA (検索用のDFAの生成にも使うため、どのタイプでも保持する) */
     private final Nfa nfa;
     private final Nfa2Dfa nfa2dfa;
-    private final boolean enableNfaBackTrackRuntimeTraceLog;
-    private final boolean disableNfaTracedBackTrackSkipping;
-    private int countOfNfaBackTrack;
+    private final Dfa dfa;
+    /** DFA タイプの場合の、巨大な入力文字列を分割して並列にマッチングするランタイム (状態を持たないため共有する) */
+    private final ParallelDfaRuntime parallelDfaRuntime;
+    /** NFA_BITSET, NFA_BITSTATE_BACKTRACK の場合の表形式のNFA */
+    private final NfaTable nfaTable;
+    /** LAZY_DFA の場合のDFAの生成処理 (matcher() でも使う) */
+    private final Supplier<LazyDfa> lazyDfaFactory;
+    /** NFA の場合の入力文字のクラス分け (コンパイル時に1度だけ求め、NfaRuntime の生成時に渡す) */
+    private final AlphabetPartition nfaAlphabet;
+    /** NFA_BITSET の場合のランタイムの生成処理 (matcher() でも使う) */
+    private final Supplier<NfaBitSetRuntime> nfaBitSetRuntimeFactory;
+    /** 固定文字列によるふるい落としと、アンカーの有無 */
+    private final RegexpAnalysis analysis;
 
-    private Regexp(final RegexpType type, final Nfa nfa, final Nfa2Dfa nfa2dfa,
-            final boolean enableNfaBackTrackRuntimeTraceLog,
-            final boolean disableNfaTracedBackTrackSkipping) {
+    /* 遷移のキャッシュやビット集合など、マッチングの途中の状態を持つものはスレッドごとに生成して使い回す。
+     * -> コンパイル済みの Regexp 自体は変更されないため、1つのインスタンスを複数のスレッドで共有できる。
+     * (遷移のキャッシュの上限はスレッドごとの上限となる)
+     */
+    /** NFA2DFA の場合のランタイム (現在の状態を持つため、reset() してからマッチングのたびに使い回す) */
+    private final ThreadLocal<Nfa2DfaRuntime> nfa2dfaRuntime;
+    /** DFA の場合のランタイム (reset() してからマッチングのたびに使い回す) */
+    private final ThreadLocal<DfaRuntime> dfaRuntime;
+    /** NFA の場合のランタイム (初期状態のε展開をマッチングのたびにやり直さないよう、reset() して使い回す) */
+    private final ThreadLocal<NfaRuntime> nfaRuntime;
+    /** NFA_BACKTRACK の場合のランタイム (分岐点のキューなどを使い回す, accept() の中で reset() する) */
+    private final ThreadLocal<NfaBackTrackRuntime> nfaBackTrackRuntime;
+    /** LAZY_DFA の場合の遅延評価型のDFA */
+    private final ThreadLocal<LazyDfa> lazyDfa;
+    /** NFA_BITSET の場合のランタイム (オブジェクト生成を避けるため、マッチングのたびに使い回す) */
+    private final ThreadLocal<NfaBitSetRuntime> nfaBitSetRuntime;
+    /** NFA_BITSTATE_BACKTRACK の場合のランタイム (ビットマップやスタックを使い回すため、マッチングのたびに使い回す) */
+    private final ThreadLocal<NfaBitStateBackTrackRuntime> nfaBitStateBackTrackRuntime;
+    /** find(), findAll() で使う検索用のDFA (スレッドごとの初回の検索時に生成し、変更されない表は共有する) */
+    private final ThreadLocal<RegexpSearcher> searcher;
+    /** 直前の match() の統計情報 (getCountOfNfaBackTrack() 用) */
+    private final ThreadLocal<MatchStatistics> lastStatistics = new ThreadLocal<>();
+    /** match() の計測値 (全スレッドの合計) */
+    private final RegexpMetrics metrics;
+
+    private Regexp(final RegexpType type, final String regexp, final List<RegexpOption> optionset, final Nfa nfa,
+            final Nfa2Dfa nfa2dfa, final Supplier<LazyDfa> lazyDfa, final DfaTable dfaTable,
+            final NfaTable nfaTable) {
+        final boolean enableDebugLog = optionset.contains(RegexpOption.DEBUG_LOG);
         this.type = type;
+        this.regexp = regexp;
+        this.options = Collections.unmodifiableSet(
+                optionset.isEmpty() ? EnumSet.noneOf(RegexpOption.class) : EnumSet.copyOf(optionset));
         this.nfa = nfa;
         this.nfa2dfa = nfa2dfa;
-        this.enableNfaBackTrackRuntimeTraceLog = enableNfaBackTrackRuntimeTraceLog;
-        this.disableNfaTracedBackTrackSkipping = disableNfaTracedBackTrackSkipping;
+        final Dfa dfa0 = Objects.isNull(dfaTable) ? null : Dfa.from(dfaTable);
+        this.dfa = dfa0;
+        this.parallelDfaRuntime = Objects.isNull(dfaTable) ? null : new ParallelDfaRuntime(dfaTable);
+        this.nfaTable = nfaTable;
+        this.lazyDfaFactory = lazyDfa;
+        final AlphabetPartition nfaAlphabet = type == RegexpType.NFA && Objects.nonNull(nfa.alphabet)
+                ? AlphabetPartition.of(nfa) : null;
+        this.nfaAlphabet = nfaAlphabet;
+        this.nfaBitSetRuntimeFactory = type == RegexpType.NFA_BITSET ? () -> new NfaBitSetRuntime(nfaTable) : null;
+        final RegexpAnalysis analysis = analyze(regexp, optionset);
+        this.analysis = analysis;
+        this.metrics = new RegexpMetrics(regexp, type.name());
+        final boolean disableSkipping = optionset.contains(RegexpOption.DISABLE_NFA_TRACED_BACKTRACK_SKIPPING);
+        this.nfa2dfaRuntime = type != RegexpType.NFA2DFA ? null
+                : ThreadLocal.withInitial(() -> new Nfa2DfaRuntime(nfa2dfa));
+        this.dfaRuntime = type != RegexpType.DFA ? null : ThreadLocal.withInitial(() -> new DfaRuntime(dfa0));
+        this.nfaRuntime = type != RegexpType.NFA ? null
+                : ThreadLocal.withInitial(() -> new NfaRuntime(nfa, nfaAlphabet));
+        this.nfaBackTrackRuntime = type != RegexpType.NFA_BACKTRACK ? null
+                : ThreadLocal.withInitial(() -> new NfaBackTrackRuntime(nfa, enableDebugLog, !disableSkipping));
+        this.lazyDfa = perThread(lazyDfa);
+        this.nfaBitSetRuntime = perThread(this.nfaBitSetRuntimeFactory);
+        this.nfaBitStateBackTrackRuntime = type != RegexpType.NFA_BITSTATE_BACKTRACK ? null
+                : ThreadLocal.withInitial(() -> new NfaBitStateBackTrackRuntime(nfaTable,
+                        NfaBitStateBackTrackRuntime.DEFAULT_MAX_VISITED_BITS, enableDebugLog));
+        this.searcher = ThreadLocal.withInitial(RegexpSearcher.factory(
+                Objects.isNull(nfaTable) ? NfaTable.from(nfa) : nfaTable, LazyDfa.DEFAULT_MAX_CACHED_STATES, analysis));
+    }
+
+    private static <T> ThreadLocal<T> perThread(final Supplier<T> factory) {
+        return Objects.isNull(factory) ? null : ThreadLocal.withInitial(factory);
+    }
+
+    /**
+     * @return 遅延評価型のDFAの生成処理 (入力文字のクラス分けはスレッド間で共有する)
+     */
+    private static Supplier<LazyDfa> lazyDfaFactory(final Nfa nfa, final int maxCachedStates,
+            final boolean enableDebugLog) {
+        final AlphabetPartition alphabet = Objects.isNull(nfa.alphabet) ? null : AlphabetPartition.of(nfa);
+        return () -> new LazyDfa(nfa, alphabet, maxCachedStates, enableDebugLog);
+    }
+
+    /**
+     * NFA_BACKTRACK 以外のランタイムでは、オートマトンを動かす前に正規表現中の固定文字列で入力文字列をふるい落とす。
+     * (NFA_BACKTRACK はバックトラックの回数を観察するためのランタイムのため、ふるい落としは行わない)
+     */
+    private static RegexpAnalysis analyze(final String regexp, final List<RegexpOption> optionset) {
+        return RegexpAnalysis.of(regexp, !optionset.contains(RegexpOption.DISABLE_LITERAL_PREFILTER)
+                && !optionset.contains(RegexpOption.NFA_BACKTRACK));
     }
 
     public static Regexp compileNfa(final String regexp, RegexpOption... options) {
         final List<RegexpOption> optionset = Arrays.asList(options);
         final boolean enableDebugLog = optionset.contains(RegexpOption.DEBUG_LOG);
         final boolean useNfaBackTrack = optionset.contains(RegexpOption.NFA_BACKTRACK);
-        final boolean disableNfaBackSkipping = optionset.contains(RegexpOption.DISABLE_NFA_TRACED_BACKTRACK_SKIPPING);
+        final boolean useNfaBitSet = optionset.contains(RegexpOption.NFA_BITSET);
+        final boolean useNfaBitStateBackTrack = optionset.contains(RegexpOption.NFA_BITSTATE_BACKTRACK);
 
         final Lexer lex0 = new Lexer(regexp);
         final Parser parser0 = new Parser(lex0);
@@ -66,12 +188,40 @@ public class Regexp {
             System.out.println(nfaDumper.dump());
             System.out.println("NFA: initialState=" + nfa0.start + ", setOfAcceptableState=" + nfa0.accept);
         }
-        return new Regexp(
-                (useNfaBackTrack ? RegexpType.NFA_BACKTRACK : RegexpType.NFA),
-                nfa0,
-                null,
-                enableDebugLog,
-                disableNfaBackSkipping);
+        if (useNfaBitSet) {
+            final NfaTable nfaTable = NfaTable.from(nfa0);
+            if (enableDebugLog) {
+                System.out.println("NFA BITSET: stateCount=" + nfaTable.stateCount + ", classCount="
+                        + nfaTable.classCount);
+            }
+            return new Regexp(RegexpType.NFA_BITSET, regexp, optionset, nfa0, null, null, null, nfaTable);
+        }
+        if (useNfaBitStateBackTrack) {
+            final NfaTable nfaTable = NfaTable.from(nfa0);
+            return new Regexp(RegexpType.NFA_BITSTATE_BACKTRACK, regexp, optionset, nfa0, null, null, null,
+                    nfaTable);
+        }
+        if (useNfaBackTrack && optionset.contains(RegexpOption.REJECT_AMBIGUOUS_PATTERN)) {
+            final Ambiguity ambiguity = AmbiguityAnalyzer.analyze(nfa0);
+            if (enableDebugLog) {
+                System.out.println("NFA ambiguity: " + ambiguity);
+            }
+            if (ambiguity.isReDoSProne()) {
+                throw new AmbiguousPatternException(regexp, ambiguity);
+            }
+        }
+        return new Regexp((useNfaBackTrack ? RegexpType.NFA_BACKTRACK : RegexpType.NFA), regexp, optionset,
+                nfa0, null, null, null, null);
+    }
+
+    /**
+     * 正規表現をバックトラック方式のランタイムで動かした場合に、指数時間・多項式時間がかかるおそれがあるか解析する。
+     *
+     * @param regexp 正規表現
+     * @return NFAの曖昧さ
+     */
+    public static Ambiguity analyzeAmbiguity(final String regexp) {
+        return AmbiguityAnalyzer.analyze(new Parser(new Lexer(regexp)).expression());
     }
 
     public static Regexp compileNfa2Dfa(final String regexp, RegexpOption... options) {
@@ -96,31 +246,421 @@ public class Regexp {
             System.out.println("NFA2DFA: setOfInitialState=" + nfa2dfa.start + ", setOfAcceptableState="
                     + nfa2dfa.nfaAcceptableStateSet);
         }
-        return new Regexp(RegexpType.NFA2DFA, null, nfa2dfa, false, false);
+        return new Regexp(RegexpType.NFA2DFA, regexp, optionset, nfa0, nfa2dfa, null, null, null);
+    }
+
+    public static Regexp compileLazyDfa(final String regexp, final int maxCachedStates,
+            RegexpOption... options) {
+        final List<RegexpOption> optionset = Arrays.asList(options);
+        final boolean enableDebugLog = optionset.contains(RegexpOption.DEBUG_LOG);
+
+        final Lexer lex0 = new Lexer(regexp);
+        final Parser parser0 = new Parser(lex0);
+        final StringBuilder dumpTo = new StringBuilder();
+        final Nfa nfa0 = parser0.expression(dumpTo, false); // NFAの遷移関数のトレースログは不要
+        final Supplier<LazyDfa> lazyDfa = lazyDfaFactory(nfa0, maxCachedStates, enableDebugLog);
+        if (enableDebugLog) {
+            System.out.println(dumpTo.toString());
+            System.out.println("dump NFA....");
+            final NfaDumper nfaDumper = new NfaDumper(nfa0);
+            System.out.println(nfaDumper.dump());
+            System.out.println("LAZY DFA: maxCachedStates=" + maxCachedStates);
+        }
+        return new Regexp(RegexpType.LAZY_DFA, regexp, optionset, nfa0, null, lazyDfa, null, null);
+    }
+
+    public static Regexp compileLazyDfa(final String regexp, RegexpOption... options) {
+        return compileLazyDfa(regexp, LazyDfa.DEFAULT_MAX_CACHED_STATES, options);
+    }
+
+    /**
+     * 部分集合構成法で全てのDFAの状態を事前に生成し、Hopcroft のアルゴリズムで最小化した表形式のDFAにコンパイルする。
+     * DFAの状態数が上限を超える場合は、遅延評価型のDFA(LAZY_DFA)にフォールバックする。
+     * 
+     * @param regexp 正規表現
+     * @param maxDfaStates DFAの状態数の上限
+     * @param options オプション
+     * @return コンパイル結果
+     */
+    public static Regexp compileDfa(final String regexp, final int maxDfaStates, RegexpOption... options) {
+        final List<RegexpOption> optionset = Arrays.asList(options);
+        final boolean enableDebugLog = optionset.contains(RegexpOption.DEBUG_LOG);
+
+        final Lexer lex0 = new Lexer(regexp);
+        final Parser parser0 = new Parser(lex0);
+        final StringBuilder dumpTo = new StringBuilder();
+        final Nfa nfa0 = parser0.expression(dumpTo, false); // NFAの遷移関数のトレースログは不要
+        final Optional<DfaTable> dfaTable = DfaTable.from(nfa0, maxDfaStates);
+        if (enableDebugLog) {
+            System.out.println(dumpTo.toString());
+            System.out.println("dump NFA....");
+            final NfaDumper nfaDumper = new NfaDumper(nfa0);
+            System.out.println(nfaDumper.dump());
+        }
+        if (dfaTable.isEmpty()) {
+            if (enableDebugLog) {
+                System.out.println("DFA: number of states exceeds " + maxDfaStates + ", fallback to LAZY DFA.");
+            }
+            final Supplier<LazyDfa> lazyDfa = lazyDfaFactory(nfa0, LazyDfa.DEFAULT_MAX_CACHED_STATES,
+                    enableDebugLog);
+            return new Regexp(RegexpType.LAZY_DFA, regexp, optionset, nfa0, null, lazyDfa, null, null);
+        }
+        final DfaTable minimized = DfaMinimizer.minimize(dfaTable.get());
+        if (enableDebugLog) {
+            System.out.println("dump DFA (" + dfaTable.get().stateCount + " states)...");
+            System.out.println(dfaTable.get());
+            System.out.println("dump minimized DFA (" + minimized.stateCount + " states)...");
+            System.out.println(minimized);
+        }
+        return new Regexp(RegexpType.DFA, regexp, optionset, nfa0, null, null, minimized, null);
+    }
+
+    public static Regexp compileDfa(final String regexp, RegexpOption... options) {
+        return compileDfa(regexp, DfaTable.DEFAULT_MAX_DFA_STATES, options);
+    }
+
+    /**
+     * タイプを指定してコンパイルする。(RegexpCache や RegexpSerializer のように、タイプを値として扱う場合のためのもの)
+     * NFA_BACKTRACK / NFA_BITSET / NFA_BITSTATE_BACKTRACK は、対応するオプションを付けて compileNfa() する。
+     * DFA はDFAの状態数が上限を超える場合、LAZY_DFA にフォールバックする。
+     *
+     * @param type タイプ
+     * @param regexp 正規表現
+     * @param options オプション
+     * @return コンパイル結果
+     */
+    public static Regexp compile(final RegexpType type, final String regexp, RegexpOption... options) {
+        switch (type) {
+        case NFA:
+            return compileNfa(regexp, options);
+        case NFA_BACKTRACK:
+            return compileNfa(regexp, withOption(options, RegexpOption.NFA_BACKTRACK));
+        case NFA_BITSET:
+            return compileNfa(regexp, withOption(options, RegexpOption.NFA_BITSET));
+        case NFA_BITSTATE_BACKTRACK:
+            return compileNfa(regexp, withOption(options, RegexpOption.NFA_BITSTATE_BACKTRACK));
+        case NFA2DFA:
+            return compileNfa2Dfa(regexp, options);
+        case LAZY_DFA:
+            return compileLazyDfa(regexp, options);
+        case DFA:
+            return compileDfa(regexp, options);
+        default:
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static RegexpOption[] withOption(final RegexpOption[] options, final RegexpOption option) {
+        final RegexpOption[] r = Arrays.copyOf(options, options.length + 1);
+        r[options.length] = option;
+        return r;
+    }
+
+    /**
+     * 事前にコンパイルしておいた表形式のDFAから、DFA タイプの Regexp を組み立てる。
+     * 部分集合構成法と最小化を省略できるため、compileDfa() より速い。
+     * (NFAは find() などで使うため、正規表現から組み立て直す)
+     *
+     * @param regexp 正規表現 (table のコンパイル元と同じであること)
+     * @param table 表形式のDFA
+     * @param options オプション
+     */
+    static Regexp fromDfaTable(final String regexp, final DfaTable table, final List<RegexpOption> options) {
+        final Nfa nfa0 = new Parser(new Lexer(regexp)).expression();
+        return new Regexp(RegexpType.DFA, regexp, options, nfa0, null, null, table, null);
+    }
+
+    /**
+     * 事前にコンパイルしておいた表形式のNFAから、NFA_BITSET / NFA_BITSTATE_BACKTRACK タイプの Regexp を組み立てる。
+     *
+     * @param type NFA_BITSET または NFA_BITSTATE_BACKTRACK
+     * @param regexp 正規表現 (table のコンパイル元と同じであること)
+     * @param table 表形式のNFA
+     * @param options オプション
+     */
+    static Regexp fromNfaTable(final RegexpType type, final String regexp, final NfaTable table,
+            final List<RegexpOption> options) {
+        if (type != RegexpType.NFA_BITSET && type != RegexpType.NFA_BITSTATE_BACKTRACK) {
+            throw new IllegalArgumentException("NFA table is not used for " + type);
+        }
+        final Nfa nfa0 = new Parser(new Lexer(regexp)).expression();
+        return new Regexp(type, regexp, options, nfa0, null, null, null, table);
+    }
+
+    public RegexpType getType() {
+        return this.type;
+    }
+
+    public String getPattern() {
+        return this.regexp;
+    }
+
+    public Set<RegexpOption> getOptions() {
+        return this.options;
+    }
+
+    /**
+     * @return DFA タイプの場合の表形式のDFA
+     */
+    public Optional<DfaTable> getDfaTable() {
+        return Objects.isNull(this.dfa) ? Optional.empty() : Optional.ofNullable(this.dfa.table);
+    }
+
+    /**
+     * @return NFA_BITSET, NFA_BITSTATE_BACKTRACK タイプの場合の表形式のNFA
+     */
+    public Optional<NfaTable> getNfaTable() {
+        return Optional.ofNullable(this.nfaTable);
     }
 
     public boolean match(final String str) {
+        return this.matchWithStatistics(str).matched;
+    }
+
+    /**
+     * 入力文字列全体にマッチングし、結果とバックトラックの回数などの統計情報を返す。
+     * 統計情報は呼び出しごとに返すため、1つの Regexp を複数のスレッドで同時に使っても混ざらない。
+     *
+     * @param str 入力文字列
+     * @return マッチングの結果と統計情報
+     */
+    public MatchStatistics matchWithStatistics(final String str) {
+        // バックトラック方式のランタイムごとのデフォルトの上限で動かす。
+        return this.matchWithStatistics(str, MatchBudget.DEFAULT, MatchBudget.UNLIMITED);
+    }
+
+    /**
+     * バックトラック方式のランタイム(NFA_BACKTRACK, NFA_BITSTATE_BACKTRACK)で、ステップ数と時間に上限を設けてマッチングする。
+     * (それ以外のランタイムは入力文字列の長さに対して線形時間で済むため、上限は使わない)
+     *
+     * @param str 入力文字列
+     * @param budget ステップ数と時間の上限
+     * @return マッチングの結果と統計情報
+     * @throws MatchBudgetExceededException 上限を超えた場合
+     */
+    public MatchStatistics matchWithStatistics(final String str, final MatchBudget budget) {
+        return this.matchWithStatistics(str, budget, budget);
+    }
+
+    public boolean match(final String str, final MatchBudget budget) {
+        return this.matchWithStatistics(str, budget).matched;
+    }
+
+    private MatchStatistics matchWithStatistics(final String str, final MatchBudget backTrackBudget,
+            final MatchBudget bitStateBudget) {
+        final RegexpMetrics m = this.metrics;
+        final boolean sampled = m.sampleLatency();
+        final long startedAt = sampled ? System.nanoTime() : 0L;
+        try {
+            final MatchStatistics r = this.run(str, backTrackBudget, bitStateBudget);
+            m.recordMatch(r);
+            return r;
+        } catch (MatchBudgetExceededException e) {
+            m.recordBudgetExceeded(e);
+            throw e;
+        } finally {
+            if (sampled) {
+                m.recordLatency(System.nanoTime() - startedAt);
+            }
+        }
+    }
+
+    private MatchStatistics run(final String str, final MatchBudget backTrackBudget,
+            final MatchBudget bitStateBudget) {
+        final LiteralPrefilter prefilter = this.analysis.prefilter;
+        if (Objects.nonNull(prefilter) && !prefilter.mayMatch(str)) {
+            // バックトラック方式のランタイムでは、直前のマッチングの回数が残らないように記録する。
+            return this.type == RegexpType.NFA_BACKTRACK || this.type == RegexpType.NFA_BITSTATE_BACKTRACK
+                    ? this.record(MatchStatistics.UNMATCHED)
+                    : MatchStatistics.UNMATCHED;
+        }
         switch (this.type) {
         case NFA2DFA:
-            final Nfa2DfaRuntime nfa2dfaRuntime = new Nfa2DfaRuntime(nfa2dfa);
-            return nfa2dfaRuntime.accept(str);
+            final Nfa2DfaRuntime perThreadNfa2DfaRuntime = nfa2dfaRuntime.get();
+            perThreadNfa2DfaRuntime.reset();
+            return MatchStatistics.of(perThreadNfa2DfaRuntime.accept(str));
+        case DFA:
+            final DfaRuntime perThreadDfaRuntime = dfaRuntime.get();
+            perThreadDfaRuntime.reset();
+            return MatchStatistics.of(perThreadDfaRuntime.accept(str));
+        case LAZY_DFA:
+            final LazyDfa perThreadLazyDfa = lazyDfa.get();
+            final boolean matchedByLazyDfa = new LazyDfaRuntime(perThreadLazyDfa).accept(str);
+            perThreadLazyDfa.reportTo(this.metrics);
+            return MatchStatistics.of(matchedByLazyDfa);
+        case NFA_BITSTATE_BACKTRACK:
+            final NfaBitStateBackTrackRuntime bitStateRuntime = nfaBitStateBackTrackRuntime.get();
+            final boolean matchedByBitState = bitStateRuntime.accept(str, bitStateBudget);
+            return this.record(MatchStatistics.of(matchedByBitState, bitStateRuntime.getCountOfBackTracked(),
+                    bitStateRuntime.getCountOfSteps()));
+        case NFA_BITSET:
+            return MatchStatistics.of(nfaBitSetRuntime.get().accept(str));
         case NFA:
-            final NfaRuntime nfaRuntime = new NfaRuntime(nfa);
-            return nfaRuntime.accept(str);
+            final NfaRuntime perThreadNfaRuntime = nfaRuntime.get();
+            perThreadNfaRuntime.reset();
+            return MatchStatistics.of(perThreadNfaRuntime.accept(str));
         case NFA_BACKTRACK:
-            final NfaBackTrackRuntime nfaBackTrackRuntime = new NfaBackTrackRuntime(
-                    nfa,
-                    enableNfaBackTrackRuntimeTraceLog,
-                    !disableNfaTracedBackTrackSkipping);
-            final boolean matched = nfaBackTrackRuntime.accept(str);
-            countOfNfaBackTrack = nfaBackTrackRuntime.getCountOfBackTracked();
-            return matched;
+            final NfaBackTrackRuntime backTrackRuntime = nfaBackTrackRuntime.get();
+            final boolean matched = backTrackRuntime.accept(str, backTrackBudget);
+            return this.record(MatchStatistics.of(matched, backTrackRuntime.getCountOfBackTracked(),
+                    backTrackRuntime.getCountOfSteps()));
         default:
             throw new UnsupportedOperationException();
         }
     }
 
+    /**
+     * 巨大な入力文字列を分割し、pool で並列にマッチングする。
+     * 並列化できるのは DFA タイプ(表形式のDFA)の場合のみで、それ以外のタイプでは match() と同様に順に読む。
+     * (compileDfa() で状態数が上限を超えて LAZY_DFA タイプとなった場合も順に読む)
+     *
+     * @param input 入力文字列
+     * @param pool 並列処理に使う ForkJoinPool
+     * @return 入力文字列全体がマッチするか
+     * @see ParallelDfaRuntime
+     */
+    public boolean matchParallel(final CharSequence input, final ForkJoinPool pool) {
+        if (Objects.isNull(this.parallelDfaRuntime)) {
+            return this.match(input.toString());
+        }
+        return this.parallelDfaRuntime.accept(input, pool);
+    }
+
+    public boolean matchParallel(final CharSequence input) {
+        return this.matchParallel(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * getCountOfNfaBackTrack() 用に統計情報を記録する。
+     * (ThreadLocal への書き込みを避けるため、バックトラックしないランタイムでマッチングした場合は記録しない)
+     */
+    private MatchStatistics record(final MatchStatistics statistics) {
+        this.lastStatistics.set(statistics);
+        return statistics;
+    }
+
+    private RegexpSearcher searcher() {
+        return this.searcher.get();
+    }
+
+    /**
+     * 入力文字列中から正規表現にマッチする部分を検索する。
+     * どのタイプでコンパイルした場合も、検索は前向きと後ろ向きのDFA(RegexpSearcher)で行う。
+     * 正規表現の先頭に '^' がある場合は入力文字列の先頭から、末尾に '$' がある場合は入力文字列の末尾までのマッチのみを返す。
+     *
+     * @param input 入力文字列
+     * @return 最も左から始まるマッチのうち、最も長いものの範囲
+     */
+    public Optional<MatchedRange> find(final CharSequence input) {
+        return this.searcher().find(input, 0);
+    }
+
+    public Optional<MatchedRange> find(final CharSequence input, final int from) {
+        return this.searcher().find(input, from);
+    }
+
+    public List<MatchedRange> findAll(final CharSequence input) {
+        return this.searcher().findAll(input);
+    }
+
+    /** match(Reader), match(ReadableByteChannel, Charset) で1回に読み込む文字数(バイト数) */
+    static final int STREAM_BUFFER_SIZE = 8192;
+
+    /**
+     * 入力文字列をチャンク単位で与えてマッチングするための matcher を生成する。
+     * matcher はマッチングの状態を保持するため、スレッドごとに生成すること。
+     * (他のスレッドに渡されてもよいよう、遷移のキャッシュなども matcher ごとに持たせる)
+     *
+     * @return 新しい matcher
+     * @throws UnsupportedOperationException バックトラック方式のランタイムの場合
+     */
+    public RegexpMatcher matcher() {
+        switch (this.type) {
+        case NFA2DFA:
+            return new RegexpMatcher(new Nfa2DfaRuntime(nfa2dfa));
+        case DFA:
+            return new RegexpMatcher(new DfaRuntime(dfa));
+        case LAZY_DFA:
+            return new RegexpMatcher(new LazyDfaRuntime(lazyDfaFactory.get()));
+        case NFA_BITSET:
+            return new RegexpMatcher(nfaBitSetRuntimeFactory.get());
+        case NFA:
+            return new RegexpMatcher(new NfaRuntime(nfa, nfaAlphabet));
+        default:
+            // バックトラック方式では入力文字列全体を行き来するため、チャンク単位で与えることはできない。
+            throw new UnsupportedOperationException("streaming match is not supported for " + this.type);
+        }
+    }
+
+    /**
+     * Reader から読み込んだ文字列全体にマッチングする。
+     * 一定サイズのバッファで読み込みながらマッチングするため、入力の長さによらずメモリ使用量は一定となる。
+     * (空集合の状態に遷移した時点で、残りは読まずに打ち切る)
+     */
+    public boolean match(final Reader reader) throws IOException {
+        final RegexpMatcher m = this.matcher();
+        final char[] buf = new char[STREAM_BUFFER_SIZE];
+        int len;
+        while (!m.isDead() && (len = reader.read(buf)) != -1) {
+            m.feed(buf, 0, len);
+        }
+        return m.finish();
+    }
+
+    /**
+     * チャネルから読み込んだバイト列を charset でデコードした文字列全体にマッチングする。
+     * 不正なバイト列は new String(bytes, charset) と同様に置換文字として扱う。
+     */
+    public boolean match(final ReadableByteChannel channel, final Charset charset) throws IOException {
+        final RegexpMatcher m = this.matcher();
+        final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer bytes = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        final CharBuffer chars = CharBuffer.allocate(STREAM_BUFFER_SIZE);
+        boolean endOfInput = false;
+        while (!endOfInput && !m.isDead()) {
+            endOfInput = channel.read(bytes) == -1;
+            bytes.flip();
+            CoderResult cr;
+            do {
+                // 出力バッファが一杯になった場合は、マッチングに流してから続きをデコードする。
+                cr = decoder.decode(bytes, chars, endOfInput);
+                chars.flip();
+                m.feed(chars);
+                chars.clear();
+            } while (cr.isOverflow());
+            // デコードしきれなかったバイト列(マルチバイト文字の途中など)は、次に読み込んだバイト列の前に残す。
+            bytes.compact();
+        }
+        if (endOfInput) {
+            decoder.flush(chars);
+            chars.flip();
+            m.feed(chars);
+        }
+        return m.finish();
+    }
+
+    /**
+     * @return このスレッドで直前に match() した際のバックトラックの回数
+     *         (呼び出しごとの値が必要な場合は matchWithStatistics() を使うこと)
+     */
     public int getCountOfNfaBackTrack() {
-        return this.countOfNfaBackTrack;
+        final MatchStatistics last = this.lastStatistics.get();
+        return Objects.isNull(last) ? 0 : last.countOfBackTrack;
+    }
+
+    /**
+     * @return MatchBudget の上限を超えてマッチングを打ち切った回数 (全スレッドの合計)
+     */
+    public long getCountOfBudgetExceeded() {
+        return this.metrics.getCountOfBudgetExceeded();
+    }
+
+    /**
+     * @return match() の計測値 (registerMBean() で JMX に公開できる)
+     */
+    public RegexpMetrics getMetrics() {
+        return this.metrics;
     }
 }
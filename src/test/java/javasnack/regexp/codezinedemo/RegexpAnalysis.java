@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * 正規表現の構文木から求めた、オートマトン以外で使う情報
+ *
+ * NFAには現れない情報 (固定文字列、アンカー) を、マッチングや検索の前後で使うためにまとめたもの。
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public class RegexpAnalysis {
+    /** 固定文字列によるふるい落とし (使わない場合は null) */
+    public final LiteralPrefilter prefilter;
+    /** 正規表現の先頭に '^' があったか (検索でマッチは入力文字列の先頭から始まる) */
+    public final boolean anchoredStart;
+    /** 正規表現の末尾に '$' があったか (検索でマッチは入力文字列の末尾で終わる) */
+    public final boolean anchoredEnd;
+
+    /** ふるい落としもアンカーも無い場合 */
+    public static final RegexpAnalysis NONE = RegexpAnalysis.of(null, false, false);
+
+    /**
+     * @param regexp 正規表現
+     * @param usePrefilter 固定文字列によるふるい落としを使うか
+     */
+    public static RegexpAnalysis of(final String regexp, final boolean usePrefilter) {
+        final Parser parser = new Parser(new Lexer(regexp));
+        final Literals literals = parser.parse().literals();
+        final LiteralPrefilter prefilter = usePrefilter ? LiteralPrefilter.of(literals).orElse(null) : null;
+        return RegexpAnalysis.of(prefilter, parser.isAnchoredStart(), parser.isAnchoredEnd());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+import javasnack.regexp.codezinedemo.Regexp.RegexpType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * コンパイル済みの Regexp のキャッシュ
+ *
+ * 同じ正規表現を何度もコンパイルしないよう、(タイプ, 正規表現, オプション) をキーとしてコンパイル結果を保持する。
+ * 保持する数には上限を設け、上限を超えたら最も長い間使われていないものから捨てる。(LRU)
+ * コンパイル済みの Regexp は複数のスレッドで共有できるため、このキャッシュも複数のスレッドから使える。
+ * (コンパイル自体はロックの外で行うため、同じキーを同時にコンパイルした場合は先に登録された方を返す)
+ */
+public class RegexpCache {
+    /** 保持するコンパイル結果の数のデフォルトの上限 */
+    public static final int DEFAULT_MAX_ENTRIES = 1_000;
+
+    @ToString
+    @EqualsAndHashCode
+    @AllArgsConstructor(staticName = "of")
+    static class Key {
+        final RegexpType type;
+        final String regexp;
+        final Set<RegexpOption> options;
+    }
+
+    private final Map<Key, Regexp> entries;
+    private int countOfHit = 0;
+    private int countOfMiss = 0;
+
+    public RegexpCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be >= 1");
+        }
+        // accessOrder = true で、参照した順に並ぶ LinkedHashMap を LRU として使う。
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Regexp> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    public RegexpCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param type タイプ
+     * @param regexp 正規表現
+     * @param options オプション (順序や重複は問わない)
+     * @return キャッシュしていたコンパイル結果 (無ければコンパイルしてキャッシュに追加する)
+     */
+    public Regexp get(final RegexpType type, final String regexp, RegexpOption... options) {
+        final Set<RegexpOption> optionset = EnumSet.noneOf(RegexpOption.class);
+        optionset.addAll(Arrays.asList(options));
+        final Key key = Key.of(type, regexp, optionset);
+        synchronized (this) {
+            final Regexp cached = this.entries.get(key);
+            if (Objects.nonNull(cached)) {
+                this.countOfHit++;
+                return cached;
+            }
+            this.countOfMiss++;
+        }
+        final Regexp compiled = Regexp.compile(type, regexp, options);
+        synchronized (this) {
+            final Regexp r = this.entries.putIfAbsent(key, compiled);
+            return Objects.isNull(r) ? compiled : r;
+        }
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    public synchronized int getCountOfHit() {
+        return this.countOfHit;
+    }
+
+    public synchronized int getCountOfMiss() {
+        return this.countOfMiss;
+    }
+}
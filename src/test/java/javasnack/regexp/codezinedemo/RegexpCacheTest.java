@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+import javasnack.regexp.codezinedemo.Regexp.RegexpType;
+
+public class RegexpCacheTest {
+    @Test
+    public void testCache() {
+        final RegexpCache cache = new RegexpCache();
+        final Regexp r1 = cache.get(RegexpType.DFA, "(a|b)*c");
+        assertThat(r1.getType()).isEqualTo(RegexpType.DFA);
+        assertThat(r1.match("abac")).isTrue();
+        assertThat(cache.get(RegexpType.DFA, "(a|b)*c")).isSameAs(r1);
+        // タイプやオプションが異なれば別のコンパイル結果となる。(オプションの順序や重複は問わない)
+        final Regexp r2 = cache.get(RegexpType.NFA_BACKTRACK, "(a|b)*c");
+        assertThat(r2.getType()).isEqualTo(RegexpType.NFA_BACKTRACK);
+        final Regexp r3 = cache.get(RegexpType.DFA, "(a|b)*c", RegexpOption.DISABLE_LITERAL_PREFILTER,
+                RegexpOption.DEBUG_LOG);
+        assertThat(r3).isNotSameAs(r1);
+        assertThat(cache.get(RegexpType.DFA, "(a|b)*c", RegexpOption.DEBUG_LOG,
+                RegexpOption.DISABLE_LITERAL_PREFILTER, RegexpOption.DEBUG_LOG)).isSameAs(r3);
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.getCountOfHit()).isEqualTo(2);
+        assertThat(cache.getCountOfMiss()).isEqualTo(3);
+        cache.clear();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.get(RegexpType.DFA, "(a|b)*c")).isNotSameAs(r1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        final RegexpCache cache = new RegexpCache(2);
+        final Regexp a = cache.get(RegexpType.LAZY_DFA, "a");
+        final Regexp b = cache.get(RegexpType.LAZY_DFA, "b");
+        // "a" を参照したため、最も長い間使われていないのは "b" となる。
+        assertThat(cache.get(RegexpType.LAZY_DFA, "a")).isSameAs(a);
+        cache.get(RegexpType.LAZY_DFA, "c");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(RegexpType.LAZY_DFA, "a")).isSameAs(a);
+        assertThat(cache.get(RegexpType.LAZY_DFA, "b")).isNotSameAs(b);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.nio.CharBuffer;
+
+/**
+ * 入力文字列をチャンク単位で与えてマッチングする (streaming matcher)
+ *
+ * 入力文字列全体をメモリ上に置かずに、巨大なファイルなどを少しずつ読み込みながらマッチングするためのもの。
+ * チャンクの間ではランタイムの状態(DFAの状態やNFAの状態の集合)を保持する。
+ *
+ * 他のランタイムと同様にコードポイント単位で char に変換して遷移させるため、
+ * チャンクの末尾がサロゲートペアの上位サロゲートで終わる場合は、次のチャンクの先頭の文字と組み合わせて扱う。
+ *
+ * 使い方:
+ * <pre>
+ * final RegexpMatcher m = regexp.matcher();
+ * m.feed(chunk1);
+ * m.feed(chunk2);
+ * final boolean matched = m.finish();
+ * </pre>
+ */
+public class RegexpMatcher {
+    private final IncrementalRuntime runtime;
+    /** チャンクの末尾で、対となる下位サロゲートを待っている上位サロゲート */
+    private char pendingHighSurrogate;
+    private boolean hasPendingHighSurrogate = false;
+    /** 空集合の状態に遷移したか (以降の入力は読み飛ばす) */
+    private boolean dead = false;
+
+    public RegexpMatcher(final IncrementalRuntime runtime) {
+        this.runtime = runtime;
+        this.runtime.reset();
+    }
+
+    /**
+     * @return 以降どの文字を入力しても受理可能とならないか (残りの入力を読む必要が無いか)
+     */
+    public boolean isDead() {
+        return this.dead;
+    }
+
+    public RegexpMatcher feed(final char[] chars, final int offset, final int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end && !this.dead; i++) {
+            this.feed(chars[i]);
+        }
+        return this;
+    }
+
+    public RegexpMatcher feed(final CharBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.feed(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return this;
+        }
+        while (buffer.hasRemaining() && !this.dead) {
+            this.feed(buffer.get());
+        }
+        // 空集合の状態に遷移した場合も、残りは読んだものとして扱う。
+        buffer.position(buffer.limit());
+        return this;
+    }
+
+    public RegexpMatcher feed(final CharSequence chars) {
+        final int len = chars.length();
+        for (int i = 0; i < len && !this.dead; i++) {
+            this.feed(chars.charAt(i));
+        }
+        return this;
+    }
+
+    private void feed(final char c) {
+        if (this.hasPendingHighSurrogate) {
+            this.hasPendingHighSurrogate = false;
+            if (Character.isLowSurrogate(c)) {
+                this.step((char) Character.toCodePoint(this.pendingHighSurrogate, c));
+                return;
+            }
+            // 対となる下位サロゲートが無い場合は、上位サロゲート単独で1文字として扱う。
+            this.step(this.pendingHighSurrogate);
+            if (this.dead) {
+                return;
+            }
+        }
+        if (Character.isHighSurrogate(c)) {
+            this.pendingHighSurrogate = c;
+            this.hasPendingHighSurrogate = true;
+            return;
+        }
+        this.step(c);
+    }
+
+    private void step(final char c) {
+        if (!this.runtime.feed(c)) {
+            this.dead = true;
+        }
+    }
+
+    /**
+     * 入力の終わりを通知し、マッチング結果を返す。
+     * 呼び出し後は初期状態に戻るため、同じインスタンスで次の入力をマッチングできる。
+     *
+     * @return 入力全体が受理可能か
+     */
+    public boolean finish() {
+        if (this.hasPendingHighSurrogate && !this.dead) {
+            this.step(this.pendingHighSurrogate);
+        }
+        final boolean r = !this.dead && this.runtime.isAcceptable();
+        this.reset();
+        return r;
+    }
+
+    public void reset() {
+        this.runtime.reset();
+        this.hasPendingHighSurrogate = false;
+        this.dead = false;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+
+public class RegexpMatcherTest {
+    static List<Regexp> compileAll(final String regexp) {
+        return List.of(
+                Regexp.compileNfa(regexp),
+                Regexp.compileNfa(regexp, RegexpOption.NFA_BITSET),
+                Regexp.compileNfa2Dfa(regexp, RegexpOption.ENABLE_NFA2DFA_TRANSITION_CACHE),
+                Regexp.compileLazyDfa(regexp),
+                Regexp.compileDfa(regexp));
+    }
+
+    @Test
+    public void testFeedChunks() {
+        final String[] inputs = { "", "e", "abbefff", "abcde", "abbbabbbbefff", "cdabefff", "ab", "efe", "x" };
+        for (final Regexp r : compileAll("(ab*|cd*)*ef*")) {
+            final RegexpMatcher m = r.matcher();
+            for (final String input : inputs) {
+                // あらゆる位置で2つのチャンクに分割しても、match(String) と同じ結果になる。
+                for (int i = 0; i <= input.length(); i++) {
+                    m.feed(input.substring(0, i).toCharArray(), 0, i);
+                    m.feed(CharBuffer.wrap(input.substring(i)));
+                    assertThat(m.finish()).as(r.getType() + ":" + input + "@" + i).isEqualTo(r.match(input));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSurrogatePairAcrossChunks() {
+        // 他のランタイムと同様、コードポイントを char に切り詰めて遷移させる。
+        final String pattern = "a" + (char) "𠮷".codePointAt(0) + "b";
+        final String input = "a𠮷b";
+        for (final Regexp r : compileAll(pattern)) {
+            assertThat(r.match(input)).isTrue();
+            final RegexpMatcher m = r.matcher();
+            // 上位サロゲートと下位サロゲートの間でチャンクを分割する。
+            m.feed("a" + input.charAt(1));
+            m.feed(input.substring(2));
+            assertThat(m.finish()).as(r.getType().toString()).isTrue();
+            // 配列を持たない(読み取り専用の) CharBuffer でも同じ。
+            m.feed(CharBuffer.wrap(input.substring(0, 2)).asReadOnlyBuffer());
+            m.feed(CharBuffer.wrap(input.substring(2)).asReadOnlyBuffer());
+            assertThat(m.finish()).as(r.getType().toString()).isTrue();
+        }
+    }
+
+    @Test
+    public void testReaderAndChannel() throws IOException {
+        // バッファサイズを超え、UTF-8 のマルチバイト文字がバッファの境界で分割される入力
+        final String matched = "あい".repeat(Regexp.STREAM_BUFFER_SIZE) + "う";
+        final String unmatched = matched + "あ";
+        for (final Regexp r : compileAll("(あ|い)*う")) {
+            assertThat(r.match(new StringReader(matched))).isTrue();
+            assertThat(r.match(new StringReader(unmatched))).isFalse();
+            assertThat(r.match(Channels.newChannel(new ByteArrayInputStream(matched.getBytes(StandardCharsets.UTF_8))),
+                    StandardCharsets.UTF_8)).isTrue();
+            assertThat(r.match(Channels.newChannel(new ByteArrayInputStream(
+                    unmatched.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8)).isFalse();
+            assertThat(r.match(Channels.newChannel(new ByteArrayInputStream(matched.getBytes(StandardCharsets.UTF_16))),
+                    StandardCharsets.UTF_16)).isTrue();
+        }
+    }
+
+    @Test
+    public void testStopReadingWhenDead() throws IOException {
+        final Regexp r = Regexp.compileDfa("a*");
+        final int[] countOfRead = { 0 };
+        final StringReader reader = new StringReader("b" + "a".repeat(Regexp.STREAM_BUFFER_SIZE * 4)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                countOfRead[0]++;
+                return super.read(cbuf, off, len);
+            }
+        };
+        assertThat(r.match(reader)).isFalse();
+        // 空集合の状態に遷移した時点で、残りは読まずに打ち切る。
+        assertThat(countOfRead[0]).isEqualTo(1);
+    }
+
+    @Test
+    public void testBackTrackIsNotSupported() {
+        assertThrows(UnsupportedOperationException.class, () -> {
+            Regexp.compileNfa("ab", RegexpOption.NFA_BACKTRACK).matcher();
+        });
+        assertThrows(UnsupportedOperationException.class, () -> {
+            Regexp.compileNfa("ab", RegexpOption.NFA_BITSTATE_BACKTRACK).matcher();
+        });
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 1つの Regexp の match() の計測値
+ *
+ * 本番環境で常に有効にしておけるよう、以下のようにして計測のコストを抑えている。
+ * - カウンタは LongAdder で数え、複数のスレッドから match() しても同じ変数への書き込みで競合しない。
+ * - 遅延評価型のDFAのキャッシュヒットなど1文字ごとに発生するものは、スレッドごとの LazyDfa で数え、
+ *   match() ごとにまとめて加算する。(AbstractLazyDfa#reportTo())
+ * - 所要時間は System.nanoTime() の呼び出しを抑えるため、latencySampleInterval 回に1回の割合で無作為に記録する。
+ *
+ * registerMBean() で JMX の MBean として登録すると、jconsole などから書き換えるべきパターンを調べられる。
+ */
+public class RegexpMetrics implements RegexpMetricsMXBean {
+    /** 所要時間を記録する間隔のデフォルト値 */
+    public static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 64;
+
+    /** MBean として登録する際のドメイン */
+    public static final String JMX_DOMAIN = "javasnack.regexp.codezinedemo";
+
+    /** 同じ正規表現の Regexp を複数登録できるよう、ObjectName に含める連番 */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String pattern;
+    private final String type;
+    private final LongAdder countOfMatch = new LongAdder();
+    private final LongAdder countOfMatched = new LongAdder();
+    private final LongAdder countOfCacheHit = new LongAdder();
+    private final LongAdder countOfCacheMiss = new LongAdder();
+    private final LongAdder countOfCreatedStates = new LongAdder();
+    private final LongAdder countOfCacheFlush = new LongAdder();
+    private final LongAdder countOfBackTrack = new LongAdder();
+    private final LongAdder countOfBackTrackSteps = new LongAdder();
+    private final LongAdder countOfBudgetExceeded = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile int latencySampleInterval = DEFAULT_LATENCY_SAMPLE_INTERVAL;
+    private ObjectName objectName = null;
+
+    public RegexpMetrics(final String pattern, final String type) {
+        this.pattern = pattern;
+        this.type = type;
+    }
+
+    /**
+     * @return 今回の match() の所要時間を記録するか
+     */
+    boolean sampleLatency() {
+        final int interval = this.latencySampleInterval;
+        return interval <= 1 || ThreadLocalRandom.current().nextInt(interval) == 0;
+    }
+
+    void recordLatency(final long nanos) {
+        this.latency.record(nanos);
+    }
+
+    void recordMatch(final MatchStatistics statistics) {
+        this.countOfMatch.increment();
+        if (statistics.matched) {
+            this.countOfMatched.increment();
+        }
+        this.addBackTrackCounts(statistics.countOfBackTrack, statistics.countOfSteps);
+    }
+
+    void recordBudgetExceeded(final MatchBudgetExceededException e) {
+        this.countOfMatch.increment();
+        this.countOfBudgetExceeded.increment();
+        this.addBackTrackCounts(0, e.getSteps());
+    }
+
+    private void addBackTrackCounts(final long backTrack, final long steps) {
+        if (backTrack != 0) {
+            this.countOfBackTrack.add(backTrack);
+        }
+        if (steps != 0) {
+            this.countOfBackTrackSteps.add(steps);
+        }
+    }
+
+    void addLazyDfaCounts(final long hit, final long miss, final long createdStates, final long flush) {
+        if (hit != 0) {
+            this.countOfCacheHit.add(hit);
+        }
+        if (miss != 0) {
+            this.countOfCacheMiss.add(miss);
+        }
+        if (createdStates != 0) {
+            this.countOfCreatedStates.add(createdStates);
+        }
+        if (flush != 0) {
+            this.countOfCacheFlush.add(flush);
+        }
+    }
+
+    /**
+     * プラットフォームの MBeanServer に MBean として登録する。
+     *
+     * @return 登録した ObjectName (既に登録済みの場合はその ObjectName)
+     */
+    public synchronized ObjectName registerMBean() {
+        if (this.objectName != null) {
+            return this.objectName;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final Hashtable<String, String> properties = new Hashtable<>();
+            properties.put("type", "RegexpMetrics");
+            properties.put("engine", this.type);
+            properties.put("id", Long.toString(SEQUENCE.incrementAndGet()));
+            properties.put("pattern", ObjectName.quote(this.pattern));
+            final ObjectName name = new ObjectName(JMX_DOMAIN, properties);
+            server.registerMBean(this, name);
+            this.objectName = name;
+            return name;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * registerMBean() で登録した MBean の登録を解除する。(登録していなければ何もしない)
+     */
+    public synchronized void unregisterMBean() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            this.objectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    @Override
+    public String getType() {
+        return this.type;
+    }
+
+    @Override
+    public long getCountOfMatch() {
+        return this.countOfMatch.sum();
+    }
+
+    @Override
+    public long getCountOfMatched() {
+        return this.countOfMatched.sum();
+    }
+
+    @Override
+    public long getCountOfCacheHit() {
+        return this.countOfCacheHit.sum();
+    }
+
+    @Override
+    public long getCountOfCacheMiss() {
+        return this.countOfCacheMiss.sum();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        final long hit = this.countOfCacheHit.sum();
+        final long total = hit + this.countOfCacheMiss.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    @Override
+    public long getCountOfCreatedStates() {
+        return this.countOfCreatedStates.sum();
+    }
+
+    @Override
+    public long getCountOfCacheFlush() {
+        return this.countOfCacheFlush.sum();
+    }
+
+    @Override
+    public long getCountOfBackTrack() {
+        return this.countOfBackTrack.sum();
+    }
+
+    @Override
+    public long getCountOfBackTrackSteps() {
+        return this.countOfBackTrackSteps.sum();
+    }
+
+    @Override
+    public long getCountOfBudgetExceeded() {
+        return this.countOfBudgetExceeded.sum();
+    }
+
+    @Override
+    public long getCountOfLatencySamples() {
+        return this.latency.getCount();
+    }
+
+    @Override
+    public long getLatencyNanos50thPercentile() {
+        return this.latency.getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getLatencyNanos90thPercentile() {
+        return this.latency.getValueAtPercentile(90.0);
+    }
+
+    @Override
+    public long getLatencyNanos99thPercentile() {
+        return this.latency.getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getLatencyNanos999thPercentile() {
+        return this.latency.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getLatencyNanosMax() {
+        return this.latency.getMaxValue();
+    }
+
+    @Override
+    public int getLatencySampleInterval() {
+        return this.latencySampleInterval;
+    }
+
+    @Override
+    public void setLatencySampleInterval(final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be >= 1");
+        }
+        this.latencySampleInterval = interval;
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return this.latency;
+    }
+
+    @Override
+    public void reset() {
+        this.countOfMatch.reset();
+        this.countOfMatched.reset();
+        this.countOfCacheHit.reset();
+        this.countOfCacheMiss.reset();
+        this.countOfCreatedStates.reset();
+        this.countOfCacheFlush.reset();
+        this.countOfBackTrack.reset();
+        this.countOfBackTrackSteps.reset();
+        this.countOfBudgetExceeded.reset();
+        this.latency.reset();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+/**
+ * RegexpMetrics を JMX で公開するためのインタフェース
+ */
+public interface RegexpMetricsMXBean {
+    String getPattern();
+
+    String getType();
+
+    /** @return match() した回数 */
+    long getCountOfMatch();
+
+    /** @return match() でマッチした回数 */
+    long getCountOfMatched();
+
+    /** @return 遅延評価型のDFAで、遷移をキャッシュから取り出せた回数 */
+    long getCountOfCacheHit();
+
+    /** @return 遅延評価型のDFAで、遷移を計算した回数 */
+    long getCountOfCacheMiss();
+
+    /** @return 遷移をキャッシュから取り出せた割合 (遷移していなければ 0) */
+    double getCacheHitRatio();
+
+    /** @return 遅延評価型のDFAで生成した状態数 */
+    long getCountOfCreatedStates();
+
+    /** @return 遅延評価型のDFAで、キャッシュ上限に達してキャッシュを破棄した回数 */
+    long getCountOfCacheFlush();
+
+    /** @return バックトラック方式のランタイムでバックトラックした回数 */
+    long getCountOfBackTrack();
+
+    /** @return バックトラック方式のランタイムで辿ったステップ数 */
+    long getCountOfBackTrackSteps();
+
+    /** @return MatchBudget の上限を超えてマッチングを打ち切った回数 */
+    long getCountOfBudgetExceeded();
+
+    /** @return 所要時間を記録した match() の回数 */
+    long getCountOfLatencySamples();
+
+    long getLatencyNanos50thPercentile();
+
+    long getLatencyNanos90thPercentile();
+
+    long getLatencyNanos99thPercentile();
+
+    long getLatencyNanos999thPercentile();
+
+    long getLatencyNanosMax();
+
+    /** @return 所要時間を記録する間隔 (N 回に1回記録する) */
+    int getLatencySampleInterval();
+
+    void setLatencySampleInterval(int interval);
+
+    /** 全てのカウンタとヒストグラムを 0 に戻す。 */
+    void reset();
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+
+public class RegexpMetricsTest {
+
+    @Test
+    public void testLazyDfaCounts() {
+        final Regexp r = Regexp.compileLazyDfa("(a|b)*c", RegexpOption.DISABLE_LITERAL_PREFILTER);
+        final RegexpMetrics m = r.getMetrics();
+        assertThat(r.match("ababc")).isTrue();
+        assertThat(r.match("ababc")).isTrue();
+        assertThat(r.match("abx")).isFalse();
+        assertThat(m.getCountOfMatch()).isEqualTo(3);
+        assertThat(m.getCountOfMatched()).isEqualTo(2);
+        // 1回目は "a", "b", "a"(2回目以降の a は同じ状態からの遷移), "b", "c" のうち新しい遷移のみ計算する。
+        assertThat(m.getCountOfCacheHit() + m.getCountOfCacheMiss()).isEqualTo(5 + 5 + 3);
+        assertThat(m.getCountOfCacheMiss()).isLessThan(m.getCountOfCacheHit());
+        assertThat(m.getCacheHitRatio()).isGreaterThan(0.5).isLessThan(1.0);
+        assertThat(m.getCountOfCreatedStates()).isGreaterThanOrEqualTo(3);
+        assertThat(m.getCountOfCacheFlush()).isZero();
+
+        m.reset();
+        assertThat(m.getCountOfMatch()).isZero();
+        assertThat(m.getCacheHitRatio()).isZero();
+    }
+
+    @Test
+    public void testCacheFlush() {
+        final Regexp r = Regexp.compileLazyDfa("(a|b)*a(a|b)(a|b)", 4);
+        assertThat(r.match("abababbbaabb")).isTrue();
+        assertThat(r.getMetrics().getCountOfCacheFlush()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testBackTrackCounts() {
+        final Regexp r = Regexp.compileNfa("(a|b)*c", RegexpOption.NFA_BACKTRACK);
+        final MatchStatistics stats = r.matchWithStatistics("ababx");
+        assertThat(r.getMetrics().getCountOfBackTrack()).isEqualTo(stats.countOfBackTrack);
+        assertThat(r.getMetrics().getCountOfBackTrackSteps()).isEqualTo(stats.countOfSteps);
+
+        final Regexp dos = Regexp.compileNfa("(a*)*", RegexpOption.NFA_BACKTRACK,
+                RegexpOption.DISABLE_NFA_TRACED_BACKTRACK_SKIPPING);
+        assertThatThrownBy(() -> dos.match("aaab", MatchBudget.ofSteps(100)))
+                .isInstanceOf(MatchBudgetExceededException.class);
+        assertThat(dos.getMetrics().getCountOfBudgetExceeded()).isEqualTo(1);
+        assertThat(dos.getMetrics().getCountOfBackTrackSteps()).isEqualTo(101);
+        assertThat(dos.getMetrics().getCountOfMatch()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLatencySampling() {
+        final Regexp r = Regexp.compileDfa("(a|b)*c");
+        final RegexpMetrics m = r.getMetrics();
+        assertThat(m.getLatencySampleInterval()).isEqualTo(RegexpMetrics.DEFAULT_LATENCY_SAMPLE_INTERVAL);
+        m.setLatencySampleInterval(1);
+        for (int i = 0; i < 100; i++) {
+            r.match("ab".repeat(i) + "c");
+        }
+        assertThat(m.getCountOfLatencySamples()).isEqualTo(100);
+        assertThat(m.getLatencyNanos50thPercentile()).isGreaterThan(0);
+        assertThat(m.getLatencyNanos99thPercentile()).isGreaterThanOrEqualTo(m.getLatencyNanos50thPercentile());
+        assertThat(m.getLatencyNanosMax()).isGreaterThanOrEqualTo(m.getLatencyNanos999thPercentile());
+
+        m.reset();
+        m.setLatencySampleInterval(1_000_000);
+        for (int i = 0; i < 100; i++) {
+            r.match("abc");
+        }
+        assertThat(m.getCountOfLatencySamples()).isLessThan(100);
+        assertThat(m.getCountOfMatch()).isEqualTo(100);
+        assertThatThrownBy(() -> m.setLatencySampleInterval(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        final LatencyHistogram h = new LatencyHistogram();
+        assertThat(h.getValueAtPercentile(50.0)).isZero();
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v);
+        }
+        assertThat(h.getCount()).isEqualTo(1000);
+        // 相対誤差は 1 / SUB_BUCKETS 以内
+        assertThat(h.getValueAtPercentile(50.0)).isBetween(500L, 500L + 500L / LatencyHistogram.SUB_BUCKETS);
+        assertThat(h.getValueAtPercentile(99.0)).isBetween(990L, 990L + 990L / LatencyHistogram.SUB_BUCKETS);
+        assertThat(h.getMaxValue()).isBetween(1000L, 1000L + 1000L / LatencyHistogram.SUB_BUCKETS);
+
+        for (long v : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE }) {
+            final int i = LatencyHistogram.indexOf(v);
+            assertThat(i).isBetween(0, LatencyHistogram.BUCKETS - 1);
+            assertThat(LatencyHistogram.highestValueOf(i)).isGreaterThanOrEqualTo(v);
+            if (i > 0) {
+                assertThat(LatencyHistogram.highestValueOf(i - 1)).isLessThan(v);
+            }
+        }
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        final Regexp r = Regexp.compileLazyDfa("(a|b)*c");
+        r.match("abc");
+        final ObjectName name = r.getMetrics().registerMBean();
+        try {
+            assertThat(r.getMetrics().registerMBean()).isEqualTo(name);
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(name, "Pattern")).isEqualTo("(a|b)*c");
+            assertThat(server.getAttribute(name, "Type")).isEqualTo("LAZY_DFA");
+            assertThat(server.getAttribute(name, "CountOfMatch")).isEqualTo(1L);
+            server.invoke(name, "reset", null, null);
+            assertThat(server.getAttribute(name, "CountOfMatch")).isEqualTo(0L);
+            // 同じ正規表現でも別の Regexp として登録できる。
+            final RegexpMetrics other = Regexp.compileLazyDfa("(a|b)*c").getMetrics();
+            assertThat(other.registerMBean()).isNotEqualTo(name);
+            other.unregisterMBean();
+        } finally {
+            r.getMetrics().unregisterMBean();
+        }
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isFalse();
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * 入力文字列中から正規表現にマッチする部分を検索する (unanchored search)
+ *
+ * 検索位置を1つずつずらして match() を繰り返すと O(文字列長^2) となるため、RE2 と同じく2つのDFAで検索する。
+ *
+ * 1. 前向きのDFA : 「任意の位置から始まるマッチ」を1回の走査で追跡し、マッチの終了位置を求める。
+ *    (正規表現の先頭に ".*?" を付けたDFAのイメージ)
+ * 2. 後ろ向きのDFA : 正規表現を逆向きにしたNFAから作るDFAで、終了位置から文字列を逆向きに走査して開始位置を求める。
+ *
+ * マッチの選び方は leftmost-longest (POSIX と同じ) で、最も左から始まるマッチのうち最も長いものを返す。
+ * どちらのDFAも LazyDfa と同じく遷移をキャッシュしながら走査するため、検索全体で O(文字列長) となる。
+ *
+ * 遷移のキャッシュを持つためスレッドセーフではない。複数のスレッドで検索する場合は {@link #factory} で、
+ * 変更されない表(NfaTable と逆向きの遷移表)を共有したまま、スレッドごとにインスタンスを作ること。
+ */
+public class RegexpSearcher {
+    private final ForwardDfa forward;
+    private final ReverseDfa reverse;
+    /** 固定文字列によるふるい落とし (使わない場合は null) */
+    private final LiteralPrefilter prefilter;
+    private final boolean anchoredStart;
+    private final boolean anchoredEnd;
+
+    /**
+     * @param analysis 固定文字列によるふるい落としと、アンカーの有無
+     */
+    public RegexpSearcher(final Nfa nfa, final int maxCachedStates, final RegexpAnalysis analysis) {
+        this(new ReverseNfaTable(NfaTable.from(nfa)), maxCachedStates, analysis);
+    }
+
+    private RegexpSearcher(final ReverseNfaTable tables, final int maxCachedStates, final RegexpAnalysis analysis) {
+        // 先頭のアンカーがある場合は、入力文字列の先頭以外から始まるマッチの候補を追加しない。
+        this.forward = new ForwardDfa(tables.nfa, maxCachedStates, !analysis.anchoredStart);
+        this.reverse = new ReverseDfa(tables, maxCachedStates);
+        this.prefilter = analysis.prefilter;
+        this.anchoredStart = analysis.anchoredStart;
+        this.anchoredEnd = analysis.anchoredEnd;
+    }
+
+    public RegexpSearcher(final Nfa nfa, final int maxCachedStates) {
+        this(nfa, maxCachedStates, RegexpAnalysis.NONE);
+    }
+
+    public RegexpSearcher(final Nfa nfa) {
+        this(nfa, LazyDfa.DEFAULT_MAX_CACHED_STATES);
+    }
+
+    /**
+     * @return スレッドごとの検索用インスタンスの生成処理 (NfaTable と逆向きの遷移表は、ここで1度だけ作って共有する)
+     */
+    public static Supplier<RegexpSearcher> factory(final NfaTable nfa, final int maxCachedStates,
+            final RegexpAnalysis analysis) {
+        final ReverseNfaTable tables = new ReverseNfaTable(nfa);
+        return () -> new RegexpSearcher(tables, maxCachedStates, analysis);
+    }
+
+    /**
+     * @param input 入力文字列
+     * @param from 検索を開始する位置
+     * @return from 以降で最初にマッチした範囲
+     */
+    public Optional<MatchedRange> find(final CharSequence input, final int from) {
+        final int len = input.length();
+        if (from < 0 || from > len) {
+            throw new IndexOutOfBoundsException("from=" + from + ", length=" + len);
+        }
+        return this.find(input, from, Objects.nonNull(this.prefilter) && LiteralPrefilter.canFilter(input));
+    }
+
+    /**
+     * @param filterable 固定文字列によるふるい落としを使うか
+     */
+    private Optional<MatchedRange> find(final CharSequence input, final int fromPosition,
+            final boolean filterable) {
+        final int len = input.length();
+        int from = fromPosition;
+        if (this.anchoredStart && from > 0) {
+            return Optional.empty();
+        }
+        if (filterable) {
+            // マッチが始まりうる位置まで、DFAを動かさずに読み飛ばす。
+            from = this.prefilter.candidateStart(input, from);
+            if (from < 0 || (this.anchoredStart && from > 0)) {
+                return Optional.empty();
+            }
+        }
+        if (this.anchoredEnd) {
+            return this.findAnchoredEnd(input, from);
+        }
+        // 1. 前向きのDFAでマッチの終了位置を求める。
+        int state = this.forward.start();
+        int end = this.forward.isAcceptable(state) ? from : -1;
+        for (int i = from; i < len;) {
+            final int c = Character.codePointAt(input, i);
+            i += Character.charCount(c);
+            state = this.forward.next(state, (char) c);
+            if (this.forward.isAcceptable(state)) {
+                end = i;
+            }
+            if (this.forward.isDead(state)) {
+                break;
+            }
+        }
+        if (end < 0) {
+            return Optional.empty();
+        }
+
+        // 2. 後ろ向きのDFAで、終了位置から逆向きに走査して最も左の開始位置を求める。
+        state = this.reverse.start();
+        int start = this.reverse.isAcceptable(state) ? end : -1;
+        for (int i = end; i > from;) {
+            final int c = Character.codePointBefore(input, i);
+            i -= Character.charCount(c);
+            state = this.reverse.next(state, (char) c);
+            if (this.reverse.isAcceptable(state)) {
+                start = i;
+            }
+            if (this.reverse.isDead(state)) {
+                break;
+            }
+        }
+        if (start < 0) {
+            // 前向きのDFAでマッチした以上、開始位置は必ず見つかるはず。
+            throw new IllegalStateException("start position of match not found");
+        }
+        return Optional.of(MatchedRange.of(start, end));
+    }
+
+    /**
+     * 末尾のアンカーがある場合の検索 : マッチの終了位置は入力文字列の末尾に決まるため、
+     * 後ろ向きのDFAだけで末尾から逆向きに走査し、最も左の開始位置を求める。
+     * (前向きのDFAでは、末尾まで続かない途中のマッチを優先して他の候補を捨ててしまうため使えない)
+     */
+    private Optional<MatchedRange> findAnchoredEnd(final CharSequence input, final int from) {
+        final int len = input.length();
+        int state = this.reverse.start();
+        int start = this.reverse.isAcceptable(state) ? len : -1;
+        for (int i = len; i > from;) {
+            final int c = Character.codePointBefore(input, i);
+            i -= Character.charCount(c);
+            state = this.reverse.next(state, (char) c);
+            if (this.reverse.isAcceptable(state)) {
+                start = i;
+            }
+            if (this.reverse.isDead(state)) {
+                break;
+            }
+        }
+        if (start < 0 || (this.anchoredStart && start > 0)) {
+            return Optional.empty();
+        }
+        return Optional.of(MatchedRange.of(start, len));
+    }
+
+    /**
+     * @return マッチした範囲の一覧 (重ならないよう、前のマッチの終了位置から次を検索する)
+     */
+    public List<MatchedRange> findAll(final CharSequence input) {
+        final List<MatchedRange> r = new ArrayList<>();
+        final int len = input.length();
+        // サロゲートを含むかの判定は、入力文字列全体について1回だけ行う。
+        final boolean filterable = Objects.nonNull(this.prefilter) && LiteralPrefilter.canFilter(input);
+        int from = 0;
+        while (from <= len) {
+            final Optional<MatchedRange> found = this.find(input, from, filterable);
+            if (found.isEmpty()) {
+                break;
+            }
+            final MatchedRange m = found.get();
+            r.add(m);
+            if (m.end > m.start) {
+                from = m.end;
+            } else if (m.end < len) {
+                // 空文字列にマッチした場合は、同じ位置で無限にマッチしないよう1文字(コードポイント)進める。
+                from = m.end + Character.charCount(Character.codePointAt(input, m.end));
+            } else {
+                break;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * 前向きのDFAの状態の中身
+     *
+     * groups は「同じ位置から始まったマッチの候補」のNFAの状態の集合を、開始位置の昇順に並べたもの。
+     * あるNFAの状態が複数の group に含まれる場合は、開始位置の最も左の group にのみ残す。
+     * (同じ状態からの以降の遷移は同じなので、開始位置の左の方を優先すれば十分)
+     * -> 各NFAの状態は高々1つの group にしか含まれないため、DFAの状態数は有限に収まる。
+     */
+    @ToString
+    @EqualsAndHashCode
+    @AllArgsConstructor(staticName = "of")
+    static class SearchState {
+        final List<BitSet> groups;
+        /** 受理可能となった group のうち、最も左から始まったものの添字 (無ければ -1) */
+        final int best;
+        /** まだ1度もマッチしておらず、新たな開始位置の候補を追加するか */
+        final boolean seeding;
+        /** 現在の位置で best の group が受理可能か (= マッチの終了位置の候補か) */
+        final boolean acceptedHere;
+    }
+
+    static class ForwardDfa extends AbstractLazyDfa<SearchState> {
+        private final NfaTable nfa;
+        private final BitSet initial;
+        private final BitSet acceptMask;
+
+        /**
+         * @param seeding 検索を開始した位置以外から始まるマッチの候補も追加するか
+         */
+        ForwardDfa(final NfaTable nfa, final int maxCachedStates, final boolean seeding) {
+            super(nfa.alphabet, maxCachedStates, "SEARCH DFA", false);
+            this.nfa = nfa;
+            this.initial = BitSet.valueOf(nfa.initial);
+            this.acceptMask = BitSet.valueOf(nfa.acceptMask);
+            final List<BitSet> groups = new ArrayList<>();
+            groups.add(this.initial);
+            this.init(this.normalize(groups, -1, seeding));
+        }
+
+        @Override
+        protected SearchState step(final SearchState s, final char c) {
+            final int classId = this.nfa.alphabet.classOf(c);
+            final List<BitSet> groups = new ArrayList<>();
+            final BitSet seen = new BitSet();
+            int best = -1;
+            for (int i = 0; i < s.groups.size(); i++) {
+                final BitSet next = new BitSet();
+                final BitSet current = s.groups.get(i);
+                for (int state = current.nextSetBit(0); state >= 0; state = current.nextSetBit(state + 1)) {
+                    final long[] step = this.nfa.steps[state * this.nfa.classCount + classId];
+                    if (step != null) {
+                        next.or(BitSet.valueOf(step));
+                    }
+                }
+                next.andNot(seen);
+                if (next.isEmpty()) {
+                    continue;
+                }
+                if (i == s.best) {
+                    best = groups.size();
+                }
+                groups.add(next);
+                seen.or(next);
+            }
+            if (s.seeding) {
+                // 次の位置から始まるマッチの候補を追加する。
+                final BitSet seed = (BitSet) this.initial.clone();
+                seed.andNot(seen);
+                if (!seed.isEmpty()) {
+                    groups.add(seed);
+                }
+            }
+            return this.normalize(groups, best, s.seeding);
+        }
+
+        private SearchState normalize(final List<BitSet> groups, final int best, final boolean seeding) {
+            for (int i = 0; i < groups.size(); i++) {
+                if (!groups.get(i).intersects(this.acceptMask)) {
+                    continue;
+                }
+                if (best >= 0 && i > best) {
+                    break;
+                }
+                /* より左から始まった group が受理可能となった。
+                 * -> これより右から始まった group はもう選ばれないため除去し、新たな開始位置の候補も追加しない。
+                 */
+                return SearchState.of(new ArrayList<>(groups.subList(0, i + 1)), i, false, true);
+            }
+            return SearchState.of(groups, best, seeding, false);
+        }
+
+        @Override
+        protected boolean isAcceptableStateSet(final SearchState s) {
+            return s.acceptedHere;
+        }
+
+        @Override
+        protected boolean isDeadStateSet(final SearchState s) {
+            return s.groups.isEmpty();
+        }
+    }
+
+    /**
+     * 遷移を逆向きにしたNFAの表 (作成後は変更しないため、スレッド間で共有できる)
+     *
+     * 元のNFAの受理可能な状態を初期状態とし、元のNFAの初期状態を受理可能な状態とする。
+     */
+    static class ReverseNfaTable {
+        final NfaTable nfa;
+        /** [遷移先の状態番号 * classCount + 入力文字のクラス番号] -> 遷移元の状態番号の一覧 */
+        final int[][] sources;
+        /** 状態番号 -> 逆向きの空文字(ε)で遷移可能な状態 */
+        final BitSet[] closures;
+        /** 元のNFAの受理可能な状態から、逆向きの空文字(ε)で遷移可能な状態 */
+        final BitSet initial;
+
+        ReverseNfaTable(final NfaTable nfa) {
+            this.nfa = nfa;
+            final int n = nfa.stateCount;
+            final int k = nfa.classCount;
+
+            final List<List<Integer>> sourceLists = new ArrayList<>();
+            for (int i = 0; i < n * k; i++) {
+                sourceLists.add(new ArrayList<>());
+            }
+            for (int state = 0; state < n; state++) {
+                for (int classId = 0; classId < k; classId++) {
+                    final int[] targets = nfa.targets[state * k + classId];
+                    if (targets != null) {
+                        for (final int target : targets) {
+                            sourceLists.get(target * k + classId).add(state);
+                        }
+                    }
+                }
+            }
+            this.sources = new int[n * k][];
+            for (int i = 0; i < n * k; i++) {
+                this.sources[i] = sourceLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            final List<List<Integer>> reverseEpsilons = new ArrayList<>();
+            for (int state = 0; state < n; state++) {
+                reverseEpsilons.add(new ArrayList<>());
+            }
+            for (int state = 0; state < n; state++) {
+                for (final int target : nfa.epsilons[state]) {
+                    reverseEpsilons.get(target).add(state);
+                }
+            }
+            this.closures = new BitSet[n];
+            for (int state = 0; state < n; state++) {
+                final BitSet closure = new BitSet();
+                final List<Integer> stack = new ArrayList<>();
+                closure.set(state);
+                stack.add(state);
+                while (!stack.isEmpty()) {
+                    final int s = stack.remove(stack.size() - 1);
+                    for (final int prev : reverseEpsilons.get(s)) {
+                        if (!closure.get(prev)) {
+                            closure.set(prev);
+                            stack.add(prev);
+                        }
+                    }
+                }
+                this.closures[state] = closure;
+            }
+
+            this.initial = new BitSet();
+            for (int state = 0; state < n; state++) {
+                if (nfa.isAcceptable(state)) {
+                    this.initial.or(this.closures[state]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 遷移を逆向きにしたNFAから作るDFA
+     */
+    static class ReverseDfa extends AbstractLazyDfa<BitSet> {
+        private final NfaTable nfa;
+        private final int[][] sources;
+        private final BitSet[] closures;
+
+        ReverseDfa(final ReverseNfaTable tables, final int maxCachedStates) {
+            super(tables.nfa.alphabet, maxCachedStates, "REVERSE DFA", false);
+            this.nfa = tables.nfa;
+            this.sources = tables.sources;
+            this.closures = tables.closures;
+            // DFAの状態はキャッシュのキーとなるため、共有している表の BitSet はコピーして渡す。
+            this.init((BitSet) tables.initial.clone());
+        }
+
+        @Override
+        protected BitSet step(final BitSet current, final char c) {
+            final int classId = this.nfa.alphabet.classOf(c);
+            final BitSet next = new BitSet();
+            for (int state = current.nextSetBit(0); state >= 0; state = current.nextSetBit(state + 1)) {
+                for (final int source : this.sources[state * this.nfa.classCount + classId]) {
+                    next.or(this.closures[source]);
+                }
+            }
+            return next;
+        }
+
+        @Override
+        protected boolean isAcceptableStateSet(final BitSet s) {
+            // 元のNFAの初期状態(状態番号 0)に辿り着いていれば、そこがマッチの開始位置の候補となる。
+            return s.get(0);
+        }
+
+        @Override
+        protected boolean isDeadStateSet(final BitSet s) {
+            return s.isEmpty();
+        }
+    }
+}
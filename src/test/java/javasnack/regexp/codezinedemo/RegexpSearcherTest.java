@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+public class RegexpSearcherTest {
+    /**
+     * 全ての開始位置・終了位置の組み合わせを match() で試す、素朴な leftmost-longest の検索
+     */
+    static Optional<MatchedRange> findByBruteForce(final Regexp r, final String input, final int from) {
+        for (int start = from; start <= input.length(); start++) {
+            for (int end = input.length(); end >= start; end--) {
+                if (r.match(input.substring(start, end))) {
+                    return Optional.of(MatchedRange.of(start, end));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Test
+    public void testFind() {
+        final Regexp r = Regexp.compileDfa("ab|bcd");
+        // 最も左から始まるマッチが優先される。
+        assertThat(r.find("xabcd")).contains(MatchedRange.of(1, 3));
+        assertThat(r.find("xbcd")).contains(MatchedRange.of(1, 4));
+        assertThat(r.find("xyz")).isEmpty();
+        assertThat(r.find("xabcd", 2)).contains(MatchedRange.of(2, 5));
+
+        // 同じ位置から始まるマッチのうち、最も長いものが優先される。
+        final Regexp r2 = Regexp.compileLazyDfa("a|ab|abc");
+        assertThat(r2.find("xxabcabx")).contains(MatchedRange.of(2, 5));
+        assertThat(r2.findAll("xxabcabx")).containsExactly(MatchedRange.of(2, 5), MatchedRange.of(5, 7));
+
+        // 日本語やサロゲートペアを含む入力
+        final Regexp r3 = Regexp.compileNfa("(あ|い)*う");
+        assertThat(r3.find("𠮷あいう𠮷")).contains(MatchedRange.of(2, 5));
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        final Nfa nfa = new Parser(new Lexer("ab|bcd")).expression();
+        final Supplier<RegexpSearcher> factory = RegexpSearcher.factory(NfaTable.from(nfa),
+                LazyDfa.DEFAULT_MAX_CACHED_STATES, RegexpAnalysis.NONE);
+        // 表を共有したまま、スレッドごとに遷移のキャッシュを持つインスタンスを作る。
+        final RegexpSearcher s1 = factory.get();
+        final RegexpSearcher s2 = factory.get();
+        assertThat(s1).isNotSameAs(s2);
+        assertThat(s1.findAll("xabcdbcd")).containsExactly(MatchedRange.of(1, 3), MatchedRange.of(5, 8));
+        final ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(es.submit(() -> s2.findAll("xabcdbcd")).get()).isEqualTo(s1.findAll("xabcdbcd"));
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    @Test
+    public void testFindAllWithEmptyMatch() {
+        final Regexp r = Regexp.compileDfa("a*");
+        assertThat(r.findAll("baaa")).containsExactly(
+                MatchedRange.of(0, 0), MatchedRange.of(1, 4), MatchedRange.of(4, 4));
+        assertThat(r.findAll("")).containsExactly(MatchedRange.of(0, 0));
+    }
+
+    @Test
+    public void testFindMatchesBruteForce() {
+        final String[] patterns = { "a", "ab*", "(a|b)*c", "a(b|c)*d|bd", "(ab|a)(bc|c)", "(a|ab)(c|bcd)",
+                "a*b*", "(a|b)*a(a|b)", "((a|b)(a|b))*" };
+        final Random rnd = new Random(1234);
+        for (final String pattern : patterns) {
+            final Regexp r = Regexp.compileDfa(pattern);
+            for (int n = 0; n < 200; n++) {
+                final StringBuilder sb = new StringBuilder();
+                final int len = rnd.nextInt(12);
+                for (int i = 0; i < len; i++) {
+                    sb.append("abcdx".charAt(rnd.nextInt(5)));
+                }
+                final String input = sb.toString();
+                for (int from = 0; from <= input.length(); from++) {
+                    assertThat(r.find(input, from)).as(pattern + " : " + input + " @ " + from)
+                            .isEqualTo(findByBruteForce(r, input, from));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearchIsLinear() {
+        // 先頭からの位置ごとに match() を試すのではなく、1回の走査で検索する。
+        final Regexp r = Regexp.compileDfa("(a|b)*c");
+        final String input = "ab".repeat(100_000) + "c";
+        final List<MatchedRange> all = new ArrayList<>(r.findAll(input));
+        assertThat(all).containsExactly(MatchedRange.of(0, input.length()));
+    }
+
+    @Test
+    public void testFindWithAnchors() {
+        final Regexp r1 = Regexp.compileDfa("^a+");
+        assertThat(r1.find("aab")).contains(MatchedRange.of(0, 2));
+        assertThat(r1.find("baa")).isEmpty();
+        assertThat(r1.find("aab", 1)).isEmpty();
+        assertThat(r1.findAll("aaba")).containsExactly(MatchedRange.of(0, 2));
+
+        // 末尾までのマッチのうち、最も左から始まるもの
+        final Regexp r2 = Regexp.compileDfa("ab*$");
+        assertThat(r2.find("abbxabb")).contains(MatchedRange.of(4, 7));
+        assertThat(r2.find("abbx")).isEmpty();
+        final Regexp r3 = Regexp.compileLazyDfa("a*$");
+        assertThat(r3.findAll("baa")).containsExactly(MatchedRange.of(1, 3), MatchedRange.of(3, 3));
+
+        final Regexp r4 = Regexp.compileNfa("^[a-c]+$");
+        assertThat(r4.find("abcabc")).contains(MatchedRange.of(0, 6));
+        assertThat(r4.find("abcxabc")).isEmpty();
+    }
+
+    @Test
+    public void testFindExtendedSyntax() {
+        final Regexp r = Regexp.compileDfa("[0-9]+(\\.[0-9]{1,2})?");
+        assertThat(r.findAll("x=12.345, y=7, z=.5")).containsExactly(
+                MatchedRange.of(2, 7), MatchedRange.of(7, 8), MatchedRange.of(12, 13), MatchedRange.of(18, 19));
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+import javasnack.regexp.codezinedemo.Regexp.RegexpType;
+
+/**
+ * コンパイル済みの Regexp のバイナリ形式での保存と読み込み
+ *
+ * DFA タイプの表形式のDFA(DfaTable)や NFA_BITSET などの表形式のNFA(NfaTable)は、int / long の配列をそのまま並べて保存する。
+ * 読み込み時は部分集合構成法や最小化を行わず配列を読み込むだけで済むため、ビルド時にコンパイルしておいたものを
+ * 起動時にメモリマップしたファイルから読み込めば、大量の正規表現でも短時間で使えるようになる。
+ * (NFAは find() などで使うため正規表現から組み立て直すが、構文解析とNFAの組み立ては正規表現の長さに比例する程度で済む)
+ * 表を持たないタイプ(NFA, LAZY_DFA など)は、正規表現とオプションのみ保存し、読み込み時にコンパイルし直す。
+ *
+ * 形式 (数値は全てビッグエンディアン) :
+ * <pre>
+ * int MAGIC, int VERSION, int タイプ, int オプション(ビット集合), int 正規表現の長さ, char[] 正規表現,
+ * int 表の種類 (TABLE_NONE / TABLE_DFA / TABLE_NFA), 表の内容
+ * </pre>
+ * 1つのファイルに複数の Regexp を続けて保存でき、readAll() でまとめて読み込める。
+ */
+public class RegexpSerializer {
+    /** "CZRE" */
+    public static final int MAGIC = 0x435A5245;
+    /** 形式のバージョン (互換性の無い変更をしたら上げる) */
+    public static final int VERSION = 1;
+
+    static final int TABLE_NONE = 0;
+    static final int TABLE_DFA = 1;
+    static final int TABLE_NFA = 2;
+
+    private RegexpSerializer() {
+    }
+
+    public static void write(final Regexp regexp, final OutputStream out) throws IOException {
+        final DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(regexp.getType().ordinal());
+        int options = 0;
+        for (final RegexpOption option : regexp.getOptions()) {
+            options |= 1 << option.ordinal();
+        }
+        dos.writeInt(options);
+        dos.writeInt(regexp.getPattern().length());
+        dos.writeChars(regexp.getPattern());
+        final Optional<DfaTable> dfaTable = regexp.getDfaTable();
+        final Optional<NfaTable> nfaTable = regexp.getNfaTable();
+        if (dfaTable.isPresent()) {
+            dos.writeInt(TABLE_DFA);
+            writeDfaTable(dfaTable.get(), dos);
+        } else if (nfaTable.isPresent()) {
+            dos.writeInt(TABLE_NFA);
+            writeNfaTable(nfaTable.get(), dos);
+        } else {
+            dos.writeInt(TABLE_NONE);
+        }
+        dos.flush();
+    }
+
+    public static byte[] toBytes(final Regexp regexp) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(regexp, out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream では発生しない。
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * バッファの現在位置から Regexp を1つ読み込み、バッファの位置をその直後に進める。
+     *
+     * @param buffer 読み込み元 (メモリマップしたファイルでもよい)
+     * @return 読み込んだ Regexp
+     * @throws IllegalArgumentException 形式が不正な場合や、バージョンが異なる場合
+     *         (長さは残りのバイト数を、状態番号やクラス番号は状態数・クラス数を超えないか全て確認する)
+     */
+    public static Regexp read(final ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("not a compiled regexp (bad magic number)");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported version : " + version);
+            }
+            final RegexpType type = RegexpType.values()[checkIndex(buffer.getInt(), RegexpType.values().length)];
+            final int optionBits = buffer.getInt();
+            final List<RegexpOption> options = new ArrayList<>();
+            for (final RegexpOption option : RegexpOption.values()) {
+                if ((optionBits & (1 << option.ordinal())) != 0) {
+                    options.add(option);
+                }
+            }
+            final char[] pattern = new char[checkLength(buffer, buffer.getInt(), Character.BYTES)];
+            buffer.asCharBuffer().get(pattern);
+            buffer.position(buffer.position() + pattern.length * Character.BYTES);
+            final String regexp = new String(pattern);
+            final int tableKind = buffer.getInt();
+            switch (tableKind) {
+            case TABLE_NONE:
+                return Regexp.compile(type, regexp, options.toArray(new RegexpOption[options.size()]));
+            case TABLE_DFA:
+                return Regexp.fromDfaTable(regexp, readDfaTable(buffer), options);
+            case TABLE_NFA:
+                return Regexp.fromNfaTable(type, regexp, readNfaTable(buffer), options);
+            default:
+                throw new IllegalArgumentException("unknown table kind : " + tableKind);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("truncated or broken compiled regexp", e);
+        }
+    }
+
+    /**
+     * @param buffer 読み込み元
+     * @return バッファの現在位置から末尾までの全ての Regexp
+     */
+    public static List<Regexp> readAll(final ByteBuffer buffer) {
+        final List<Regexp> r = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            r.add(read(buffer));
+        }
+        return r;
+    }
+
+    /**
+     * ファイルをメモリマップして、全ての Regexp を読み込む。
+     */
+    public static List<Regexp> readAll(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readAll(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static int checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("index out of range : " + index);
+        }
+        return index;
+    }
+
+    /**
+     * 配列を確保する前に、要素数が残りのバイト数に収まるか確認する。
+     * (壊れた長さで巨大な配列を確保し、OutOfMemoryError とならないようにする)
+     *
+     * @param length 要素数
+     * @param elementBytes 1要素あたりの最小のバイト数
+     */
+    private static int checkLength(final ByteBuffer buffer, final int length, final int elementBytes) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length : " + length);
+        }
+        if ((long) length * elementBytes > buffer.remaining()) {
+            throw new IllegalArgumentException("length exceeds remaining bytes : " + length);
+        }
+        return length;
+    }
+
+    /**
+     * @return 状態数 x クラス数 (表の要素数, 1要素あたり少なくとも int 1つ分のバイト数がある)
+     */
+    private static int checkCells(final ByteBuffer buffer, final int stateCount, final int classCount) {
+        final long cells = (long) stateCount * classCount;
+        if (cells * Integer.BYTES > buffer.remaining()) {
+            throw new IllegalArgumentException("table size exceeds remaining bytes : " + cells);
+        }
+        return (int) cells;
+    }
+
+    private static void checkStates(final int[] states, final int stateCount) {
+        for (final int state : states) {
+            checkIndex(state, stateCount);
+        }
+    }
+
+    /**
+     * 状態の集合のビット集合に、状態数以上のビットが立っていないか確認する。
+     */
+    private static long[] checkBits(final long[] bits, final int stateCount) {
+        for (int w = 0; w < bits.length; w++) {
+            final int base = w * Long.SIZE;
+            final long valid = stateCount >= base + Long.SIZE ? -1L
+                    : stateCount <= base ? 0L : (1L << (stateCount - base)) - 1;
+            if ((bits[w] & ~valid) != 0) {
+                throw new IllegalArgumentException("state out of range in bit set : word " + w);
+            }
+        }
+        return bits;
+    }
+
+    /* 入力文字のクラス分け : int 区間数, int[] 区間の先頭の文字, int[] 区間 -> クラス番号, int 正規表現中に現れない文字が存在するか
+     */
+
+    static void writeAlphabet(final AlphabetPartition alphabet, final DataOutputStream dos) throws IOException {
+        final char[] intervalStarts = alphabet.intervalStarts();
+        dos.writeInt(intervalStarts.length);
+        for (final char c : intervalStarts) {
+            dos.writeInt(c);
+        }
+        writeInts(alphabet.classOfInterval(), dos);
+        dos.writeInt(alphabet.othersExists() ? 1 : 0);
+    }
+
+    static AlphabetPartition readAlphabet(final ByteBuffer buffer) {
+        // 区間ごとに先頭の文字とクラス番号の2つの int がある。
+        final int intervals = checkLength(buffer, buffer.getInt(), Integer.BYTES * 2);
+        if (intervals == 0) {
+            throw new IllegalArgumentException("no intervals");
+        }
+        final char[] intervalStarts = new char[intervals];
+        for (int i = 0; i < intervals; i++) {
+            final int start = buffer.getInt();
+            // 先頭の区間は 0x0000 から始まり、以降は昇順であること。(二分探索で区間を求めるため)
+            if (i == 0 ? start != 0 : start <= intervalStarts[i - 1] || start > Character.MAX_VALUE) {
+                throw new IllegalArgumentException("invalid interval start : " + start);
+            }
+            intervalStarts[i] = (char) start;
+        }
+        final int[] classOfInterval = new int[intervals];
+        readInts(buffer, classOfInterval);
+        // クラス番号は 0 から詰めて割り当てられていること。(クラス数は最大のクラス番号 + 1 となるため)
+        final boolean[] used = new boolean[intervals];
+        int classCount = 0;
+        for (final int classId : classOfInterval) {
+            used[checkIndex(classId, intervals)] = true;
+            classCount = Math.max(classCount, classId + 1);
+        }
+        for (int classId = 0; classId < classCount; classId++) {
+            if (!used[classId]) {
+                throw new IllegalArgumentException("unused class : " + classId);
+            }
+        }
+        return new AlphabetPartition(intervalStarts, classOfInterval, buffer.getInt() != 0);
+    }
+
+    /* 表形式のDFA : 入力文字のクラス分け, int 状態数, int 初期状態, int 空集合の状態,
+     * int[状態数 * クラス数] 遷移表, int 受理可能な状態の数, int[] 受理可能な状態
+     */
+
+    static void writeDfaTable(final DfaTable table, final DataOutputStream dos) throws IOException {
+        writeAlphabet(table.alphabet, dos);
+        dos.writeInt(table.stateCount);
+        dos.writeInt(table.start);
+        dos.writeInt(table.dead);
+        writeInts(table.transitions, dos);
+        int countOfAcceptable = 0;
+        for (final boolean b : table.acceptable) {
+            countOfAcceptable += b ? 1 : 0;
+        }
+        dos.writeInt(countOfAcceptable);
+        for (int state = 0; state < table.stateCount; state++) {
+            if (table.acceptable[state]) {
+                dos.writeInt(state);
+            }
+        }
+    }
+
+    static DfaTable readDfaTable(final ByteBuffer buffer) {
+        final AlphabetPartition alphabet = readAlphabet(buffer);
+        final int stateCount = buffer.getInt();
+        final int start = checkIndex(buffer.getInt(), stateCount);
+        final int dead = buffer.getInt();
+        if (dead != DfaTable.NO_DEAD_STATE) {
+            checkIndex(dead, stateCount);
+        }
+        final int[] transitions = new int[checkCells(buffer, stateCount, alphabet.size())];
+        readInts(buffer, transitions);
+        checkStates(transitions, stateCount);
+        final boolean[] acceptable = new boolean[stateCount];
+        final int countOfAcceptable = checkLength(buffer, buffer.getInt(), Integer.BYTES);
+        for (int i = 0; i < countOfAcceptable; i++) {
+            acceptable[checkIndex(buffer.getInt(), stateCount)] = true;
+        }
+        return new DfaTable(alphabet, stateCount, transitions, acceptable, start, dead);
+    }
+
+    /* 表形式のNFA : 入力文字のクラス分け, int 状態数, long[] 初期状態, long[] 受理可能な状態,
+     * 状態ごとの空文字(ε)での遷移先 (int 個数, int[] 遷移先),
+     * 状態 x クラスごとの遷移先 (int 個数 (遷移先が無い場合は -1), int[] 遷移先, long[] 遷移先 + 空文字(ε)で遷移可能な状態)
+     */
+
+    static void writeNfaTable(final NfaTable table, final DataOutputStream dos) throws IOException {
+        writeAlphabet(table.alphabet, dos);
+        dos.writeInt(table.stateCount);
+        writeLongs(table.initial, dos);
+        writeLongs(table.acceptMask, dos);
+        for (final int[] epsilon : table.epsilons) {
+            dos.writeInt(epsilon.length);
+            writeInts(epsilon, dos);
+        }
+        for (int i = 0; i < table.targets.length; i++) {
+            if (Objects.isNull(table.targets[i])) {
+                dos.writeInt(-1);
+                continue;
+            }
+            dos.writeInt(table.targets[i].length);
+            writeInts(table.targets[i], dos);
+            writeLongs(table.steps[i], dos);
+        }
+    }
+
+    static NfaTable readNfaTable(final ByteBuffer buffer) {
+        final AlphabetPartition alphabet = readAlphabet(buffer);
+        final int classCount = alphabet.size();
+        // 状態ごとに少なくとも空文字(ε)での遷移先の個数の int がある。
+        final int stateCount = checkLength(buffer, buffer.getInt(), Integer.BYTES);
+        final int words = NfaTable.wordsOf(stateCount);
+        final long[] initial = checkBits(readLongs(buffer, words), stateCount);
+        final long[] acceptMask = checkBits(readLongs(buffer, words), stateCount);
+        final int[][] epsilons = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            epsilons[state] = new int[checkLength(buffer, buffer.getInt(), Integer.BYTES)];
+            readInts(buffer, epsilons[state]);
+            checkStates(epsilons[state], stateCount);
+        }
+        final int cells = checkCells(buffer, stateCount, classCount);
+        final int[][] targets = new int[cells][];
+        final long[][] steps = new long[cells][];
+        for (int i = 0; i < cells; i++) {
+            final int length = buffer.getInt();
+            if (length == -1) {
+                continue;
+            }
+            targets[i] = new int[checkLength(buffer, length, Integer.BYTES)];
+            readInts(buffer, targets[i]);
+            checkStates(targets[i], stateCount);
+            steps[i] = checkBits(readLongs(buffer, words), stateCount);
+        }
+        return new NfaTable(alphabet, stateCount, initial, acceptMask, steps, epsilons, targets);
+    }
+
+    private static void writeInts(final int[] values, final DataOutputStream dos) throws IOException {
+        for (final int v : values) {
+            dos.writeInt(v);
+        }
+    }
+
+    private static void writeLongs(final long[] values, final DataOutputStream dos) throws IOException {
+        for (final long v : values) {
+            dos.writeLong(v);
+        }
+    }
+
+    /**
+     * 配列の長さ分の int をまとめて読み込む。(1要素ずつ getInt() するより速い)
+     */
+    private static void readInts(final ByteBuffer buffer, final int[] dst) {
+        buffer.asIntBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Integer.BYTES);
+    }
+
+    private static long[] readLongs(final ByteBuffer buffer, final int length) {
+        final long[] r = new long[checkLength(buffer, length, Long.BYTES)];
+        buffer.asLongBuffer().get(r);
+        buffer.position(buffer.position() + length * Long.BYTES);
+        return r;
+    }
+}
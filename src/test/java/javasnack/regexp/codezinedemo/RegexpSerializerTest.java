@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+import javasnack.regexp.codezinedemo.Regexp.RegexpType;
+
+public class RegexpSerializerTest {
+    static void assertSameResults(final Regexp expected, final Regexp actual) {
+        assertThat(actual.getType()).isEqualTo(expected.getType());
+        assertThat(actual.getPattern()).isEqualTo(expected.getPattern());
+        assertThat(actual.getOptions()).isEqualTo(expected.getOptions());
+        final Random rnd = new Random(1234);
+        for (int n = 0; n < 300; n++) {
+            final StringBuilder sb = new StringBuilder();
+            final int len = rnd.nextInt(10);
+            for (int i = 0; i < len; i++) {
+                sb.append("abcdあ".charAt(rnd.nextInt(5)));
+            }
+            final String input = sb.toString();
+            assertThat(actual.match(input)).as(expected.getType() + " : " + input).isEqualTo(expected.match(input));
+            assertThat(actual.findAll(input)).as(expected.getType() + " : " + input)
+                    .isEqualTo(expected.findAll(input));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (final String pattern : List.of("(a|b)*c", "a[b-d]+あ?", "^(ab|c)*d$", "")) {
+            for (final RegexpType type : RegexpType.values()) {
+                final Regexp expected = Regexp.compile(type, pattern, RegexpOption.DISABLE_LITERAL_PREFILTER);
+                final Regexp actual = RegexpSerializer.read(ByteBuffer.wrap(RegexpSerializer.toBytes(expected)));
+                assertSameResults(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testTables() {
+        final Regexp dfa = Regexp.compileDfa("(a|b)*abb[x-z]");
+        final DfaTable expected = dfa.getDfaTable().get();
+        final DfaTable actual = RegexpSerializer.read(ByteBuffer.wrap(RegexpSerializer.toBytes(dfa)))
+                .getDfaTable().get();
+        assertThat(actual.stateCount).isEqualTo(expected.stateCount);
+        assertThat(actual.start).isEqualTo(expected.start);
+        assertThat(actual.dead).isEqualTo(expected.dead);
+        assertThat(actual.transitions).isEqualTo(expected.transitions);
+        assertThat(actual.acceptable).isEqualTo(expected.acceptable);
+        for (char c = 0; c < 0x200; c++) {
+            assertThat(actual.alphabet.classOf(c)).isEqualTo(expected.alphabet.classOf(c));
+            assertThat(actual.alphabet.hasNoTransition(c)).isEqualTo(expected.alphabet.hasNoTransition(c));
+        }
+
+        final Regexp bitset = Regexp.compileNfa("(a|b)*abb[x-z]", RegexpOption.NFA_BITSET);
+        final NfaTable nfa = bitset.getNfaTable().get();
+        final NfaTable nfa2 = RegexpSerializer.read(ByteBuffer.wrap(RegexpSerializer.toBytes(bitset)))
+                .getNfaTable().get();
+        assertThat(nfa2.stateCount).isEqualTo(nfa.stateCount);
+        assertThat(nfa2.initial).isEqualTo(nfa.initial);
+        assertThat(nfa2.acceptMask).isEqualTo(nfa.acceptMask);
+        assertThat(nfa2.steps).isDeepEqualTo(nfa.steps);
+        assertThat(nfa2.epsilons).isDeepEqualTo(nfa.epsilons);
+        assertThat(nfa2.targets).isDeepEqualTo(nfa.targets);
+        // 表を持たないタイプは表を保存しない。
+        assertThat(Regexp.compileLazyDfa("a").getDfaTable()).isEmpty();
+        assertThat(Regexp.compileLazyDfa("a").getNfaTable()).isEmpty();
+    }
+
+    @Test
+    public void testReadAllFromMappedFile(@TempDir final Path dir) throws IOException {
+        final List<Regexp> regexps = List.of(
+                Regexp.compileDfa("GET /api/v[0-9]+/item"),
+                Regexp.compileNfa("(a|b)*c", RegexpOption.NFA_BITSTATE_BACKTRACK),
+                Regexp.compileNfa2Dfa("x+y", RegexpOption.ENABLE_NFA2DFA_TRANSITION_CACHE));
+        final Path file = dir.resolve("rules.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (final Regexp r : regexps) {
+                RegexpSerializer.write(r, out);
+            }
+        }
+        final List<Regexp> loaded = RegexpSerializer.readAll(file);
+        assertThat(loaded).hasSize(3);
+        for (int i = 0; i < regexps.size(); i++) {
+            assertSameResults(regexps.get(i), loaded.get(i));
+        }
+        assertThat(loaded.get(0).match("GET /api/v12/item")).isTrue();
+    }
+
+    @Test
+    public void testBrokenInput() {
+        final byte[] bytes = RegexpSerializer.toBytes(Regexp.compileDfa("(a|b)*c"));
+        final byte[] badMagic = bytes.clone();
+        badMagic[0] = 0;
+        assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.read(ByteBuffer.wrap(badMagic)));
+        final byte[] badVersion = bytes.clone();
+        badVersion[7] = 99;
+        assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.read(ByteBuffer.wrap(badVersion)));
+        final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.read(ByteBuffer.wrap(truncated)));
+    }
+
+    /**
+     * @return 表形式のDFAの状態数の位置 (ヘッダ, 正規表現, 表の種類, 入力文字のクラス分けの後)
+     */
+    static int offsetOfDfaStateCount(final Regexp r) {
+        final int intervals = r.getDfaTable().get().alphabet.intervalStarts().length;
+        return 4 * 5 + r.getPattern().length() * 2 + 4 + 4 + intervals * 8 + 4;
+    }
+
+    static byte[] withInt(final byte[] bytes, final int offset, final int value) {
+        final byte[] r = bytes.clone();
+        ByteBuffer.wrap(r).putInt(offset, value);
+        return r;
+    }
+
+    @Test
+    public void testOutOfRangeIds() throws IOException {
+        final Regexp r = Regexp.compileDfa("(a|b)*c");
+        final byte[] bytes = RegexpSerializer.toBytes(r);
+        final int stateCountAt = offsetOfDfaStateCount(r);
+        final DfaTable table = r.getDfaTable().get();
+        assertThat(ByteBuffer.wrap(bytes).getInt(stateCountAt)).isEqualTo(table.stateCount);
+        // 空集合の状態, 遷移先, 区間 -> クラス番号, 受理可能な状態
+        final int deadAt = stateCountAt + 8;
+        final int transitionsAt = stateCountAt + 12;
+        final int acceptableAt = transitionsAt + table.transitions.length * 4 + 4;
+        final int classOfIntervalAt = stateCountAt - 4 - table.alphabet.intervalStarts().length * 4;
+        for (final byte[] broken : List.of(
+                withInt(bytes, deadAt, table.stateCount),
+                withInt(bytes, deadAt, -2),
+                withInt(bytes, transitionsAt, table.stateCount),
+                withInt(bytes, transitionsAt + 4, -1),
+                withInt(bytes, classOfIntervalAt, 999),
+                withInt(bytes, classOfIntervalAt, -1),
+                withInt(bytes, acceptableAt, table.stateCount))) {
+            // 読み込み時に検出し、match() で ArrayIndexOutOfBoundsException とならない。
+            assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.read(ByteBuffer.wrap(broken)));
+        }
+
+        // 表形式のNFA : 空文字(ε)での遷移先と、入力文字での遷移先の状態番号
+        final NfaTable nfa = Regexp.compileNfa("(a|b)*c", RegexpOption.NFA_BITSET).getNfaTable().get();
+        final int[][] badEpsilons = nfa.epsilons.clone();
+        badEpsilons[0] = new int[] { nfa.stateCount };
+        assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.readNfaTable(nfaTableBytes(
+                new NfaTable(nfa.alphabet, nfa.stateCount, nfa.initial, nfa.acceptMask, nfa.steps, badEpsilons,
+                        nfa.targets))));
+        final int[][] badTargets = nfa.targets.clone();
+        final long[][] badSteps = nfa.steps.clone();
+        badTargets[0] = new int[] { -1 };
+        badSteps[0] = new long[nfa.words];
+        assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.readNfaTable(nfaTableBytes(
+                new NfaTable(nfa.alphabet, nfa.stateCount, nfa.initial, nfa.acceptMask, badSteps, nfa.epsilons,
+                        badTargets))));
+        final long[] badInitial = nfa.initial.clone();
+        badInitial[nfa.words - 1] |= 1L << 63;
+        assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.readNfaTable(nfaTableBytes(
+                new NfaTable(nfa.alphabet, nfa.stateCount, badInitial, nfa.acceptMask, nfa.steps, nfa.epsilons,
+                        nfa.targets))));
+        // 壊していなければ読み込める。
+        assertThat(RegexpSerializer.readNfaTable(nfaTableBytes(nfa)).stateCount).isEqualTo(nfa.stateCount);
+    }
+
+    static ByteBuffer nfaTableBytes(final NfaTable table) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(out);
+        RegexpSerializer.writeNfaTable(table, dos);
+        dos.flush();
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Test
+    public void testLengthsBoundedByRemainingBytes() throws IOException {
+        final Regexp r = Regexp.compileDfa("(a|b)*c");
+        final byte[] bytes = RegexpSerializer.toBytes(r);
+        final int stateCountAt = offsetOfDfaStateCount(r);
+        // 正規表現の長さ, 区間数, 状態数 (状態数 x クラス数が int の範囲を超える場合も含む)
+        for (final byte[] broken : List.of(
+                withInt(bytes, 16, Integer.MAX_VALUE),
+                withInt(bytes, 16, -1),
+                withInt(bytes, 4 * 5 + r.getPattern().length() * 2 + 4, Integer.MAX_VALUE),
+                withInt(bytes, 4 * 5 + r.getPattern().length() * 2 + 4, 0),
+                withInt(bytes, stateCountAt, Integer.MAX_VALUE),
+                withInt(bytes, stateCountAt, 0x40000000),
+                withInt(bytes, stateCountAt, -1))) {
+            // 巨大な配列を確保して OutOfMemoryError とならず、IllegalArgumentException となる。
+            assertThrows(IllegalArgumentException.class, () -> RegexpSerializer.read(ByteBuffer.wrap(broken)));
+        }
+
+        // 表形式のNFA : 状態数, 空文字(ε)での遷移先の個数, 入力文字での遷移先の個数
+        final NfaTable nfa = Regexp.compileNfa("(a|b)*c", RegexpOption.NFA_BITSET).getNfaTable().get();
+        final byte[] nfaBytes = nfaTableBytes(nfa).array();
+        final int nfaStateCountAt = nfa.alphabet.intervalStarts().length * 8 + 8;
+        assertThat(ByteBuffer.wrap(nfaBytes).getInt(nfaStateCountAt)).isEqualTo(nfa.stateCount);
+        final int epsilonCountAt = nfaStateCountAt + 4 + nfa.words * 16;
+        int targetCountAt = epsilonCountAt;
+        for (final int[] epsilon : nfa.epsilons) {
+            targetCountAt += 4 + epsilon.length * 4;
+        }
+        for (final byte[] broken : List.of(
+                withInt(nfaBytes, nfaStateCountAt, Integer.MAX_VALUE),
+                withInt(nfaBytes, nfaStateCountAt, 0x10000000),
+                withInt(nfaBytes, epsilonCountAt, Integer.MAX_VALUE),
+                withInt(nfaBytes, targetCountAt, Integer.MAX_VALUE),
+                withInt(nfaBytes, targetCountAt, -2))) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> RegexpSerializer.readNfaTable(ByteBuffer.wrap(broken)));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 複数の正規表現を1つのNFA(およびそこから作るDFA)にまとめ、1回の走査でどの正規表現にマッチしたかを判定する。
+ *
+ * 考え方:
+ * 全ての正規表現を同じ Context で NFA フラグメントに組み立て(= 状態番号が重複しない)、
+ * 新しい初期状態から空文字(ε)で各正規表現の初期状態に遷移する形で合成する。(UnionNode と同じ考え方)
+ * 受理可能な状態にはどの正規表現のものかを記録しておき、入力文字列を読み終えた時点の状態の集合に含まれる
+ * 受理可能な状態から、マッチした正規表現の番号の集合を求める。
+ *
+ * 合成したNFAは LazyDfa で遷移させるため、正規表現の数によらず1文字あたりの処理は配列参照1回で済む。
+ * (DFAの状態ごとの「マッチした正規表現の番号の集合」もキャッシュする)
+ * 遷移のキャッシュはスレッドごとに持つため、1つのインスタンスを複数のスレッドで共有できる。
+ * (遷移のキャッシュの上限はスレッドごとの上限となる)
+ */
+public class RegexpSet {
+    private final List<String> patterns;
+    /** 受理可能な状態 -> 正規表現の番号 */
+    private final Map<Integer, Integer> patternOfAcceptableState;
+    /** スレッドごとのDFAと、DFAの状態ごとのマッチした正規表現の番号の集合 */
+    private final ThreadLocal<Cache> caches;
+
+    /**
+     * 1つのスレッドで使う遅延評価型のDFAと、その状態ごとに計算済みの結果
+     */
+    private static class Cache {
+        final LazyDfa dfa;
+        /** DFAの状態番号 -> マッチした正規表現の番号の集合 (未計算の場合は null) */
+        final BitSet[] matchedPatterns;
+        /** matchedPatterns を計算した時点でのキャッシュ破棄の回数 */
+        int countOfFlushOfMatchedPatterns = 0;
+
+        Cache(final LazyDfa dfa, final int maxCachedStates) {
+            this.dfa = dfa;
+            this.matchedPatterns = new BitSet[maxCachedStates];
+        }
+    }
+
+    private RegexpSet(final List<String> patterns, final Map<Integer, Integer> patternOfAcceptableState,
+            final Nfa nfa, final int maxCachedStates) {
+        this.patterns = patterns;
+        this.patternOfAcceptableState = patternOfAcceptableState;
+        // 入力文字のクラス分けはパターン数に比例して重いため、スレッド間で共有する。
+        final AlphabetPartition alphabet = AlphabetPartition.of(nfa);
+        this.caches = ThreadLocal.withInitial(
+                () -> new Cache(new LazyDfa(nfa, alphabet, maxCachedStates, false), maxCachedStates));
+    }
+
+    public static RegexpSet compile(final List<String> patterns, final int maxCachedStates) {
+        final Context context = new Context();
+        final NfaFragment union = new NfaFragment();
+        final int start = context.newState();
+        final Map<Integer, Integer> patternOfAcceptableState = new HashMap<>();
+        for (int i = 0; i < patterns.size(); i++) {
+            final NfaFragment f = new Parser(new Lexer(patterns.get(i))).fragment(context);
+            union.mergeStateTransitionMatrix(f);
+            union.connect(start, Optional.empty(), f.startState);
+            for (final int state : f.acceptableStates) {
+                patternOfAcceptableState.put(state, i);
+            }
+            union.acceptableStates.addAll(f.acceptableStates);
+        }
+        union.startState = start;
+        final Nfa nfa = union.build();
+        return new RegexpSet(Collections.unmodifiableList(patterns), patternOfAcceptableState, nfa,
+                maxCachedStates);
+    }
+
+    public static RegexpSet compile(final List<String> patterns) {
+        return compile(patterns, LazyDfa.DEFAULT_MAX_CACHED_STATES);
+    }
+
+    public static RegexpSet compile(final String... patterns) {
+        return compile(Arrays.asList(patterns));
+    }
+
+    /**
+     * @return 正規表現の数
+     */
+    public int size() {
+        return this.patterns.size();
+    }
+
+    public String pattern(final int id) {
+        return this.patterns.get(id);
+    }
+
+    private static int run(final LazyDfa dfa, final String input) {
+        int state = dfa.start();
+        final int len = input.length();
+        for (int i = 0; i < len;) {
+            final int c = input.codePointAt(i);
+            i += Character.charCount(c);
+            state = dfa.next(state, (char) c);
+            if (dfa.isDead(state)) {
+                break;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @param input 入力文字列
+     * @return 入力文字列全体にマッチした正規表現の番号の集合
+     */
+    public BitSet matches(final String input) {
+        final Cache cache = this.caches.get();
+        final int state = run(cache.dfa, input);
+        if (!cache.dfa.isAcceptable(state)) {
+            return new BitSet();
+        }
+        if (cache.countOfFlushOfMatchedPatterns != cache.dfa.getCountOfFlush()) {
+            // キャッシュ破棄によりDFAの状態番号が振り直されたため、計算済みの結果も破棄する。
+            Arrays.fill(cache.matchedPatterns, null);
+            cache.countOfFlushOfMatchedPatterns = cache.dfa.getCountOfFlush();
+        }
+        BitSet r = cache.matchedPatterns[state];
+        if (r == null) {
+            r = new BitSet(this.patterns.size());
+            final Set<Integer> states = cache.dfa.stateSetOf(state);
+            for (final int s : states) {
+                final Integer id = this.patternOfAcceptableState.get(s);
+                if (id != null) {
+                    r.set(id);
+                }
+            }
+            cache.matchedPatterns[state] = r;
+        }
+        // 呼び出し元で変更されてもキャッシュに影響しないよう、コピーを返す。
+        return (BitSet) r.clone();
+    }
+
+    /**
+     * @param input 入力文字列
+     * @return いずれかの正規表現に入力文字列全体がマッチしたか
+     */
+    public boolean matchesAny(final String input) {
+        final LazyDfa dfa = this.caches.get().dfa;
+        return dfa.isAcceptable(run(dfa, input));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class RegexpSetTest {
+    static BitSet matchOneByOne(final List<Regexp> regexps, final String input) {
+        final BitSet r = new BitSet();
+        for (int i = 0; i < regexps.size(); i++) {
+            if (regexps.get(i).match(input)) {
+                r.set(i);
+            }
+        }
+        return r;
+    }
+
+    @Test
+    public void testRegexpSet() {
+        final RegexpSet set = RegexpSet.compile("ab*", "a(b|c)", "(ab)*", "x");
+        assertThat(set.size()).isEqualTo(4);
+        assertThat(set.pattern(1)).isEqualTo("a(b|c)");
+        assertThat(set.matches("a").stream().toArray()).containsExactly(0);
+        assertThat(set.matches("ab").stream().toArray()).containsExactly(0, 1, 2);
+        assertThat(set.matches("ac").stream().toArray()).containsExactly(1);
+        assertThat(set.matches("").stream().toArray()).containsExactly(2);
+        assertThat(set.matches("abab").stream().toArray()).containsExactly(2);
+        assertThat(set.matches("y").isEmpty()).isTrue();
+        assertThat(set.matchesAny("x")).isTrue();
+        assertThat(set.matchesAny("xx")).isFalse();
+
+        // 戻り値を変更しても、次回以降の結果に影響しない。
+        set.matches("ab").clear();
+        assertThat(set.matches("ab").stream().toArray()).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    public void testSameResultAsRegexp() {
+        final List<String> patterns = List.of("a", "ab*", "(a|b)*c", "a(b|c)*d|bd", "(ab|a)(bc|c)", "a*b*",
+                "(a|b)*a(a|b)", "((a|b)(a|b))*", "あ(い|う)*");
+        final List<Regexp> regexps = new ArrayList<>();
+        for (final String p : patterns) {
+            regexps.add(Regexp.compileDfa(p));
+        }
+        // キャッシュ破棄が頻繁に発生する設定でも結果は変わらない。
+        for (final RegexpSet set : List.of(RegexpSet.compile(patterns), RegexpSet.compile(patterns, 2))) {
+            final Random rnd = new Random(1234);
+            for (int n = 0; n < 2000; n++) {
+                final StringBuilder sb = new StringBuilder();
+                final int len = rnd.nextInt(8);
+                for (int i = 0; i < len; i++) {
+                    sb.append("abcdあい".charAt(rnd.nextInt(6)));
+                }
+                final String input = sb.toString();
+                assertThat(set.matches(input)).as(input).isEqualTo(matchOneByOne(regexps, input));
+            }
+        }
+    }
+
+    @Test
+    public void testManyPatterns() {
+        final List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            patterns.add("(GET|POST) /api/v" + (i % 10) + "/item" + i + "(/x)*");
+        }
+        final RegexpSet set = RegexpSet.compile(patterns);
+        assertThat(set.matches("GET /api/v3/item123").stream().toArray()).containsExactly(123);
+        assertThat(set.matches("POST /api/v9/item1999/x/x").stream().toArray()).containsExactly(1999);
+        assertThat(set.matches("PUT /api/v3/item123").isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        final List<String> patterns = List.of("a", "ab*", "(a|b)*c", "a(b|c)*d|bd", "(a|b)*a(a|b)");
+        final List<Regexp> regexps = new ArrayList<>();
+        for (final String p : patterns) {
+            regexps.add(Regexp.compileDfa(p));
+        }
+        // キャッシュ破棄が頻繁に発生する設定で、1つの RegexpSet を複数のスレッドで同時に使う。
+        final RegexpSet set = RegexpSet.compile(patterns, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final long seed = t;
+                futures.add(executor.submit(() -> {
+                    final Random rnd = new Random(seed);
+                    for (int n = 0; n < 1000; n++) {
+                        final StringBuilder sb = new StringBuilder();
+                        final int len = rnd.nextInt(8);
+                        for (int i = 0; i < len; i++) {
+                            sb.append("abcd".charAt(rnd.nextInt(4)));
+                        }
+                        final String input = sb.toString();
+                        assertThat(set.matches(input)).as(input).isEqualTo(matchOneByOne(regexps, input));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -18,11 +18,27 @@ package javasnack.regexp.codezinedemo;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
 import org.junit.jupiter.api.Test;
 
 import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+import javasnack.regexp.codezinedemo.Regexp.RegexpType;
 
 public class RegexpTest {
     @Test
@@ -97,6 +113,261 @@ public class RegexpTest {
         assertTrue(r.match("cdabefff"));
     }
 
+    @Test
+    public void testDfa() {
+        Regexp r = Regexp.compileDfa("a");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertFalse(r.match("x"));
+
+        System.out.println(">>>> ------------- test DFA");
+        r = Regexp.compileDfa("ab", RegexpOption.DEBUG_LOG);
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertFalse(r.match("x"));
+        System.out.println("<<<<");
+        assertEquals(r.getCountOfNfaBackTrack(), 0);
+
+        r = Regexp.compileDfa("ab*");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertTrue(r.match("abb"));
+        assertFalse(r.match("ac"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileDfa("ab*c");
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("abc"));
+        assertTrue(r.match("abbc"));
+        assertTrue(r.match("ac"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileDfa("a|b");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("b"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileDfa("ab|cd");
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertFalse(r.match("bc"));
+        assertFalse(r.match("c"));
+        assertTrue(r.match("cd"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileDfa("(ab*)|(cd*)");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertTrue(r.match("abb"));
+        assertFalse(r.match("bc"));
+        assertTrue(r.match("c"));
+        assertTrue(r.match("cd"));
+        assertTrue(r.match("cdd"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileDfa("(ab*|cd*)*ef*");
+        assertFalse(r.match(""));
+        assertTrue(r.match("e"));
+        assertTrue(r.match("abe"));
+        assertTrue(r.match("abbefff"));
+        assertTrue(r.match("abcde"));
+        assertTrue(r.match("abbbcdddde"));
+        assertTrue(r.match("ababe"));
+        assertTrue(r.match("abbbabbbbefff"));
+        assertTrue(r.match("e"));
+        assertTrue(r.match("cde"));
+        assertTrue(r.match("cdabefff"));
+        assertEquals(r.getType(), RegexpType.DFA);
+
+        // 0x00 - 0xFF の範囲外の文字
+        r = Regexp.compileDfa("(あ|い)*う");
+        assertFalse(r.match(""));
+        assertTrue(r.match("う"));
+        assertTrue(r.match("あいあいう"));
+        assertFalse(r.match("あいあい"));
+
+        // DFAの状態数が上限を超える場合は LAZY_DFA にフォールバックする。
+        r = Regexp.compileDfa("(a|b)*a(a|b)(a|b)", 4);
+        assertEquals(r.getType(), RegexpType.LAZY_DFA);
+        assertTrue(r.match("abaab"));
+        assertTrue(r.match("aabb"));
+        assertFalse(r.match("abbbb"));
+        assertFalse(r.match("abbaa"));
+    }
+
+    @Test
+    public void testLazyDfa() {
+        Regexp r = Regexp.compileLazyDfa("a");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertFalse(r.match("x"));
+
+        System.out.println(">>>> ------------- test lazy DFA");
+        r = Regexp.compileLazyDfa("ab", RegexpOption.DEBUG_LOG);
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertFalse(r.match("x"));
+        System.out.println("<<<<");
+        assertEquals(r.getCountOfNfaBackTrack(), 0);
+
+        r = Regexp.compileLazyDfa("ab*");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertTrue(r.match("abb"));
+        assertFalse(r.match("ac"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileLazyDfa("ab*c");
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("abc"));
+        assertTrue(r.match("abbc"));
+        assertTrue(r.match("ac"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileLazyDfa("a|b");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("b"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileLazyDfa("ab|cd");
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertFalse(r.match("bc"));
+        assertFalse(r.match("c"));
+        assertTrue(r.match("cd"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileLazyDfa("(ab*)|(cd*)");
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertTrue(r.match("abb"));
+        assertFalse(r.match("bc"));
+        assertTrue(r.match("c"));
+        assertTrue(r.match("cd"));
+        assertTrue(r.match("cdd"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileLazyDfa("(ab*|cd*)*ef*");
+        assertFalse(r.match(""));
+        assertTrue(r.match("e"));
+        assertTrue(r.match("abe"));
+        assertTrue(r.match("abbefff"));
+        assertTrue(r.match("abcde"));
+        assertTrue(r.match("abbbcdddde"));
+        assertTrue(r.match("ababe"));
+        assertTrue(r.match("abbbabbbbefff"));
+        assertTrue(r.match("e"));
+        assertTrue(r.match("cde"));
+        assertTrue(r.match("cdabefff"));
+
+        // キャッシュする状態数の上限を最小にしても結果は変わらない。
+        r = Regexp.compileLazyDfa("(ab*|cd*)*ef*", 2);
+        assertFalse(r.match(""));
+        assertTrue(r.match("abbbcdddde"));
+        assertTrue(r.match("abbbabbbbefff"));
+        assertFalse(r.match("abbbabbbbefffa"));
+
+        // 0x00 - 0xFF の範囲外の文字
+        r = Regexp.compileLazyDfa("(あ|い)*う");
+        assertFalse(r.match(""));
+        assertTrue(r.match("う"));
+        assertTrue(r.match("あいあいう"));
+        assertFalse(r.match("あいあい"));
+    }
+
+    @Test
+    public void testNfaBitSet() {
+        Regexp r = Regexp.compileNfa("a", RegexpOption.NFA_BITSET);
+        assertEquals(r.getType(), RegexpType.NFA_BITSET);
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertFalse(r.match("x"));
+
+        System.out.println(">>>> ------------- test NFA (bitset)");
+        r = Regexp.compileNfa("ab", RegexpOption.NFA_BITSET, RegexpOption.DEBUG_LOG);
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertFalse(r.match("x"));
+        System.out.println("<<<<");
+        assertEquals(r.getCountOfNfaBackTrack(), 0);
+
+        r = Regexp.compileNfa("ab*c", RegexpOption.NFA_BITSET);
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("abc"));
+        assertTrue(r.match("abbc"));
+        assertTrue(r.match("ac"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileNfa("(ab*)|(cd*)", RegexpOption.NFA_BITSET);
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertTrue(r.match("abb"));
+        assertFalse(r.match("bc"));
+        assertTrue(r.match("cdd"));
+
+        r = Regexp.compileNfa("(ab*|cd*)*ef*", RegexpOption.NFA_BITSET);
+        assertFalse(r.match(""));
+        assertTrue(r.match("e"));
+        assertTrue(r.match("abbbcdddde"));
+        assertTrue(r.match("abbbabbbbefff"));
+        assertTrue(r.match("cdabefff"));
+        assertFalse(r.match("cdabefffa"));
+
+        r = Regexp.compileNfa("(あ|い)*う", RegexpOption.NFA_BITSET);
+        assertTrue(r.match("あいあいう"));
+        assertFalse(r.match("あいあい"));
+    }
+
+    @Test
+    public void testNfaBitStateBackTrack() {
+        Regexp r = Regexp.compileNfa("a", RegexpOption.NFA_BITSTATE_BACKTRACK);
+        assertEquals(r.getType(), RegexpType.NFA_BITSTATE_BACKTRACK);
+        assertFalse(r.match(""));
+        assertTrue(r.match("a"));
+        assertFalse(r.match("x"));
+
+        System.out.println(">>>> ------------- test NFA (bit-state backtrack)");
+        r = Regexp.compileNfa("ab", RegexpOption.NFA_BITSTATE_BACKTRACK, RegexpOption.DEBUG_LOG);
+        assertFalse(r.match(""));
+        assertFalse(r.match("a"));
+        assertTrue(r.match("ab"));
+        assertFalse(r.match("x"));
+        System.out.println("<<<<");
+
+        r = Regexp.compileNfa("ab*c", RegexpOption.NFA_BITSTATE_BACKTRACK);
+        assertFalse(r.match(""));
+        assertTrue(r.match("abc"));
+        assertTrue(r.match("abbc"));
+        assertTrue(r.match("ac"));
+        assertFalse(r.match("x"));
+
+        r = Regexp.compileNfa("(ab*|cd*)*ef*", RegexpOption.NFA_BITSTATE_BACKTRACK);
+        assertFalse(r.match(""));
+        assertTrue(r.match("e"));
+        assertTrue(r.match("abbbcdddde"));
+        assertTrue(r.match("abbbabbbbefff"));
+        assertFalse(r.match("cdabefffa"));
+
+        r = Regexp.compileNfa("(a|a)*", RegexpOption.NFA_BITSTATE_BACKTRACK);
+        assertFalse(r.match("a".repeat(100) + "b"));
+        assertTrue(r.getCountOfNfaBackTrack() > 0);
+        assertTrue(r.match("a".repeat(100)));
+    }
+
     @Test
     public void testNfa() {
         Regexp r = Regexp.compileNfa("a");
@@ -242,4 +513,190 @@ public class RegexpTest {
         assertTrue(r.match("cde"));
         assertTrue(r.match("cdabefff"));
     }
+
+    @Test
+    public void testExtendedSyntax() {
+        // 拡張した構文について、java.util.regex と同じ文字列にマッチすることを確認する。
+        final String[] patterns = { "a+", "a?b", "a{2}", "a{1,3}b", "(ab){2,}", "a{0}b", "[a-c]+", "[^a]*",
+                "a.b", ".*", "[ab-]+x", "x[a\\]]", "(a|b)+?c", "[0-9]{2,3}", "-a]", "}", "[a-]*", "x*?",
+                "^ab", "ab$", "^a*$", "^(a|b)c$", "[^\n]+" };
+        final String pool = "ab-]x\n0}1c";
+        final Random rnd = new Random(4321);
+        for (final String pattern : patterns) {
+            final Pattern expected = Pattern.compile(pattern);
+            final List<Regexp> compiled = List.of(
+                    Regexp.compileNfa(pattern),
+                    Regexp.compileNfa(pattern, RegexpOption.NFA_BACKTRACK),
+                    Regexp.compileNfa(pattern, RegexpOption.NFA_BITSET),
+                    Regexp.compileNfa(pattern, RegexpOption.NFA_BITSTATE_BACKTRACK),
+                    Regexp.compileNfa2Dfa(pattern),
+                    Regexp.compileLazyDfa(pattern),
+                    Regexp.compileDfa(pattern));
+            for (int n = 0; n < 200; n++) {
+                final StringBuilder sb = new StringBuilder();
+                final int len = rnd.nextInt(8);
+                for (int i = 0; i < len; i++) {
+                    sb.append(pool.charAt(rnd.nextInt(pool.length())));
+                }
+                final String input = sb.toString();
+                final boolean matched = expected.matcher(input).matches();
+                for (final Regexp r : compiled) {
+                    assertEquals(matched, r.match(input), r.getType() + " : " + pattern + " : " + input);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExtendedSyntaxError() {
+        for (final String pattern : new String[] { "a{", "a{2,1}", "a{1001}", "[b-a]", "[abc", "[]", "*a",
+                "+a", "a^", "a$b", "^a|b", "a|b$" }) {
+            assertThrows(RuntimeException.class, () -> Regexp.compileNfa(pattern), pattern);
+        }
+    }
+
+    @Test
+    public void testMatchWithStatistics() {
+        final Regexp r = Regexp.compileNfa("(a|b)*c", RegexpOption.NFA_BACKTRACK);
+        final MatchStatistics stats = r.matchWithStatistics("ababx");
+        assertFalse(stats.matched);
+        assertTrue(stats.countOfBackTrack > 0);
+        assertEquals(stats.countOfBackTrack, r.getCountOfNfaBackTrack());
+        assertEquals(stats, r.matchWithStatistics("ababx"));
+        assertEquals(MatchStatistics.MATCHED, Regexp.compileLazyDfa("(a|b)*c").matchWithStatistics("abc"));
+        assertEquals(MatchStatistics.UNMATCHED, Regexp.compileDfa("(a|b)*c").matchWithStatistics("abx"));
+    }
+
+    @Test
+    public void testPrefilterRejectResetsCountOfBackTrack() {
+        final Regexp r = Regexp.compileNfa("(a|a)*b", RegexpOption.NFA_BITSTATE_BACKTRACK);
+        assertFalse(r.match("a".repeat(10) + "cab"));
+        assertTrue(r.getCountOfNfaBackTrack() > 0);
+        // 固定文字列 "b" を含まない入力はふるい落とされ、直前のバックトラックの回数は残らない。
+        assertFalse(r.match("a".repeat(10)));
+        assertEquals(0, r.getCountOfNfaBackTrack());
+    }
+
+    @Test
+    public void testMatchBudget() {
+        // トレース済み分岐の除去を無効化すると、(a*)* は無限ループとなるが、上限で打ち切られる。
+        final Regexp r = Regexp.compileNfa("(a*)*", RegexpOption.NFA_BACKTRACK,
+                RegexpOption.DISABLE_NFA_TRACED_BACKTRACK_SKIPPING);
+        final MatchBudgetExceededException e = assertThrows(MatchBudgetExceededException.class,
+                () -> r.match("aaab", MatchBudget.ofSteps(10_000)));
+        assertEquals(10_001, e.getSteps());
+        assertEquals(MatchBudget.ofSteps(10_000), e.getBudget());
+        assertThrows(MatchBudgetExceededException.class,
+                () -> r.match("aaab", MatchBudget.ofTimeout(Duration.ofMillis(10))));
+        // 元々の安全リミットも、互換性のため IllegalStateException として扱える。
+        assertThrows(IllegalStateException.class, () -> r.match("aaab"));
+        assertEquals(3, r.getCountOfBudgetExceeded());
+        // 打ち切られた後も、スレッドごとのランタイムは次のマッチングの前に初期状態に戻る。
+        final Regexp reused = Regexp.compileNfa("(a|b)*c", RegexpOption.NFA_BACKTRACK);
+        assertThrows(MatchBudgetExceededException.class, () -> reused.match("ababx", MatchBudget.ofSteps(3)));
+        assertTrue(reused.match("abc"));
+        assertEquals(reused.matchWithStatistics("ababx"), reused.matchWithStatistics("ababx"));
+
+        final Regexp bitState = Regexp.compileNfa("(a|a)*b", RegexpOption.NFA_BITSTATE_BACKTRACK);
+        assertThrows(MatchBudgetExceededException.class,
+                () -> bitState.match("a".repeat(100) + "bb", MatchBudget.ofSteps(50)));
+        final MatchStatistics stats = bitState.matchWithStatistics("a".repeat(100) + "b", MatchBudget.ofSteps(10_000));
+        assertTrue(stats.matched);
+        assertTrue(stats.countOfSteps > 50);
+        assertEquals(1, bitState.getCountOfBudgetExceeded());
+
+        // バックトラックしないランタイムでは上限を使わない。
+        assertTrue(Regexp.compileDfa("(a|a)*b").match("a".repeat(100) + "b", MatchBudget.ofSteps(1)));
+    }
+
+    @Test
+    public void testRejectAmbiguousPattern() {
+        final AmbiguousPatternException e = assertThrows(AmbiguousPatternException.class,
+                () -> Regexp.compileNfa("(a|a)*b", RegexpOption.NFA_BACKTRACK,
+                        RegexpOption.REJECT_AMBIGUOUS_PATTERN));
+        assertEquals("(a|a)*b", e.getPattern());
+        assertEquals(Ambiguity.EXPONENTIAL, e.getAmbiguity());
+        assertThrows(AmbiguousPatternException.class,
+                () -> Regexp.compile(RegexpType.NFA_BACKTRACK, "a*a*b", RegexpOption.REJECT_AMBIGUOUS_PATTERN));
+        assertTrue(Regexp.compile(RegexpType.NFA_BACKTRACK, "(a|b)*c", RegexpOption.REJECT_AMBIGUOUS_PATTERN)
+                .match("abc"));
+        // 線形時間で済むランタイムでは拒否しない。
+        assertTrue(Regexp.compile(RegexpType.DFA, "(a|a)*b", RegexpOption.REJECT_AMBIGUOUS_PATTERN)
+                .match("aab"));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T serializeAndDeserialize(final T o) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    @Test
+    public void testExceptionsSerializable() throws Exception {
+        // 例外が保持する Ambiguity, MatchBudget も直列化できる。
+        final AmbiguousPatternException ambiguous = serializeAndDeserialize(
+                new AmbiguousPatternException("a*a*b", Ambiguity.of(Ambiguity.Kind.POLYNOMIAL, 1)));
+        assertEquals("a*a*b", ambiguous.getPattern());
+        assertEquals(Ambiguity.of(Ambiguity.Kind.POLYNOMIAL, 1), ambiguous.getAmbiguity());
+        final MatchBudgetExceededException exceeded = serializeAndDeserialize(
+                new MatchBudgetExceededException(MatchBudget.ofSteps(10), 11, 100));
+        assertEquals(MatchBudget.ofSteps(10), exceeded.getBudget());
+        assertEquals(11, exceeded.getSteps());
+        assertEquals(100, exceeded.getElapsedNanos());
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        // 1つのコンパイル済みの Regexp を複数のスレッドで同時に使っても、1スレッドで使った場合と同じ結果となる。
+        final String pattern = "(a|b)*a(a|b)(a|b)c?";
+        final Pattern expected = Pattern.compile(pattern);
+        final List<Regexp> compiled = List.of(
+                Regexp.compileNfa(pattern),
+                Regexp.compileNfa(pattern, RegexpOption.NFA_BACKTRACK),
+                Regexp.compileNfa(pattern, RegexpOption.NFA_BITSET),
+                Regexp.compileNfa(pattern, RegexpOption.NFA_BITSTATE_BACKTRACK),
+                Regexp.compileNfa2Dfa(pattern, RegexpOption.ENABLE_NFA2DFA_TRANSITION_CACHE),
+                // キャッシュ破棄が頻繁に発生する設定
+                Regexp.compileLazyDfa(pattern, 2),
+                Regexp.compileDfa(pattern));
+        final Regexp backtrack = Regexp.compileNfa(pattern, RegexpOption.NFA_BACKTRACK);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final long seed = t;
+                futures.add(executor.submit(() -> {
+                    final Random rnd = new Random(seed);
+                    for (int n = 0; n < 500; n++) {
+                        final StringBuilder sb = new StringBuilder();
+                        final int len = rnd.nextInt(12);
+                        for (int i = 0; i < len; i++) {
+                            sb.append("abc".charAt(rnd.nextInt(3)));
+                        }
+                        final String input = sb.toString();
+                        final boolean matched = expected.matcher(input).matches();
+                        for (final Regexp r : compiled) {
+                            assertEquals(matched, r.match(input), r.getType() + " : " + input);
+                        }
+                        // バックトラックの回数は呼び出しごとに返すため、他のスレッドのマッチングと混ざらない。
+                        final MatchStatistics stats = backtrack.matchWithStatistics(input);
+                        assertEquals(stats.countOfBackTrack, backtrack.getCountOfNfaBackTrack(), input);
+                        // 検索用のDFAもスレッドごとに持つ。
+                        assertEquals(expected.matcher(input).find(), compiled.get(5).find(input).isPresent(), input);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
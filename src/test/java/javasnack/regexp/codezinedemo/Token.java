@@ -28,8 +28,26 @@ public class Token {
         CHARACTER,
         OPE_UNION,
         OPE_STAR,
+        OPE_PLUS,
+        OPE_QUESTION,
         LPAREN,
         RPAREN,
+        /** '{' : 繰り返し回数の指定 {m,n} の開始 */
+        LBRACE,
+        /** '}' : 繰り返し回数の指定の外では通常の文字として扱う。 */
+        RBRACE,
+        /** '[' : 文字クラスの開始 */
+        LBRACKET,
+        /** ']' : 文字クラスの外では通常の文字として扱う。 */
+        RBRACKET,
+        /** '-' : 文字クラスの範囲の区切り (文字クラスの外では通常の文字として扱う) */
+        HYPHEN,
+        /** '.' : 任意の1文字 */
+        DOT,
+        /** '^' : 正規表現の先頭ではアンカー、文字クラスの先頭では否定 */
+        CARET,
+        /** '$' : 正規表現の末尾のアンカー */
+        DOLLAR,
         EOF;
     }
 
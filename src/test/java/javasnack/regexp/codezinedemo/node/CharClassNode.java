@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo.node;
+
+import java.util.List;
+
+import javasnack.regexp.codezinedemo.CharRange;
+import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
+import javasnack.regexp.codezinedemo.NfaFragment;
+
+public class CharClassNode implements INodeAssembler {
+    /* 文字クラス [a-z] や任意の1文字 "." のような、範囲内のいずれか1文字を表現する遷移構造を合成する。
+     * 
+     * 考え方:
+     * CharacterNode と同じく2つの状態 S1, S2 を生成し、範囲ごとに1つの遷移を設定する。
+     * 範囲内の文字ごとに遷移を設定すると "." で 65536 個の遷移になってしまうため、範囲のまま保持する。
+     * (S1, [a-z]) -> (S2)
+     * (S1, [0-9]) -> (S2)
+     */
+
+    /** "." がマッチしない行末文字 (java.util.regex.Pattern の DOTALL 無しの場合と同じ) */
+    private static final List<CharRange> LINE_TERMINATORS = List.of(
+            CharRange.of('\n', '\n'),
+            CharRange.of('\r', '\r'),
+            CharRange.of('\u0085', '\u0085'),
+            CharRange.of('\u2028', '\u2029'));
+
+    /** 昇順に並べ、重なりをまとめた範囲の一覧 */
+    private final List<CharRange> ranges;
+
+    /**
+     * @param ranges 範囲の一覧 (重なりや順序は問わない)
+     * @param negated 範囲に含まれない文字にマッチする ([^a-z]) か
+     */
+    public CharClassNode(final List<CharRange> ranges, final boolean negated) {
+        final List<CharRange> normalized = CharRange.normalize(ranges);
+        this.ranges = negated ? CharRange.complement(normalized) : normalized;
+    }
+
+    /**
+     * @return 行末文字以外の任意の1文字 (".") にマッチするnode
+     */
+    public static CharClassNode dot() {
+        return new CharClassNode(LINE_TERMINATORS, true);
+    }
+
+    public List<CharRange> getRanges() {
+        return this.ranges;
+    }
+
+    @Override
+    public NfaFragment assemble(final Context context) {
+        final NfaFragment r = new NfaFragment();
+        final int s1 = context.newState();
+        final int s2 = context.newState();
+        for (final CharRange range : this.ranges) {
+            r.connect(s1, range, s2);
+        }
+        r.startState = s1;
+        r.acceptableStates.add(s2);
+        return r;
+    }
+
+    @Override
+    public Literals literals() {
+        if (this.ranges.size() == 1 && this.ranges.get(0).lo == this.ranges.get(0).hi) {
+            // [a] のように1文字だけの文字クラス
+            return Literals.exact(String.valueOf(this.ranges.get(0).lo));
+        }
+        return Literals.NONE;
+    }
+}
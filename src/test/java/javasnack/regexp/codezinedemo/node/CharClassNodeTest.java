@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo.node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.CharRange;
+import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Nfa;
+import javasnack.regexp.codezinedemo.NfaFragment;
+
+public class CharClassNodeTest {
+    @Test
+    public void testAssemble() {
+        // 重なりや隣接する範囲は1つにまとめる。
+        final CharClassNode r = new CharClassNode(
+                List.of(CharRange.of('x', 'z'), CharRange.of('a', 'c'), CharRange.of('b', 'd'), CharRange.of('e', 'e')),
+                false);
+        assertThat(r.getRanges()).containsExactly(CharRange.of('a', 'e'), CharRange.of('x', 'z'));
+
+        final NfaFragment f = r.assemble(new Context());
+        final Nfa nfa = f.build();
+        assertThat(nfa.start).isEqualTo(1);
+        assertThat(nfa.accept).isEqualTo(Set.of(2));
+        assertThat(nfa.transition.apply(1, Optional.of('a'))).isEqualTo(Set.of(2));
+        assertThat(nfa.transition.apply(1, Optional.of('e'))).isEqualTo(Set.of(2));
+        assertThat(nfa.transition.apply(1, Optional.of('f'))).isEmpty();
+        assertThat(nfa.transition.apply(1, Optional.of('y'))).isEqualTo(Set.of(2));
+    }
+
+    @Test
+    public void testNegated() {
+        final CharClassNode r = new CharClassNode(List.of(CharRange.of('b', 'y')), true);
+        assertThat(r.getRanges()).containsExactly(
+                CharRange.of('\0', 'a'), CharRange.of('z', Character.MAX_VALUE));
+        final CharClassNode all = new CharClassNode(List.of(CharRange.of('\0', Character.MAX_VALUE)), true);
+        assertThat(all.getRanges()).isEmpty();
+    }
+
+    @Test
+    public void testDot() {
+        final Nfa nfa = CharClassNode.dot().assemble(new Context()).build();
+        assertThat(nfa.transition.apply(1, Optional.of('a'))).isEqualTo(Set.of(2));
+        assertThat(nfa.transition.apply(1, Optional.of('\uffff'))).isEqualTo(Set.of(2));
+        assertThat(nfa.transition.apply(1, Optional.of('\n'))).isEmpty();
+        assertThat(nfa.transition.apply(1, Optional.of('\r'))).isEmpty();
+        assertThat(nfa.transition.apply(1, Optional.of('\u2028'))).isEmpty();
+    }
+}
@@ -19,6 +19,7 @@ package javasnack.regexp.codezinedemo.node;
 import java.util.Optional;
 
 import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
 import javasnack.regexp.codezinedemo.NfaFragment;
 
 public class CharacterNode implements INodeAssembler {
@@ -38,4 +39,10 @@ public class CharacterNode implements INodeAssembler {
         r.acceptableStates.add(s2);
         return r;
     }
+
+    @Override
+    public Literals literals() {
+        // 空文字(ε)の場合は空文字列にのみマッチする。
+        return Literals.exact(character.map(String::valueOf).orElse(""));
+    }
 }
@@ -19,6 +19,7 @@ package javasnack.regexp.codezinedemo.node;
 import java.util.Optional;
 
 import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
 import javasnack.regexp.codezinedemo.NfaFragment;
 
 public class ConcatNode implements INodeAssembler {
@@ -79,4 +80,9 @@ public class ConcatNode implements INodeAssembler {
         r.acceptableStates.addAll(f2.acceptableStates);
         return r;
     }
+
+    @Override
+    public Literals literals() {
+        return Literals.concat(this.op1.literals(), this.op2.literals());
+    }
 }
@@ -17,8 +17,14 @@
 package javasnack.regexp.codezinedemo.node;
 
 import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
 import javasnack.regexp.codezinedemo.NfaFragment;
 
 public interface INodeAssembler {
     NfaFragment assemble(final Context context);
+
+    /**
+     * @return このnodeにマッチする全ての文字列に共通する固定文字列 (LiteralPrefilter で使う)
+     */
+    Literals literals();
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo.node;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
+import javasnack.regexp.codezinedemo.NfaFragment;
+
+public class RepeatNode implements INodeAssembler {
+    /* NFAフラグメントの min 回以上 max 回以下の繰り返し (A{min,max}) を表現する遷移構造を合成する。
+     * A+ は A{1,}, A? は A{0,1} と同じ。
+     * 
+     * 考え方:
+     * 新しい遷移構造は作らず、既存の ConcatNode / UnionNode / StarNode の組み合わせに展開する。
+     * (assemble() は呼び出すたびに新しい状態番号でNFAフラグメントを組み立てるため、同じnodeを何度使っても良い)
+     * 
+     * A{2,4} -> AA(A(A)?)?  ((X)? は X と空文字(ε)の UnionNode)
+     * A{2,}  -> AAA*
+     * A{0,1} -> (A|ε)
+     * 
+     * 状態数は繰り返し回数に比例して増えるため、RE2 と同じく繰り返し回数の上限を設けている。
+     */
+
+    /** 繰り返し回数の上限 */
+    public static final int MAX_REPEAT = 1000;
+    /** 繰り返し回数の上限を指定しない場合 (A{min,}) */
+    public static final int UNBOUNDED = -1;
+
+    private final INodeAssembler expanded;
+
+    public RepeatNode(final INodeAssembler op, final int min, final int max) {
+        if (min < 0 || min > MAX_REPEAT || max > MAX_REPEAT || (max != UNBOUNDED && max < min)) {
+            throw new IllegalArgumentException("invalid repetition: {" + min + "," + max + "}");
+        }
+        INodeAssembler optional;
+        if (max == UNBOUNDED) {
+            optional = new StarNode(op);
+        } else {
+            // 後ろから (A(A(A)?)?)? の形で組み立てる。
+            optional = null;
+            for (int i = min; i < max; i++) {
+                final INodeAssembler once = Objects.isNull(optional) ? op : new ConcatNode(op, optional);
+                optional = new UnionNode(once, new CharacterNode(Optional.empty()));
+            }
+        }
+        INodeAssembler r = optional;
+        for (int i = 0; i < min; i++) {
+            r = Objects.isNull(r) ? op : new ConcatNode(op, r);
+        }
+        // A{0,0} は空文字列にのみマッチする。
+        this.expanded = Objects.isNull(r) ? new CharacterNode(Optional.empty()) : r;
+    }
+
+    @Override
+    public NfaFragment assemble(final Context context) {
+        return this.expanded.assemble(context);
+    }
+
+    @Override
+    public Literals literals() {
+        return this.expanded.literals();
+    }
+}
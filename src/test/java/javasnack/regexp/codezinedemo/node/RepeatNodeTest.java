@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.regexp.codezinedemo.node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
+import javasnack.regexp.codezinedemo.Nfa;
+import javasnack.regexp.codezinedemo.NfaRuntime;
+
+public class RepeatNodeTest {
+    static boolean accept(final INodeAssembler node, final String s) {
+        final Nfa nfa = node.assemble(new Context()).build();
+        return new NfaRuntime(nfa).accept(s);
+    }
+
+    @Test
+    public void testAssemble() {
+        final INodeAssembler a = new CharacterNode(Optional.of('a'));
+        // a{2,4}
+        final INodeAssembler r1 = new RepeatNode(a, 2, 4);
+        assertThat(accept(r1, "a")).isFalse();
+        assertThat(accept(r1, "aa")).isTrue();
+        assertThat(accept(r1, "aaaa")).isTrue();
+        assertThat(accept(r1, "aaaaa")).isFalse();
+        // a{2,}
+        final INodeAssembler r2 = new RepeatNode(a, 2, RepeatNode.UNBOUNDED);
+        assertThat(accept(r2, "a")).isFalse();
+        assertThat(accept(r2, "aaaaaaaa")).isTrue();
+        // a{0,1}
+        final INodeAssembler r3 = new RepeatNode(a, 0, 1);
+        assertThat(accept(r3, "")).isTrue();
+        assertThat(accept(r3, "a")).isTrue();
+        assertThat(accept(r3, "aa")).isFalse();
+        // a{0}
+        final INodeAssembler r4 = new RepeatNode(a, 0, 0);
+        assertThat(accept(r4, "")).isTrue();
+        assertThat(accept(r4, "a")).isFalse();
+    }
+
+    @Test
+    public void testLiterals() {
+        final INodeAssembler a = new CharacterNode(Optional.of('a'));
+        assertThat(new RepeatNode(a, 3, 3).literals()).isEqualTo(Literals.exact("aaa"));
+        assertThat(new RepeatNode(a, 2, 4).literals()).isEqualTo(Literals.of(null, "aa", "", "aa"));
+        assertThat(new RepeatNode(a, 0, 1).literals().required).isEmpty();
+    }
+
+    @Test
+    public void testInvalidRepetition() {
+        final INodeAssembler a = new CharacterNode(Optional.of('a'));
+        assertThrows(IllegalArgumentException.class, () -> new RepeatNode(a, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RepeatNode(a, 0, RepeatNode.MAX_REPEAT + 1));
+    }
+}
@@ -19,6 +19,7 @@ package javasnack.regexp.codezinedemo.node;
 import java.util.Optional;
 
 import javasnack.regexp.codezinedemo.Context;
+import javasnack.regexp.codezinedemo.Literals;
 import javasnack.regexp.codezinedemo.NfaFragment;
 
 public class StarNode implements INodeAssembler {
@@ -87,4 +88,9 @@ public class StarNode implements INodeAssembler {
         r.acceptableStates.add(newState);
         return r;
     }
+
+    @Override
+    public Literals literals() {
+        return Literals.star(this.op.literals());
+    }
 }
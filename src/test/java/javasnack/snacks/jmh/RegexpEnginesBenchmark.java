@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package javasnack.snacks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javasnack.regexp.codezinedemo.Regexp;
+import javasnack.regexp.codezinedemo.Regexp.RegexpOption;
+
+/* codezinedemo の各ランタイムと java.util.regex, re2j の全体マッチの速さを比べる。
+ * codezinedemo の正規表現エンジンはテストコード側にあるため、このベンチマークもテストコード側に置いている。
+ * (実行方法は README.md を参照)
+ *
+ * パターン(scenario) x 入力文字列の長さ(length) x エンジン(engine) の組み合わせごとに計測し、
+ * length を並べれば入力文字列の長さに対するスケーリングの様子が分かる。
+ *
+ * jmh args: RegexpEnginesBenchmark
+ * jmh args: RegexpEnginesBenchmark -prof gc (アロケーションレートも計測する)
+ * jmh args: RegexpEnginesBenchmark -p engine=NFA2DFA,JAVA_REGEX,RE2J -p length=16,256,4096,65536
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+/* java.util.regex と NFA_BACKTRACK は繰り返しを再帰呼び出しで処理するため、長い入力文字列ではスタックを使い切ってしまう。
+ * (java.util.regex では "(ab|ac)*d" に 4096 文字程度で StackOverflowError となる)
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class RegexpEnginesBenchmark {
+
+    public enum Engine {
+        NFA,
+        NFA_BACKTRACK,
+        NFA_BITSET,
+        NFA_BITSTATE_BACKTRACK,
+        NFA2DFA,
+        NFA2DFA_CACHE,
+        LAZY_DFA,
+        DFA,
+        JAVA_REGEX,
+        RE2J;
+    }
+
+    /* 破滅的なバックトラックを起こすパターンは Regexp の DoS のデモで扱っているため、
+     * ここでは全てのエンジンが入力文字列の長さに対して線形に近い時間で済むパターンを使う。
+     */
+    public enum Scenario {
+        /** 選択の繰り返しの後に1文字 (マッチする) */
+        UNION_STAR("(a|b)*c", len -> repeat("ab", len - 1) + "c", true),
+        /** 繰り返しの連結 (マッチする) */
+        CONCAT_STARS("a*b*c*d", len -> repeat("a", len / 3) + repeat("b", len / 3)
+                + repeat("c", len - 1 - (len / 3) * 2) + "d", true),
+        /** 末尾の直前まで読んで初めてマッチしないと分かる (固定文字列によるふるい落としも通り抜ける) */
+        NEAR_MISS("(ab|ac)*d", len -> repeat("ac", len - 3) + "aad", false),
+        /** 文字クラスの繰り返し (マッチする) */
+        CHAR_CLASS("[a-f0-9]+x", len -> repeat("0a1b2c3d4e5f6789", len - 1) + "x", true);
+
+        final String pattern;
+        final IntFunction<String> input;
+        final boolean expected;
+
+        Scenario(final String pattern, final IntFunction<String> input, final boolean expected) {
+            this.pattern = pattern;
+            this.input = input;
+            this.expected = expected;
+        }
+
+        /** @return s を繰り返して len 文字にした文字列 */
+        static String repeat(final String s, final int len) {
+            final StringBuilder sb = new StringBuilder(len);
+            while (sb.length() < len) {
+                sb.append(s);
+            }
+            sb.setLength(len);
+            return sb.toString();
+        }
+    }
+
+    @Param
+    public Engine engine;
+
+    @Param
+    public Scenario scenario;
+
+    @Param({ "16", "256", "4096" })
+    public int length;
+
+    /* 固定文字列によるふるい落とし(LiteralPrefilter)を使うか。
+     * 既定ではオートマトン自体の速さを比べるため使わない。(-p literalPrefilter=true で使う)
+     */
+    @Param({ "false" })
+    public boolean literalPrefilter;
+
+    private String input;
+
+    private Predicate<String> matcher;
+
+    @Setup
+    public void setup() {
+        this.input = scenario.input.apply(length);
+        this.matcher = compile(engine, scenario.pattern, literalPrefilter);
+        // 計測対象が正しく動くことを確認しておく。
+        final boolean expected = Pattern.matches(scenario.pattern, input);
+        if (expected != scenario.expected || matcher.test(input) != expected) {
+            throw new IllegalStateException("unexpected match result : " + engine + ", " + scenario + ", " + length);
+        }
+    }
+
+    static Predicate<String> compile(final Engine engine, final String pattern, final boolean literalPrefilter) {
+        final List<RegexpOption> options = new ArrayList<>();
+        if (!literalPrefilter) {
+            options.add(RegexpOption.DISABLE_LITERAL_PREFILTER);
+        }
+        switch (engine) {
+        case NFA:
+            return compiled(Regexp.compileNfa(pattern, with(options)));
+        case NFA_BACKTRACK:
+            return compiled(Regexp.compileNfa(pattern, with(options, RegexpOption.NFA_BACKTRACK)));
+        case NFA_BITSET:
+            return compiled(Regexp.compileNfa(pattern, with(options, RegexpOption.NFA_BITSET)));
+        case NFA_BITSTATE_BACKTRACK:
+            return compiled(Regexp.compileNfa(pattern, with(options, RegexpOption.NFA_BITSTATE_BACKTRACK)));
+        case NFA2DFA:
+            return compiled(Regexp.compileNfa2Dfa(pattern, with(options)));
+        case NFA2DFA_CACHE:
+            return compiled(Regexp.compileNfa2Dfa(pattern,
+                    with(options, RegexpOption.ENABLE_NFA2DFA_TRANSITION_CACHE)));
+        case LAZY_DFA:
+            return compiled(Regexp.compileLazyDfa(pattern, with(options)));
+        case DFA:
+            return compiled(Regexp.compileDfa(pattern, with(options)));
+        case JAVA_REGEX:
+            final Pattern p = Pattern.compile(pattern);
+            return s -> p.matcher(s).matches();
+        case RE2J:
+            final com.google.re2j.Pattern p2 = com.google.re2j.Pattern.compile(pattern);
+            return s -> p2.matches(s);
+        default:
+            throw new IllegalArgumentException("unknown engine : " + engine);
+        }
+    }
+
+    private static Predicate<String> compiled(final Regexp regexp) {
+        return regexp::match;
+    }
+
+    private static RegexpOption[] with(final List<RegexpOption> options, final RegexpOption... more) {
+        final List<RegexpOption> r = new ArrayList<>(options);
+        r.addAll(List.of(more));
+        return r.toArray(new RegexpOption[r.size()]);
+    }
+
+    @Benchmark
+    public boolean match() {
+        return matcher.test(input);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.snacks.perfs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PerfHarnessTest {
+
+    @Test
+    public void testStatistics() {
+        final double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            // 1 - 100 を逆順に並べる。
+            values[i] = 100 - i;
+        }
+        final PerfStatistics s = PerfStatistics.of(values);
+        assertThat(s.count).isEqualTo(100);
+        assertThat(s.min).isEqualTo(1.0);
+        assertThat(s.p50).isEqualTo(50.0);
+        assertThat(s.p90).isEqualTo(90.0);
+        assertThat(s.p99).isEqualTo(99.0);
+        assertThat(s.max).isEqualTo(100.0);
+        assertThat(s.mean).isEqualTo(50.5);
+        // 元の配列は並べ替えない。
+        assertThat(values[0]).isEqualTo(100.0);
+
+        final PerfStatistics one = PerfStatistics.of(new double[] { 3.0 });
+        assertThat(one.p50).isEqualTo(3.0);
+        assertThat(one.p99).isEqualTo(3.0);
+        assertThat(one.stddev).isEqualTo(0.0);
+        assertThatThrownBy(() -> PerfStatistics.of(new double[0])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testExecute() {
+        final int[] setups = new int[1];
+        final PerfHarness harness = new PerfHarness().warmupRounds(2).measurementRounds(3).detail(true);
+        harness.measure("sum", 4, 10, () -> {
+            setups[0]++;
+            return new long[1];
+        }, (state, i, bh) -> {
+            for (int j = 0; j < 10; j++) {
+                state[0] += i * j;
+            }
+            bh.consume(state[0]);
+        });
+        harness.measure("error", 2, () -> "x", (state, i, bh) -> {
+            throw new UnsupportedOperationException("boom");
+        });
+        final List<PerfResult> results = harness.execute();
+        assertThat(results).hasSize(2);
+        // 準備処理はラウンドごとに呼ばれる。(ウォームアップ2回 + 計測3回)
+        assertThat(setups[0]).isEqualTo(5);
+
+        final PerfResult sum = results.get(0);
+        assertThat(sum.name).isEqualTo("sum");
+        assertThat(sum.isFailed()).isFalse();
+        assertThat(sum.samplesPerRound).isEqualTo(4);
+        assertThat(sum.operationsPerSample).isEqualTo(10);
+        assertThat(sum.statistics.count).isEqualTo(12);
+        assertThat(sum.statistics.min).isGreaterThanOrEqualTo(0.0);
+        assertThat(sum.statistics.p50).isLessThanOrEqualTo(sum.statistics.p99);
+        assertThat(sum.medianByIndex).hasSize(4);
+
+        // 例外は結果に記録し、計測を続ける。
+        final PerfResult error = results.get(1);
+        assertThat(error.isFailed()).isTrue();
+        assertThat(error.statistics).isNull();
+        assertThat(error.error).isEqualTo("java.lang.UnsupportedOperationException:boom");
+    }
+
+    @Test
+    public void testParamAndMemory() throws Exception {
+        final PerfHarness harness = new PerfHarness("size=3", "rounds=2", "warmup=0", "footprint");
+        final int size = Integer.parseInt(harness.param("size", "100"));
+        assertThat(size).isEqualTo(3);
+        assertThat(harness.param("other", "x")).isEqualTo("x");
+        harness.measure("alloc", 1, 10, () -> new byte[1 << 20][], (state, i, bh) -> {
+            for (int j = 0; j < 10; j++) {
+                bh.consume(new byte[size * 1000]);
+            }
+        });
+        // 宣言したパラメータは harness のオプションとしては解釈しない。
+        harness.parseArgs("size=3", "rounds=2", "warmup=0", "footprint");
+        assertThat(harness.paramArgs()).containsExactly("size=3", "other=x");
+        final PerfResult r = harness.execute().get(0);
+        assertThat(r.isFailed()).isFalse();
+        assertThat(r.memory.allocatedBytesPerOperation).isGreaterThanOrEqualTo(3000.0);
+        assertThat(r.memory.gcCount).isGreaterThanOrEqualTo(0L);
+        // 参照の配列(1M要素)の分は保持している。
+        assertThat(r.memory.heapFootprintBytes).isGreaterThanOrEqualTo(1L << 20);
+        assertThat(r.memory.offHeapFootprintBytes).isGreaterThanOrEqualTo(0L);
+    }
+
+    @Test
+    public void testFootprintOf() {
+        final PerfHarness harness = new PerfHarness("rounds=1", "warmup=0").footprint(" get ");
+        harness.measure("map put n=3", 1, 1, () -> new byte[0], (state, i, bh) -> bh.consume(state));
+        harness.measure("map get n=3", 1, 1, () -> new byte[1 << 20][], (state, i, bh) -> bh.consume(state));
+        assertThat(harness.footprintOf("map put n=3")).isFalse();
+        assertThat(harness.footprintOf("map get n=3")).isTrue();
+        final List<PerfResult> results = harness.execute();
+        // 空の状態を作るシナリオは計測しない。
+        assertThat(results.get(0).memory.heapFootprintBytes).isEqualTo(-1L);
+        assertThat(results.get(1).memory.heapFootprintBytes).isGreaterThanOrEqualTo(1L << 20);
+        // footprint オプションを指定すると全てのシナリオで計測する。
+        harness.footprint(true);
+        assertThat(harness.footprintOf("map put n=3")).isTrue();
+    }
+
+    @Test
+    public void testArgs() {
+        final PerfHarness harness = new PerfHarness().measurementRounds(50);
+        harness.measure("put", 1, () -> null, (state, i, bh) -> bh.consume(i));
+        harness.measure("get", 1, () -> null, (state, i, bh) -> bh.consume(i));
+        harness.parseArgs("warmup=0", "rounds=2", "include=^g");
+        final List<PerfResult> results = harness.execute();
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).name).isEqualTo("get");
+        assertThat(results.get(0).statistics.count).isEqualTo(2);
+        assertThat(results.get(0).medianByIndex).isEmpty();
+        assertThat(results.get(0).memory.heapFootprintBytes).isEqualTo(-1L);
+
+        assertThatThrownBy(() -> harness.parseArgs("foo=bar"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown argument: foo=bar");
+        assertThatThrownBy(() -> harness.parseArgs("rounds=0"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> harness.measure("get", 1, () -> null, (state, i, bh) -> bh.consume(i)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("duplicated");
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        final List<PerfResult> results = List.of(
+                new PerfResult("a,b", 1, 1, PerfStatistics.of(new double[] { 1.0, 2.0 }), new double[] { 1.5 },
+                        new PerfMemory(16.0, 2L, 30L, 1000L, -1L), null),
+                PerfResult.failed("c", 1, 1, new StackOverflowError()));
+
+        final ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        new PerfHarness().format(PerfHarness.Format.CSV).report(results, csv);
+        final String[] lines = csv.toString(StandardCharsets.UTF_8).split("\\R");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[1]).isEqualTo("\"a,b\",1,1,2,1.0,1.0,2.0,2.0,2.0,1.5,0.5,16.0,2,30,1000,-1,");
+        assertThat(lines[2]).isEqualTo("c,1,1,,,,,,,,,,,,,,java.lang.StackOverflowError:null");
+
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new PerfHarness().format(PerfHarness.Format.JSON).report(results, json);
+        final JsonNode root = new ObjectMapper().readTree(json.toByteArray());
+        assertThat(root.size()).isEqualTo(2);
+        assertThat(root.get(0).get("name").asText()).isEqualTo("a,b");
+        assertThat(root.get(0).get("statistics").get("p99").asDouble()).isEqualTo(2.0);
+        assertThat(root.get(0).get("medianByIndex").get(0).asDouble()).isEqualTo(1.5);
+        assertThat(root.get(0).get("memory").get("gcCount").asLong()).isEqualTo(2L);
+        assertThat(root.get(1).get("failed").asBoolean()).isTrue();
+
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        new PerfHarness().report(results, text);
+        assertThat(text.toString(StandardCharsets.UTF_8))
+                .contains("ERROR: java.lang.StackOverflowError:null")
+                .contains("a,b[0] = 1.5 nano sec.")
+                .contains("footprint: a,b heap=1,000 bytes, off-heap=-1 bytes");
+    }
+
+    @Test
+    public void testBlackhole() {
+        final Blackhole bh = new Blackhole();
+        // 何を渡しても例外にならず、値を保持し続けることもない。
+        for (int i = 0; i < 10_000; i++) {
+            bh.consume(i);
+            bh.consume((long) i);
+            bh.consume(i % 2 == 0);
+            bh.consume(Integer.valueOf(i));
+        }
+        assertThat(PerfHarness.calibrateTimerOverhead()).isGreaterThanOrEqualTo(0L);
+    }
+}
@@ -1,6 +1,7 @@
 package javasnack.tool;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
@@ -8,9 +9,20 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestBlackholeTcpServer {
 
@@ -62,4 +74,133 @@ public class TestBlackholeTcpServer {
         assertThat(receivedData.get(local1)).isEqualTo(new byte[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05 });
         assertThat(receivedData.get(local2)).isEqualTo(new byte[] { 0x06, 0x07, 0x08, 0x09, 0x0a, 0x0b });
     }
+
+    static void waitForTotalBytes(final BlackholeTcpServer server, final long expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getTotalReceivedBytes() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testInvalidWorkerThreads() {
+        assertThatThrownBy(() -> new BlackholeTcpServer(0, 0, BlackholeTcpServer.Mode.DISCARD))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testRecordLargeDataWithWorkers() throws IOException, InterruptedException {
+        final BlackholeTcpServer server = new BlackholeTcpServer(0, 3, BlackholeTcpServer.Mode.RECORD);
+        final int localPort = server.start();
+        final InetSocketAddress connectTo = new InetSocketAddress(InetAddress.getLoopbackAddress(), localPort);
+        // 読み込みバッファより大きなデータを送り、分割して読んでも元通りに記録されることを確認する。
+        final byte[] data = new byte[BlackholeTcpServer.READ_BUFFER_SIZE * 3 + 123];
+        new Random(1234).nextBytes(data);
+        final List<InetSocketAddress> locals = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            try (Socket socket = new Socket()) {
+                socket.connect(connectTo);
+                locals.add((InetSocketAddress) socket.getLocalSocketAddress());
+                socket.getOutputStream().write(data);
+            }
+        }
+        waitForTotalBytes(server, data.length * 5L);
+        server.stop();
+        assertThat(server.getAcceptedConnections()).isEqualTo(5L);
+        assertThat(server.getTotalReceivedBytes()).isEqualTo(data.length * 5L);
+        final Map<InetSocketAddress, byte[]> receivedData = server.getReceivedBytes();
+        assertThat(receivedData).hasSize(5);
+        for (InetSocketAddress local : locals) {
+            assertThat(receivedData.get(local)).isEqualTo(data);
+            assertThat(server.getReceivedByteCounts().get(local)).isEqualTo((long) data.length);
+            assertThat(server.getReceivedMessageCounts().get(local)).isPositive();
+        }
+    }
+
+    @Test
+    public void testDiscardConcurrentClients() throws Exception {
+        final BlackholeTcpServer server = new BlackholeTcpServer(0, 4, BlackholeTcpServer.Mode.DISCARD);
+        final int localPort = server.start();
+        final InetSocketAddress connectTo = new InetSocketAddress(InetAddress.getLoopbackAddress(), localPort);
+        final int clients = 8;
+        final byte[] chunk = new byte[10_000];
+        final int chunksPerClient = 100;
+        final ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            final List<Future<InetSocketAddress>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                futures.add(pool.submit(() -> {
+                    try (Socket socket = new Socket()) {
+                        socket.connect(connectTo);
+                        final OutputStream out = socket.getOutputStream();
+                        for (int j = 0; j < chunksPerClient; j++) {
+                            out.write(chunk);
+                        }
+                        return (InetSocketAddress) socket.getLocalSocketAddress();
+                    }
+                }));
+            }
+            final long expected = (long) clients * chunksPerClient * chunk.length;
+            waitForTotalBytes(server, expected);
+            // 受信中・受信後のどちらでも、別のスレッドから受信状況を取得できる。
+            final Map<InetSocketAddress, Long> counts = server.getReceivedByteCounts();
+            for (Future<InetSocketAddress> f : futures) {
+                assertThat(counts.get(f.get(10, TimeUnit.SECONDS))).isEqualTo((long) chunksPerClient * chunk.length);
+            }
+            assertThat(server.getTotalReceivedBytes()).isEqualTo(expected);
+            assertThat(server.getTotalReceivedMessages()).isPositive();
+            assertThat(server.getAcceptedConnections()).isEqualTo(clients);
+            // DISCARD モードでは内容を保持しない。
+            assertThat(server.getReceivedBytes()).isEmpty();
+        } finally {
+            pool.shutdownNow();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testCaptureHeadTailAndStream(@TempDir final Path dir) throws Exception {
+        final BlackholeTcpServer server = new BlackholeTcpServer(0, 2, BlackholeTcpServer.Mode.CAPTURE, 16, 32, dir);
+        final int localPort = server.start();
+        final InetSocketAddress connectTo = new InetSocketAddress(InetAddress.getLoopbackAddress(), localPort);
+        final byte[] data = new byte[BlackholeTcpServer.READ_BUFFER_SIZE * 5 + 7];
+        new Random(1234).nextBytes(data);
+        final InetSocketAddress local;
+        try (Socket socket = new Socket()) {
+            socket.connect(connectTo);
+            local = (InetSocketAddress) socket.getLocalSocketAddress();
+            socket.getOutputStream().write(data);
+        }
+        waitForTotalBytes(server, data.length);
+        server.stop();
+        // メモリには先頭・末尾だけを保持し、全体は一時ファイルから読み出す。
+        final CapturedStream captured = server.getCapturedStreams().get(local);
+        assertThat(captured.length()).isEqualTo(data.length);
+        assertThat(captured.head()).isEqualTo(Arrays.copyOf(data, 16));
+        assertThat(captured.tail()).isEqualTo(Arrays.copyOfRange(data, data.length - 32, data.length));
+        assertThat(TestCapturedStream.readAll(server.openReceivedChannel(local))).isEqualTo(data);
+        assertThat(server.getReceivedBytes()).isEmpty();
+        assertThatThrownBy(() -> server.openReceivedChannel(new InetSocketAddress(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        server.deleteCapturedFiles();
+        try (var files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    public void testRecordStream() throws Exception {
+        final BlackholeTcpServer server = new BlackholeTcpServer();
+        final int localPort = server.start();
+        final InetSocketAddress local;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), localPort));
+            local = (InetSocketAddress) socket.getLocalSocketAddress();
+            socket.getOutputStream().write(new byte[] { 0x01, 0x02, 0x03 });
+        }
+        waitForTotalBytes(server, 3);
+        server.stop();
+        assertThat(TestCapturedStream.readAll(server.openReceivedChannel(local))).containsExactly(1, 2, 3);
+        assertThat(server.getCapturedStreams()).isEmpty();
+    }
 }
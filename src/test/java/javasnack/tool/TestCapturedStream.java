@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestCapturedStream {
+
+    static byte[] readAll(final ReadableByteChannel ch) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteBuffer buf = ByteBuffer.allocate(1000);
+        try (ch) {
+            while (ch.read(buf) >= 0) {
+                buf.flip();
+                out.write(buf.array(), 0, buf.limit());
+                buf.clear();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testHeadTailAndSpill(@TempDir final Path dir) throws IOException {
+        final byte[] data = new byte[100_000];
+        new Random(1234).nextBytes(data);
+        try (CapturedStream s = new CapturedStream(100, 300, dir)) {
+            int written = 0;
+            final Random rnd = new Random(5678);
+            while (written < data.length) {
+                final int n = Math.min(data.length - written, rnd.nextInt(1000));
+                // ダイレクトバッファからの書き込みは、position が limit まで進む。
+                final ByteBuffer src = ByteBuffer.allocateDirect(n + 10);
+                src.position(10);
+                src.put(data, written, n);
+                src.position(10);
+                s.write(src);
+                assertThat(src.hasRemaining()).isFalse();
+                written += n;
+                assertThat(s.length()).isEqualTo(written);
+                assertThat(s.tail()).isEqualTo(Arrays.copyOfRange(data, Math.max(0, written - 300), written));
+            }
+            assertThat(s.head()).isEqualTo(Arrays.copyOf(data, 100));
+            assertThat(s.tail()).isEqualTo(Arrays.copyOfRange(data, data.length - 300, data.length));
+            assertThat(readAll(s.openChannel())).isEqualTo(data);
+
+            // チャネルを開いた時点までの内容だけを読み出す。
+            final ReadableByteChannel before = s.openChannel();
+            s.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+            assertThat(readAll(before)).hasSize(data.length);
+            s.finish();
+            assertThat(readAll(s.openChannel())).hasSize(data.length + 3);
+            assertThatThrownBy(() -> s.write(ByteBuffer.allocate(1))).isInstanceOf(IllegalStateException.class);
+        }
+        try (var files = Files.list(dir)) {
+            // close() で一時ファイルは削除される。
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    public void testSmallWrites(@TempDir final Path dir) throws IOException {
+        final CapturedStream s = new CapturedStream(4, 4, dir);
+        assertThat(s.head()).isEmpty();
+        assertThat(s.tail()).isEmpty();
+        assertThat(readAll(s.openChannel())).isEmpty();
+        s.write(ByteBuffer.wrap(new byte[] { 1, 2 }));
+        assertThat(s.head()).containsExactly(1, 2);
+        assertThat(s.tail()).containsExactly(1, 2);
+        s.write(ByteBuffer.wrap(new byte[] { 3, 4, 5 }));
+        s.write(ByteBuffer.wrap(new byte[] { 6 }));
+        assertThat(s.head()).containsExactly(1, 2, 3, 4);
+        assertThat(s.tail()).containsExactly(3, 4, 5, 6);
+        assertThat(readAll(s.openChannel())).containsExactly(1, 2, 3, 4, 5, 6);
+        s.close();
+        assertThatThrownBy(() -> s.openChannel()).isInstanceOf(ClosedChannelException.class);
+    }
+
+    @Test
+    public void testZeroWindow(@TempDir final Path dir) throws IOException {
+        try (CapturedStream s = new CapturedStream(0, 0, dir)) {
+            s.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+            assertThat(s.head()).isEmpty();
+            assertThat(s.tail()).isEmpty();
+            assertThat(readAll(s.openChannel())).containsExactly(1, 2, 3);
+        }
+        assertThatThrownBy(() -> new CapturedStream(-1, 0, dir)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testSpillFileSize(@TempDir final Path dir) throws IOException {
+        try (CapturedStream s = new CapturedStream(0, 0, dir)) {
+            final Path file;
+            try (var files = Files.list(dir)) {
+                file = files.findFirst().get();
+            }
+            // 一時ファイルは書き込んだ分だけ伸びる。(余分な領域を確保しないため、finish() で切り詰める必要も無い)
+            assertThat(Files.size(file)).isZero();
+            s.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+            assertThat(Files.size(file)).isEqualTo(s.length()).isEqualTo(3L);
+            s.write(ByteBuffer.allocateDirect(5000));
+            s.finish();
+            assertThat(Files.size(file)).isEqualTo(s.length()).isEqualTo(5003L);
+            assertThat(readAll(s.openChannel())).startsWith(1, 2, 3).hasSize(5003);
+        }
+        try (var files = Files.list(dir)) {
+            // 一時ファイルはメモリマップしていないため、close() ですぐに削除できる。
+            assertThat(files).isEmpty();
+        }
+    }
+}
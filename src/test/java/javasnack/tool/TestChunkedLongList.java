@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class TestChunkedLongList {
+
+    @Test
+    public void testAddGetSet() {
+        final ChunkedLongList l = new ChunkedLongList(4);
+        assertThat(l.capacity()).isZero();
+        for (long v = 0; v < 1000; v++) {
+            l.add(v * 3);
+        }
+        assertThat(l.size()).isEqualTo(1000L);
+        // 4 要素のチャンクが 250 個
+        assertThat(l.capacity()).isEqualTo(1000L);
+        for (long i = 0; i < 1000; i++) {
+            assertThat(l.get(i)).isEqualTo(i * 3);
+        }
+        assertThat(l.set(3, -1L)).isEqualTo(9L);
+        assertThat(l.set(4, -2L)).isEqualTo(12L);
+        assertThat(l.get(3)).isEqualTo(-1L);
+        assertThat(l.get(4)).isEqualTo(-2L);
+        l.add(1L);
+        assertThat(l.capacity()).isEqualTo(1004L);
+        assertThatThrownBy(() -> l.get(1001)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> l.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void testForEachAndClear() {
+        final ChunkedLongList l = new ChunkedLongList(8);
+        for (long v = 1; v <= 100; v++) {
+            l.add(v);
+        }
+        final long[] sum = new long[2];
+        l.forEach(v -> {
+            sum[0] += v;
+            sum[1]++;
+        });
+        assertThat(sum).containsExactly(5050L, 100L);
+
+        // チャンクは再利用する。
+        l.clear();
+        assertThat(l.isEmpty()).isTrue();
+        assertThat(l.capacity()).isEqualTo(104L);
+        l.add(7L);
+        assertThat(l.get(0)).isEqualTo(7L);
+        sum[1] = 0;
+        l.forEach(v -> sum[1]++);
+        assertThat(sum[1]).isEqualTo(1L);
+        assertThatThrownBy(() -> new ChunkedLongList(3)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestHexCodec {
+
+    @Test
+    public void testEncodeSameAsHexFormat() {
+        final Random rnd = new Random(1234);
+        // SWAR で8バイトずつ変換する部分と、変換表を引く端数の部分の両方を確認する。
+        for (int len = 0; len < 70; len++) {
+            final byte[] src = new byte[len + 3];
+            rnd.nextBytes(src);
+            final String lower = HexFormat.of().formatHex(src, 3, src.length);
+            final String upper = HexFormat.of().withUpperCase().formatHex(src, 3, src.length);
+            final byte[] dst = new byte[len * 2 + 1];
+            assertThat(HexCodec.encode(src, 3, len, dst, 1, false)).isEqualTo(len * 2);
+            assertThat(new String(dst, 1, len * 2, StandardCharsets.US_ASCII)).isEqualTo(lower);
+            HexCodec.encode(src, 3, len, dst, 1, true);
+            assertThat(new String(dst, 1, len * 2, StandardCharsets.US_ASCII)).isEqualTo(upper);
+            final char[] chars = new char[len * 2];
+            assertThat(HexCodec.encode(src, 3, len, chars, 0, false)).isEqualTo(len * 2);
+            assertThat(new String(chars)).isEqualTo(lower);
+        }
+        final byte[] all = UnsignedByte.create0x00to0xFF();
+        assertThat(HexCodec.toHexString(all, false)).isEqualTo(HexFormat.of().formatHex(all));
+        assertThat(HexCodec.toHexString(all, true)).isEqualTo(HexFormat.of().withUpperCase().formatHex(all));
+        assertThatThrownBy(() -> HexCodec.encode(all, 0, 256, new byte[511], 0, false))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void testDecode() {
+        final byte[] all = UnsignedByte.create0x00to0xFF();
+        final String lower = HexFormat.of().formatHex(all);
+        assertThat(HexCodec.fromHexString(lower)).isEqualTo(all);
+        assertThat(HexCodec.fromHexString(lower.toUpperCase())).isEqualTo(all);
+        final byte[] dst = new byte[258];
+        assertThat(HexCodec.decode(lower.getBytes(StandardCharsets.US_ASCII), 0, 512, dst, 2)).isEqualTo(256);
+        assertThat(dst[2]).isEqualTo((byte) 0);
+        assertThat(dst[257]).isEqualTo((byte) 0xFF);
+        assertThat(HexCodec.fromHexString("")).isEmpty();
+        assertThatThrownBy(() -> HexCodec.fromHexString("abc")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HexCodec.fromHexString("0g")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at 1");
+        assertThatThrownBy(() -> HexCodec.fromHexString("0あ")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testByteBuffer() {
+        final byte[] src = { 0x01, (byte) 0xab, 0x7f, (byte) 0x80 };
+        for (boolean direct : new boolean[] { false, true }) {
+            final ByteBuffer in = direct ? ByteBuffer.allocateDirect(4) : ByteBuffer.allocate(4);
+            in.put(src).flip();
+            // 出力先の空きが足りない分は変換しない。
+            final ByteBuffer out = direct ? ByteBuffer.allocateDirect(7) : ByteBuffer.allocate(7);
+            assertThat(HexCodec.encode(in, out, false)).isEqualTo(3);
+            assertThat(in.remaining()).isEqualTo(1);
+            out.flip();
+            final byte[] hex = new byte[out.remaining()];
+            out.duplicate().get(hex);
+            assertThat(new String(hex, StandardCharsets.US_ASCII)).isEqualTo("01ab7f");
+            final ByteBuffer decoded = ByteBuffer.allocate(8);
+            assertThat(HexCodec.decode(out, decoded)).isEqualTo(3);
+            assertThat(out.hasRemaining()).isFalse();
+            decoded.flip();
+            assertThat(decoded).isEqualTo(ByteBuffer.wrap(src, 0, 3));
+        }
+    }
+
+    @Test
+    public void testEncodeBits() {
+        final byte[] src = { 0x00, 0x01, Byte.MAX_VALUE, Byte.MIN_VALUE, (byte) 0xa5 };
+        final byte[] dst = new byte[40];
+        assertThat(HexCodec.encodeBits(src, 0, 5, dst, 0)).isEqualTo(40);
+        final String expected = "0000000000000001011111111000000010100101";
+        assertThat(new String(dst, StandardCharsets.US_ASCII)).isEqualTo(expected);
+        final char[] chars = new char[40];
+        HexCodec.encodeBits(src, 0, 5, chars, 0);
+        assertThat(new String(chars)).isEqualTo(expected);
+        assertThat(UnsignedByte.bits(src)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testDump() throws IOException {
+        final byte[] src = "Hello, world!\n\u0000\u0001\u007f ~ 0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+        final String expected = ""
+                + "00000000: 4865 6c6c 6f2c 2077 6f72 6c64 210a 0001  Hello, world!...\n"
+                + "00000010: 7f20 7e20 3031 3233 3435 3637 3839 6162  . ~ 0123456789ab\n"
+                + "00000020: 6364 6566                                cdef\n";
+        assertThat(HexCodec.dump(src)).isEqualTo(expected);
+        assertThat(HexCodec.dump(new byte[0])).isEmpty();
+
+        // 書き込む単位に関わらず、同じダンプとなる。
+        for (int chunk : new int[] { 1, 3, 16, 17, 1000 }) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (OutputStream dump = new HexCodec.DumpOutputStream(out)) {
+                for (int i = 0; i < src.length; i += chunk) {
+                    dump.write(src, i, Math.min(chunk, src.length - i));
+                }
+            }
+            assertThat(out.toString(StandardCharsets.US_ASCII)).as("chunk=%d", chunk).isEqualTo(expected);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream dump = new HexCodec.DumpOutputStream(out, 0x1_0000_0010L)) {
+            dump.write(new byte[] { 'A' });
+        }
+        // オフセットは下位32ビットを表示する。
+        assertThat(out.toString(StandardCharsets.US_ASCII)).startsWith("00000010: 41   ").endsWith("  A\n");
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        final byte[] src = new byte[50_000];
+        new Random(5678).nextBytes(src);
+        final ByteArrayOutputStream hex = new ByteArrayOutputStream();
+        try (OutputStream enc = new HexCodec.EncodingOutputStream(hex, true)) {
+            enc.write(src[0]);
+            enc.write(src, 1, src.length - 1);
+        }
+        assertThat(hex.toString(StandardCharsets.US_ASCII)).isEqualTo(HexFormat.of().withUpperCase().formatHex(src));
+
+        // 空白・改行を挟んでもデコードできる。(xxd -p の出力など)
+        final StringBuilder wrapped = new StringBuilder();
+        final String h = hex.toString(StandardCharsets.US_ASCII);
+        for (int i = 0; i < h.length(); i += 61) {
+            wrapped.append(h, i, Math.min(h.length(), i + 61)).append(i % 2 == 0 ? "\n" : " \r\n");
+        }
+        try (InputStream dec = new HexCodec.DecodingInputStream(
+                new ByteArrayInputStream(wrapped.toString().getBytes(StandardCharsets.US_ASCII)))) {
+            assertThat(dec.read()).isEqualTo(src[0] & 0xFF);
+            assertThat(dec.readAllBytes()).isEqualTo(Arrays.copyOfRange(src, 1, src.length));
+            assertThat(dec.read()).isEqualTo(-1);
+        }
+        try (InputStream dec = new HexCodec.DecodingInputStream(new ByteArrayInputStream("0a1".getBytes()))) {
+            assertThat(dec.read()).isEqualTo(0x0a);
+            assertThatThrownBy(() -> dec.read()).isInstanceOf(IOException.class);
+        }
+        try (InputStream dec = new HexCodec.DecodingInputStream(new ByteArrayInputStream("0a zz".getBytes()))) {
+            assertThatThrownBy(() -> dec.readAllBytes()).isInstanceOf(IOException.class);
+        }
+        // 1バイトずつ読む場合も、16進数以外の文字は IOException とする。
+        try (InputStream dec = new HexCodec.DecodingInputStream(new ByteArrayInputStream("0a zz".getBytes()))) {
+            assertThat(dec.read()).isEqualTo(0x0a);
+            assertThatThrownBy(() -> dec.read()).isInstanceOf(IOException.class)
+                    .hasMessageContaining("not a hex digit at 3")
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+        // 空白だけを読んだ後に続く不正な文字も同様。
+        try (InputStream dec = new HexCodec.DecodingInputStream(new ByteArrayInputStream("  \ng0".getBytes()))) {
+            assertThatThrownBy(() -> dec.read(new byte[4], 0, 1)).isInstanceOf(IOException.class);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class TestIntArrayList {
+
+    @Test
+    public void testAddGetSet() {
+        final IntArrayList l = new IntArrayList();
+        for (int v = 0; v < 1000; v++) {
+            l.add(-v);
+        }
+        assertThat(l.size()).isEqualTo(1000);
+        assertThat(l.get(500)).isEqualTo(-500);
+        assertThat(l.set(500, 1)).isEqualTo(-500);
+        assertThat(l.removeLast()).isEqualTo(-999);
+        final long[] sum = new long[1];
+        l.forEach(v -> sum[0] += v);
+        assertThat(sum[0]).isEqualTo(-(998L * 999L / 2) + 500 + 1);
+        assertThat(l.toArray()).hasSize(999);
+        assertThatThrownBy(() -> l.set(999, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> new IntArrayList(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestIntObjectMap {
+
+    @Test
+    public void testBasicOperations() {
+        final IntObjectMap<String> m = new IntObjectMap<>(4);
+        assertThat(m.get(1)).isNull();
+        assertThat(m.put(1, "a")).isNull();
+        assertThat(m.put(1, "b")).isEqualTo("a");
+        assertThat(m.put(0, "zero")).isNull();
+        assertThat(m.put(-1, "minus")).isNull();
+        assertThat(m.size()).isEqualTo(3);
+        assertThat(m.get(0)).isEqualTo("zero");
+        assertThat(m.containsKey(0)).isTrue();
+        assertThat(m.remove(0)).isEqualTo("zero");
+        assertThat(m.containsKey(0)).isFalse();
+        assertThat(m.remove(1)).isEqualTo("b");
+        assertThat(m.remove(1)).isNull();
+        assertThat(m.size()).isEqualTo(1);
+        assertThatThrownBy(() -> m.put(2, null)).isInstanceOf(NullPointerException.class);
+        m.clear();
+        assertThat(m.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testSameResultAsHashMap() {
+        final Random rnd = new Random(5678);
+        final IntObjectMap<Integer> m = new IntObjectMap<>();
+        final Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            final int key = rnd.nextInt(5_000) - 100;
+            if (rnd.nextInt(3) == 0) {
+                assertThat(m.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                final Integer value = rnd.nextInt();
+                assertThat(m.put(key, value)).isEqualTo(expected.put(key, value));
+            }
+        }
+        assertThat(m.size()).isEqualTo(expected.size());
+        for (int key = -100; key < 5_000; key++) {
+            assertThat(m.get(key)).isEqualTo(expected.get(key));
+        }
+        final Map<Integer, Integer> actual = new HashMap<>();
+        m.forEach((k, v) -> actual.put(k, v));
+        assertThat(actual).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TestLongArrayList {
+
+    @Test
+    public void testAddGetSet() {
+        final LongArrayList l = new LongArrayList(0);
+        assertThat(l.isEmpty()).isTrue();
+        for (long v = 0; v < 1000; v++) {
+            l.add(v * v);
+        }
+        assertThat(l.size()).isEqualTo(1000);
+        assertThat(l.get(999)).isEqualTo(999L * 999L);
+        assertThat(l.set(10, -1L)).isEqualTo(100L);
+        assertThat(l.get(10)).isEqualTo(-1L);
+        assertThat(l.removeLast()).isEqualTo(999L * 999L);
+        assertThat(l.size()).isEqualTo(999);
+        assertThatThrownBy(() -> l.get(999)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> l.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+
+        final List<Long> visited = new ArrayList<>();
+        l.forEach(visited::add);
+        assertThat(visited).hasSize(999);
+        assertThat(l.toArray()).hasSize(999).startsWith(0L, 1L, 4L);
+
+        l.trimToSize();
+        l.clear();
+        assertThat(l.isEmpty()).isTrue();
+        assertThatThrownBy(() -> l.removeLast()).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void testGrownCapacity() {
+        assertThat(LongArrayList.grownCapacity(0, 1)).isEqualTo(1);
+        assertThat(LongArrayList.grownCapacity(10, 11)).isEqualTo(16);
+        assertThat(LongArrayList.grownCapacity(10, 100)).isEqualTo(100);
+        assertThat(LongArrayList.grownCapacity(Integer.MAX_VALUE - 100, Integer.MAX_VALUE - 99))
+                .isEqualTo(Integer.MAX_VALUE - 8);
+        assertThatThrownBy(() -> LongArrayList.grownCapacity(10, -1)).isInstanceOf(OutOfMemoryError.class);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestLongLongMap {
+
+    @Test
+    public void testBasicOperations() {
+        final LongLongMap m = new LongLongMap(4, 0.75f, -1L);
+        assertThat(m.isEmpty()).isTrue();
+        assertThat(m.get(1L)).isEqualTo(-1L);
+        assertThat(m.put(1L, 100L)).isEqualTo(-1L);
+        assertThat(m.put(1L, 101L)).isEqualTo(100L);
+        // キー 0 も他のキーと同様に扱える。
+        assertThat(m.containsKey(0L)).isFalse();
+        assertThat(m.put(0L, 200L)).isEqualTo(-1L);
+        assertThat(m.get(0L)).isEqualTo(200L);
+        assertThat(m.put(Long.MIN_VALUE, 300L)).isEqualTo(-1L);
+        assertThat(m.size()).isEqualTo(3);
+        assertThat(m.get(1L)).isEqualTo(101L);
+        assertThat(m.getOrDefault(2L, 7L)).isEqualTo(7L);
+        assertThat(m.remove(0L)).isEqualTo(200L);
+        assertThat(m.remove(0L)).isEqualTo(-1L);
+        assertThat(m.remove(1L)).isEqualTo(101L);
+        assertThat(m.remove(2L)).isEqualTo(-1L);
+        assertThat(m.size()).isEqualTo(1);
+        m.clear();
+        assertThat(m.isEmpty()).isTrue();
+        assertThat(m.get(Long.MIN_VALUE)).isEqualTo(-1L);
+    }
+
+    @Test
+    public void testSameResultAsHashMap() {
+        final Random rnd = new Random(1234);
+        final LongLongMap m = new LongLongMap();
+        final Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // 衝突や削除後の詰め直しが起きるよう、狭い範囲のキーを使う。
+            final long key = rnd.nextInt(5_000) - 100;
+            switch (rnd.nextInt(3)) {
+            case 0:
+                assertThat(m.remove(key)).isEqualTo(expected.getOrDefault(key, 0L));
+                expected.remove(key);
+                break;
+            default:
+                final long value = rnd.nextLong();
+                assertThat(m.put(key, value)).isEqualTo(expected.getOrDefault(key, 0L));
+                expected.put(key, value);
+                break;
+            }
+        }
+        assertThat(m.size()).isEqualTo(expected.size());
+        for (long key = -100; key < 5_000; key++) {
+            assertThat(m.containsKey(key)).isEqualTo(expected.containsKey(key));
+            assertThat(m.get(key)).isEqualTo(expected.getOrDefault(key, 0L));
+        }
+        final Map<Long, Long> actual = new HashMap<>();
+        m.forEach((k, v) -> actual.put(k, v));
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void testCapacity() {
+        assertThat(LongLongMap.capacityFor(0, 0.75f)).isEqualTo(2);
+        assertThat(LongLongMap.capacityFor(12, 0.75f)).isEqualTo(32);
+        assertThat(LongLongMap.capacityFor(1_000_000, 0.5f)).isEqualTo(1 << 21);
+        final LongLongMap m = new LongLongMap(0);
+        for (long k = 1; k <= 100_000; k++) {
+            m.put(k, k * 2);
+        }
+        assertThat(m.size()).isEqualTo(100_000);
+        assertThat(m.get(99_999L)).isEqualTo(199_998L);
+        assertThat(m.arrayBytes()).isEqualTo((1L << 18) * 16);
+        assertThatThrownBy(() -> new LongLongMap(16, 1.0f, 0L)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new LongLongMap(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
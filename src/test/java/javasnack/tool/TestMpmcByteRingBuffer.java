@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class TestMpmcByteRingBuffer {
+
+    @Test
+    public void testOfferPollDrain() {
+        final MpmcByteRingBuffer rb = new MpmcByteRingBuffer(3, 4);
+        assertThat(rb.capacity()).isEqualTo(4);
+        assertThat(rb.maxMessageSize()).isEqualTo(4);
+        final byte[] dst = new byte[8];
+        assertThat(rb.poll(dst, 0)).isEqualTo(-1);
+        assertThat(rb.offer(new byte[] { 1, 2, 3 }, 0, 3)).isTrue();
+        assertThat(rb.offer(new byte[] { 9, 4 }, 1, 1)).isTrue();
+        assertThat(rb.offer(new byte[0], 0, 0)).isTrue();
+        assertThat(rb.offer(new byte[] { 5, 6, 7, 8 }, 0, 4)).isTrue();
+        // スロットが全て埋まっている場合は書き込まない。
+        assertThat(rb.offer(new byte[] { 10 }, 0, 1)).isFalse();
+        assertThat(rb.size()).isEqualTo(4);
+        // メッセージ単位で書き込んだ順に読み込む。
+        assertThat(rb.poll(dst, 2)).isEqualTo(3);
+        assertThat(dst).startsWith(0, 0, 1, 2, 3);
+        assertThat(rb.offer(new byte[] { 10 }, 0, 1)).isTrue();
+        final List<String> drained = new ArrayList<>();
+        final MpmcByteRingBuffer.MessageHandler handler = (buffer, off, len) -> {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++) {
+                sb.append(buffer[off + i]).append(',');
+            }
+            drained.add(sb.toString());
+        };
+        assertThat(rb.drain(handler, 2)).isEqualTo(2);
+        assertThat(rb.drain(handler, 10)).isEqualTo(2);
+        assertThat(drained).containsExactly("4,", "", "5,6,7,8,", "10,");
+        assertThat(rb.size()).isEqualTo(0);
+        assertThatThrownBy(() -> rb.offer(new byte[5], 0, 5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rb.poll(new byte[5], 2)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> new MpmcByteRingBuffer(4, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testDrainReleasesSlotOnException() {
+        final MpmcByteRingBuffer rb = new MpmcByteRingBuffer(1, 1);
+        assertThat(rb.offer(new byte[] { 1 }, 0, 1)).isTrue();
+        assertThatThrownBy(() -> rb.drain((buffer, off, len) -> {
+            throw new IllegalStateException("handler error");
+        }, 1)).isInstanceOf(IllegalStateException.class);
+        assertThat(rb.offer(new byte[] { 2 }, 0, 1)).isTrue();
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final MpmcByteRingBuffer rb = new MpmcByteRingBuffer(32, 8);
+        final int producers = 3;
+        final int consumers = 3;
+        final int messagesPerProducer = 50_000;
+        final ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                final int producerId = p;
+                pool.submit(() -> {
+                    // メッセージ = (書き込みスレッド番号, 連番) : 途中で別のメッセージと混ざらないことを確認する。
+                    final byte[] src = new byte[8];
+                    for (int i = 0; i < messagesPerProducer; i++) {
+                        ByteBuffer.wrap(src).putInt(producerId).putInt(i);
+                        while (!rb.offer(src, 0, src.length)) {
+                            // CPU コアが少ない環境でも相手のスレッドが進むよう、スピンせずに譲る。
+                            Thread.yield();
+                        }
+                    }
+                });
+            }
+            final AtomicInteger remaining = new AtomicInteger(producers * messagesPerProducer);
+            final List<Future<long[]>> futures = new ArrayList<>();
+            for (int c = 0; c < consumers; c++) {
+                futures.add(pool.submit(() -> {
+                    // 書き込みスレッドごとの連番の合計と、書き込みスレッドごとに連番が増える順に読めたかを確認する。
+                    final long[] sums = new long[producers];
+                    final int[] last = new int[] { -1, -1, -1 };
+                    final byte[] dst = new byte[8];
+                    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                    while (remaining.get() > 0 && System.nanoTime() < deadline) {
+                        final int len = rb.poll(dst, 0);
+                        if (len < 0) {
+                            Thread.yield();
+                            continue;
+                        }
+                        final ByteBuffer bb = ByteBuffer.wrap(dst);
+                        final int producerId = bb.getInt();
+                        final int seq = bb.getInt();
+                        if (len != 8 || seq <= last[producerId]) {
+                            throw new AssertionError("unexpected message: len=" + len + ", seq=" + seq);
+                        }
+                        last[producerId] = seq;
+                        sums[producerId] += seq;
+                        remaining.decrementAndGet();
+                    }
+                    return sums;
+                }));
+            }
+            final long[] total = new long[producers];
+            for (Future<long[]> f : futures) {
+                final long[] sums = f.get(60, TimeUnit.SECONDS);
+                for (int p = 0; p < producers; p++) {
+                    total[p] += sums[p];
+                }
+            }
+            assertThat(remaining.get()).isEqualTo(0);
+            final long expected = (long) messagesPerProducer * (messagesPerProducer - 1) / 2;
+            assertThat(total).containsOnly(expected);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
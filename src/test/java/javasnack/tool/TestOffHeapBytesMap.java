@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestOffHeapBytesMap {
+
+    static byte[] b(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testBasicOperations() {
+        try (OffHeapBytesMap m = new OffHeapBytesMap(4, 1024)) {
+            assertThat(m.get(b("k1"))).isNull();
+            assertThat(m.put(b("k1"), b("v1"))).isTrue();
+            assertThat(m.put(b(""), b("empty key"))).isTrue();
+            assertThat(m.put(b("k2"), new byte[0])).isTrue();
+            assertThat(m.size()).isEqualTo(3);
+            assertThat(m.get(b("k1"))).isEqualTo(b("v1"));
+            assertThat(m.get(b(""))).isEqualTo(b("empty key"));
+            assertThat(m.get(b("k2"))).isEmpty();
+            assertThat(m.garbageBytes()).isZero();
+
+            // 同じ長さの値はその場で上書きし、異なる長さの値は追記する。
+            assertThat(m.put(b("k1"), b("V1"))).isFalse();
+            assertThat(m.garbageBytes()).isZero();
+            assertThat(m.put(b("k1"), b("value1"))).isFalse();
+            assertThat(m.garbageBytes()).isEqualTo(OffHeapBytesMap.RECORD_HEADER_BYTES + 4);
+            assertThat(m.get(b("k1"))).isEqualTo(b("value1"));
+
+            assertThat(m.remove(b("k1"))).isTrue();
+            assertThat(m.remove(b("k1"))).isFalse();
+            assertThat(m.containsKey(b("k1"))).isFalse();
+            assertThat(m.containsKey(b("k2"))).isTrue();
+            assertThat(m.size()).isEqualTo(2);
+            assertThat(m.offHeapBytes()).isGreaterThan(0L);
+        }
+    }
+
+    @Test
+    public void testSameResultAsHashMap() {
+        final Random rnd = new Random(9012);
+        // チャンクをまたぐ配置やスロット表の拡張が起きるよう、小さなチャンクと初期容量にする。
+        try (OffHeapBytesMap m = new OffHeapBytesMap(0, 256)) {
+            final Map<ByteBuffer, byte[]> expected = new HashMap<>();
+            for (int i = 0; i < 50_000; i++) {
+                final byte[] key = b("key" + rnd.nextInt(3_000));
+                final ByteBuffer wrapped = ByteBuffer.wrap(key);
+                if (rnd.nextInt(4) == 0) {
+                    assertThat(m.remove(key)).isEqualTo(expected.remove(wrapped) != null);
+                } else {
+                    final byte[] value = new byte[rnd.nextInt(40)];
+                    rnd.nextBytes(value);
+                    assertThat(m.put(key, value)).isEqualTo(expected.put(wrapped, value) == null);
+                }
+            }
+            assertThat(m.size()).isEqualTo(expected.size());
+            for (int i = 0; i < 3_000; i++) {
+                final byte[] key = b("key" + i);
+                assertThat(m.get(key)).isEqualTo(expected.get(ByteBuffer.wrap(key)));
+            }
+            assertThat(m.garbageBytes()).isGreaterThan(0L);
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        final OffHeapBytesMap m = new OffHeapBytesMap(0, 64);
+        assertThatThrownBy(() -> m.put(new byte[30], new byte[30]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too large entry");
+        m.close();
+        assertThat(m.offHeapBytes()).isZero();
+        assertThatThrownBy(() -> m.get(b("k"))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new OffHeapBytesMap(0, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
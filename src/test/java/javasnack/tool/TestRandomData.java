@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.random.RandomGenerator;
+
+import org.junit.jupiter.api.Test;
+
+public class TestRandomData {
+
+    @Test
+    public void testSeededIsReproducible() {
+        final RandomData a = RandomData.seeded(1234L);
+        final RandomData b = RandomData.seeded(1234L);
+        assertThat(a.nextBytes(100)).isEqualTo(b.nextBytes(100));
+        assertThat(a.nextString(10, 30)).isEqualTo(b.nextString(10, 30));
+        assertThat(a.nextLong()).isEqualTo(b.nextLong());
+        assertThat(RandomData.seeded(1L).nextBytes(32)).isNotEqualTo(RandomData.seeded(2L).nextBytes(32));
+        assertThat(a.generator().getClass().getSimpleName()).isEqualTo(RandomData.ALGORITHM);
+    }
+
+    @Test
+    public void testNextBytesSameAsLittleEndianLongs() {
+        // 8バイトずつ書き込む部分と、端数の部分の両方を確認する。
+        for (int len = 0; len < 40; len++) {
+            final byte[] expected = new byte[len];
+            final RandomGenerator seeded = RandomData.seeded(99L).generator();
+            for (int i = 0; i < len; i += 8) {
+                long r = seeded.nextLong();
+                for (int j = i; j < Math.min(len, i + 8); j++, r >>>= 8) {
+                    expected[j] = (byte) r;
+                }
+            }
+            final byte[] dst = new byte[len + 2];
+            RandomData.seeded(99L).nextBytes(dst, 1, len);
+            assertThat(Arrays.copyOfRange(dst, 1, len + 1)).isEqualTo(expected);
+            assertThat(dst[0]).isEqualTo((byte) 0);
+            assertThat(dst[len + 1]).isEqualTo((byte) 0);
+        }
+        assertThat(RandomData.current().nextBytes(0)).isEmpty();
+        assertThat(RandomData.current().nextBytes(-1)).isEmpty();
+        assertThatThrownBy(() -> RandomData.current().nextBytes(new byte[10], 5, 6))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void testNextBytesByteBuffer() {
+        final byte[] expected = RandomData.seeded(5678L).nextBytes(37);
+        for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.allocate(50), ByteBuffer.allocateDirect(50) }) {
+            bb.position(3).limit(40);
+            RandomData.seeded(5678L).nextBytes(bb);
+            assertThat(bb.position()).isEqualTo(40);
+            final byte[] actual = new byte[37];
+            bb.position(3).limit(50);
+            bb.get(actual);
+            // heap / direct のどちらでも、バイト列の内容は byte[] に生成した場合と同じになる。
+            assertThat(actual).as(bb.toString()).isEqualTo(expected);
+            assertThat(bb.get(0)).isEqualTo((byte) 0);
+            assertThat(bb.get(40)).isEqualTo((byte) 0);
+        }
+        // slice() した heap buffer (arrayOffset() が 0 以外) の場合
+        final ByteBuffer slice = ByteBuffer.allocate(50).position(10).slice();
+        RandomData.seeded(5678L).nextBytes(slice.limit(37));
+        assertThat(Arrays.copyOfRange(slice.array(), 10, 47)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testNextAsciiRange() {
+        final RandomData rd = RandomData.seeded(1L);
+        final byte[] dst = new byte[100_000];
+        rd.nextAscii(dst, 0, dst.length, RandomData.PRINTABLE_ORIGIN, RandomData.PRINTABLE_BOUND);
+        final int[] counts = new int[256];
+        for (byte b : dst) {
+            counts[b & 0xFF]++;
+        }
+        for (int c = 0; c < 256; c++) {
+            if (c >= '!' && c <= '~') {
+                // 94 文字 : 期待値は 1063 回程度
+                assertThat(counts[c]).as("%c", c).isBetween(850, 1300);
+            } else {
+                assertThat(counts[c]).as("%02x", c).isZero();
+            }
+        }
+        // 範囲の端 : 全ての文字 (0x00 - 0x7F) と1文字のみ
+        final byte[] all = new byte[10_000];
+        rd.nextAscii(all, 0, all.length, 0, 0x80);
+        final Set<Byte> seen = new HashSet<>();
+        for (byte b : all) {
+            assertThat(b).isBetween((byte) 0, (byte) 0x7F);
+            seen.add(b);
+        }
+        assertThat(seen).hasSize(0x80);
+        final byte[] one = new byte[13];
+        rd.nextAscii(one, 0, one.length, 'x', 'y');
+        assertThat(new String(one)).isEqualTo("x".repeat(13));
+
+        assertThatThrownBy(() -> rd.nextAscii(one, 0, 1, 'b', 'a')).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rd.nextAscii(one, 0, 1, 0, 0x81)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rd.nextAscii(one, 0, 1, -1, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testNextString() {
+        final RandomData rd = RandomData.seeded(2L);
+        for (int i = 0; i < 1000; i++) {
+            final String s = rd.nextString(10, 30);
+            assertThat(s.length()).isBetween(10, 29);
+            assertThat(s).matches("[!-~]+");
+        }
+        assertThat(rd.nextString(0)).isEmpty();
+        assertThat(rd.nextString(7, 7)).hasSize(7);
+        assertThat(rd.nextString(7, 3)).hasSize(7);
+        assertThat(rd.nextAsciiString(20, 'a', 'z' + 1)).matches("[a-z]{20}");
+    }
+
+    @Test
+    public void testParallelIsReproducible() throws Exception {
+        final int count = RandomData.PARALLEL_CHUNK * 5 + 123;
+        final String[] expected = RandomData.parallelStrings(42L, count, 5, 15);
+        assertThat(expected).hasSize(count).doesNotContainNull();
+        for (String s : expected) {
+            assertThat(s).matches("[!-~]{5,14}");
+        }
+        // 並列度が異なる (Spliterator の分割のされ方が異なる) 場合も同じ結果となる。
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertThat(pool.submit(() -> RandomData.parallelStrings(42L, count, 5, 15)).get())
+                    .isEqualTo(expected);
+        } finally {
+            pool.shutdown();
+        }
+        assertThat(RandomData.parallelStrings(43L, count, 5, 15)).isNotEqualTo(expected);
+        assertThat(RandomData.parallelStrings(42L, 0, 5, 15)).isEmpty();
+
+        final long[] longs = RandomData.parallelLongs(7L, count);
+        assertThat(RandomData.parallelLongs(7L, count)).isEqualTo(longs);
+        // 先頭のチャンクは、チャンクごとのシードの乱数生成器で順に生成した値となる。
+        final RandomData first = RandomData.seeded(RandomData.chunkSeed(7L, 0));
+        for (int i = 0; i < 10; i++) {
+            assertThat(longs[i]).isEqualTo(first.nextLong());
+        }
+        // チャンクごとに異なる値の並びとなる。
+        assertThat(Arrays.stream(longs).distinct().count()).isEqualTo(count);
+
+        assertThatThrownBy(() -> RandomData.parallelLongs(1L, -1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RandomData.parallelStrings(1L, 1, -1, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testCurrentIsPerThread() throws Exception {
+        final Set<RandomData> instances = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?>[] futures = new Future<?>[4];
+            for (int t = 0; t < futures.length; t++) {
+                futures[t] = executor.submit(() -> {
+                    final RandomData rd = RandomData.current();
+                    assertThat(RandomData.current()).isSameAs(rd);
+                    instances.add(rd);
+                    // 他のスレッドの呼び出しを待つ間、スレッドを終わらせない。
+                    while (instances.size() < 4) {
+                        Thread.yield();
+                    }
+                    return rd.nextString(10);
+                });
+            }
+            final Set<Object> results = new HashSet<>();
+            for (Future<?> f : futures) {
+                results.add(f.get());
+            }
+            assertThat(instances).hasSize(4);
+            assertThat(results).hasSize(4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRandomStringAndUnsignedByte() {
+        for (int i = 0; i < 1000; i++) {
+            final String s = RandomString.get(10, 30);
+            assertThat(s.length()).isBetween(10, 29);
+            // 以前と同じく '!' から '}' まで
+            assertThat(s).matches("[!-}]+");
+            assertThat(RandomString.getRandomChar()).isBetween('!', '}');
+        }
+        assertThat(RandomString.get(-1, 3)).isEmpty();
+        assertThat(RandomString.get(5, 2)).hasSize(5);
+        assertThat(UnsignedByte.random(0)).isEmpty();
+        assertThat(UnsignedByte.random(1000)).hasSize(1000);
+        final Set<Byte> seen = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            seen.add(UnsignedByte.random());
+        }
+        assertThat(seen).hasSize(256);
+    }
+}
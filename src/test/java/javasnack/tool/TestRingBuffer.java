@@ -32,6 +32,7 @@ import org.junit.jupiter.api.Test;
  * http://www.bohyoh.com/Books/JAlgoData/EX/ALGOEX0908.html
  * 
  * こちらは非常に単純な、1バイトずつread/writeするring bufferの作例デモ。
+ * (スレッド間でバイト列を受け渡す実用版は javasnack.tool.SpscByteRingBuffer / MpmcByteRingBuffer を参照)
  */
 public class TestRingBuffer {
 
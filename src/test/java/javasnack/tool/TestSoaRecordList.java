@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSoaRecordList {
+
+    @Test
+    public void testColumns() {
+        // long x 2, int x 1, double x 1
+        final SoaRecordList l = new SoaRecordList(2, 1, 1, 0);
+        for (int i = 0; i < 100; i++) {
+            final int row = l.add();
+            assertThat(row).isEqualTo(i);
+            l.setLong(row, 0, i);
+            l.setLong(row, 1, -i);
+            l.setInt(row, 0, i * 2);
+            l.setDouble(row, 0, i * 0.5);
+        }
+        assertThat(l.size()).isEqualTo(100);
+        assertThat(l.getLong(42, 0)).isEqualTo(42L);
+        assertThat(l.getLong(42, 1)).isEqualTo(-42L);
+        assertThat(l.getInt(42, 0)).isEqualTo(84);
+        assertThat(l.getDouble(42, 0)).isEqualTo(21.0);
+        assertThatThrownBy(() -> l.getLong(100, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> l.getInt(0, 1)).isInstanceOf(IndexOutOfBoundsException.class);
+
+        // clear() 後に追加したレコードは 0 で初期化されている。
+        l.clear();
+        assertThat(l.isEmpty()).isTrue();
+        final int row = l.add();
+        assertThat(l.getLong(row, 0)).isZero();
+        assertThat(l.getInt(row, 0)).isZero();
+        assertThat(l.getDouble(row, 0)).isZero();
+        assertThatThrownBy(() -> new SoaRecordList(-1, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSpscByteRingBuffer {
+
+    @Test
+    public void testCapacity() {
+        assertThat(new SpscByteRingBuffer(1).capacity()).isEqualTo(1);
+        assertThat(new SpscByteRingBuffer(3).capacity()).isEqualTo(4);
+        assertThat(new SpscByteRingBuffer(1024).capacity()).isEqualTo(1024);
+        assertThat(new SpscByteRingBuffer(1025).capacity()).isEqualTo(2048);
+        assertThatThrownBy(() -> new SpscByteRingBuffer(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SpscByteRingBuffer(SpscByteRingBuffer.MAX_CAPACITY + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testOfferDrainWrapAround() {
+        final SpscByteRingBuffer rb = new SpscByteRingBuffer(8);
+        final byte[] dst = new byte[16];
+        assertThat(rb.drain(dst, 0, dst.length)).isEqualTo(0);
+        assertThat(rb.offer(new byte[] { 1, 2, 3, 4, 5 }, 0, 5)).isTrue();
+        assertThat(rb.size()).isEqualTo(5);
+        // 空きが足りない場合は何も書き込まない。(読み込まれていない内容を上書きしない)
+        assertThat(rb.offer(new byte[] { 6, 7, 8, 9 }, 0, 4)).isFalse();
+        assertThat(rb.size()).isEqualTo(5);
+        assertThat(rb.drain(dst, 0, 3)).isEqualTo(3);
+        assertThat(dst).startsWith(1, 2, 3);
+        // 末尾から先頭に折り返して書き込む。
+        assertThat(rb.offer(new byte[] { 0, 6, 7, 8, 9, 10, 0 }, 1, 5)).isTrue();
+        assertThat(rb.size()).isEqualTo(7);
+        assertThat(rb.drain(dst, 2, 14)).isEqualTo(7);
+        assertThat(dst).startsWith(1, 2, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(rb.size()).isEqualTo(0);
+        assertThat(rb.offer(new byte[8], 0, 8)).isTrue();
+        assertThat(rb.offer(new byte[0], 0, 0)).isTrue();
+        assertThat(rb.offer(new byte[1], 0, 1)).isFalse();
+        assertThatThrownBy(() -> rb.offer(new byte[9], 0, 9)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rb.offer(new byte[4], 2, 3)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> rb.drain(new byte[4], 2, 3)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void testConcurrentHandoff() throws Exception {
+        final SpscByteRingBuffer rb = new SpscByteRingBuffer(64);
+        final int total = 1_000_000;
+        final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            final byte[] src = new byte[13];
+            int next = 0;
+            while (next < total) {
+                final int len = Math.min(src.length, total - next);
+                for (int i = 0; i < len; i++) {
+                    src[i] = (byte) (next + i);
+                }
+                while (!rb.offer(src, 0, len)) {
+                    // CPU コアが少ない環境でも相手のスレッドが進むよう、スピンせずに譲る。
+                    Thread.yield();
+                }
+                next += len;
+            }
+        });
+        // 書き込まれた順に、欠けも重複も無く読み込める。
+        final byte[] dst = new byte[17];
+        int received = 0;
+        int mismatched = -1;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received < total && mismatched < 0 && System.nanoTime() < deadline) {
+            final int n = rb.drain(dst, 0, dst.length);
+            if (n == 0) {
+                Thread.yield();
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (dst[i] != (byte) (received + i)) {
+                    mismatched = received + i;
+                }
+            }
+            received += n;
+        }
+        assertThat(mismatched).isEqualTo(-1);
+        producer.get(30, TimeUnit.SECONDS);
+        assertThat(received).isEqualTo(total);
+        assertThat(rb.size()).isEqualTo(0);
+    }
+}
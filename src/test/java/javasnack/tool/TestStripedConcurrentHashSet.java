@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 "Masahiko Sakamoto" <sakamoto.gsyc.3s@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package javasnack.tool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+public class TestStripedConcurrentHashSet {
+
+    @Test
+    public void testBasicSetOperations() {
+        final StripedConcurrentHashSet<String> s = new StripedConcurrentHashSet<>(4);
+        assertThat(s.isEmpty()).isTrue();
+        assertThat(s.add("aaa")).isTrue();
+        assertThat(s.add("bbb")).isTrue();
+        assertThat(s.add("aaa")).isFalse();
+        assertThat(s.size()).isEqualTo(2);
+        assertThat(s.contains("aaa")).isTrue();
+        assertThat(s.contains("ccc")).isFalse();
+        assertThat(s).containsExactlyInAnyOrder("aaa", "bbb");
+        assertThat(s.remove("aaa")).isTrue();
+        assertThat(s.remove("aaa")).isFalse();
+        assertThat(s).containsExactly("bbb");
+        // 書き込み後の走査にはスナップショットを作り直した内容が反映される。
+        for (int i = 0; i < 1000; i++) {
+            s.add("v" + i);
+        }
+        assertThat(s.size()).isEqualTo(1001);
+        assertThat(new HashSet<>(s)).hasSize(1001);
+        assertThat(s).isEqualTo(new HashSet<>(s));
+        s.clear();
+        assertThat(s.isEmpty()).isTrue();
+        assertThat(s).isEmpty();
+    }
+
+    @Test
+    public void testNull() {
+        final StripedConcurrentHashSet<String> s = new StripedConcurrentHashSet<>();
+        assertThatThrownBy(() -> s.add(null)).isInstanceOf(NullPointerException.class);
+        assertThat(s.contains(null)).isFalse();
+        assertThat(s.remove(null)).isFalse();
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        final StripedConcurrentHashSet<Integer> s = new StripedConcurrentHashSet<>(8);
+        for (int i = 0; i < 100; i++) {
+            s.add(i);
+        }
+        final Iterator<Integer> it = s.iterator();
+        assertThatThrownBy(() -> it.remove()).isInstanceOf(IllegalStateException.class);
+        while (it.hasNext()) {
+            if (it.next() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertThat(s.size()).isEqualTo(50);
+        assertThat(s).allMatch(v -> v % 2 == 1);
+        assertThatThrownBy(() -> it.next()).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    public void testStripeCount() {
+        assertThat(new StripedConcurrentHashSet<>(1).stripeCount()).isEqualTo(1);
+        assertThat(new StripedConcurrentHashSet<>(2).stripeCount()).isEqualTo(2);
+        assertThat(new StripedConcurrentHashSet<>(3).stripeCount()).isEqualTo(4);
+        assertThat(new StripedConcurrentHashSet<>(17).stripeCount()).isEqualTo(32);
+        assertThat(new StripedConcurrentHashSet<>(1 << 16).stripeCount()).isEqualTo(1 << 16);
+        assertThatThrownBy(() -> new StripedConcurrentHashSet<>(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StripedConcurrentHashSet<>((1 << 16) + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testConcurrentWriteAndIterate() throws Exception {
+        final StripedConcurrentHashSet<Integer> s = new StripedConcurrentHashSet<>(16);
+        // 偶数は常に含まれ、奇数だけを書き込みスレッドが追加/削除する。
+        for (int i = 0; i < 1000; i += 2) {
+            s.add(i);
+        }
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                final int offset = t;
+                futures.add(pool.submit(() -> {
+                    for (int round = 0; round < 200; round++) {
+                        for (int i = 1 + offset * 2; i < 1000; i += 4) {
+                            if (round % 2 == 0) {
+                                s.add(i);
+                            } else {
+                                s.remove(i);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            final List<Future<Integer>> readers = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                readers.add(pool.submit(() -> {
+                    int iterations = 0;
+                    while (!stop.get() || iterations == 0) {
+                        final Set<Integer> seen = new HashSet<>();
+                        for (final Integer v : s) {
+                            // 走査中に書き込まれても例外にならず、同じ要素を2回返すことも無い。
+                            assertThat(seen.add(v)).isTrue();
+                        }
+                        for (int i = 0; i < 1000; i += 2) {
+                            assertThat(seen).contains(i);
+                        }
+                        iterations++;
+                    }
+                    return iterations;
+                }));
+            }
+            for (final Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+            stop.set(true);
+            for (final Future<Integer> f : readers) {
+                assertThat(f.get(30, TimeUnit.SECONDS)).isPositive();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // 書き込みは全て偶数回(追加 -> 削除)行われたため、奇数は残らない。
+        assertThat(s.size()).isEqualTo(500);
+        assertThat(s).allMatch(v -> v % 2 == 0);
+    }
+}